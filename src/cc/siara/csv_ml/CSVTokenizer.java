@@ -0,0 +1,635 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import cc.siara.csv.Counter;
+import cc.siara.csv.ExceptionHandler;
+
+/**
+ * Block buffered tokenizer used by MultiLevelCSVParser and
+ * MultiLevelCSVSchema.
+ *
+ * Characters are read from the underlying Reader in blocks into a reusable
+ * char[] window and tokens are located directly within the window. Putting
+ * back a token or a character only moves the position within the window.
+ *
+ * Line and column numbers are not maintained for each character. They are
+ * computed and set to the Counter only when an error is reported.
+ *
+ * By default, values are scanned using StructuralScanner, which jumps to the
+ * next delimiter, quote, line end or comment start looking at four characters
+ * at a time. This can be turned off using setStructuralScan() to look at
+ * each character instead. Both give the same tokens.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public class CSVTokenizer {
+
+    static final int DEFAULT_BUF_SIZE = 65536;
+
+    // Values longer than this are reported as E_TOO_MANY_CHARS
+    static final int MAX_VALUE_LEN = 65535;
+
+    // Warning for characters found after closing quote
+    static final short W_CHAR_INVALID = 2;
+
+    // Associated classes
+    Counter counter = null;
+    ExceptionHandler ex = null;
+    Reader r = null;
+
+    // Window into the stream. Characters from pos to limit are yet to be
+    // processed. Everything before token_start can be discarded while
+    // refilling.
+    char[] buf = null;
+    int pos = 0;
+    int limit = 0;
+    int token_start = 0;
+    int seg_start = 0;
+    boolean is_stream_ended = false;
+
+    // Scratch area to assemble values having comments
+    char[] val = new char[256];
+    int val_len = 0;
+
+    // View of last value parsed
+    FieldValue field = new FieldValue();
+
+    // Line counts of characters discarded from the window
+    int line_base = 0;
+    int col_base = 0;
+    // Number of characters discarded from the window
+    long char_base = 0;
+
+    char delim = ',';
+    long delim_pattern = StructuralScanner.pattern(',');
+    boolean is_structural_scan = true;
+    boolean is_eol = false;
+    boolean is_eos = false;
+    boolean is_last_char_read = false;
+
+    /**
+     * Constructor
+     *
+     * @param counter
+     *            Counter to be updated when errors are reported
+     * @param ex
+     *            Exception handler to report errors to
+     */
+    public CSVTokenizer(Counter counter, ExceptionHandler ex) {
+        this(counter, ex, DEFAULT_BUF_SIZE);
+    }
+
+    /**
+     * Constructor with given initial buffer size
+     *
+     * @param counter
+     *            Counter to be updated when errors are reported
+     * @param ex
+     *            Exception handler to report errors to
+     * @param buf_size
+     *            Initial size of the window. It grows if a token is longer.
+     */
+    public CSVTokenizer(Counter counter, ExceptionHandler ex, int buf_size) {
+        this.counter = counter;
+        this.ex = ex;
+        buf = new char[buf_size < 16 ? 16 : buf_size];
+    }
+
+    /**
+     * Resets state to start reading from given Reader
+     *
+     * @param r
+     *            Reader to read from
+     */
+    public void reset(Reader r) {
+        reset(r, 0);
+    }
+
+    /**
+     * Resets state to start reading from given Reader, which starts at the
+     * given line of a larger input. Line numbers reported in errors are
+     * offset accordingly.
+     *
+     * @param r
+     *            Reader to read from
+     * @param line_offset
+     *            Number of lines before the beginning of r
+     */
+    public void reset(Reader r, int line_offset) {
+        this.r = r;
+        pos = 0;
+        limit = 0;
+        token_start = 0;
+        seg_start = 0;
+        is_stream_ended = false;
+        line_base = line_offset;
+        col_base = 0;
+        char_base = 0;
+        is_eol = false;
+        is_eos = false;
+        is_last_char_read = false;
+    }
+
+    /**
+     * Sets delimiter character
+     *
+     * @param d
+     *            Delimiter
+     */
+    public void setDelimiter(char d) {
+        delim = d;
+        delim_pattern = StructuralScanner.pattern(d);
+    }
+
+    /**
+     * Gets delimiter character
+     *
+     * @return Delimiter
+     */
+    public char getDelimiter() {
+        return delim;
+    }
+
+    /**
+     * Sets whether to scan for structural characters several at a time or one
+     * by one
+     *
+     * @param is_structural_scan
+     *            true to use StructuralScanner (default)
+     */
+    public void setStructuralScan(boolean is_structural_scan) {
+        this.is_structural_scan = is_structural_scan;
+    }
+
+    /**
+     * Returns whether the last token ended a line
+     *
+     * @return true if end of line
+     */
+    public boolean isEOL() {
+        return is_eol;
+    }
+
+    /**
+     * Returns whether the end of stream has been reached
+     *
+     * @return true if end of stream
+     */
+    public boolean isEOS() {
+        return is_eos;
+    }
+
+    /**
+     * Getter for Counter
+     *
+     * @return Counter associated with this tokenizer
+     */
+    public Counter getCounter() {
+        return counter;
+    }
+
+    /**
+     * Reads the next block from the Reader, discarding characters before
+     * token_start. Positions held are adjusted accordingly.
+     *
+     * @return false if there is nothing more to read
+     * @throws IOException
+     */
+    private boolean fill() throws IOException {
+        if (is_stream_ended)
+            return false;
+        int keep_from = token_start;
+        if (keep_from > 0) {
+            countLines(0, keep_from);
+            char_base += keep_from;
+            System.arraycopy(buf, keep_from, buf, 0, limit - keep_from);
+            limit -= keep_from;
+            pos -= keep_from;
+            seg_start -= keep_from;
+            token_start = 0;
+        } else if (limit == buf.length) {
+            char[] new_buf = new char[buf.length * 2];
+            System.arraycopy(buf, 0, new_buf, 0, limit);
+            buf = new_buf;
+        }
+        int read_count = 0;
+        do {
+            read_count = r.read(buf, limit, buf.length - limit);
+        } while (read_count == 0);
+        if (read_count == -1) {
+            is_stream_ended = true;
+            return false;
+        }
+        limit += read_count;
+        return true;
+    }
+
+    /**
+     * Accumulates line and column counts of characters being discarded
+     *
+     * @param from
+     *            Start position in window
+     * @param to
+     *            End position (exclusive)
+     */
+    private void countLines(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == '\n') {
+                line_base++;
+                col_base = 0;
+            } else
+                col_base++;
+        }
+    }
+
+    /**
+     * Returns number of characters consumed from the Reader so far
+     *
+     * @return Position from the beginning of the Reader
+     */
+    public long getPosition() {
+        return char_base + pos;
+    }
+
+    /**
+     * Sets line and column number of the last character read to the Counter.
+     * Column is 0 if nothing is read yet on the line.
+     */
+    public void updateCounter() {
+        int line_no = line_base + 1;
+        int col_no = col_base;
+        for (int i = 0; i < pos; i++) {
+            if (i > 0 && buf[i - 1] == '\n') {
+                line_no++;
+                col_no = 0;
+            }
+            col_no++;
+        }
+        counter.setLineNo(line_no);
+        counter.setColNo(col_no);
+    }
+
+    /**
+     * Updates Counter with position of the last character read and sets error
+     * to the Exception handler
+     *
+     * @param err_code
+     *            Error code
+     */
+    public void set_err(short err_code) {
+        updateCounter();
+        ex.set_err(err_code);
+    }
+
+    /**
+     * Updates Counter with position of the last character read and adds
+     * warning to the Exception handler
+     *
+     * @param warn_code
+     *            Warning code
+     */
+    public void add_warn(short warn_code) {
+        updateCounter();
+        ex.add_warn(warn_code);
+    }
+
+    /**
+     * Reads next character
+     *
+     * @return character read or -1 if end of stream
+     * @throws IOException
+     */
+    public int readChar() throws IOException {
+        token_start = pos;
+        if (pos == limit && !fill()) {
+            is_last_char_read = false;
+            return -1;
+        }
+        is_last_char_read = true;
+        return buf[pos++];
+    }
+
+    /**
+     * Puts back the last character read
+     */
+    public void reInsertLastChar() {
+        if (is_last_char_read)
+            pos--;
+        is_last_char_read = false;
+    }
+
+    /**
+     * Skips spaces and tabs at the beginning of a line and returns the number
+     * of characters skipped. Tab is not skipped if it is the delimiter, as it
+     * then ends an empty value.
+     *
+     * @return Number of spaces found or -1 if end of stream was reached
+     * @throws IOException
+     */
+    public int skipIndent() throws IOException {
+        int space_count = 0;
+        token_start = pos;
+        do {
+            if (pos == limit && !fill())
+                return -1;
+            char c = buf[pos];
+            if (c != ' ' && (c != '\t' || delim == '\t'))
+                break;
+            space_count++;
+            pos++;
+            token_start = pos;
+        } while (true);
+        return space_count;
+    }
+
+    /**
+     * Puts back last token so that it would be returned again by
+     * parseNextToken()
+     */
+    public void reinsertLastToken() {
+        pos = token_start;
+        is_eos = false;
+    }
+
+    /**
+     * Makes sure there is a character available at pos + 1
+     *
+     * @return false if stream ends
+     * @throws IOException
+     */
+    private boolean lookAhead() throws IOException {
+        while (pos + 1 >= limit) {
+            if (!fill())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Skips the box comment starting at pos, which should point to /*
+     *
+     * @throws IOException
+     */
+    private void skipComment() throws IOException {
+        pos += 2;
+        while (true) {
+            if (!lookAhead()) {
+                pos = limit;
+                return;
+            }
+            if (buf[pos] == '*' && buf[pos + 1] == '/') {
+                pos += 2;
+                return;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Checks whether a comment starts at pos
+     *
+     * @return true if /* is found at pos
+     * @throws IOException
+     */
+    private boolean isCommentStart() throws IOException {
+        return buf[pos] == '/' && lookAhead() && buf[pos + 1] == '*';
+    }
+
+    /**
+     * Appends characters from seg_start to end to the scratch area
+     *
+     * @param end
+     *            End position (exclusive)
+     */
+    private void appendSegment(int end) {
+        int len = end - seg_start;
+        if (len <= 0)
+            return;
+        if (val_len + len > val.length) {
+            int new_len = val.length * 2;
+            while (new_len < val_len + len)
+                new_len *= 2;
+            char[] new_val = new char[new_len];
+            System.arraycopy(val, 0, new_val, 0, val_len);
+            val = new_val;
+        }
+        System.arraycopy(buf, seg_start, val, val_len, len);
+        val_len += len;
+    }
+
+    /**
+     * Parses next token from the stream
+     *
+     * @return Value of the token
+     * @throws IOException
+     */
+    public String parseNextToken() throws IOException {
+        return parseNextField().toString();
+    }
+
+    /**
+     * Parses next token from the stream and returns a view of its value
+     * without forming a String. The same FieldValue instance is returned each
+     * time, so it is valid only till the next call.
+     *
+     * @return View of value of the token
+     * @throws IOException
+     */
+    public FieldValue parseNextField() throws IOException {
+
+        is_eol = false;
+        is_last_char_read = false;
+        token_start = pos;
+        val_len = 0;
+
+        // Look for opening quote skipping spaces and comments
+        boolean is_quoted = false;
+        while (true) {
+            if (pos == limit && !fill())
+                break;
+            char c = buf[pos];
+            if (c == ' ' || (c == '\t' && delim != '\t')) {
+                pos++;
+            } else if (c == '/' && isCommentStart()) {
+                skipComment();
+            } else {
+                if (c == '"') {
+                    is_quoted = true;
+                    pos++;
+                }
+                break;
+            }
+        }
+        FieldValue value;
+        if (is_quoted)
+            value = parseQuotedToken();
+        else {
+            pos = token_start;
+            value = parseUnquotedToken();
+        }
+        // Length before collapsing doubled quotes is checked first
+        if (value.len > MAX_VALUE_LEN && value.length() > MAX_VALUE_LEN)
+            set_err(MultiLevelCSVParser.E_TOO_MANY_CHARS);
+        return value;
+
+    }
+
+    /**
+     * Parses a token not enclosed within quotes. Comments within are removed.
+     *
+     * @return View of value of the token
+     * @throws IOException
+     */
+    private FieldValue parseUnquotedToken() throws IOException {
+        seg_start = pos;
+        boolean is_assembled = false;
+        int end = -1;
+        while (true) {
+            if (pos == limit && !fill()) {
+                end = pos;
+                is_eol = true;
+                is_eos = true;
+                break;
+            }
+            if (is_structural_scan) {
+                pos = StructuralScanner.indexOfUnquotedStop(buf, pos, limit,
+                        delim_pattern);
+                if (pos == limit)
+                    continue;
+            }
+            char c = buf[pos];
+            if (c == delim) {
+                end = pos++;
+                break;
+            }
+            if (c == '\n') {
+                end = pos++;
+                is_eol = true;
+                break;
+            }
+            if (c == '\r') {
+                if (lookAhead() && buf[pos + 1] == '\n') {
+                    end = pos;
+                    pos += 2;
+                    is_eol = true;
+                    break;
+                }
+            } else if (c == '/' && isCommentStart()) {
+                appendSegment(pos);
+                is_assembled = true;
+                skipComment();
+                seg_start = pos;
+                continue;
+            }
+            pos++;
+        }
+        if (!is_assembled) {
+            field.set(buf, seg_start, end - seg_start, false, false);
+            return field;
+        }
+        appendSegment(end);
+        field.set(val, 0, val_len, false, false);
+        return field;
+    }
+
+    /**
+     * Parses a token enclosed within quotes. pos is expected to be after the
+     * opening quote. Doubled quotes are collapsed when the value is read.
+     *
+     * @return View of value of the token
+     * @throws IOException
+     */
+    private FieldValue parseQuotedToken() throws IOException {
+        seg_start = pos;
+        boolean has_escaped_quotes = false;
+        int end = -1;
+        while (true) {
+            if (pos == limit && !fill()) {
+                end = pos;
+                is_eol = true;
+                is_eos = true;
+                break;
+            }
+            if (is_structural_scan) {
+                pos = StructuralScanner.indexOf(buf, pos, limit,
+                        StructuralScanner.QUOTE);
+                if (pos == limit)
+                    continue;
+            }
+            if (buf[pos] != '"') {
+                pos++;
+                continue;
+            }
+            if (lookAhead() && buf[pos + 1] == '"') {
+                // Escaped quote. One of them is dropped when read.
+                has_escaped_quotes = true;
+                pos += 2;
+                continue;
+            }
+            // Closing quote found. Positions may shift while skipping
+            // beyond, so remember length of segment.
+            int seg_len = pos++ - seg_start;
+            skipAfterQuote();
+            end = seg_start + seg_len;
+            break;
+        }
+        field.set(buf, seg_start, end - seg_start, true, has_escaped_quotes);
+        return field;
+    }
+
+    /**
+     * Skips spaces and comments after closing quote till delimiter or end of
+     * line. Any other character found is warned about and dropped.
+     *
+     * @throws IOException
+     */
+    private void skipAfterQuote() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                is_eol = true;
+                is_eos = true;
+                return;
+            }
+            char c = buf[pos];
+            if (c == delim) {
+                pos++;
+                return;
+            }
+            if (c == '\n') {
+                pos++;
+                is_eol = true;
+                return;
+            }
+            if (c == ' ' || c == '\r' || (c == '\t' && delim != '\t')) {
+                pos++;
+            } else if (c == '/' && isCommentStart()) {
+                skipComment();
+            } else {
+                add_warn(W_CHAR_INVALID);
+                pos++;
+            }
+        }
+    }
+
+}
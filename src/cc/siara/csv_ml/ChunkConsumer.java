@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.io.IOException;
+
+/**
+ * Receives results of parsing a file in chunks using
+ * MultiLevelCSVParser.parseInChunks(). Chunks are handed over in the order
+ * they appear in the file, from the thread that called parseInChunks().
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public interface ChunkConsumer {
+
+    /**
+     * Consumes result of parsing one chunk
+     *
+     * @param chunk_idx
+     *            Index of chunk starting with 0
+     * @param parsedObject
+     *            Parsed chunk. Its root holds the top level nodes of the
+     *            chunk.
+     * @throws IOException
+     */
+    public void consume(int chunk_idx, ParsedObject parsedObject)
+            throws IOException;
+
+}
@@ -0,0 +1,512 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Splits the data part of a csv_ml file into chunks that can be parsed
+ * independently. A chunk begins at a line having no leading space, that is,
+ * at a top level node. Lines having no value (empty or only comments) do
+ * not begin a chunk by themselves but go with the chunk after them, so that
+ * each chunk has at least one node. With chunk size of 1, each top level
+ * node is a chunk, which makes an index of the top level nodes.
+ *
+ * The bytes are scanned with the same rules as CSVTokenizer, so that line
+ * ends within quoted values or comments are not taken as split points. This
+ * works only for encodings in which these structural characters are single
+ * bytes that do not appear within other characters (UTF-8 and single byte
+ * ASCII compatible encodings).
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+final class ChunkSplitter {
+
+    static final int SEGMENT_SIZE = 1 << 26;
+
+    // Scanning states
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int AFTER_QUOTE = 3;
+    private static final int COMMENT = 4;
+
+    private final byte delim;
+    private final boolean is_tab_delim;
+
+    // Scanning state carried across segments
+    private int state = FIELD_START;
+    private int comment_return = FIELD_START;
+    private boolean is_slash_pending = false;
+    private boolean is_star_pending = false;
+    private boolean is_quote_pending = false;
+    private boolean is_line_start = false;
+    private int line_ctr = 0;
+    // Whether a value or delimiter appeared outside comments in the current
+    // line, and in the line that ended last
+    private boolean is_content_seen = false;
+    private boolean is_last_line_content = false;
+    // Whether a line having content ended since the current chunk began
+    private boolean is_chunk_content = false;
+    private boolean is_data_content = false;
+
+    // Results. A chunk ends where the next one starts, the last one at
+    // data_end.
+    private long[] chunk_starts = new long[16];
+    private int[] chunk_lines = new int[16];
+    private int chunk_count = 0;
+    private long data_end = 0;
+    private int data_start_line = 0;
+
+    /**
+     * Constructor
+     *
+     * @param delim
+     *            Delimiter, which should be an ASCII character
+     */
+    ChunkSplitter(char delim) {
+        this.delim = (byte) delim;
+        this.is_tab_delim = (delim == '\t');
+    }
+
+    /**
+     * Checks whether files in given encoding and delimiter can be split at
+     * byte level
+     *
+     * @param encoding
+     *            Encoding of the file
+     * @param delim
+     *            Delimiter
+     * @return true if splittable
+     */
+    static boolean isSplittable(String encoding, char delim) {
+        if (delim >= 0x80)
+            return false;
+        Charset charset = Charset.forName(encoding);
+        if (charset.name().equals("UTF-8"))
+            return true;
+        String probe = " \t\r\n\"/*" + delim;
+        try {
+            return charset.newEncoder().maxBytesPerChar() == 1
+                    && new String(probe.getBytes("US-ASCII"), charset.name())
+                            .equals(probe);
+        } catch (UnsupportedOperationException e) {
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Splits given file into chunks
+     *
+     * @param file
+     *            File to split
+     * @param is_utf8
+     *            Whether encoding is UTF-8 (otherwise single byte)
+     * @param data_start_chars
+     *            Position of beginning of data (after directive and schema) in
+     *            characters
+     * @param chunk_size
+     *            Approximate size of each chunk in bytes
+     * @throws IOException
+     */
+    void split(File file, boolean is_utf8, long data_start_chars,
+            long chunk_size) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            FileChannel channel = fis.getChannel();
+            long file_size = channel.size();
+            long data_start = toByteOffset(channel, file_size, is_utf8,
+                    data_start_chars);
+            data_start_line = line_ctr;
+            long chunk_start = data_start;
+            int chunk_start_line = line_ctr;
+            long next_split = data_start + chunk_size;
+            for (long seg_pos = data_start; seg_pos < file_size; seg_pos += SEGMENT_SIZE) {
+                long seg_len = Math.min(SEGMENT_SIZE, file_size - seg_pos);
+                MappedByteBuffer seg = channel.map(
+                        FileChannel.MapMode.READ_ONLY, seg_pos, seg_len);
+                for (int i = 0; i < seg_len; i++) {
+                    byte b = seg.get(i);
+                    if (is_line_start) {
+                        is_line_start = false;
+                        long pos = seg_pos + i;
+                        if (pos >= next_split && b != ' ' && b != '\t'
+                                && b != '\r' && b != '\n') {
+                            // Lines without content so far go with this
+                            // chunk
+                            if (is_chunk_content) {
+                                addChunk(chunk_start, chunk_start_line);
+                                chunk_start = pos;
+                                chunk_start_line = line_ctr;
+                                is_chunk_content = false;
+                            }
+                            next_split = pos + chunk_size;
+                        }
+                    }
+                    scan(b);
+                }
+            }
+            // Last line may not have line end
+            if (is_content_seen)
+                is_chunk_content = is_data_content = true;
+            // Lines without content at the end go with the last chunk
+            if (is_chunk_content || chunk_count == 0)
+                addChunk(chunk_start, chunk_start_line);
+            data_end = file_size;
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Adds chunk starting at given position
+     *
+     * @param start
+     *            Byte position
+     * @param line_offset
+     *            Number of lines before the chunk
+     */
+    private void addChunk(long start, int line_offset) {
+        if (chunk_count == chunk_starts.length) {
+            long[] new_chunk_starts = new long[chunk_count * 2];
+            System.arraycopy(chunk_starts, 0, new_chunk_starts, 0,
+                    chunk_count);
+            chunk_starts = new_chunk_starts;
+            int[] new_chunk_lines = new int[chunk_count * 2];
+            System.arraycopy(chunk_lines, 0, new_chunk_lines, 0, chunk_count);
+            chunk_lines = new_chunk_lines;
+        }
+        chunk_starts[chunk_count] = start;
+        chunk_lines[chunk_count++] = line_offset;
+    }
+
+    /**
+     * Finds byte position of given character position, counting lines on the
+     * way
+     *
+     * @param channel
+     *            File channel
+     * @param file_size
+     *            Size of file
+     * @param is_utf8
+     *            Whether encoding is UTF-8 (otherwise single byte)
+     * @param chars
+     *            Character position
+     * @return Byte position
+     * @throws IOException
+     */
+    private long toByteOffset(FileChannel channel, long file_size,
+            boolean is_utf8, long chars) throws IOException {
+        long char_ctr = 0;
+        long seg_pos = 0;
+        while (char_ctr < chars && seg_pos < file_size) {
+            long seg_len = Math.min(SEGMENT_SIZE, file_size - seg_pos);
+            MappedByteBuffer seg = channel.map(FileChannel.MapMode.READ_ONLY,
+                    seg_pos, seg_len);
+            int i = 0;
+            for (; i < seg_len && char_ctr < chars; i++) {
+                byte b = seg.get(i);
+                if (b == '\n')
+                    line_ctr++;
+                if (!is_utf8 || (b & 0xC0) != 0x80) {
+                    char_ctr++;
+                    // Characters beyond BMP are decoded as surrogate pairs
+                    if (is_utf8 && (b & 0xF8) == 0xF0)
+                        char_ctr++;
+                }
+            }
+            // Include continuation bytes of last character
+            while (is_utf8 && i < seg_len && (seg.get(i) & 0xC0) == 0x80)
+                i++;
+            seg_pos += i;
+        }
+        return seg_pos;
+    }
+
+    /**
+     * Updates scanning state with next byte
+     *
+     * @param b
+     *            Byte
+     */
+    private void scan(byte b) {
+        if (b == '\n')
+            line_ctr++;
+        process(b);
+    }
+
+    /**
+     * Updates scanning state as per current state
+     *
+     * @param b
+     *            Byte
+     */
+    private void process(byte b) {
+        switch (state) {
+        case COMMENT:
+            if (is_star_pending) {
+                is_star_pending = false;
+                if (b == '/') {
+                    state = comment_return;
+                    return;
+                }
+            }
+            if (b == '*')
+                is_star_pending = true;
+            return;
+        case FIELD_START:
+            if (is_slash_pending) {
+                is_slash_pending = false;
+                if (b == '*') {
+                    startComment(FIELD_START);
+                    return;
+                }
+                state = UNQUOTED;
+                is_content_seen = true;
+                scanUnquoted(b);
+                return;
+            }
+            if (b == ' ' || (b == '\t' && !is_tab_delim))
+                return;
+            if (b == '/') {
+                is_slash_pending = true;
+                return;
+            }
+            if (b == '"') {
+                state = QUOTED;
+                is_content_seen = true;
+                return;
+            }
+            state = UNQUOTED;
+            if (b != '\r' && b != '\n')
+                is_content_seen = true;
+            scanUnquoted(b);
+            return;
+        case UNQUOTED:
+            if (is_slash_pending) {
+                is_slash_pending = false;
+                if (b == '*') {
+                    startComment(UNQUOTED);
+                    return;
+                }
+            }
+            scanUnquoted(b);
+            return;
+        case QUOTED:
+            scanQuoted(b);
+            return;
+        case AFTER_QUOTE:
+            if (is_slash_pending) {
+                is_slash_pending = false;
+                if (b == '*') {
+                    startComment(AFTER_QUOTE);
+                    return;
+                }
+                // Not a comment. Rest is part of value.
+                state = QUOTED;
+                scanQuoted(b);
+                return;
+            }
+            if (b == delim) {
+                state = FIELD_START;
+            } else if (b == '\n') {
+                endLine();
+            } else if (b == ' ' || b == '\r' || (b == '\t' && !is_tab_delim)) {
+                // skip
+            } else if (b == '/') {
+                is_slash_pending = true;
+            } else {
+                // Unexpected character. Rest is part of value.
+                state = QUOTED;
+                scanQuoted(b);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Updates state for byte within unquoted value
+     *
+     * @param b
+     *            Byte
+     */
+    private void scanUnquoted(byte b) {
+        if (b == delim)
+            state = FIELD_START;
+        else if (b == '\n')
+            endLine();
+        else if (b == '/')
+            is_slash_pending = true;
+    }
+
+    /**
+     * Updates state for byte within quoted value
+     *
+     * @param b
+     *            Byte
+     */
+    private void scanQuoted(byte b) {
+        if (is_quote_pending) {
+            is_quote_pending = false;
+            // Escaped quote
+            if (b == '"')
+                return;
+            state = AFTER_QUOTE;
+            process(b);
+            return;
+        }
+        if (b == '"')
+            is_quote_pending = true;
+    }
+
+    /**
+     * Starts skipping comment
+     *
+     * @param return_state
+     *            State to return to after comment
+     */
+    private void startComment(int return_state) {
+        comment_return = return_state;
+        state = COMMENT;
+    }
+
+    /**
+     * Marks end of line outside quotes and comments
+     */
+    private void endLine() {
+        state = FIELD_START;
+        is_line_start = true;
+        is_last_line_content = is_content_seen;
+        if (is_content_seen)
+            is_chunk_content = is_data_content = true;
+        is_content_seen = false;
+    }
+
+    /**
+     * Updates scanning state with next character of data already decoded,
+     * such as by FeedParser. Characters outside ASCII are not structural.
+     *
+     * @param c
+     *            Character
+     * @return true if the character ended a line outside quotes and comments
+     */
+    boolean scanChar(char c) {
+        is_line_start = false;
+        if (c < 0x80)
+            scan((byte) c);
+        else
+            scan(c == (delim & 0xFF) ? delim : (byte) 0x80);
+        return is_line_start;
+    }
+
+    /**
+     * Whether the line that ended last had any value or delimiter outside
+     * comments. Lines that are empty or have only comments are skipped by
+     * the parser.
+     *
+     * @return true if the line had content
+     */
+    boolean isLastLineContent() {
+        return is_last_line_content;
+    }
+
+    /**
+     * Getter for number of chunks found
+     *
+     * @return Number of chunks
+     */
+    int getChunkCount() {
+        return chunk_count;
+    }
+
+    /**
+     * Getter for byte position where given chunk starts
+     *
+     * @param chunk_idx
+     *            Index of chunk
+     * @return Byte position
+     */
+    long getChunkStart(int chunk_idx) {
+        return chunk_starts[chunk_idx];
+    }
+
+    /**
+     * Getter for byte position where given chunk ends (exclusive)
+     *
+     * @param chunk_idx
+     *            Index of chunk
+     * @return Byte position
+     */
+    long getChunkEnd(int chunk_idx) {
+        return (chunk_idx + 1 < chunk_count ? chunk_starts[chunk_idx + 1]
+                : data_end);
+    }
+
+    /**
+     * Getter for number of lines before given chunk
+     *
+     * @param chunk_idx
+     *            Index of chunk
+     * @return Number of lines
+     */
+    int getChunkLineOffset(int chunk_idx) {
+        return chunk_lines[chunk_idx];
+    }
+
+    /**
+     * Whether any line of data had a value or delimiter outside comments
+     *
+     * @return true if data has content
+     */
+    boolean hasContent() {
+        return is_data_content;
+    }
+
+    /**
+     * Trims arrays to the number of chunks, for keeping them as index
+     */
+    void trim() {
+        if (chunk_starts.length == chunk_count)
+            return;
+        long[] new_chunk_starts = new long[chunk_count];
+        System.arraycopy(chunk_starts, 0, new_chunk_starts, 0, chunk_count);
+        chunk_starts = new_chunk_starts;
+        int[] new_chunk_lines = new int[chunk_count];
+        System.arraycopy(chunk_lines, 0, new_chunk_lines, 0, chunk_count);
+        chunk_lines = new_chunk_lines;
+    }
+
+    /**
+     * Getter for number of lines before data begins
+     *
+     * @return Number of lines in directive and schema
+     */
+    int getDataStartLine() {
+        return data_start_line;
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+/**
+ * Values of one column of a ColumnarTable, one for each row, held in arrays
+ * of primitives. Rows having no value are marked in a bitmap of nulls.
+ *
+ * The subclasses are LongColumnVector for integer, date and datetime
+ * columns, DoubleColumnVector for real columns and TextColumnVector for the
+ * rest.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public abstract class ColumnVector {
+
+    String name;
+    short type_code;
+    // Number of rows for which value or null is added
+    int size = 0;
+    // One bit for each row, set if value is null
+    long[] nulls = new long[1];
+    int null_count = 0;
+
+    /**
+     * Initializes name and type
+     *
+     * @param name
+     *            Name of column
+     * @param type_code
+     *            One of the type codes of Column
+     */
+    ColumnVector(String name, short type_code) {
+        this.name = name;
+        this.type_code = type_code;
+    }
+
+    /**
+     * Getter for name of column
+     *
+     * @return Attribute name of column
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for type of column
+     *
+     * @return One of the type codes of Column
+     */
+    public short getTypeCode() {
+        return type_code;
+    }
+
+    /**
+     * Checks whether value of given row is null
+     *
+     * @param row
+     *            Index of row in table
+     * @return true if null
+     */
+    public boolean isNull(int row) {
+        return row >= size || (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Getter for number of null values
+     *
+     * @return Number of nulls
+     */
+    public int getNullCount() {
+        return null_count;
+    }
+
+    /**
+     * Gets value of given row as text
+     *
+     * @param row
+     *            Index of row in table
+     * @return Value or null
+     */
+    public abstract String getString(int row);
+
+    /**
+     * Adds value for next row
+     *
+     * @param value
+     *            Value as in input, which may be a view such as FieldValue
+     * @param converter
+     *            Converter for typed columns
+     */
+    abstract void add(CharSequence value, ValueConverter converter);
+
+    /**
+     * Adds null for next row
+     */
+    void addNull() {
+        ensureCapacity(size + 1);
+        nulls[size >>> 6] |= (1L << size);
+        null_count++;
+        size++;
+    }
+
+    /**
+     * Adds null for rows that got no value, till given row
+     *
+     * @param row
+     *            Index of row to which value is to be added next
+     */
+    final void padTo(int row) {
+        while (size < row)
+            addNull();
+    }
+
+    /**
+     * Makes room for given number of rows, growing the bitmap of nulls
+     *
+     * @param rows
+     *            Number of rows
+     */
+    void ensureCapacity(int rows) {
+        int words = (rows + 63) >>> 6;
+        if (words > nulls.length) {
+            long[] new_nulls = new long[Math.max(words, nulls.length * 2)];
+            System.arraycopy(nulls, 0, new_nulls, 0, nulls.length);
+            nulls = new_nulls;
+        }
+    }
+
+    /**
+     * Trims arrays to the number of rows added
+     */
+    void trim() {
+        int words = (size + 63) >>> 6;
+        if (words != nulls.length) {
+            long[] new_nulls = new long[words];
+            System.arraycopy(nulls, 0, new_nulls, 0, words);
+            nulls = new_nulls;
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import cc.siara.csv.ExceptionHandler;
+import cc.siara.csv_ml.schema.Column;
+import cc.siara.csv_ml.schema.Node;
+
+/**
+ * Builds a ColumnarTable for each node of the schema as the input is
+ * parsed, appending each value directly to the vector of its column. Scans
+ * and aggregations over a column then run over an array of primitives
+ * instead of walking the nodes of a tree.
+ *
+ * <pre>
+ * ColumnarStore store = new ColumnarStore();
+ * parser.parse(reader, store);
+ * ColumnarTable subjects = store.getTable(&quot;student/subject&quot;);
+ * long total = ((LongColumnVector) subjects.getColumn(&quot;marks&quot;)).sum();
+ * </pre>
+ *
+ * A node that appears under more than one parent node (such as a reusable
+ * node of schema) has a table under each. The arrays are trimmed at end of
+ * document, after which the store is not modified.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public class ColumnarStore implements TreeBuilder {
+
+    // Holds tables of top level nodes as children. Not a table of rows.
+    ColumnarTable root = null;
+    ColumnarTable[] tables = new ColumnarTable[16];
+    int table_count = 0;
+
+    // Open rows by depth, with their tables. open_tables[0] is root.
+    ColumnarTable[] open_tables = new ColumnarTable[16];
+    int[] open_rows = new int[16];
+    int depth = 0;
+
+    // Content of current row, set at end of row
+    StringBuffer content = new StringBuffer();
+    boolean has_content = false;
+
+    ValueConverter converter = new ValueConverter();
+
+    /**
+     * Getter for number of tables
+     *
+     * @return Number of tables
+     */
+    public int getTableCount() {
+        return table_count;
+    }
+
+    /**
+     * Gets table at given index
+     *
+     * @param table_idx
+     *            Index of table, in the order first seen
+     * @return Table
+     */
+    public ColumnarTable getTable(int table_idx) {
+        return tables[table_idx];
+    }
+
+    /**
+     * Gets table of given path
+     *
+     * @param path
+     *            Names of node and its ancestors delimited with /, such as
+     *            student/subject
+     * @return Table or null if not found
+     */
+    public ColumnarTable getTable(String path) {
+        for (int i = 0; i < table_count; i++) {
+            if (tables[i].path.equals(path))
+                return tables[i];
+        }
+        return null;
+    }
+
+    public void startDocument(Directive directive, ExceptionHandler ex) {
+        root = new ColumnarTable(directive.getRoot(), new Column[0], null);
+        tables = new ColumnarTable[16];
+        table_count = 0;
+        open_tables[0] = root;
+        open_rows[0] = -1;
+        depth = 0;
+        has_content = false;
+    }
+
+    public void addNewNode(Node node_schema, int level) {
+        String node_name = node_schema.getName();
+        Column[] columns = node_schema.getColumnArray();
+        ColumnarTable parent = open_tables[depth];
+        ColumnarTable table = parent.findChild(node_name, columns);
+        if (table == null)
+            table = addTable(node_name, columns, parent);
+        int row = table.addRow(open_rows[depth]);
+        if (++depth == open_tables.length)
+            growDepth();
+        open_tables[depth] = table;
+        open_rows[depth] = row;
+    }
+
+    /**
+     * Adds table for given node under given parent table
+     *
+     * @param node_name
+     *            Name of node
+     * @param columns
+     *            Columns of node
+     * @param parent
+     *            Parent table or root
+     * @return New table
+     */
+    private ColumnarTable addTable(String node_name, Column[] columns,
+            ColumnarTable parent) {
+        ColumnarTable table = new ColumnarTable(node_name, columns,
+                (parent == root ? null : parent));
+        parent.addChild(table);
+        if (table_count == tables.length) {
+            ColumnarTable[] new_tables = new ColumnarTable[table_count * 2];
+            System.arraycopy(tables, 0, new_tables, 0, table_count);
+            tables = new_tables;
+        }
+        tables[table_count++] = table;
+        return table;
+    }
+
+    /**
+     * Doubles the capacity of the arrays kept by depth
+     */
+    private void growDepth() {
+        int len = open_tables.length;
+        ColumnarTable[] new_open_tables = new ColumnarTable[len * 2];
+        System.arraycopy(open_tables, 0, new_open_tables, 0, len);
+        open_tables = new_open_tables;
+        int[] new_open_rows = new int[len * 2];
+        System.arraycopy(open_rows, 0, new_open_rows, 0, len);
+        open_rows = new_open_rows;
+    }
+
+    public void setAttribute(int col_idx, CharSequence value) {
+        ColumnarTable.setValue(open_rows[depth],
+                open_tables[depth].vectors[col_idx], value, converter);
+    }
+
+    public void setAttribute(String col_name, CharSequence value) {
+        ColumnarTable table = open_tables[depth];
+        ColumnarTable.setValue(open_rows[depth], table
+                .findNamedColumn(col_name), value, converter);
+    }
+
+    public void addContent(String content) {
+        if (has_content)
+            this.content.append(',');
+        this.content.append(content);
+        has_content = true;
+    }
+
+    public void finalizeElement() {
+        if (!has_content)
+            return;
+        ColumnarTable table = open_tables[depth];
+        ColumnarTable.setValue(open_rows[depth], table
+                .findNamedColumn(ColumnarTable.CONTENT_COLUMN), content,
+                converter);
+        content.setLength(0);
+        has_content = false;
+    }
+
+    public void traverseToParent() {
+        if (depth > 0)
+            depth--;
+    }
+
+    public void endDocument() {
+        // Parsing may have stopped before end of row
+        if (depth > 0)
+            finalizeElement();
+        for (int i = 0; i < table_count; i++)
+            tables[i].trim();
+    }
+
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import cc.siara.csv_ml.schema.Column;
+
+/**
+ * Rows of one schema node under one parent table, held as one ColumnVector
+ * for each column. The hierarchy is kept as the row of the parent table
+ * under which each row appears.
+ *
+ * Columns of schema come first, in the order of schema, with vectors typed
+ * as per the type of column. They are followed, in the order first seen,
+ * by text columns for attributes set by name (such as when there is no
+ * schema) and a text column named _content for values beyond the columns
+ * of schema, delimited with comma as in JSON.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public final class ColumnarTable {
+
+    static final String CONTENT_COLUMN = "_content";
+
+    String name;
+    String path;
+    ColumnarTable parent;
+    Column[] columns;
+
+    ColumnVector[] vectors;
+    int vector_count;
+
+    // Row of parent table for each row, or -1 if at top level
+    int[] parent_rows = new int[64];
+    int row_count = 0;
+
+    // Tables of nodes under this node
+    ColumnarTable[] children = new ColumnarTable[4];
+    int child_count = 0;
+
+    /**
+     * Creates table with a vector for each column of schema
+     *
+     * @param name
+     *            Name of node
+     * @param columns
+     *            Columns of node as defined in schema
+     * @param parent
+     *            Table of parent node or null if at top level
+     */
+    ColumnarTable(String name, Column[] columns, ColumnarTable parent) {
+        this.name = name;
+        this.columns = columns;
+        this.parent = parent;
+        path = (parent == null ? name : parent.path + "/" + name);
+        vectors = new ColumnVector[columns.length + 4];
+        for (int i = 0; i < columns.length; i++) {
+            Column col = columns[i];
+            short type_code = col.getTypeCode();
+            if (type_code == Column.TYPE_REAL)
+                vectors[i] = new DoubleColumnVector(col.getAttrName(),
+                        type_code);
+            else if (type_code == Column.TYPE_TEXT)
+                vectors[i] = new TextColumnVector(col.getAttrName());
+            else
+                vectors[i] = new LongColumnVector(col.getAttrName(),
+                        type_code);
+        }
+        vector_count = columns.length;
+    }
+
+    /**
+     * Getter for name of node
+     *
+     * @return Name as in schema
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for path of node, being names of ancestors and node delimited
+     * with /
+     *
+     * @return Path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Getter for table of parent node
+     *
+     * @return Table or null if at top level
+     */
+    public ColumnarTable getParent() {
+        return parent;
+    }
+
+    /**
+     * Getter for number of rows
+     *
+     * @return Number of rows
+     */
+    public int getRowCount() {
+        return row_count;
+    }
+
+    /**
+     * Gets row of parent table under which given row appears
+     *
+     * @param row
+     *            Index of row
+     * @return Index of row in parent table or -1 if at top level
+     */
+    public int getParentRow(int row) {
+        return parent_rows[row];
+    }
+
+    /**
+     * Getter for number of columns
+     *
+     * @return Number of columns
+     */
+    public int getColumnCount() {
+        return vector_count;
+    }
+
+    /**
+     * Gets column at given index
+     *
+     * @param col_idx
+     *            Index of column, same as in schema for columns of schema
+     * @return Column vector
+     */
+    public ColumnVector getColumn(int col_idx) {
+        return vectors[col_idx];
+    }
+
+    /**
+     * Gets column of given name
+     *
+     * @param col_name
+     *            Attribute name of column
+     * @return Column vector or null if not found
+     */
+    public ColumnVector getColumn(String col_name) {
+        for (int i = 0; i < vector_count; i++) {
+            if (vectors[i].name.equals(col_name))
+                return vectors[i];
+        }
+        return null;
+    }
+
+    /**
+     * Getter for number of tables of child nodes
+     *
+     * @return Number of tables
+     */
+    public int getChildCount() {
+        return child_count;
+    }
+
+    /**
+     * Gets table of child node at given index
+     *
+     * @param child_idx
+     *            Index of child table, in the order first seen
+     * @return Child table
+     */
+    public ColumnarTable getChild(int child_idx) {
+        return children[child_idx];
+    }
+
+    /**
+     * Finds child table having given name and columns
+     *
+     * @param child_name
+     *            Name of node
+     * @param child_columns
+     *            Columns of node
+     * @return Child table or null if not found
+     */
+    ColumnarTable findChild(String child_name, Column[] child_columns) {
+        for (int i = 0; i < child_count; i++) {
+            ColumnarTable child = children[i];
+            if (child.columns == child_columns && child.name.equals(child_name))
+                return child;
+        }
+        return null;
+    }
+
+    /**
+     * Adds given table as child table
+     *
+     * @param child
+     *            Child table
+     */
+    void addChild(ColumnarTable child) {
+        if (child_count == children.length) {
+            ColumnarTable[] new_children = new ColumnarTable[child_count * 2];
+            System.arraycopy(children, 0, new_children, 0, child_count);
+            children = new_children;
+        }
+        children[child_count++] = child;
+    }
+
+    /**
+     * Adds row under given row of parent table
+     *
+     * @param parent_row
+     *            Row of parent table or -1 if at top level
+     * @return Index of row
+     */
+    int addRow(int parent_row) {
+        if (row_count == parent_rows.length) {
+            int[] new_parent_rows = new int[row_count * 2];
+            System.arraycopy(parent_rows, 0, new_parent_rows, 0, row_count);
+            parent_rows = new_parent_rows;
+        }
+        parent_rows[row_count] = parent_row;
+        return row_count++;
+    }
+
+    /**
+     * Sets value of given column for given row. Only the first value set for
+     * a row is kept.
+     *
+     * @param row
+     *            Index of row
+     * @param vector
+     *            Column vector
+     * @param value
+     *            Value, which may be a view such as FieldValue
+     * @param converter
+     *            Converter for typed columns
+     */
+    static void setValue(int row, ColumnVector vector, CharSequence value,
+            ValueConverter converter) {
+        if (vector.size > row)
+            return;
+        vector.padTo(row);
+        vector.add(value, converter);
+    }
+
+    /**
+     * Finds text column of given name among columns set by name, adding it
+     * if not found
+     *
+     * @param col_name
+     *            Name of attribute
+     * @return Column vector
+     */
+    ColumnVector findNamedColumn(String col_name) {
+        for (int i = columns.length; i < vector_count; i++) {
+            if (vectors[i].name.equals(col_name))
+                return vectors[i];
+        }
+        if (vector_count == vectors.length) {
+            ColumnVector[] new_vectors = new ColumnVector[vector_count * 2];
+            System.arraycopy(vectors, 0, new_vectors, 0, vector_count);
+            vectors = new_vectors;
+        }
+        ColumnVector vector = new TextColumnVector(col_name);
+        vectors[vector_count++] = vector;
+        return vector;
+    }
+
+    /**
+     * Pads all columns with null to the number of rows and trims arrays
+     */
+    void trim() {
+        for (int i = 0; i < vector_count; i++) {
+            vectors[i].padTo(row_count);
+            vectors[i].trim();
+        }
+        if (parent_rows.length != row_count) {
+            int[] new_parent_rows = new int[row_count];
+            System.arraycopy(parent_rows, 0, new_parent_rows, 0, row_count);
+            parent_rows = new_parent_rows;
+        }
+    }
+
+}
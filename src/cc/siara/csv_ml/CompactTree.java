@@ -0,0 +1,594 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import cc.siara.csv_ml.schema.Column;
+
+/**
+ * Parsed document held in parallel arrays of primitives instead of an
+ * object for each node and value. Nodes are identified by their index in
+ * document order, the root being 0. For each node only the index of its
+ * name, parent, first child, next sibling and first value are kept. Values
+ * of all nodes are held one after another in a single char array, with the
+ * end offset of each value and the column it belongs to. Node names and
+ * columns come from the schema and are shared by all nodes of same kind.
+ *
+ * The chars of values can instead be held outside the Java heap in an
+ * OffHeapArena (see MultiLevelCSVParser.setOffHeap()), for trees kept for
+ * long, in which case close() is to be called when the tree is no longer
+ * needed.
+ *
+ * Values set by column index are found by the same index, with the
+ * attribute name of the column as name. Values beyond the columns of schema
+ * are kept as content. Namespace prefixes are not resolved and
+ * values are not converted to types.
+ *
+ * The tree is built by the parser through ParsedObject.TARGET_COMPACT and
+ * its arrays are trimmed to size when the parse is over. No public method
+ * modifies it, so it can be read by many threads without locking once it
+ * is handed to them in a thread safe manner, such as through an
+ * ExecutorService.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public final class CompactTree {
+
+    /**
+     * Index returned when there is no such node or value
+     */
+    public static final int NONE = -1;
+
+    // Key of a value that is node content instead of an attribute. Keys of
+    // attributes set by name are below this, as -2 - index of name.
+    static final int KEY_CONTENT = -1;
+
+    // Kinds of nodes, as name and columns of schema node
+    String[] kind_names = new String[16];
+    Column[][] kind_columns = new Column[16][];
+    int kind_count = 0;
+
+    // Names of attributes set by name instead of column index
+    String[] attr_names = new String[16];
+    int attr_name_count = 0;
+
+    // Nodes in document order
+    int[] node_kinds = new int[1024];
+    int[] parents = new int[1024];
+    int[] first_children = new int[1024];
+    int[] next_siblings = new int[1024];
+    int[] first_values = new int[1024];
+    int node_count = 0;
+
+    // Values in document order, ending at value_ends in chars
+    int[] value_keys = new int[4096];
+    int[] value_ends = new int[4096];
+    int value_count = 0;
+    char[] chars = new char[65536];
+    int char_count = 0;
+    // Holds chars of values instead of chars array if not null
+    OffHeapArena arena = null;
+
+    CompactTree() {
+    }
+
+    /**
+     * Creates tree holding chars of values in given arena
+     *
+     * @param arena
+     *            Arena or null to hold them in heap
+     */
+    CompactTree(OffHeapArena arena) {
+        this.arena = arena;
+        if (arena != null)
+            chars = new char[0];
+    }
+
+    /**
+     * Getter for number of nodes including root
+     *
+     * @return Number of nodes
+     */
+    public int getNodeCount() {
+        return node_count;
+    }
+
+    /**
+     * Getter for root node, named as given in directive
+     *
+     * @return Index of root, which is always 0
+     */
+    public int getRoot() {
+        return 0;
+    }
+
+    /**
+     * Gets name of given node
+     *
+     * @param node
+     *            Index of node
+     * @return Name as in schema, including any namespace prefix
+     */
+    public String getName(int node) {
+        return kind_names[node_kinds[node]];
+    }
+
+    /**
+     * Gets columns of given node as defined in schema
+     *
+     * @param node
+     *            Index of node
+     * @return Columns, shared by all nodes of same kind. Not to be modified.
+     */
+    public Column[] getColumns(int node) {
+        return kind_columns[node_kinds[node]];
+    }
+
+    /**
+     * Gets parent of given node
+     *
+     * @param node
+     *            Index of node
+     * @return Index of parent or NONE for root
+     */
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    /**
+     * Gets first child of given node
+     *
+     * @param node
+     *            Index of node
+     * @return Index of first child or NONE
+     */
+    public int getFirstChild(int node) {
+        return first_children[node];
+    }
+
+    /**
+     * Gets next sibling of given node
+     *
+     * @param node
+     *            Index of node
+     * @return Index of next sibling or NONE
+     */
+    public int getNextSibling(int node) {
+        return next_siblings[node];
+    }
+
+    /**
+     * Finds first child of given node having given name
+     *
+     * @param node
+     *            Index of node
+     * @param name
+     *            Name of child
+     * @return Index of child or NONE
+     */
+    public int findChild(int node, String name) {
+        for (int child = first_children[node]; child != NONE; child = next_siblings[child]) {
+            if (kind_names[node_kinds[child]].equals(name))
+                return child;
+        }
+        return NONE;
+    }
+
+    /**
+     * Gets number of attributes of given node, along with content values
+     *
+     * @param node
+     *            Index of node
+     * @return Number of values
+     */
+    public int getValueCount(int node) {
+        return getValueEnd(node) - first_values[node];
+    }
+
+    /**
+     * Gets name of value at given position among the values of given node
+     *
+     * @param node
+     *            Index of node
+     * @param value_idx
+     *            Position of value
+     * @return Name of attribute or null if the value is content
+     */
+    public String getValueName(int node, int value_idx) {
+        int key = value_keys[first_values[node] + value_idx];
+        if (key >= 0)
+            return kind_columns[node_kinds[node]][key].getAttrName();
+        if (key == KEY_CONTENT)
+            return null;
+        return attr_names[-2 - key];
+    }
+
+    /**
+     * Gets value at given position among the values of given node
+     *
+     * @param node
+     *            Index of node
+     * @param value_idx
+     *            Position of value
+     * @return Value
+     */
+    public String getValueAt(int node, int value_idx) {
+        return valueString(first_values[node] + value_idx);
+    }
+
+    /**
+     * Gets value of column at given index of the columns of given node
+     *
+     * @param node
+     *            Index of node
+     * @param col_idx
+     *            Index of column
+     * @return Value or null if not set
+     */
+    public String getValue(int node, int col_idx) {
+        int end = getValueEnd(node);
+        int value = first_values[node] + col_idx;
+        // Columns are usually set in order, so look there first
+        if (value < end && value_keys[value] == col_idx)
+            return valueString(value);
+        for (value = first_values[node]; value < end; value++) {
+            if (value_keys[value] == col_idx)
+                return valueString(value);
+        }
+        return null;
+    }
+
+    /**
+     * Gets value of attribute of given name
+     *
+     * @param node
+     *            Index of node
+     * @param attr_name
+     *            Name of column or attribute
+     * @return Value or null if not set
+     */
+    public String getValue(int node, String attr_name) {
+        Column[] columns = kind_columns[node_kinds[node]];
+        int end = getValueEnd(node);
+        for (int value = first_values[node]; value < end; value++) {
+            int key = value_keys[value];
+            if (key >= 0 ? columns[key].getAttrName().equals(attr_name)
+                    : key != KEY_CONTENT
+                            && attr_names[-2 - key].equals(attr_name))
+                return valueString(value);
+        }
+        return null;
+    }
+
+    /**
+     * Gets content of given node, being values beyond the columns of schema
+     *
+     * @param node
+     *            Index of node
+     * @return Content values delimited with comma or null if none
+     */
+    public String getContent(int node) {
+        StringBuffer content = null;
+        int end = getValueEnd(node);
+        for (int value = first_values[node]; value < end; value++) {
+            if (value_keys[value] != KEY_CONTENT)
+                continue;
+            if (content == null)
+                content = new StringBuffer();
+            else
+                content.append(',');
+            int start = (value == 0 ? 0 : value_ends[value - 1]);
+            if (arena == null)
+                content.append(chars, start, value_ends[value] - start);
+            else
+                arena.appendTo(start, value_ends[value] - start, content);
+        }
+        return (content == null ? null : content.toString());
+    }
+
+    /**
+     * Gets approximate number of bytes held by the arrays of this tree,
+     * excluding schema and arena
+     *
+     * @return Number of bytes
+     */
+    public long getArrayBytes() {
+        return (long) node_kinds.length * 4 * 5 + (long) value_keys.length
+                * 4 * 2 + (long) chars.length * 2;
+    }
+
+    /**
+     * Getter for arena holding chars of values
+     *
+     * @return Arena or null if held in heap
+     */
+    public OffHeapArena getArena() {
+        return arena;
+    }
+
+    /**
+     * Gives back memory held outside heap for the values, if any. Values
+     * cannot be read after this, while nodes can.
+     */
+    public void close() {
+        if (arena != null)
+            arena.close();
+    }
+
+    /**
+     * Gets index after last value of given node
+     *
+     * @param node
+     *            Index of node
+     * @return Index of value
+     */
+    private int getValueEnd(int node) {
+        return (node + 1 < node_count ? first_values[node + 1] : value_count);
+    }
+
+    /**
+     * Forms String of value at given index
+     *
+     * @param value
+     *            Index of value
+     * @return Value
+     */
+    private String valueString(int value) {
+        int start = (value == 0 ? 0 : value_ends[value - 1]);
+        if (arena != null)
+            return arena.getString(start, value_ends[value] - start);
+        return new String(chars, start, value_ends[value] - start);
+    }
+
+    /**
+     * Finds index of kind having given name and columns, adding it if new
+     *
+     * @param name
+     *            Name of node
+     * @param columns
+     *            Columns of node
+     * @return Index of kind
+     */
+    int findKind(String name, Column[] columns) {
+        for (int i = 0; i < kind_count; i++) {
+            if (kind_columns[i] == columns && kind_names[i].equals(name))
+                return i;
+        }
+        if (kind_count == kind_names.length) {
+            String[] new_kind_names = new String[kind_count * 2];
+            System.arraycopy(kind_names, 0, new_kind_names, 0, kind_count);
+            kind_names = new_kind_names;
+            Column[][] new_kind_columns = new Column[kind_count * 2][];
+            System.arraycopy(kind_columns, 0, new_kind_columns, 0,
+                    kind_count);
+            kind_columns = new_kind_columns;
+        }
+        kind_names[kind_count] = name;
+        kind_columns[kind_count] = columns;
+        return kind_count++;
+    }
+
+    /**
+     * Finds index of attribute name, adding it if new
+     *
+     * @param name
+     *            Name of attribute
+     * @return Index of name
+     */
+    int findAttrName(String name) {
+        for (int i = 0; i < attr_name_count; i++) {
+            if (attr_names[i].equals(name))
+                return i;
+        }
+        if (attr_name_count == attr_names.length) {
+            String[] new_attr_names = new String[attr_name_count * 2];
+            System.arraycopy(attr_names, 0, new_attr_names, 0,
+                    attr_name_count);
+            attr_names = new_attr_names;
+        }
+        attr_names[attr_name_count] = name;
+        return attr_name_count++;
+    }
+
+    /**
+     * Adds node as last child of given parent
+     *
+     * @param kind
+     *            Index of kind
+     * @param parent
+     *            Index of parent or NONE for root
+     * @param prev_sibling
+     *            Index of last child of parent so far or NONE
+     * @return Index of node
+     */
+    int addNode(int kind, int parent, int prev_sibling) {
+        if (node_count == node_kinds.length)
+            growNodes(node_count * 2);
+        int node = node_count++;
+        node_kinds[node] = kind;
+        parents[node] = parent;
+        first_children[node] = NONE;
+        next_siblings[node] = NONE;
+        first_values[node] = value_count;
+        if (prev_sibling != NONE)
+            next_siblings[prev_sibling] = node;
+        else if (parent != NONE)
+            first_children[parent] = node;
+        return node;
+    }
+
+    /**
+     * Adds value to the last node
+     *
+     * @param key
+     *            Column index, KEY_CONTENT or -2 - index of attribute name
+     * @param value
+     *            Value
+     */
+    void addValue(int key, CharSequence value) {
+        int len = value.length();
+        if (arena != null)
+            arena.append(value);
+        else {
+            if (char_count + len > chars.length)
+                growChars(char_count + len);
+            if (value instanceof String)
+                ((String) value).getChars(0, len, chars, char_count);
+            else {
+                for (int i = 0; i < len; i++)
+                    chars[char_count + i] = value.charAt(i);
+            }
+        }
+        char_count += len;
+        if (value_count == value_keys.length) {
+            int[] new_value_keys = new int[value_count * 2];
+            System.arraycopy(value_keys, 0, new_value_keys, 0, value_count);
+            value_keys = new_value_keys;
+            int[] new_value_ends = new int[value_count * 2];
+            System.arraycopy(value_ends, 0, new_value_ends, 0, value_count);
+            value_ends = new_value_ends;
+        }
+        value_keys[value_count] = key;
+        value_ends[value_count++] = char_count;
+    }
+
+    /**
+     * Moves top level nodes of another tree under the root of this tree,
+     * after its last child
+     *
+     * @param chunk
+     *            Tree of a chunk parsed separately
+     * @param last_child
+     *            Index of last child of root so far or NONE
+     * @return Index of last child of root after moving
+     */
+    int appendTree(CompactTree chunk, int last_child) {
+        int[] kind_map = new int[chunk.kind_count];
+        for (int i = 0; i < chunk.kind_count; i++)
+            kind_map[i] = findKind(chunk.kind_names[i], chunk.kind_columns[i]);
+        int[] attr_name_map = new int[chunk.attr_name_count];
+        for (int i = 0; i < chunk.attr_name_count; i++)
+            attr_name_map[i] = findAttrName(chunk.attr_names[i]);
+        // Values
+        int value_base = value_count;
+        for (int value = chunk.first_values[0]; value < chunk.value_count; value++) {
+            int start = (value == 0 ? 0 : chunk.value_ends[value - 1]);
+            int key = chunk.value_keys[value];
+            if (key < KEY_CONTENT)
+                key = -2 - attr_name_map[-2 - key];
+            addValue(key, chunk.valueString(value));
+        }
+        // Nodes other than root, with indexes shifted
+        int shift = node_count - 1;
+        int value_shift = value_base - chunk.first_values[0];
+        if (node_count + chunk.node_count - 1 > node_kinds.length)
+            growNodes(node_count + chunk.node_count - 1);
+        for (int node = 1; node < chunk.node_count; node++) {
+            int new_node = node + shift;
+            node_kinds[new_node] = kind_map[chunk.node_kinds[node]];
+            int parent = chunk.parents[node];
+            parents[new_node] = (parent == 0 ? 0 : parent + shift);
+            int child = chunk.first_children[node];
+            first_children[new_node] = (child == NONE ? NONE : child + shift);
+            int sibling = chunk.next_siblings[node];
+            next_siblings[new_node] = (sibling == NONE ? NONE : sibling
+                    + shift);
+            first_values[new_node] = chunk.first_values[node] + value_shift;
+        }
+        node_count += chunk.node_count - 1;
+        int first = chunk.first_children[0];
+        if (first == NONE)
+            return last_child;
+        if (last_child == NONE)
+            first_children[0] = first + shift;
+        else
+            next_siblings[last_child] = first + shift;
+        int last = first;
+        while (chunk.next_siblings[last] != NONE)
+            last = chunk.next_siblings[last];
+        return last + shift;
+    }
+
+    /**
+     * Trims arrays to the number of entries used
+     */
+    void trim() {
+        if (node_kinds.length != node_count)
+            growNodes(node_count);
+        if (value_keys.length != value_count) {
+            int[] new_value_keys = new int[value_count];
+            System.arraycopy(value_keys, 0, new_value_keys, 0, value_count);
+            value_keys = new_value_keys;
+            int[] new_value_ends = new int[value_count];
+            System.arraycopy(value_ends, 0, new_value_ends, 0, value_count);
+            value_ends = new_value_ends;
+        }
+        if (arena == null && chars.length != char_count) {
+            char[] new_chars = new char[char_count];
+            System.arraycopy(chars, 0, new_chars, 0, char_count);
+            chars = new_chars;
+        }
+    }
+
+    /**
+     * Changes capacity of the arrays of nodes
+     *
+     * @param capacity
+     *            New capacity, not less than number of nodes
+     */
+    private void growNodes(int capacity) {
+        node_kinds = copyOf(node_kinds, capacity);
+        parents = copyOf(parents, capacity);
+        first_children = copyOf(first_children, capacity);
+        next_siblings = copyOf(next_siblings, capacity);
+        first_values = copyOf(first_values, capacity);
+    }
+
+    /**
+     * Grows array of chars to hold at least given number, doubling it if
+     * that is more
+     *
+     * @param min_capacity
+     *            Number of chars to hold
+     */
+    private void growChars(int min_capacity) {
+        int capacity = chars.length * 2;
+        if (capacity < min_capacity || capacity < 0)
+            capacity = min_capacity;
+        char[] new_chars = new char[capacity];
+        System.arraycopy(chars, 0, new_chars, 0, char_count);
+        chars = new_chars;
+    }
+
+    /**
+     * Copies entries of nodes into array of given length
+     *
+     * @param arr
+     *            Array
+     * @param len
+     *            Length of new array
+     * @return New array
+     */
+    private int[] copyOf(int[] arr, int len) {
+        int[] new_arr = new int[len];
+        System.arraycopy(arr, 0, new_arr, 0, node_count);
+        return new_arr;
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import cc.siara.csv.ExceptionHandler;
+import cc.siara.csv_ml.schema.Column;
+import cc.siara.csv_ml.schema.Node;
+
+/**
+ * Builds CompactTree, appending each node and value to its arrays.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+final class CompactTreeBuilder extends ParsedObject {
+
+    static final Column[] NO_COLUMNS = new Column[0];
+
+    CompactTree tree = null;
+
+    // Open nodes by depth along with the last child added under each, so
+    // that next sibling can be linked. open_nodes[0] is the root.
+    int[] open_nodes = new int[16];
+    int[] last_children = new int[16];
+    // Columns and kind of the node last added at each depth, so that kind
+    // is looked up only when it changes
+    Column[][] depth_columns = new Column[16][];
+    int[] depth_kinds = new int[16];
+    int depth = 0;
+
+    // Names of attributes set by name at each position of a row, along
+    // with their index, so that generated column names are looked up only
+    // when they change
+    String[] pos_attr_names = new String[16];
+    int[] pos_attr_keys = new int[16];
+
+    CompactTreeBuilder() {
+        super(TARGET_COMPACT);
+    }
+
+    /**
+     * Creates CompactTree having the root given in directive
+     *
+     * @param directive
+     *            Directive of the input
+     * @param ex
+     *            Exception handler of the parser
+     */
+    public void startDocument(Directive directive, ExceptionHandler ex) {
+        super.startDocument(directive, ex);
+        // Namespaces given along with root are not kept
+        String root_name = csv_ml_root;
+        int e_idx = root_name.indexOf('/');
+        if (e_idx > 0)
+            root_name = root_name.substring(0, e_idx);
+        tree = new CompactTree(is_off_heap ? new OffHeapArena() : null);
+        int root = tree.addNode(tree.findKind(root_name, NO_COLUMNS),
+                CompactTree.NONE, CompactTree.NONE);
+        depth = 0;
+        open_nodes[0] = root;
+        last_children[0] = CompactTree.NONE;
+    }
+
+    /**
+     * Adds new node having no columns and makes it current
+     *
+     * @param node_name
+     *            Name of new node to be created
+     */
+    public void addNewNode(String node_name) {
+        addNewNode(node_name, NO_COLUMNS);
+    }
+
+    /**
+     * Adds new node for given schema node and makes it current. Attributes
+     * of the node can then be set by column index.
+     *
+     * @param node_schema
+     *            Schema node giving name and columns of the new node
+     * @param level
+     *            Level of the row
+     */
+    public void addNewNode(Node node_schema, int level) {
+        addNewNode(node_schema.getName(), node_schema.getColumnArray());
+    }
+
+    /**
+     * Adds new node and makes it current. Attributes of the node can then be
+     * set by column index.
+     *
+     * @param node_name
+     *            Name of new node to be created
+     * @param columns
+     *            Columns of the node as defined in schema
+     */
+    public void addNewNode(String node_name, Column[] columns) {
+        if (depth + 1 == open_nodes.length)
+            growDepth();
+        int kind = depth_kinds[depth];
+        if (depth_columns[depth] != columns
+                || !node_name.equals(tree.kind_names[kind])) {
+            kind = tree.findKind(node_name, columns);
+            depth_columns[depth] = columns;
+            depth_kinds[depth] = kind;
+        }
+        int node = tree.addNode(kind, open_nodes[depth], last_children[depth]);
+        last_children[depth++] = node;
+        open_nodes[depth] = node;
+        last_children[depth] = CompactTree.NONE;
+    }
+
+    /**
+     * Doubles the capacity of the arrays kept by depth
+     */
+    private void growDepth() {
+        int len = open_nodes.length;
+        int[] new_open_nodes = new int[len * 2];
+        System.arraycopy(open_nodes, 0, new_open_nodes, 0, len);
+        open_nodes = new_open_nodes;
+        int[] new_last_children = new int[len * 2];
+        System.arraycopy(last_children, 0, new_last_children, 0, len);
+        last_children = new_last_children;
+        Column[][] new_depth_columns = new Column[len * 2][];
+        System.arraycopy(depth_columns, 0, new_depth_columns, 0, len);
+        depth_columns = new_depth_columns;
+        int[] new_depth_kinds = new int[len * 2];
+        System.arraycopy(depth_kinds, 0, new_depth_kinds, 0, len);
+        depth_kinds = new_depth_kinds;
+    }
+
+    /**
+     * Does nothing, as nothing is pending at end of row
+     */
+    public void finalizeElement() {
+    }
+
+    /**
+     * Adds value of attribute set by name
+     *
+     * @param col_name
+     *            Name of attribute
+     * @param value
+     *            Value of attribute, which may be a view such as FieldValue
+     */
+    public void setAttribute(String col_name, CharSequence value) {
+        int pos = tree.value_count - tree.first_values[open_nodes[depth]];
+        if (pos >= pos_attr_names.length) {
+            String[] new_pos_attr_names = new String[pos * 2];
+            System.arraycopy(pos_attr_names, 0, new_pos_attr_names, 0,
+                    pos_attr_names.length);
+            pos_attr_names = new_pos_attr_names;
+            int[] new_pos_attr_keys = new int[pos * 2];
+            System.arraycopy(pos_attr_keys, 0, new_pos_attr_keys, 0,
+                    pos_attr_keys.length);
+            pos_attr_keys = new_pos_attr_keys;
+        }
+        if (pos_attr_names[pos] != col_name) {
+            pos_attr_names[pos] = col_name;
+            pos_attr_keys[pos] = -2 - tree.findAttrName(col_name);
+        }
+        tree.addValue(pos_attr_keys[pos], value);
+    }
+
+    /**
+     * Adds value for the column at given index of the columns given with
+     * addNewNode()
+     *
+     * @param col_idx
+     *            Index of column
+     * @param value
+     *            Value of attribute, which may be a view such as FieldValue
+     */
+    public void setAttribute(int col_idx, CharSequence value) {
+        tree.addValue(col_idx, value);
+    }
+
+    /**
+     * Adds value as content of current node
+     *
+     * @param content
+     *            Value to be added
+     */
+    public void addContent(String content) {
+        tree.addValue(CompactTree.KEY_CONTENT, content);
+    }
+
+    /**
+     * Makes parent of current node current to go up one level
+     */
+    public void traverseToParent() {
+        if (depth > 0)
+            depth--;
+    }
+
+    /**
+     * Trims the arrays of the tree, as no more nodes are added
+     */
+    public void endDocument() {
+        tree.trim();
+    }
+
+    /**
+     * Goes up to the root, as nodes need not be completed
+     */
+    void completeAll() {
+        depth = 0;
+    }
+
+    /**
+     * Appends nodes under the root of another CompactTree to the root of
+     * this tree, closing the other tree as its values are copied
+     *
+     * @param chunk
+     *            Parsed object of same target type
+     */
+    public void appendChunk(ParsedObject chunk) {
+        CompactTree chunk_tree = ((CompactTreeBuilder) chunk).tree;
+        last_children[0] = tree.appendTree(chunk_tree, last_children[0]);
+        chunk_tree.close();
+    }
+
+    /**
+     * Getter for CompactTree
+     *
+     * @return CompactTree
+     */
+    public CompactTree getCompactTree() {
+        // Chunks may have been appended after the parse
+        tree.trim();
+        return tree;
+    }
+
+}
@@ -19,11 +19,16 @@
 package cc.siara.csv_ml;
 
 import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Calendar;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.TimeZone;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -243,17 +248,89 @@ public class DBBind {
     }
 
     private static String formatValue(String attribute, Column col_obj) {
-        StringBuffer sbRet = new StringBuffer(attribute.replace("\'", "''"));
-        if (col_obj.getType().startsWith("date")) {
-            sbRet.insert(4, '-');
-            sbRet.insert(7, '-');
+        short type_code = col_obj.getTypeCode();
+        if (type_code == Column.TYPE_DATE || type_code == Column.TYPE_DATETIME) {
+            // Format as yyyy-mm-dd hh:mi:ss from the converted fields.
+            // Invalid dates are left as they are.
+            ValueConverter converter = new ValueConverter();
+            if (converter.convert(attribute, type_code)) {
+                StringBuffer sbRet = new StringBuffer(19);
+                converter.appendDate(sbRet);
+                return sbRet.toString();
+            }
+        }
+        return attribute.replace("\'", "''");
+    }
+
+    /**
+     * Binds given value to a parameter of a PreparedStatement as per the type
+     * of the column. Integers are bound as long, reals as double and dates as
+     * java.sql.Date or Timestamp in UTC. Text and values not valid for the
+     * type are bound as String.
+     * 
+     * @param stmt
+     *            Statement to bind to
+     * @param param_idx
+     *            Index of parameter starting with 1
+     * @param value
+     *            Value as found in the Element attribute
+     * @param col_obj
+     *            Column schema of the value
+     * @param converter
+     *            Converter to use, which can be reused across calls
+     * @throws SQLException
+     */
+    public static void bindValue(PreparedStatement stmt, int param_idx,
+            String value, Column col_obj, ValueConverter converter)
+            throws SQLException {
+        if (!converter.convert(value, col_obj.getTypeCode())) {
+            stmt.setString(param_idx, value);
+            return;
         }
-        if (col_obj.getType().equals("datetime")) {
-            sbRet.insert(10, ' ');
-            sbRet.insert(13, ':');
-            sbRet.insert(16, ':');
+        switch (converter.getTypeCode()) {
+        case Column.TYPE_INTEGER:
+            stmt.setLong(param_idx, converter.getLong());
+            break;
+        case Column.TYPE_REAL:
+            stmt.setDouble(param_idx, converter.getDouble());
+            break;
+        case Column.TYPE_DATE:
+            stmt.setDate(param_idx, new Date(converter.getLong()),
+                    Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+            break;
+        case Column.TYPE_DATETIME:
+            stmt.setTimestamp(param_idx, new Timestamp(converter.getLong()),
+                    Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+            break;
+        }
+    }
+
+    /**
+     * Binds attributes of given element to the parameters of an INSERT
+     * statement having the columns of the node other than id, in the order
+     * they appear in the schema, as generated by generate_dml_recursively().
+     * 
+     * @param stmt
+     *            INSERT statement with one parameter for each column
+     * @param ele
+     *            Element holding the values
+     * @param node
+     *            Schema node of the element
+     * @return Number of parameters bound
+     * @throws SQLException
+     */
+    public static int bindInsertValues(PreparedStatement stmt, Element ele,
+            Node node) throws SQLException {
+        ValueConverter converter = new ValueConverter();
+        int param_idx = 0;
+        for (Column col_obj : node.getColumns()) {
+            String col_name = col_obj.getName();
+            if (col_name.equals("id"))
+                continue;
+            bindValue(stmt, ++param_idx, ele.getAttribute(col_name), col_obj,
+                    converter);
         }
-        return sbRet.toString();
+        return param_idx;
     }
 
     /**
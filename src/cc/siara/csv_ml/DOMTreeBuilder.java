@@ -0,0 +1,375 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import cc.siara.csv.ExceptionHandler;
+import cc.siara.csv_ml.schema.Column;
+
+/**
+ * Builds W3C Document, creating elements, attributes and CDATA content as
+ * given by the parser.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+final class DOMTreeBuilder extends ParsedObject {
+
+    Document doc = null;
+    Node cur_element = null;
+    Element last_element = null;
+    String currentElementNS = "";
+
+    // An element whose name has a namespace prefix is created only in
+    // finalizeElement(), when the xmlns columns of its row are known. Till
+    // then its qualified name is held in pending_element_name and its
+    // content in pending_content. pending_attrs holds attributes to be set
+    // in finalizeElement() as triplets of name, namespace URI (null if to be
+    // looked up) and value. The lists are reused for every element.
+    String pending_element_name = null;
+    List<String> pending_attrs = new ArrayList<String>();
+    List<String> pending_content = new ArrayList<String>();
+
+    DOMTreeBuilder() {
+        super(TARGET_W3C_DOC);
+    }
+
+    /**
+     * Builds initial Document having the root given in directive along with
+     * any global namespaces
+     *
+     * @param directive
+     *            Directive of the input
+     * @param ex
+     *            Exception handler of the parser
+     */
+    public void startDocument(Directive directive, ExceptionHandler ex) {
+
+        super.startDocument(directive, ex);
+        String csv_ml_root = this.csv_ml_root;
+
+        // Look for namespace in the csv_ml_root directive
+        // (If namespaces need to be defined at the root they
+        // can be enumerated after the root delimited with
+        // space).
+        String[] ns_uri = new String[0];
+        int e_idx = csv_ml_root.indexOf("/");
+        if (e_idx > 0) {
+            ns_uri = csv_ml_root.substring(e_idx + 1).split(" ");
+            csv_ml_root = csv_ml_root.substring(0, e_idx);
+        }
+
+        // Check whether root element has a prefix
+        String rootNSPrefix = "";
+        int cIdx = csv_ml_root.indexOf(":");
+        if (cIdx > 0)
+            rootNSPrefix = csv_ml_root.substring(0, cIdx);
+        boolean rootNSURIFound = false;
+
+        // Build XML String for obtaining initial Document object
+        StringBuffer xml_str = new StringBuffer();
+        xml_str.append("<").append(csv_ml_root);
+        for (int j = 0; j < ns_uri.length; j++) {
+            int equalIdx = ns_uri[j].indexOf('=');
+            if (equalIdx == -1)
+                break; // error condition. report?
+            String ns_prefix = ns_uri[j].substring(0, equalIdx);
+            nsMap.put(ns_prefix, ns_uri[j].substring(equalIdx + 1));
+            if (ns_prefix.equals(ns_prefix))
+                rootNSURIFound = true;
+            xml_str.append(" xmlns:").append(ns_uri[j]);
+        }
+        // Use General Namespace prefix if one not defined.
+        if (rootNSPrefix.length() > 0 && !rootNSURIFound) {
+            xml_str.append(" xmlns:").append(rootNSPrefix).append("='")
+                    .append(generalNSURI).append("'");
+        }
+        xml_str.append("></").append(csv_ml_root).append(">");
+
+        // Parse and return document
+        doc = Util.parseXMLToDOM(xml_str.toString());
+        last_element = doc.getDocumentElement();
+        cur_element = last_element;
+        this.csv_ml_root = csv_ml_root;
+        // TODO: How to set document encoding? Is it automatic?
+
+    }
+
+    /**
+     * Adds new W3C Element object and makes it current
+     *
+     * @param node_name
+     *            Name of new element to be created
+     */
+    public void addNewNode(String node_name) {
+        Element new_node = null;
+        if (cur_element.getNodeType() == Node.DOCUMENT_NODE) {
+            // If given input tries to add more than one root, throw error
+            ex.set_err(MultiLevelCSVParser.E_ONLY_ONE_ROOT);
+            return;
+        } else {
+            // If directive specifies the first element as root,
+            // do not add new. Otherwise add new Element
+            if (!cur_element.equals(doc.getDocumentElement())
+                    || !node_name.equals(csv_ml_root)) {
+                int cIdx = node_name.indexOf(':');
+                if (cIdx > 0) {
+                    // Created in finalizeElement() with namespace URI
+                    currentElementNS = node_name.substring(0, cIdx);
+                    pending_element_name = node_name;
+                    return;
+                }
+                currentElementNS = "";
+                // Empty prefix is dropped
+                if (cIdx == 0)
+                    node_name = node_name.substring(1);
+                new_node = doc.createElement(node_name);
+                cur_element.appendChild(new_node);
+            }
+        }
+        if (new_node != null) {
+            last_element = new_node;
+            cur_element = last_element;
+        }
+    }
+
+    /**
+     * Adds new W3C Element object and makes it current. Attributes of the
+     * element can then be set by column index.
+     *
+     * @param node_schema
+     *            Schema node giving name and columns of the new element
+     * @param level
+     *            Level of the row
+     */
+    public void addNewNode(cc.siara.csv_ml.schema.Node node_schema,
+            int level) {
+        setColumns(node_schema.getColumnArray());
+        addNewNode(node_schema.getName());
+    }
+
+    /**
+     * Performs any pending activity against an element to finalize it. If the
+     * element has a namespace prefix, it is created now with the URI mapped
+     * to the prefix, along with its attributes and content. Also adds any
+     * attributes whose namespace prefix was not known when they were set.
+     */
+    public void finalizeElement() {
+        if (pending_element_name != null) {
+            String nsURI = nsMap.get(currentElementNS);
+            if (nsURI == null)
+                nsURI = generalNSURI;
+            Element new_node = doc.createElementNS(nsURI,
+                    pending_element_name);
+            cur_element.appendChild(new_node);
+            last_element = new_node;
+            cur_element = new_node;
+            pending_element_name = null;
+        }
+        // Add all remaining attributes
+        for (int i = 0; i < pending_attrs.size(); i += 3) {
+            String col_name = pending_attrs.get(i);
+            String nsURI = pending_attrs.get(i + 1);
+            String value = pending_attrs.get(i + 2);
+            int cIdx = col_name.indexOf(':');
+            if (cIdx == -1) {
+                ((Element) cur_element).setAttribute(col_name, value);
+                continue;
+            }
+            String ns = col_name.substring(0, cIdx);
+            if (nsURI == null)
+                nsURI = nsMap.get(ns);
+            if (nsURI == null)
+                nsURI = generalNSURI;
+            Attr attr = doc.createAttributeNS(nsURI,
+                    col_name.substring(cIdx + 1));
+            attr.setPrefix(ns);
+            attr.setValue(value);
+            ((Element) cur_element).setAttributeNodeNS(attr);
+        }
+        pending_attrs.clear();
+        // Add content of element created now
+        for (int i = 0; i < pending_content.size(); i++)
+            cur_element.appendChild(doc.createCDATASection(pending_content
+                    .get(i)));
+        pending_content.clear();
+    }
+
+    /**
+     * Sets value of W3C Attribute, mapping namespace prefix if present
+     *
+     * @param col_name
+     *            Name of attribute
+     * @param value
+     *            Value of attribute, which may be a view such as FieldValue
+     */
+    public void setAttribute(String col_name, CharSequence value) {
+        String str = value.toString();
+        int cIdx = col_name.indexOf(':');
+        if (cIdx == -1)
+            setElementAttribute(col_name, "", col_name, str);
+        else
+            setElementAttribute(col_name, col_name.substring(0, cIdx),
+                    col_name.substring(cIdx + 1), str);
+    }
+
+    /**
+     * Sets W3C Attribute for the column at given index of the columns given
+     * with addNewNode(). The attribute name and namespace prefix are taken as
+     * precomputed in the Column.
+     *
+     * @param col_idx
+     *            Index of column
+     * @param value
+     *            Value of attribute, which may be a view such as FieldValue
+     */
+    public void setAttribute(int col_idx, CharSequence value) {
+        Column col = cur_columns[col_idx];
+        setElementAttribute(col.getAttrName(), col.getAttrPrefix(),
+                col.getAttrLocalName(), toString(col_idx, value));
+    }
+
+    /**
+     * Sets W3C Attribute, mapping namespace prefix if present.
+     *
+     * @param col_name
+     *            Name of attribute including prefix
+     * @param ns
+     *            Namespace prefix or empty string
+     * @param local_name
+     *            Name of attribute without prefix
+     * @param value
+     *            Value of attribute
+     */
+    private void setElementAttribute(String col_name, String ns,
+            String local_name, String value) {
+        if (cur_element.getNodeType() != Node.ELEMENT_NODE)
+            return;
+        if (ns.equals("xmlns")) {
+            nsMap.put(local_name, value);
+            return;
+        }
+        String nsURI = (ns.length() == 0 ? null : nsMap.get(ns));
+        if (pending_element_name != null) {
+            // Element not yet created
+            pending_attrs.add(col_name);
+            pending_attrs.add(nsURI);
+            pending_attrs.add(value);
+        } else if (ns.length() == 0)
+            ((Element) cur_element).setAttribute(col_name, value);
+        else {
+            if (nsURI == null) {
+                pending_attrs.add(col_name);
+                pending_attrs.add(null);
+                pending_attrs.add(value);
+            } else {
+                Attr attr = doc.createAttributeNS(nsURI, local_name);
+                attr.setPrefix(ns);
+                attr.setValue(value);
+                ((Element) cur_element).setAttributeNodeNS(attr);
+            }
+        }
+    }
+
+    /**
+     * Adds W3C CData section as node content
+     *
+     * @param content
+     *            Value to be added
+     */
+    public void addContent(String content) {
+        if (pending_element_name != null)
+            pending_content.add(content);
+        else
+            cur_element.appendChild(doc.createCDATASection(content));
+    }
+
+    /**
+     * Traverse to parent element to go up one level
+     */
+    public void traverseToParent() {
+        if (cur_element.getNodeType() != Node.DOCUMENT_NODE) {
+            Node parent = cur_element.getParentNode();
+            if (completed_nodes != null && parent == doc.getDocumentElement()) {
+                parent.removeChild(cur_element);
+                completed_nodes.add(cur_element);
+            }
+            cur_element = parent;
+        }
+    }
+
+    /**
+     * Traverses up to the root, completing the nodes still open at end of
+     * input
+     */
+    void completeAll() {
+        while (cur_element != doc.getDocumentElement()
+                && cur_element.getNodeType() != Node.DOCUMENT_NODE)
+            traverseToParent();
+    }
+
+    /**
+     * Appends elements under the root of another Document to the root of
+     * this Document
+     *
+     * @param chunk
+     *            Parsed object of same target type
+     */
+    public void appendChunk(ParsedObject chunk) {
+        Element root = doc.getDocumentElement();
+        Element chunk_root = ((DOMTreeBuilder) chunk).doc.getDocumentElement();
+        for (Node child = chunk_root.getFirstChild(); child != null; child = chunk_root
+                .getFirstChild()) {
+            chunk_root.removeChild(child);
+            Node moved = doc.adoptNode(child);
+            if (moved == null)
+                moved = doc.importNode(child, true);
+            root.appendChild(moved);
+        }
+    }
+
+    /**
+     * Getter for W3C Document
+     *
+     * @return W3C Document
+     */
+    public Document getDocument() {
+        // Parsing may have stopped before the last element was finalized
+        if (pending_element_name != null)
+            finalizeElement();
+        return doc;
+    }
+
+    /**
+     * Getter for currently constructed object
+     *
+     * @return Element
+     */
+    public Element getCurrentElement() {
+        return last_element;
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+/**
+ * Holds the parts of the csv_ml directive and the parsing mode deduced from
+ * them. Instances are immutable.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public class Directive {
+
+    // Parsing modes
+    // Schema present and first column indicates node (name or sequence)
+    public static final short MODE_NODE_NAME = 1;
+    // Schema present and only one node in each level (no node indicator)
+    public static final short MODE_NO_NODE_NAME = 2;
+    // No schema. Node name given in first column
+    public static final short MODE_NO_SCHEMA = 3;
+    // No schema and no node name. Plain table of data
+    public static final short MODE_TABULAR = 4;
+
+    // Parts of csv_ml directive
+    private final String ver;
+    private final String encoding;
+    private final String root;
+    private final String node_name;
+    private final String schema;
+    private final String schema_file;
+
+    // Deduced from above
+    private final short mode;
+    private final boolean is_node_name_given;
+    private final boolean is_schema_present;
+
+    /**
+     * Directive assumed when none is present in the input, that is the first
+     * line is the header and rest of the lines are data
+     */
+    public static final Directive DEFAULT = new Directive("1.0", "UTF-8",
+            "root", "no_node_name", "inline", "");
+
+    /**
+     * Constructor
+     *
+     * @param ver
+     *            Version (1.0)
+     * @param encoding
+     *            Character encoding
+     * @param root
+     *            Root node name, followed by namespaces if any
+     * @param node_name
+     *            with_node_name or no_node_name
+     * @param schema
+     *            inline, external or no_schema
+     * @param schema_file
+     *            Path to external schema
+     */
+    public Directive(String ver, String encoding, String root,
+            String node_name, String schema, String schema_file) {
+        this.ver = ver;
+        this.encoding = encoding;
+        this.root = root;
+        this.node_name = node_name;
+        this.schema = schema;
+        this.schema_file = schema_file;
+        is_node_name_given = node_name.equals("with_node_name");
+        is_schema_present = !schema.equals("no_schema");
+        if (is_schema_present)
+            mode = (is_node_name_given ? MODE_NODE_NAME : MODE_NO_NODE_NAME);
+        else
+            mode = (is_node_name_given ? MODE_NO_SCHEMA : MODE_TABULAR);
+    }
+
+    /**
+     * Getter for version
+     *
+     * @return version
+     */
+    public String getVer() {
+        return ver;
+    }
+
+    /**
+     * Getter for encoding
+     *
+     * @return encoding
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Getter for root node name including namespaces if any
+     *
+     * @return root
+     */
+    public String getRoot() {
+        return root;
+    }
+
+    /**
+     * Getter for node name indicator (with_node_name or no_node_name)
+     *
+     * @return node name indicator
+     */
+    public String getNodeName() {
+        return node_name;
+    }
+
+    /**
+     * Getter for schema indicator (inline, external or no_schema)
+     *
+     * @return schema indicator
+     */
+    public String getSchema() {
+        return schema;
+    }
+
+    /**
+     * Getter for path of external schema file
+     *
+     * @return schema file path
+     */
+    public String getSchemaFile() {
+        return schema_file;
+    }
+
+    /**
+     * Getter for parsing mode
+     *
+     * @return One of the MODE_ constants
+     */
+    public short getMode() {
+        return mode;
+    }
+
+    /**
+     * Whether first column indicates node
+     *
+     * @return true if with_node_name
+     */
+    public boolean isNodeNameGiven() {
+        return is_node_name_given;
+    }
+
+    /**
+     * Whether schema is present
+     *
+     * @return false if no_schema
+     */
+    public boolean isSchemaPresent() {
+        return is_schema_present;
+    }
+
+    /**
+     * Whether schema is given inline after the directive
+     *
+     * @return true if inline
+     */
+    public boolean isSchemaInline() {
+        return schema.equals("inline");
+    }
+
+    /**
+     * Whether siblings are counted when going up levels while parsing. This
+     * is needed if schema is present or node name indicator is present.
+     *
+     * @return true if siblings are to be counted
+     */
+    public boolean isSiblingCounted() {
+        return is_schema_present || is_node_name_given;
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+/**
+ * Column of reals held in an array of double. Values that are empty or not
+ * valid numbers are null, the latter being counted as invalid.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public final class DoubleColumnVector extends ColumnVector {
+
+    double[] values = new double[64];
+    int invalid_count = 0;
+
+    /**
+     * Initializes name and type
+     *
+     * @param name
+     *            Name of column
+     * @param type_code
+     *            TYPE_REAL
+     */
+    DoubleColumnVector(String name, short type_code) {
+        super(name, type_code);
+    }
+
+    /**
+     * Gets value of given row
+     *
+     * @param row
+     *            Index of row in table
+     * @return Value, or 0 if null
+     */
+    public double getDouble(int row) {
+        return (row < size ? values[row] : 0);
+    }
+
+    /**
+     * Gets value of given row as text
+     *
+     * @param row
+     *            Index of row in table
+     * @return Value or null
+     */
+    public String getString(int row) {
+        return (isNull(row) ? null : String.valueOf(values[row]));
+    }
+
+    /**
+     * Getter for number of values that were not valid numbers
+     *
+     * @return Number of invalid values, which are included in null count
+     */
+    public int getInvalidCount() {
+        return invalid_count;
+    }
+
+    /**
+     * Adds up values that are not null
+     *
+     * @return Sum
+     */
+    public double sum() {
+        // Null values are held as 0, so need not be skipped
+        double sum = 0;
+        for (int i = 0; i < size; i++)
+            sum += values[i];
+        return sum;
+    }
+
+    /**
+     * Finds least of values that are not null
+     *
+     * @return Least value, or Double.NaN if all are null
+     */
+    public double min() {
+        double min = Double.NaN;
+        for (int i = 0; i < size; i++) {
+            double value = values[i];
+            if ((value < min || min != min)
+                    && (null_count == 0 || !isNull(i)))
+                min = value;
+        }
+        return min;
+    }
+
+    /**
+     * Finds greatest of values that are not null
+     *
+     * @return Greatest value, or Double.NaN if all are null
+     */
+    public double max() {
+        double max = Double.NaN;
+        for (int i = 0; i < size; i++) {
+            double value = values[i];
+            if ((value > max || max != max)
+                    && (null_count == 0 || !isNull(i)))
+                max = value;
+        }
+        return max;
+    }
+
+    void add(CharSequence value, ValueConverter converter) {
+        if (!converter.convert(value, type_code)) {
+            if (value.length() > 0)
+                invalid_count++;
+            addNull();
+            return;
+        }
+        ensureCapacity(size + 1);
+        values[size++] = converter.getDouble();
+    }
+
+    void ensureCapacity(int rows) {
+        super.ensureCapacity(rows);
+        if (rows > values.length) {
+            double[] new_values = new double[Math.max(rows,
+                    values.length * 2)];
+            System.arraycopy(values, 0, new_values, 0, size);
+            values = new_values;
+        }
+    }
+
+    void trim() {
+        super.trim();
+        if (values.length != size) {
+            double[] new_values = new double[size];
+            System.arraycopy(values, 0, new_values, 0, size);
+            values = new_values;
+        }
+    }
+
+}
@@ -0,0 +1,484 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses input that arrives in parts, such as from a non-blocking socket,
+ * without blocking a thread for the rest. Bytes are given to feed() as they
+ * arrive and endOfInput() is called at the end. The parser moves forward as
+ * far as the bytes given allow and passes the nodes to a
+ * MultiLevelCSVHandler as their rows complete.
+ *
+ * The bytes are decoded with the encoding found from the directive. The
+ * characters are scanned with the same rules as the tokenizer for quotes and
+ * comments, to find where lines end. A row is parsed only when the beginning
+ * of the line after it is available, which is as far as the parser reads
+ * for a row. Directive and schema are parsed once they are complete. So the
+ * characters held are those of an incomplete row (or directive and schema)
+ * and those given in the last feed().
+ *
+ * Errors are available from getParser().getEx() once isDone() is true. Not
+ * thread safe. Each input needs its own FeedParser.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public class FeedParser {
+
+    // Stages of parsing
+    static final int STAGE_DIRECTIVE = 0;
+    static final int STAGE_SCHEMA = 1;
+    static final int STAGE_DATA = 2;
+    static final int STAGE_DONE = 3;
+
+    MultiLevelCSVParser parser;
+    MultiLevelCSVHandler handler;
+    ChunkSplitter splitter;
+    int stage = STAGE_DIRECTIVE;
+    boolean is_started = false;
+    boolean is_input_ended = false;
+
+    // Bytes not yet decoded. Till the encoding is known, these are the bytes
+    // looked at for the directive.
+    ByteBuffer bytes = ByteBuffer.allocate(MultiLevelCSVParser.DIRECTIVE_SNIFF_LEN);
+    CharsetDecoder decoder = null;
+
+    // Characters decoded. Those from start till end are yet to be read by
+    // the parser. chars_base is the position of chars[0] in the input.
+    char[] chars = new char[8192];
+    int start = 0;
+    int end = 0;
+    long chars_base = 0;
+
+    // Scanning state
+    boolean is_line_start = true;
+    int indent = 0;
+    boolean is_prev_line_content = false;
+    // Rows beginning before this position are complete, along with the
+    // indentation of the line after them
+    long safe_pos = -1;
+
+    // Lines found before the schema is parsed, for knowing when it is
+    // complete, with first field of the current line
+    List<HeaderLine> header_lines = new ArrayList<HeaderLine>();
+    StringBuffer first_field = new StringBuffer();
+    boolean is_first_field_open = false;
+
+    /**
+     * Creates feed parser with a new MultiLevelCSVParser
+     *
+     * @param handler
+     *            Handler to receive the nodes
+     */
+    public FeedParser(MultiLevelCSVHandler handler) {
+        this(new MultiLevelCSVParser(), handler);
+    }
+
+    /**
+     * Creates feed parser with given MultiLevelCSVParser, such as one with
+     * delimiter set. The parser is not to be used otherwise till isDone().
+     *
+     * @param parser
+     *            Parser to use
+     * @param handler
+     *            Handler to receive the nodes
+     */
+    public FeedParser(MultiLevelCSVParser parser, MultiLevelCSVHandler handler) {
+        this.parser = parser;
+        this.handler = handler;
+    }
+
+    /**
+     * Parses as far as possible with the given bytes in addition to those
+     * given earlier. All remaining bytes of the buffer are taken.
+     *
+     * @param in
+     *            Bytes that arrived
+     * @throws IOException
+     *             if thrown by the handler
+     */
+    public void feed(ByteBuffer in) throws IOException {
+        if (is_input_ended)
+            throw new IllegalStateException("Input already ended");
+        if (stage == STAGE_DONE) {
+            // Nothing more is parsed after error
+            in.position(in.limit());
+            return;
+        }
+        start();
+        appendBytes(in);
+        if (decoder == null && !findEncoding())
+            return;
+        decode();
+        parseAvailable();
+    }
+
+    /**
+     * Parses the rest of the input, ending the document
+     *
+     * @throws IOException
+     *             if thrown by the handler
+     */
+    public void endOfInput() throws IOException {
+        if (is_input_ended)
+            return;
+        is_input_ended = true;
+        if (stage == STAGE_DONE)
+            return;
+        start();
+        if (decoder == null)
+            findEncoding();
+        decode();
+        parseAvailable();
+    }
+
+    /**
+     * Whether the document has ended, either due to end of input or error
+     *
+     * @return true if ended
+     */
+    public boolean isDone() {
+        return stage == STAGE_DONE;
+    }
+
+    /**
+     * Getter for the parser, for its directive, schema and errors
+     *
+     * @return Parser
+     */
+    public MultiLevelCSVParser getParser() {
+        return parser;
+    }
+
+    /**
+     * Prepares the parser to read from fed characters
+     *
+     * @throws IOException
+     */
+    private void start() throws IOException {
+        if (is_started)
+            return;
+        is_started = true;
+        splitter = new ChunkSplitter(parser.tokenizer.getDelimiter());
+        parser.initFeed(new FeedReader(), handler);
+    }
+
+    /**
+     * Appends given bytes to those not yet decoded
+     *
+     * @param in
+     *            Bytes
+     */
+    private void appendBytes(ByteBuffer in) {
+        if (in.remaining() > bytes.remaining()) {
+            ByteBuffer new_bytes = ByteBuffer.allocate(Math.max(
+                    bytes.position() + in.remaining(), bytes.capacity() * 2));
+            bytes.flip();
+            new_bytes.put(bytes);
+            bytes = new_bytes;
+        }
+        bytes.put(in);
+    }
+
+    /**
+     * Finds encoding from directive once the first non-empty line is
+     * available, as when reading from InputStream. UTF-8 is used if the
+     * encoding is not supported.
+     *
+     * @return true if found, false if more bytes are needed
+     */
+    private boolean findEncoding() {
+        byte[] head = bytes.array();
+        int len = bytes.position();
+        if (!is_input_ended && len < MultiLevelCSVParser.DIRECTIVE_SNIFF_LEN) {
+            boolean is_content_found = false;
+            int i = 0;
+            for (; i < len; i++) {
+                byte b = head[i];
+                if (b == '\n' && is_content_found)
+                    break;
+                else if (b != '\n' && b != '\r' && b != ' ' && b != '\t')
+                    is_content_found = true;
+            }
+            if (i == len)
+                return false;
+        }
+        String encoding = Util.sniffEncoding(ByteBuffer.wrap(head, 0, Math
+                .min(len, MultiLevelCSVParser.DIRECTIVE_SNIFF_LEN)),
+                parser.tokenizer.getDelimiter());
+        // Unsupported encoding is reported while parsing the directive
+        if (encoding == null || !Util.isEncodingSupported(encoding))
+            encoding = "UTF-8";
+        decoder = Charset.forName(encoding).newDecoder().onMalformedInput(
+                CodingErrorAction.REPLACE).onUnmappableCharacter(
+                CodingErrorAction.REPLACE);
+        return true;
+    }
+
+    /**
+     * Decodes bytes available and scans the characters
+     */
+    private void decode() {
+        if (decoder == null)
+            return;
+        // Discard characters already read by the parser
+        if (start > 0) {
+            System.arraycopy(chars, start, chars, 0, end - start);
+            chars_base += start;
+            end -= start;
+            start = 0;
+        }
+        bytes.flip();
+        boolean is_flushing = false;
+        while (true) {
+            if (end == chars.length) {
+                char[] new_chars = new char[chars.length * 2];
+                System.arraycopy(chars, 0, new_chars, 0, end);
+                chars = new_chars;
+            }
+            CharBuffer out = CharBuffer.wrap(chars, end, chars.length - end);
+            CoderResult cr;
+            if (is_flushing)
+                cr = decoder.flush(out);
+            else
+                cr = decoder.decode(bytes, out, is_input_ended);
+            int new_end = out.position();
+            scan(end, new_end);
+            end = new_end;
+            if (cr.isOverflow())
+                continue;
+            if (is_input_ended && !is_flushing) {
+                is_flushing = true;
+                continue;
+            }
+            break;
+        }
+        bytes.compact();
+    }
+
+    /**
+     * Scans decoded characters, finding where lines begin and end
+     *
+     * @param from
+     *            Index of first character in chars
+     * @param to
+     *            Index after last character
+     */
+    private void scan(int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = chars[i];
+            if (is_line_start) {
+                // Indentation is skipped by the parser, not tokenized
+                if (c == ' ' || c == '\t') {
+                    indent++;
+                    continue;
+                }
+                is_line_start = false;
+                startLine(chars_base + i);
+            }
+            if (is_first_field_open) {
+                if (c == parser.tokenizer.getDelimiter() || c == '\r'
+                        || c == '\n')
+                    is_first_field_open = false;
+                else if (first_field.length() < 16)
+                    first_field.append(c);
+            }
+            if (splitter.scanChar(c)) {
+                endLine(splitter.isLastLineContent());
+                is_line_start = true;
+                indent = 0;
+            }
+        }
+    }
+
+    /**
+     * Marks beginning of a line after its indentation
+     *
+     * @param pos
+     *            Position of first character after indentation
+     */
+    private void startLine(long pos) {
+        // The parser reads a row along with indentation of the next line
+        if (is_prev_line_content)
+            safe_pos = pos;
+        if (stage < STAGE_DATA) {
+            HeaderLine line = new HeaderLine();
+            line.start = pos;
+            line.indent = indent;
+            header_lines.add(line);
+            first_field.setLength(0);
+            is_first_field_open = true;
+        }
+    }
+
+    /**
+     * Marks end of a line
+     *
+     * @param is_content
+     *            Whether the line had any value outside comments
+     */
+    private void endLine(boolean is_content) {
+        is_prev_line_content = is_content;
+        if (stage < STAGE_DATA && header_lines.size() > 0) {
+            HeaderLine line = header_lines.get(header_lines.size() - 1);
+            line.is_complete = true;
+            line.is_content = is_content;
+            String name = first_field.toString().trim();
+            char c = (name.length() == 0 ? ' ' : name.charAt(0));
+            line.is_schema_end = name.equals("end_schema")
+                    || (c >= '1' && c <= '9');
+            is_first_field_open = false;
+        }
+    }
+
+    /**
+     * Parses directive, schema and rows as far as they are available
+     *
+     * @throws IOException
+     */
+    private void parseAvailable() throws IOException {
+        try {
+            if (stage == STAGE_DIRECTIVE) {
+                if (!is_input_ended && safe_pos < 0)
+                    return;
+                if (!parser.parseFeedDirective()) {
+                    finish();
+                    return;
+                }
+                stage = STAGE_SCHEMA;
+            }
+            if (stage == STAGE_SCHEMA) {
+                if (!is_input_ended && !isSchemaAvailable())
+                    return;
+                boolean is_parsed = parser.parseFeedSchema();
+                header_lines.clear();
+                if (!is_parsed) {
+                    finish();
+                    return;
+                }
+                stage = STAGE_DATA;
+            }
+            while (stage == STAGE_DATA
+                    && (is_input_ended || parser.tokenizer.getPosition() < safe_pos)) {
+                if (!parser.parseFeedNext())
+                    finish();
+            }
+        } catch (IOException e) {
+            stage = STAGE_DONE;
+            parser.closeParse();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks whether schema is complete in the lines available, as per
+     * where MultiLevelCSVSchema.parseSchema() stops
+     *
+     * @return true if complete
+     */
+    private boolean isSchemaAvailable() {
+        Directive directive = parser.getDirective();
+        if (!directive.isSchemaInline())
+            return true;
+        long pos = parser.tokenizer.getPosition();
+        int line_count = header_lines.size();
+        // Schema begins at the first line having content
+        int i = 0;
+        for (; i < line_count; i++) {
+            HeaderLine line = header_lines.get(i);
+            if (line.start < pos)
+                continue;
+            if (!line.is_complete)
+                return false;
+            if (line.is_content)
+                break;
+        }
+        if (!directive.isNodeNameGiven()) {
+            // Only one top level node, which ends at next unindented line
+            for (i++; i < line_count; i++) {
+                if (header_lines.get(i).indent == 0)
+                    return true;
+            }
+            return false;
+        }
+        // Ends at end_schema or data referring to nodes by sibling number
+        for (; i < line_count; i++) {
+            HeaderLine line = header_lines.get(i);
+            if (!line.is_complete)
+                return false;
+            if (line.indent == 0 && line.is_content && line.is_schema_end)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks end of parsing, the document having been ended by the parser
+     */
+    private void finish() {
+        stage = STAGE_DONE;
+        header_lines.clear();
+        parser.endFeed();
+    }
+
+    /**
+     * Line found before schema is parsed
+     */
+    static final class HeaderLine {
+        long start = 0; // position after indentation
+        int indent = 0;
+        boolean is_complete = false;
+        boolean is_content = false;
+        boolean is_schema_end = false;
+    }
+
+    /**
+     * Reader from which the parser reads characters decoded. It is read only
+     * as far as available, as decided by parseAvailable().
+     */
+    private class FeedReader extends Reader {
+
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (start == end) {
+                if (is_input_ended)
+                    return -1;
+                throw new IOException("Read beyond input fed");
+            }
+            int count = Math.min(len, end - start);
+            System.arraycopy(chars, start, cbuf, off, count);
+            start += count;
+            return count;
+        }
+
+        public void close() {
+        }
+    }
+
+}
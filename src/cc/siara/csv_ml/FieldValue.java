@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+/**
+ * View of a field value within the tokenizer's buffer. No String is formed
+ * unless toString() is called, and doubled quotes within a quoted value are
+ * collapsed only then.
+ *
+ * The tokenizer reuses the same instance for every field, so the view is
+ * valid only till the next field is read. Call toString() to keep the value.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public class FieldValue implements CharSequence {
+
+    char[] buf = null;
+    int offset = 0;
+    int len = 0; // raw length, including doubled quotes if any
+    boolean is_quoted = false;
+    boolean has_escaped_quotes = false;
+    String str = null; // formed on demand
+
+    /**
+     * Points the view at given characters
+     *
+     * @param buf
+     *            Buffer holding the characters
+     * @param offset
+     *            Start of value in buf
+     * @param len
+     *            Number of characters in buf
+     * @param is_quoted
+     *            Whether the value was enclosed in quotes
+     * @param has_escaped_quotes
+     *            Whether doubled quotes are present, to be collapsed
+     */
+    void set(char[] buf, int offset, int len, boolean is_quoted,
+            boolean has_escaped_quotes) {
+        this.buf = buf;
+        this.offset = offset;
+        this.len = len;
+        this.is_quoted = is_quoted;
+        this.has_escaped_quotes = has_escaped_quotes;
+        str = null;
+    }
+
+    /**
+     * Whether the value was enclosed in quotes
+     *
+     * @return true if quoted
+     */
+    public boolean isQuoted() {
+        return is_quoted;
+    }
+
+    /**
+     * Returns length of the value
+     *
+     * @return Number of characters in value
+     */
+    public int length() {
+        if (has_escaped_quotes)
+            return toString().length();
+        return len;
+    }
+
+    /**
+     * Returns character at given index of the value
+     *
+     * @param index
+     *            Index of character
+     * @return Character
+     */
+    public char charAt(int index) {
+        if (has_escaped_quotes)
+            return toString().charAt(index);
+        if (index < 0 || index >= len)
+            throw new StringIndexOutOfBoundsException(index);
+        return buf[offset + index];
+    }
+
+    /**
+     * Returns part of the value
+     *
+     * @param start
+     *            Start index
+     * @param end
+     *            End index (exclusive)
+     * @return Part of value as String
+     */
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    /**
+     * Checks whether the value is empty or has only white space (as removed by
+     * String.trim()), without forming a String
+     *
+     * @return true if blank
+     */
+    public boolean isBlank() {
+        for (int i = offset, end = offset + len; i < end; i++) {
+            char c = buf[i];
+            if (c > ' ')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compares the value with given String without forming a String
+     *
+     * @param s
+     *            String to compare with
+     * @return true if equal
+     */
+    public boolean contentEquals(String s) {
+        if (has_escaped_quotes)
+            return toString().equals(s);
+        if (s.length() != len)
+            return false;
+        for (int i = 0; i < len; i++) {
+            if (buf[offset + i] != s.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Forms the value as String, collapsing doubled quotes if any
+     *
+     * @return Value
+     */
+    public String toString() {
+        if (str != null)
+            return str;
+        if (!has_escaped_quotes) {
+            str = new String(buf, offset, len);
+            return str;
+        }
+        // Quotes within quoted values are present only as pairs
+        StringBuffer sb = new StringBuffer(len);
+        for (int i = offset, end = offset + len; i < end; i++) {
+            char c = buf[i];
+            sb.append(c);
+            if (c == '"')
+                i++;
+        }
+        str = sb.toString();
+        return str;
+    }
+
+}
@@ -18,12 +18,14 @@
  */
 package cc.siara.csv_ml;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.Reader;
 
 /**
  * InputSource enables the Input to be given either as a character stream
- * (java.io.Reader) or a byte stream (InputStream)
+ * (java.io.Reader), a byte stream (InputStream) or a local file, which is
+ * memory mapped for reading
  * 
  * @author Arundale R.
  * @since 1.0
@@ -32,12 +34,14 @@ public class InputSource {
 
     public static final short IS_BYTE_STREAM = 0;
     public static final short IS_CHAR_STREAM = 1;
+    public static final short IS_FILE = 2;
 
     // Members - type determines which one
-    // is used (Reader or InputStream)
+    // is used (Reader, InputStream or File)
     short type = 0;
     Reader reader = null;
     InputStream is = null;
+    File file = null;
 
     /**
      * Sets source as r
@@ -61,6 +65,17 @@ public class InputSource {
         type = IS_BYTE_STREAM;
     }
 
+    /**
+     * Sets source as f
+     * 
+     * @param f
+     *            java.io.File
+     */
+    public InputSource(File f) {
+        this.file = f;
+        type = IS_FILE;
+    }
+
     /**
      * Returns reader
      * 
@@ -79,6 +94,15 @@ public class InputSource {
         return is;
     }
 
+    /**
+     * Returns file
+     * 
+     * @return java.io.File
+     */
+    public File getFile() {
+        return file;
+    }
+
     /**
      * Returns the type of input
      * 
@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.util.List;
+
+import cc.siara.csv_ml.schema.Column;
+
+/**
+ * Bounded dictionary of Strings, so that values repeating across rows share
+ * one String instance in the parsed DOM or JSON.
+ *
+ * The dictionary is a table of fixed size in which each value has one slot
+ * determined by its hash. Values are looked up by their characters, so a
+ * String is formed only when the value is not found. A value found in its
+ * slot is a hit. Otherwise the value replaces whatever the slot held, which
+ * is counted as an eviction if the slot was occupied.
+ *
+ * Not thread safe. The dictionary can be kept across parses so that values
+ * of one feed are reused in the next.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public class InternDictionary {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    // Values longer than this are unlikely to repeat and are not interned
+    public static final int MAX_VALUE_LEN = 64;
+
+    // Number of values of a column after which the miss rate is checked
+    static final int SAMPLE_SIZE = 256;
+
+    private String[] table;
+    private int[] hashes;
+    private int mask;
+
+    // Counters
+    private long lookups = 0;
+    private long hits = 0;
+    private long evictions = 0;
+    private long skipped = 0;
+
+    /**
+     * Creates dictionary of default capacity
+     */
+    public InternDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates dictionary of given capacity
+     *
+     * @param capacity
+     *            Maximum number of values held, rounded up to a power of 2
+     */
+    public InternDictionary(int capacity) {
+        int size = 16;
+        while (size < capacity)
+            size <<= 1;
+        table = new String[size];
+        hashes = new int[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Returns the String held for given characters, adding it if not
+     * present
+     *
+     * @param value
+     *            Value to intern
+     * @return String having the same characters, shared with earlier calls
+     *         for the same value as long as it is not evicted
+     */
+    public String intern(CharSequence value) {
+        int len = value.length();
+        if (len > MAX_VALUE_LEN) {
+            skipped++;
+            return value.toString();
+        }
+        lookups++;
+        int h = hash(value);
+        int idx = (h ^ (h >>> 16)) & mask;
+        String s = table[idx];
+        if (s != null && hashes[idx] == h && contentEquals(s, value)) {
+            hits++;
+            return s;
+        }
+        if (s != null)
+            evictions++;
+        s = value.toString();
+        table[idx] = s;
+        hashes[idx] = h;
+        return s;
+    }
+
+    /**
+     * Adds given String without updating counters
+     *
+     * @param s
+     *            String to add
+     */
+    private void add(String s) {
+        if (s.length() > MAX_VALUE_LEN)
+            return;
+        int h = hash(s);
+        int idx = (h ^ (h >>> 16)) & mask;
+        table[idx] = s;
+        hashes[idx] = h;
+    }
+
+    /**
+     * Computes hash of given characters, same as String.hashCode(). Higher
+     * bits are spread by the caller, as in HashMap.
+     *
+     * @param value
+     *            Value
+     * @return Hash
+     */
+    private static int hash(CharSequence value) {
+        int h = 0;
+        int len = value.length();
+        for (int i = 0; i < len; i++)
+            h = 31 * h + value.charAt(i);
+        return h;
+    }
+
+    /**
+     * Compares characters of String with given value
+     *
+     * @param s
+     *            String
+     * @param value
+     *            Value
+     * @return true if same
+     */
+    private static boolean contentEquals(String s, CharSequence value) {
+        int len = s.length();
+        if (len != value.length())
+            return false;
+        for (int i = 0; i < len; i++) {
+            if (s.charAt(i) != value.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes all values, keeping counters
+     */
+    public void clear() {
+        for (int i = 0; i < table.length; i++)
+            table[i] = null;
+    }
+
+    /**
+     * Resets all counters to 0
+     */
+    public void resetCounters() {
+        lookups = 0;
+        hits = 0;
+        evictions = 0;
+        skipped = 0;
+    }
+
+    /**
+     * Adds counters of another dictionary to this one, such as of one used
+     * for parsing a chunk of the same file
+     *
+     * @param other
+     *            Other dictionary
+     */
+    void addCounters(InternDictionary other) {
+        lookups += other.lookups;
+        hits += other.hits;
+        evictions += other.evictions;
+        skipped += other.skipped;
+    }
+
+    /**
+     * Getter for number of values looked up
+     *
+     * @return Number of lookups
+     */
+    public long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * Getter for number of values found in the dictionary
+     *
+     * @return Number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Getter for number of values not found in the dictionary
+     *
+     * @return Number of misses
+     */
+    public long getMisses() {
+        return lookups - hits;
+    }
+
+    /**
+     * Getter for number of values that replaced another value
+     *
+     * @return Number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Getter for number of values not looked up because they were too long
+     *
+     * @return Number of values skipped
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Getter for ratio of hits to lookups
+     *
+     * @return Hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        return (lookups == 0 ? 0 : (double) hits / lookups);
+    }
+
+    /**
+     * Getter for maximum number of values held
+     *
+     * @return Capacity
+     */
+    public int getCapacity() {
+        return table.length;
+    }
+
+    /**
+     * Creates state for deciding whether values of given column are to be
+     * interned. Values declared for the column in the schema are added to
+     * the dictionary.
+     *
+     * @param col
+     *            Column
+     * @return Column state
+     */
+    ColumnState newColumnState(Column col) {
+        ColumnState state = new ColumnState();
+        List<String> values = col.getValues();
+        state.is_enum = (values != null && (values.size() > 1 || (values
+                .size() == 1 && values.get(0).length() > 0)));
+        if (state.is_enum) {
+            for (String value : values)
+                add(value);
+        }
+        return state;
+    }
+
+    /**
+     * Interns value of a column as per its state. Values of columns declared
+     * with a set of values are always interned. Values of other columns are
+     * interned as long as most of them are found in the dictionary, that is,
+     * the column appears to have low cardinality.
+     *
+     * @param state
+     *            State of the column
+     * @param value
+     *            Value
+     * @return Value as String
+     */
+    String internColumnValue(ColumnState state, CharSequence value) {
+        if (state.is_enum)
+            return intern(value);
+        if (state.is_disabled)
+            return value.toString();
+        long prev_hits = hits;
+        String s = intern(value);
+        state.lookups++;
+        if (hits == prev_hits)
+            state.misses++;
+        if (state.lookups == SAMPLE_SIZE) {
+            // Stop interning if more than a quarter are new values
+            if (state.misses * 4 > state.lookups)
+                state.is_disabled = true;
+            state.lookups = 0;
+            state.misses = 0;
+        }
+        return s;
+    }
+
+    /**
+     * Observed interning state of a column during a parse
+     */
+    static final class ColumnState {
+        boolean is_enum = false;
+        boolean is_disabled = false;
+        int lookups = 0;
+        int misses = 0;
+    }
+
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import cc.siara.csv.ExceptionHandler;
+import cc.siara.csv_ml.schema.Column;
+import cc.siara.csv_ml.schema.Node;
+
+/**
+ * Builds JSONObject, in which each node name is mapped to an array of the
+ * nodes of that name under the parent.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+final class JSONTreeBuilder extends ParsedObject {
+
+    JSONObject jo = null;
+    JSONObject cur_jo = null;
+    JSONObject last_jo = null;
+
+    // Ancestors of cur_jo by depth, so that traverseToParent() can go up
+    // the level. jo_stack[0] is the root.
+    JSONObject[] jo_stack = new JSONObject[16];
+    int jo_depth = 0;
+    // Array to which the last object at each depth was added, along with
+    // its parent and node name, so that it is looked up only when either
+    // changes
+    JSONArray[] level_arrays = new JSONArray[16];
+    JSONObject[] level_array_parents = new JSONObject[16];
+    String[] level_array_names = new String[16];
+
+    JSONTreeBuilder() {
+        super(TARGET_JSON_OBJ);
+    }
+
+    /**
+     * Creates root JSONObject
+     *
+     * @param directive
+     *            Directive of the input
+     * @param ex
+     *            Exception handler of the parser
+     */
+    public void startDocument(Directive directive, ExceptionHandler ex) {
+        super.startDocument(directive, ex);
+        jo = new JSONObject();
+        cur_jo = jo;
+        last_jo = cur_jo;
+    }
+
+    /**
+     * Adds new JSONObject and makes it current
+     *
+     * @param node_name
+     *            Name of new JSONObject to be created
+     */
+    public void addNewNode(String node_name) {
+        if (jo_depth == jo_stack.length)
+            growJOStack();
+        // Each node is assumed to be an array having multiple data elements
+        JSONArray ja = level_arrays[jo_depth];
+        if (level_array_parents[jo_depth] != cur_jo
+                || !node_name.equals(level_array_names[jo_depth])) {
+            ja = (JSONArray) cur_jo.get(node_name);
+            if (ja == null) {
+                ja = new JSONArray();
+                put(cur_jo, node_name, ja);
+            }
+            level_arrays[jo_depth] = ja;
+            level_array_parents[jo_depth] = cur_jo;
+            level_array_names[jo_depth] = node_name;
+        }
+        JSONObject new_node = new JSONObject();
+        add(ja, new_node);
+        // Keep the parent, so that we can go up the level
+        jo_stack[jo_depth++] = cur_jo;
+        cur_jo = new_node;
+        last_jo = cur_jo;
+    }
+
+    /**
+     * Adds new JSONObject and makes it current. Attributes of the object can
+     * then be set by column index.
+     *
+     * @param node_schema
+     *            Schema node giving name and columns of the new JSONObject
+     * @param level
+     *            Level of the row
+     */
+    public void addNewNode(Node node_schema, int level) {
+        setColumns(node_schema.getColumnArray());
+        addNewNode(node_schema.getName());
+    }
+
+    /**
+     * Doubles the capacity of the arrays kept by depth
+     */
+    private void growJOStack() {
+        int len = jo_stack.length;
+        JSONObject[] new_jo_stack = new JSONObject[len * 2];
+        System.arraycopy(jo_stack, 0, new_jo_stack, 0, len);
+        jo_stack = new_jo_stack;
+        JSONArray[] new_level_arrays = new JSONArray[len * 2];
+        System.arraycopy(level_arrays, 0, new_level_arrays, 0, len);
+        level_arrays = new_level_arrays;
+        JSONObject[] new_level_array_parents = new JSONObject[len * 2];
+        System.arraycopy(level_array_parents, 0, new_level_array_parents, 0,
+                len);
+        level_array_parents = new_level_array_parents;
+        String[] new_level_array_names = new String[len * 2];
+        System.arraycopy(level_array_names, 0, new_level_array_names, 0, len);
+        level_array_names = new_level_array_names;
+    }
+
+    /**
+     * Does nothing, as nothing is pending at end of row
+     */
+    public void finalizeElement() {
+    }
+
+    /**
+     * Sets new JSONString
+     *
+     * @param col_name
+     *            Name of attribute
+     * @param value
+     *            Value of attribute, which may be a view such as FieldValue
+     */
+    public void setAttribute(String col_name, CharSequence value) {
+        put(cur_jo, col_name, value.toString());
+    }
+
+    /**
+     * Sets value for the column at given index of the columns given with
+     * addNewNode(), converted to the type of the column if type conversion
+     * is on
+     *
+     * @param col_idx
+     *            Index of column
+     * @param value
+     *            Value of attribute, which may be a view such as FieldValue
+     */
+    public void setAttribute(int col_idx, CharSequence value) {
+        Column col = cur_columns[col_idx];
+        if (converter != null && converter.convert(value, col.getTypeCode()))
+            put(cur_jo, col.getAttrName(), converter.getObject());
+        else
+            put(cur_jo, col.getAttrName(), toString(col_idx, value));
+    }
+
+    /**
+     * Sets new JSONString "_content", appending to it if already present
+     *
+     * @param content
+     *            Value to be added
+     */
+    public void addContent(String content) {
+        String cur_val = (String) cur_jo.get("_content");
+        if (cur_val == null)
+            put(cur_jo, "_content", content);
+        else
+            put(cur_jo, "_content", cur_val + "," + content);
+    }
+
+    /**
+     * Traverse to parent object to go up one level
+     */
+    public void traverseToParent() {
+        if (jo_depth == 0)
+            cur_jo = null;
+        else {
+            JSONObject completed = cur_jo;
+            cur_jo = jo_stack[--jo_depth];
+            jo_stack[jo_depth] = null;
+            if (completed_nodes != null && jo_depth == 0)
+                moveCompletedJO(completed);
+        }
+    }
+
+    /**
+     * Moves completed top level JSONObject out of the root into the list of
+     * completed nodes, wrapped in an object of its own as it would be at the
+     * root
+     *
+     * @param completed
+     *            Completed top level object
+     */
+    private void moveCompletedJO(JSONObject completed) {
+        // Being the last one added at top level, it is at the end
+        JSONArray ja = level_arrays[0];
+        ja.remove(ja.size() - 1);
+        JSONArray wrapper_ja = new JSONArray();
+        add(wrapper_ja, completed);
+        JSONObject wrapper = new JSONObject();
+        put(wrapper, level_array_names[0], wrapper_ja);
+        completed_nodes.add(wrapper);
+    }
+
+    /**
+     * Traverses up to the root, completing the nodes still open at end of
+     * input
+     */
+    void completeAll() {
+        while (jo_depth > 0)
+            traverseToParent();
+    }
+
+    /**
+     * Appends arrays under the root of another JSONObject to the arrays of
+     * same name under the root of this object
+     *
+     * @param chunk
+     *            Parsed object of same target type
+     */
+    public void appendChunk(ParsedObject chunk) {
+        JSONObject chunk_jo = ((JSONTreeBuilder) chunk).jo;
+        for (Object key : chunk_jo.keySet()) {
+            Object value = chunk_jo.get(key);
+            JSONArray ja = (JSONArray) jo.get(key);
+            if (ja == null)
+                put(jo, key, value);
+            else
+                addAll(ja, (JSONArray) value);
+        }
+    }
+
+    // JSONObject and JSONArray extend HashMap and ArrayList without type
+    // parameters, so changes are made only through the following methods,
+    // which are safe as values of any type are allowed.
+
+    /**
+     * Maps key to value in given JSONObject
+     *
+     * @param jo
+     *            The JSONObject
+     * @param key
+     *            Key
+     * @param value
+     *            Value
+     */
+    @SuppressWarnings("unchecked")
+    private static void put(JSONObject jo, Object key, Object value) {
+        jo.put(key, value);
+    }
+
+    /**
+     * Adds value to given JSONArray
+     *
+     * @param ja
+     *            The JSONArray
+     * @param value
+     *            Value
+     */
+    @SuppressWarnings("unchecked")
+    private static void add(JSONArray ja, Object value) {
+        ja.add(value);
+    }
+
+    /**
+     * Adds all values of another JSONArray to given JSONArray
+     *
+     * @param ja
+     *            The JSONArray
+     * @param values
+     *            JSONArray having values to add
+     */
+    @SuppressWarnings("unchecked")
+    private static void addAll(JSONArray ja, JSONArray values) {
+        ja.addAll(values);
+    }
+
+    /**
+     * Getter for JSONObject
+     *
+     * @return JSONObject
+     */
+    public JSONObject getJSONObject() {
+        return jo;
+    }
+
+    /**
+     * Getter for currently constructed object
+     *
+     * @return JSONObject
+     */
+    public JSONObject getCurrentJSO() {
+        return last_jo;
+    }
+
+}
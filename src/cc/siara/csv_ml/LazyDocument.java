@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import cc.siara.csv.ExceptionHandler;
+import cc.siara.csv_ml.schema.MultiLevelCSVSchema;
+
+/**
+ * View of a csv_ml file in which the top level nodes (records) are parsed
+ * only when asked for. When opened, only the byte position of each record
+ * in the file is noted. A record is parsed from the memory mapped file into
+ * a CompactTree when first asked for, using the directive and schema of the
+ * file, and a few of the recent ones are kept so that they are not parsed
+ * again when asked for soon.
+ *
+ * The CompactTree of a record has the root given in the directive, with the
+ * record as its only child. Files that cannot be split into records are held
+ * as one record having the whole file.
+ *
+ * Errors are reported to the exception handler of the document (getEx()),
+ * with line and column in the file, in which case the record is not
+ * returned. Records having errors are noted, so that they are not parsed
+ * and reported again when asked for.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public final class LazyDocument {
+
+    /**
+     * Number of parsed records kept unless changed with setCacheSize()
+     */
+    public static final int DEFAULT_CACHE_SIZE = 16;
+
+    // Parser having directive and schema of the file, used for creating
+    // parsers of records and for reporting errors
+    MultiLevelCSVParser owner;
+    File f;
+    String encoding;
+    // Chunks of the file, each being a record. null if not split.
+    ChunkSplitter splitter;
+    int cache_size = DEFAULT_CACHE_SIZE;
+    // Recently used records, least recent first
+    Map<Integer, CompactTree> cache = new LinkedHashMap<Integer, CompactTree>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(
+                Map.Entry<Integer, CompactTree> eldest) {
+            return size() > cache_size;
+        }
+    };
+    // Records found to have errors
+    Set<Integer> failed_records = new HashSet<Integer>();
+    int parse_count = 0;
+
+    /**
+     * Initializes document with the index of records formed by
+     * MultiLevelCSVParser.openLazy()
+     *
+     * @param owner
+     *            Parser having directive and schema of the file
+     * @param f
+     *            The File
+     * @param encoding
+     *            Encoding of the file
+     * @param splitter
+     *            Records of the file or null if not split
+     */
+    LazyDocument(MultiLevelCSVParser owner, File f, String encoding,
+            ChunkSplitter splitter) {
+        this.owner = owner;
+        this.f = f;
+        this.encoding = encoding;
+        this.splitter = splitter;
+    }
+
+    /**
+     * Getter for number of records
+     *
+     * @return Number of top level nodes, or 1 if the file is not split
+     */
+    public int getRecordCount() {
+        if (splitter == null)
+            return 1;
+        return (splitter.hasContent() ? splitter.getChunkCount() : 0);
+    }
+
+    /**
+     * Getter for byte position in file where record begins, including any
+     * empty or comment lines before it
+     *
+     * @param record_idx
+     *            Index of record
+     * @return Byte position
+     */
+    public long getRecordPosition(int record_idx) {
+        checkIndex(record_idx);
+        return (splitter == null ? 0 : splitter.getChunkStart(record_idx));
+    }
+
+    /**
+     * Gets the record at given index, parsing it if not recently used
+     *
+     * @param record_idx
+     *            Index of record
+     * @return CompactTree having the record under its root or null if error
+     * @throws IOException
+     */
+    public synchronized CompactTree getRecord(int record_idx)
+            throws IOException {
+        checkIndex(record_idx);
+        Integer key = Integer.valueOf(record_idx);
+        CompactTree record = cache.get(key);
+        if (record != null)
+            return record;
+        if (failed_records.contains(key))
+            return null;
+        MultiLevelCSVParser record_parser;
+        if (splitter == null) {
+            record_parser = owner.newParser();
+            record = record_parser.parseToCompact(f, false);
+        } else {
+            record_parser = owner.newChunkParser(ParsedObject.TARGET_COMPACT,
+                    f, encoding, splitter.getChunkStart(record_idx), splitter
+                            .getChunkEnd(record_idx), splitter
+                            .getChunkLineOffset(record_idx));
+            try {
+                record_parser.parseAll();
+            } finally {
+                record_parser.closeReader();
+            }
+            record = record_parser.getParsedObject().getCompactTree();
+        }
+        parse_count++;
+        if (record_parser.getEx().getErrorCode() != 0) {
+            owner.reportChunkError(record_parser);
+            failed_records.add(key);
+            return null;
+        }
+        cache.put(key, record);
+        return record;
+    }
+
+    /**
+     * Checks whether given record index is within range
+     *
+     * @param record_idx
+     *            Index of record
+     */
+    private void checkIndex(int record_idx) {
+        if (record_idx < 0 || record_idx >= getRecordCount())
+            throw new IndexOutOfBoundsException("Record: " + record_idx
+                    + ", Count: " + getRecordCount());
+    }
+
+    /**
+     * Sets number of parsed records to be kept
+     *
+     * @param cache_size
+     *            Number of records, 0 for none
+     */
+    public synchronized void setCacheSize(int cache_size) {
+        this.cache_size = cache_size;
+        if (cache.size() > cache_size)
+            cache.clear();
+    }
+
+    /**
+     * Getter for number of times records were parsed, which shows how well
+     * the cache size suits the way records are accessed
+     *
+     * @return Number of parses
+     */
+    public int getParseCount() {
+        return parse_count;
+    }
+
+    /**
+     * Getter for number of bytes used by the index of records
+     *
+     * @return Bytes used by arrays of the index
+     */
+    public long getIndexBytes() {
+        return (splitter == null ? 0 : splitter.getChunkCount() * 12L);
+    }
+
+    /**
+     * Getter for Directive of the file
+     *
+     * @return Directive
+     */
+    public Directive getDirective() {
+        return owner.getDirective();
+    }
+
+    /**
+     * Getter for Schema of the file
+     *
+     * @return Schema
+     */
+    public MultiLevelCSVSchema getSchema() {
+        return owner.getSchema();
+    }
+
+    /**
+     * Getter for Exception Handler to which errors in records are reported
+     *
+     * @return Exception Handler
+     */
+    public ExceptionHandler getEx() {
+        return owner.getEx();
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * Attribute of an element of LiteDocument, created only when attributes are
+ * accessed as nodes. The value is available through getValue() and
+ * getNodeValue(), there being no Text child.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+final class LiteAttr extends LiteNode implements Attr {
+
+    // Index of element having the attribute
+    int owner;
+
+    /**
+     * Initializes document, index and element
+     *
+     * @param doc
+     *            Document having the attribute
+     * @param idx
+     *            Index of attribute
+     * @param owner
+     *            Index of element
+     */
+    LiteAttr(LiteDocument doc, int idx, int owner) {
+        super(doc, idx);
+        this.owner = owner;
+    }
+
+    /**
+     * Gets index of name of attribute
+     *
+     * @return Index of name
+     */
+    private int getNameIdx() {
+        return doc.attr_names[idx];
+    }
+
+    long getOrder() {
+        return (((long) owner) << 20) + idx - doc.first_attrs[owner] + 1;
+    }
+
+    LiteElement getScopeElement() {
+        return (LiteElement) doc.getNode(owner);
+    }
+
+    public String getNodeName() {
+        return doc.qnames[getNameIdx()];
+    }
+
+    public String getNodeValue() throws DOMException {
+        return getValue();
+    }
+
+    public short getNodeType() {
+        return ATTRIBUTE_NODE;
+    }
+
+    public String getNamespaceURI() {
+        return doc.uris[getNameIdx()];
+    }
+
+    public String getPrefix() {
+        return doc.prefixes[getNameIdx()];
+    }
+
+    public String getLocalName() {
+        return doc.local_names[getNameIdx()];
+    }
+
+    public String getName() {
+        return getNodeName();
+    }
+
+    public boolean getSpecified() {
+        return true;
+    }
+
+    public String getValue() {
+        return doc.getValue(doc.attr_values[idx]);
+    }
+
+    public void setValue(String value) throws DOMException {
+        throw readOnly();
+    }
+
+    public Element getOwnerElement() {
+        return (Element) doc.getNode(owner);
+    }
+
+    public TypeInfo getSchemaTypeInfo() {
+        return LiteElement.NO_TYPE_INFO;
+    }
+
+    public boolean isId() {
+        return false;
+    }
+
+}
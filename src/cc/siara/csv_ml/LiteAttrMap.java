@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Attributes of an element of LiteDocument, in the order they were set.
+ * Attr objects are created only as they are asked for.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+final class LiteAttrMap implements NamedNodeMap {
+
+    LiteDocument doc;
+    // Index of element
+    int node;
+
+    /**
+     * Initializes document and element
+     *
+     * @param doc
+     *            Document having the element
+     * @param node
+     *            Index of element
+     */
+    LiteAttrMap(LiteDocument doc, int node) {
+        this.doc = doc;
+        this.node = node;
+    }
+
+    public Node getNamedItem(String name) {
+        int pos = doc.findAttr(node, name);
+        return (pos == -1 ? null : doc.getAttr(node, pos));
+    }
+
+    public Node setNamedItem(Node arg) throws DOMException {
+        throw LiteNode.readOnly();
+    }
+
+    public Node removeNamedItem(String name) throws DOMException {
+        throw LiteNode.readOnly();
+    }
+
+    public Node item(int index) {
+        if (index < 0 || index >= doc.attr_counts[node])
+            return null;
+        return doc.getAttr(node, index);
+    }
+
+    public int getLength() {
+        return doc.attr_counts[node];
+    }
+
+    public Node getNamedItemNS(String namespaceURI, String localName)
+            throws DOMException {
+        int pos = doc.findAttrNS(node, namespaceURI, localName);
+        return (pos == -1 ? null : doc.getAttr(node, pos));
+    }
+
+    public Node setNamedItemNS(Node arg) throws DOMException {
+        throw LiteNode.readOnly();
+    }
+
+    public Node removeNamedItemNS(String namespaceURI, String localName)
+            throws DOMException {
+        throw LiteNode.readOnly();
+    }
+
+}
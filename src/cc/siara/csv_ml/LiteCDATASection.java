@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+/**
+ * CDATA section of LiteDocument, having the content of an element
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+final class LiteCDATASection extends LiteNode implements CDATASection {
+
+    /**
+     * Initializes document and index
+     *
+     * @param doc
+     *            Document having the CDATA section
+     * @param idx
+     *            Index of CDATA section
+     */
+    LiteCDATASection(LiteDocument doc, int idx) {
+        super(doc, idx);
+    }
+
+    long getOrder() {
+        return ((long) idx) << 20;
+    }
+
+    LiteElement getScopeElement() {
+        return (LiteElement) doc.getNode(doc.parents[idx]);
+    }
+
+    public String getNodeName() {
+        return "#cdata-section";
+    }
+
+    public String getNodeValue() throws DOMException {
+        return getData();
+    }
+
+    public short getNodeType() {
+        return CDATA_SECTION_NODE;
+    }
+
+    public Node getParentNode() {
+        return doc.getNode(doc.parents[idx]);
+    }
+
+    public Node getPreviousSibling() {
+        return doc.getNode(doc.prev_siblings[idx]);
+    }
+
+    public Node getNextSibling() {
+        return doc.getNode(doc.next_siblings[idx]);
+    }
+
+    public String getData() throws DOMException {
+        return doc.getValue(doc.first_attrs[idx]);
+    }
+
+    public void setData(String data) throws DOMException {
+        throw readOnly();
+    }
+
+    public int getLength() {
+        return doc.getValueLength(doc.first_attrs[idx]);
+    }
+
+    public String substringData(int offset, int count) throws DOMException {
+        int len = getLength();
+        if (offset < 0 || offset > len || count < 0)
+            throw new DOMException(DOMException.INDEX_SIZE_ERR,
+                    "Index out of range");
+        return getData().substring(offset, Math.min(len, offset + count));
+    }
+
+    public void appendData(String arg) throws DOMException {
+        throw readOnly();
+    }
+
+    public void insertData(int offset, String arg) throws DOMException {
+        throw readOnly();
+    }
+
+    public void deleteData(int offset, int count) throws DOMException {
+        throw readOnly();
+    }
+
+    public void replaceData(int offset, int count, String arg)
+            throws DOMException {
+        throw readOnly();
+    }
+
+    public Text splitText(int offset) throws DOMException {
+        throw readOnly();
+    }
+
+    public boolean isElementContentWhitespace() {
+        return false;
+    }
+
+    public String getWholeText() {
+        int first = idx;
+        while (doc.prev_siblings[first] != -1
+                && doc.node_names[doc.prev_siblings[first]] == -1)
+            first = doc.prev_siblings[first];
+        StringBuffer out_str = new StringBuffer();
+        int node = first;
+        while (node != -1 && doc.node_names[node] == -1) {
+            doc.appendValue(doc.first_attrs[node], out_str);
+            node = doc.next_siblings[node];
+        }
+        return out_str.toString();
+    }
+
+    public Text replaceWholeText(String content) throws DOMException {
+        throw readOnly();
+    }
+
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import cc.siara.csv.ExceptionHandler;
+import cc.siara.csv_ml.schema.Column;
+import cc.siara.csv_ml.schema.Node;
+
+/**
+ * Builds LiteDocument, creating elements, attributes and CDATA content as
+ * given by the parser, in the same way as DOMTreeBuilder does for the DOM
+ * of the JDK. Elements and attributes are entries added to the arrays of
+ * the document, without creating node objects.
+ *
+ * The document is not built in chunks, nor are top level nodes moved out
+ * when iterating, so only sequential parsing uses this builder.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+final class LiteDOMTreeBuilder extends ParsedObject {
+
+    LiteDocument doc = null;
+    // Index of current element, -1 being the document
+    int cur_node = -1;
+    int last_element = -1;
+    String currentElementNS = "";
+
+    // As in DOMTreeBuilder, an element whose name has a namespace prefix is
+    // added only in finalizeElement(), when the xmlns columns of its row are
+    // known. pending_attrs holds triplets of name, namespace URI (null if
+    // to be looked up) and value.
+    String pending_element_name = null;
+    List<String> pending_attrs = new ArrayList<String>();
+    List<String> pending_content = new ArrayList<String>();
+
+    LiteDOMTreeBuilder() {
+        super(TARGET_LITE_DOC);
+    }
+
+    /**
+     * Builds initial Document having the root given in directive along with
+     * any global namespaces
+     *
+     * @param directive
+     *            Directive of the input
+     * @param ex
+     *            Exception handler of the parser
+     */
+    public void startDocument(Directive directive, ExceptionHandler ex) {
+
+        super.startDocument(directive, ex);
+        String csv_ml_root = this.csv_ml_root;
+
+        // Namespaces of root are enumerated after the root delimited with
+        // space, as in DOMTreeBuilder
+        String[] ns_uri = new String[0];
+        int e_idx = csv_ml_root.indexOf("/");
+        if (e_idx > 0) {
+            ns_uri = csv_ml_root.substring(e_idx + 1).split(" ");
+            csv_ml_root = csv_ml_root.substring(0, e_idx);
+        }
+        String rootNSPrefix = null;
+        int cIdx = csv_ml_root.indexOf(":");
+        if (cIdx > 0)
+            rootNSPrefix = csv_ml_root.substring(0, cIdx);
+
+        doc = new LiteDocument();
+        String rootNSURI = null;
+        int[] decl_names = new int[ns_uri.length + 1];
+        String[] decl_values = new String[ns_uri.length + 1];
+        int decl_count = 0;
+        for (int j = 0; j < ns_uri.length; j++) {
+            int equalIdx = ns_uri[j].indexOf('=');
+            if (equalIdx == -1)
+                break;
+            String ns_prefix = ns_uri[j].substring(0, equalIdx);
+            String value = ns_uri[j].substring(equalIdx + 1);
+            nsMap.put(ns_prefix, value);
+            value = unquote(value);
+            if (ns_prefix.equals(rootNSPrefix))
+                rootNSURI = value;
+            decl_names[decl_count] = doc.findName("xmlns:" + ns_prefix,
+                    LiteDocument.XMLNS_URI, "xmlns", ns_prefix, true);
+            decl_values[decl_count++] = value;
+        }
+        // Use General Namespace prefix if one not defined.
+        if (rootNSPrefix != null && rootNSURI == null) {
+            rootNSURI = generalNSURI;
+            if (decl_count == 0) {
+                decl_names[decl_count] = doc.findName("xmlns:"
+                        + rootNSPrefix, LiteDocument.XMLNS_URI, "xmlns",
+                        rootNSPrefix, true);
+                decl_values[decl_count++] = generalNSURI;
+            }
+        }
+
+        int root_name = doc.findName(csv_ml_root, rootNSURI, rootNSPrefix,
+                (cIdx > 0 ? csv_ml_root.substring(cIdx + 1) : csv_ml_root),
+                false);
+        last_element = doc.addElement(-1, root_name);
+        cur_node = last_element;
+        for (int j = 0; j < decl_count; j++)
+            doc.setAttribute(cur_node, decl_names[j], decl_values[j]);
+        this.csv_ml_root = csv_ml_root;
+
+    }
+
+    /**
+     * Removes quotes around value of namespace declaration
+     *
+     * @param value
+     *            Value as given in directive
+     * @return Value without quotes
+     */
+    private static String unquote(String value) {
+        int len = value.length();
+        if (len > 1
+                && (value.charAt(0) == '\'' || value.charAt(0) == '"')
+                && value.charAt(len - 1) == value.charAt(0))
+            return value.substring(1, len - 1);
+        return value;
+    }
+
+    /**
+     * Adds new element and makes it current
+     *
+     * @param node_name
+     *            Name of new element to be created
+     */
+    public void addNewNode(String node_name) {
+        if (cur_node == -1) {
+            // If given input tries to add more than one root, throw error
+            ex.set_err(MultiLevelCSVParser.E_ONLY_ONE_ROOT);
+            return;
+        }
+        // If directive specifies the first element as root,
+        // do not add new. Otherwise add new element
+        if (cur_node != 0 || !node_name.equals(csv_ml_root)) {
+            int cIdx = node_name.indexOf(':');
+            if (cIdx > 0) {
+                // Added in finalizeElement() with namespace URI
+                currentElementNS = node_name.substring(0, cIdx);
+                pending_element_name = node_name;
+                return;
+            }
+            currentElementNS = "";
+            // Empty prefix is dropped
+            if (cIdx == 0)
+                node_name = node_name.substring(1);
+            last_element = doc.addElement(cur_node, doc.findName(node_name,
+                    null, null, null, false));
+            cur_node = last_element;
+        }
+    }
+
+    /**
+     * Adds new element and makes it current. Attributes of the element can
+     * then be set by column index.
+     *
+     * @param node_schema
+     *            Schema node giving name and columns of the new element
+     * @param level
+     *            Level of the row
+     */
+    public void addNewNode(Node node_schema, int level) {
+        setColumns(node_schema.getColumnArray());
+        addNewNode(node_schema.getName());
+    }
+
+    /**
+     * Adds element having a namespace prefix, along with its attributes and
+     * content, and any attributes whose namespace prefix was not known when
+     * they were set
+     */
+    public void finalizeElement() {
+        if (pending_element_name != null) {
+            String nsURI = nsMap.get(currentElementNS);
+            if (nsURI == null)
+                nsURI = generalNSURI;
+            int cIdx = pending_element_name.indexOf(':');
+            last_element = doc.addElement(cur_node, doc.findName(
+                    pending_element_name, nsURI, currentElementNS,
+                    pending_element_name.substring(cIdx + 1), false));
+            cur_node = last_element;
+            pending_element_name = null;
+        }
+        // Add all remaining attributes
+        for (int i = 0; i < pending_attrs.size(); i += 3) {
+            String col_name = pending_attrs.get(i);
+            String nsURI = pending_attrs.get(i + 1);
+            String value = pending_attrs.get(i + 2);
+            int cIdx = col_name.indexOf(':');
+            if (cIdx == -1) {
+                doc.setAttribute(cur_node, doc.findName(col_name, null, null,
+                        null, true), value);
+                continue;
+            }
+            String ns = col_name.substring(0, cIdx);
+            if (nsURI == null)
+                nsURI = nsMap.get(ns);
+            if (nsURI == null)
+                nsURI = generalNSURI;
+            doc.setAttribute(cur_node, doc.findName(col_name, nsURI, ns,
+                    col_name.substring(cIdx + 1), true), value);
+        }
+        pending_attrs.clear();
+        // Add content of element added now
+        for (int i = 0; i < pending_content.size(); i++)
+            doc.addCDATA(cur_node, pending_content.get(i));
+        pending_content.clear();
+    }
+
+    /**
+     * Sets value of attribute, mapping namespace prefix if present
+     *
+     * @param col_name
+     *            Name of attribute
+     * @param value
+     *            Value of attribute, which may be a view such as FieldValue
+     */
+    public void setAttribute(String col_name, CharSequence value) {
+        int cIdx = col_name.indexOf(':');
+        if (cIdx == -1)
+            setElementAttribute(col_name, "", col_name, value);
+        else
+            setElementAttribute(col_name, col_name.substring(0, cIdx),
+                    col_name.substring(cIdx + 1), value);
+    }
+
+    /**
+     * Sets attribute for the column at given index of the columns given with
+     * addNewNode(). The attribute name and namespace prefix are taken as
+     * precomputed in the Column.
+     *
+     * @param col_idx
+     *            Index of column
+     * @param value
+     *            Value of attribute, which may be a view such as FieldValue
+     */
+    public void setAttribute(int col_idx, CharSequence value) {
+        Column col = cur_columns[col_idx];
+        setElementAttribute(col.getAttrName(), col.getAttrPrefix(), col
+                .getAttrLocalName(), (dict == null ? value : toString(
+                col_idx, value)));
+    }
+
+    /**
+     * Sets attribute, mapping namespace prefix if present. The value is
+     * copied into the document, so it need not be formed as String.
+     *
+     * @param col_name
+     *            Name of attribute including prefix
+     * @param ns
+     *            Namespace prefix or empty string
+     * @param local_name
+     *            Name of attribute without prefix
+     * @param value
+     *            Value of attribute
+     */
+    private void setElementAttribute(String col_name, String ns,
+            String local_name, CharSequence value) {
+        if (cur_node == -1)
+            return;
+        if (ns.equals("xmlns")) {
+            nsMap.put(local_name, value.toString());
+            return;
+        }
+        String nsURI = (ns.length() == 0 ? null : nsMap.get(ns));
+        if (pending_element_name != null
+                || (ns.length() > 0 && nsURI == null)) {
+            // Element not yet added or prefix not yet known
+            pending_attrs.add(col_name);
+            pending_attrs.add(nsURI);
+            pending_attrs.add(value.toString());
+        } else if (ns.length() == 0)
+            doc.setAttribute(cur_node,
+                    doc.findName(col_name, null, null, null, true), value);
+        else
+            doc.setAttribute(cur_node, doc.findName(col_name, nsURI, ns,
+                    local_name, true), value);
+    }
+
+    /**
+     * Adds CDATA section as node content
+     *
+     * @param content
+     *            Value to be added
+     */
+    public void addContent(String content) {
+        if (pending_element_name != null)
+            pending_content.add(content);
+        else if (cur_node != -1)
+            doc.addCDATA(cur_node, content);
+    }
+
+    /**
+     * Traverse to parent element to go up one level
+     */
+    public void traverseToParent() {
+        if (cur_node != -1)
+            cur_node = doc.parents[cur_node];
+    }
+
+    /**
+     * Traverses up to the root, completing the nodes still open at end of
+     * input
+     */
+    void completeAll() {
+        while (cur_node > 0)
+            traverseToParent();
+    }
+
+    /**
+     * Not supported, as the document is not built in chunks
+     *
+     * @param chunk
+     *            Parsed object of same target type
+     */
+    public void appendChunk(ParsedObject chunk) {
+        throw new UnsupportedOperationException(
+                "Lightweight DOM is not built in chunks");
+    }
+
+    /**
+     * Adds element still pending and trims the arrays of the document
+     */
+    public void endDocument() {
+        // Parsing may have stopped before the last element was finalized
+        if (pending_element_name != null)
+            finalizeElement();
+        doc.trim();
+    }
+
+    /**
+     * Getter for W3C Document
+     *
+     * @return LiteDocument
+     */
+    public Document getDocument() {
+        if (pending_element_name != null)
+            finalizeElement();
+        return doc;
+    }
+
+    /**
+     * Getter for currently constructed object
+     *
+     * @return Element
+     */
+    public Element getCurrentElement() {
+        return (Element) doc.getNode(last_element);
+    }
+
+}
@@ -0,0 +1,930 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+
+/**
+ * Read only W3C Document held in arrays of primitives, built by
+ * MultiLevelCSVParser when lightweight DOM is turned on. It can be used
+ * wherever org.w3c.dom is expected, such as with javax.xml.xpath and
+ * javax.xml.transform.
+ *
+ * Elements and CDATA sections are entries in arrays of parent, first and
+ * last child and siblings, in document order. Names of elements and
+ * attributes are held once in a table and shared by all entries, and
+ * values of attributes and CDATA sections are held one after another in a
+ * single char array. Node objects are created only when asked for and are
+ * then kept, so that the same object is returned for a node each time.
+ * Attr objects in particular are not created unless attributes are accessed
+ * as nodes. Element.getAttribute() reads the value directly.
+ *
+ * Methods that modify the document throw DOMException with
+ * NO_MODIFICATION_ALLOWED_ERR, except for user data. Attributes have no
+ * Text child, their value being available through getValue(). As with
+ * other DOM implementations, the document is not to be accessed by many
+ * threads at a time.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public final class LiteDocument extends LiteNode implements Document {
+
+    static final String XMLNS_URI = "http://www.w3.org/2000/xmlns/";
+
+    // Names of elements and attributes. local_names is null for names of
+    // DOM Level 1, created without namespace. Names found with same
+    // qualified name are chained through next_same_qnames.
+    String[] qnames = new String[64];
+    String[] uris = new String[64];
+    String[] prefixes = new String[64];
+    String[] local_names = new String[64];
+    int[] next_same_qnames = new int[64];
+    int name_count = 0;
+    HashMap<String, Integer> name_ids = new HashMap<String, Integer>();
+    // Document of the JDK on which new names are checked
+    Document name_checker = null;
+
+    // Elements and CDATA sections in document order. node_names is -1 for
+    // CDATA section. first_attrs is index of first attribute of element,
+    // or index of value of CDATA section.
+    int[] node_names = new int[256];
+    int[] parents = new int[256];
+    int[] first_children = new int[256];
+    int[] last_children = new int[256];
+    int[] prev_siblings = new int[256];
+    int[] next_siblings = new int[256];
+    int[] first_attrs = new int[256];
+    int[] attr_counts = new int[256];
+    int node_count = 0;
+
+    // Attributes, each element having its attributes one after another
+    int[] attr_names = new int[256];
+    int[] attr_values = new int[256];
+    int attr_count = 0;
+
+    // Values of attributes and CDATA sections, ending at value_ends in chars
+    int[] value_ends = new int[512];
+    int value_count = 0;
+    char[] chars = new char[4096];
+    int char_count = 0;
+
+    // Node objects created so far
+    LiteNode[] node_objs = null;
+    LiteAttr[] attr_objs = null;
+
+    IdentityHashMap<Node, HashMap<String, Object>> user_data = null;
+    boolean is_strict = true;
+    String document_uri = null;
+
+    /**
+     * Creates empty document
+     */
+    LiteDocument() {
+        super(null, -1);
+        doc = this;
+    }
+
+    /**
+     * Finds index of name, adding it if not found. A name not found is
+     * checked by creating the element or attribute in a Document of the
+     * JDK in the same way as DOMTreeBuilder does, so that the same names
+     * raise DOMException. The name added is as formed by the JDK.
+     *
+     * @param qname
+     *            Qualified name
+     * @param uri
+     *            Namespace URI or null
+     * @param prefix
+     *            Prefix or null
+     * @param local_name
+     *            Local name or null for DOM Level 1 name
+     * @param is_attr
+     *            Whether name is of an attribute
+     * @return Index of name
+     * @throws DOMException
+     *             If name is not valid
+     */
+    int findName(String qname, String uri, String prefix, String local_name,
+            boolean is_attr) {
+        Integer first = name_ids.get(qname);
+        int id = (first == null ? -1 : first.intValue());
+        for (; id != -1; id = next_same_qnames[id]) {
+            if (equals(uris[id], uri)
+                    && (local_names[id] == null) == (local_name == null))
+                return id;
+        }
+        Node checked = checkName(qname, uri, prefix, local_name, is_attr);
+        if (name_count == qnames.length) {
+            qnames = copyOf(qnames, name_count * 2);
+            uris = copyOf(uris, name_count * 2);
+            prefixes = copyOf(prefixes, name_count * 2);
+            local_names = copyOf(local_names, name_count * 2);
+            next_same_qnames = copyOf(next_same_qnames, name_count,
+                    name_count * 2);
+        }
+        id = name_count++;
+        qnames[id] = checked.getNodeName();
+        uris[id] = uri;
+        prefixes[id] = (local_name == null ? prefix : checked.getPrefix());
+        local_names[id] = (local_name == null ? null : checked
+                .getLocalName());
+        next_same_qnames[id] = (first == null ? -1 : first.intValue());
+        name_ids.put(qname, Integer.valueOf(id));
+        return id;
+    }
+
+    /**
+     * Creates element or attribute having given name in a Document of the
+     * JDK, as done by DOMTreeBuilder. An attribute having namespace is
+     * created with the local name and then given the prefix, except for
+     * declaration of namespace, which is formed by parsing for the root.
+     *
+     * @param qname
+     *            Qualified name
+     * @param uri
+     *            Namespace URI or null
+     * @param prefix
+     *            Prefix or null
+     * @param local_name
+     *            Local name or null for DOM Level 1 name
+     * @param is_attr
+     *            Whether name is of an attribute
+     * @return Element or attribute created
+     * @throws DOMException
+     *             If name is not valid
+     */
+    private Node checkName(String qname, String uri, String prefix,
+            String local_name, boolean is_attr) {
+        if (name_checker == null) {
+            try {
+                name_checker = DocumentBuilderFactory.newInstance()
+                        .newDocumentBuilder().newDocument();
+            } catch (ParserConfigurationException e) {
+                IllegalStateException ise = new IllegalStateException(e
+                        .toString());
+                ise.initCause(e);
+                throw ise;
+            }
+        }
+        if (local_name == null)
+            return (is_attr ? name_checker.createAttribute(qname)
+                    : name_checker.createElement(qname));
+        if (!is_attr || prefix == null || prefix.equals("xmlns"))
+            return (is_attr ? name_checker.createAttributeNS(uri, qname)
+                    : name_checker.createElementNS(uri, qname));
+        Attr attr = name_checker.createAttributeNS(uri, local_name);
+        attr.setPrefix(prefix);
+        return attr;
+    }
+
+    /**
+     * Adds node as last child of given parent
+     *
+     * @param parent
+     *            Index of parent element or -1 for document
+     * @param name
+     *            Index of name or -1 for CDATA section
+     * @param first_attr
+     *            Index of first attribute or of value
+     * @return Index of node
+     */
+    private int addNode(int parent, int name, int first_attr) {
+        if (node_count == node_names.length)
+            growNodes(node_count * 2);
+        int node = node_count++;
+        node_names[node] = name;
+        parents[node] = parent;
+        first_children[node] = -1;
+        last_children[node] = -1;
+        next_siblings[node] = -1;
+        first_attrs[node] = first_attr;
+        attr_counts[node] = 0;
+        if (parent == -1)
+            prev_siblings[node] = -1;
+        else {
+            int last = last_children[parent];
+            prev_siblings[node] = last;
+            if (last == -1)
+                first_children[parent] = node;
+            else
+                next_siblings[last] = node;
+            last_children[parent] = node;
+        }
+        return node;
+    }
+
+    /**
+     * Adds element as last child of given parent
+     *
+     * @param parent
+     *            Index of parent element or -1 for document element
+     * @param name
+     *            Index of name
+     * @return Index of element
+     */
+    int addElement(int parent, int name) {
+        return addNode(parent, name, attr_count);
+    }
+
+    /**
+     * Adds CDATA section as last child of given element
+     *
+     * @param parent
+     *            Index of element
+     * @param data
+     *            Content
+     * @return Index of CDATA section
+     */
+    int addCDATA(int parent, CharSequence data) {
+        return addNode(parent, -1, addValue(data));
+    }
+
+    /**
+     * Sets attribute of given element, replacing value if the attribute is
+     * present. As in the DOM of the JDK, attributes of an element are kept
+     * sorted by qualified name.
+     *
+     * @param node
+     *            Index of element
+     * @param name
+     *            Index of name
+     * @param value
+     *            Value
+     */
+    void setAttribute(int node, int name, CharSequence value) {
+        int first = first_attrs[node];
+        int count = attr_counts[node];
+        int pos = (local_names[name] == null ? findAttr(node, qnames[name])
+                : findAttrNS(node, uris[name], local_names[name]));
+        if (pos != -1) {
+            // Attribute set without namespace takes only the value
+            if (local_names[name] != null)
+                attr_names[first + pos] = name;
+            attr_values[first + pos] = addValue(value);
+            return;
+        }
+        if (first + count != attr_count) {
+            // Other attributes were added after those of this element (as
+            // for root), so move them to the end
+            for (int i = 0; i < count; i++) {
+                addAttr(-1, -1);
+                moveAttr(first + i, attr_count - 1);
+            }
+            first = attr_count - count;
+            first_attrs[node] = first;
+        }
+        String qname = qnames[name];
+        pos = count;
+        while (pos > 0
+                && qnames[attr_names[first + pos - 1]].compareTo(qname) > 0)
+            pos--;
+        addAttr(-1, -1);
+        for (int i = first + count; i > first + pos; i--)
+            moveAttr(i - 1, i);
+        attr_names[first + pos] = name;
+        attr_values[first + pos] = addValue(value);
+        attr_counts[node]++;
+    }
+
+    /**
+     * Appends attribute entry
+     *
+     * @param name
+     *            Index of name
+     * @param value
+     *            Index of value
+     */
+    private void addAttr(int name, int value) {
+        if (attr_count == attr_names.length) {
+            attr_names = copyOf(attr_names, attr_count, attr_count * 2);
+            attr_values = copyOf(attr_values, attr_count, attr_count * 2);
+        }
+        attr_names[attr_count] = name;
+        attr_values[attr_count++] = value;
+    }
+
+    /**
+     * Moves attribute entry to given index along with its Attr object, if
+     * created
+     *
+     * @param from
+     *            Index of attribute
+     * @param to
+     *            New index of attribute
+     */
+    private void moveAttr(int from, int to) {
+        attr_names[to] = attr_names[from];
+        attr_values[to] = attr_values[from];
+        if (attr_objs != null && from < attr_objs.length) {
+            LiteAttr obj = attr_objs[from];
+            attr_objs[from] = null;
+            if (obj != null) {
+                if (to >= attr_objs.length) {
+                    LiteAttr[] new_attr_objs = new LiteAttr[attr_names.length];
+                    System.arraycopy(attr_objs, 0, new_attr_objs, 0,
+                            attr_objs.length);
+                    attr_objs = new_attr_objs;
+                }
+                obj.idx = to;
+                attr_objs[to] = obj;
+            }
+        }
+    }
+
+    /**
+     * Appends value to chars
+     *
+     * @param value
+     *            Value
+     * @return Index of value
+     */
+    private int addValue(CharSequence value) {
+        int len = value.length();
+        if (char_count + len > chars.length) {
+            int capacity = chars.length * 2;
+            if (capacity < char_count + len || capacity < 0)
+                capacity = char_count + len;
+            char[] new_chars = new char[capacity];
+            System.arraycopy(chars, 0, new_chars, 0, char_count);
+            chars = new_chars;
+        }
+        if (value instanceof String)
+            ((String) value).getChars(0, len, chars, char_count);
+        else {
+            for (int i = 0; i < len; i++)
+                chars[char_count + i] = value.charAt(i);
+        }
+        char_count += len;
+        if (value_count == value_ends.length)
+            value_ends = copyOf(value_ends, value_count, value_count * 2);
+        value_ends[value_count] = char_count;
+        return value_count++;
+    }
+
+    /**
+     * Forms String of value at given index
+     *
+     * @param value
+     *            Index of value
+     * @return Value
+     */
+    String getValue(int value) {
+        int start = (value == 0 ? 0 : value_ends[value - 1]);
+        return new String(chars, start, value_ends[value] - start);
+    }
+
+    /**
+     * Gets length of value at given index
+     *
+     * @param value
+     *            Index of value
+     * @return Number of chars
+     */
+    int getValueLength(int value) {
+        return value_ends[value] - (value == 0 ? 0 : value_ends[value - 1]);
+    }
+
+    /**
+     * Appends value at given index
+     *
+     * @param value
+     *            Index of value
+     * @param out_str
+     *            StringBuffer to append to
+     */
+    void appendValue(int value, StringBuffer out_str) {
+        int start = (value == 0 ? 0 : value_ends[value - 1]);
+        out_str.append(chars, start, value_ends[value] - start);
+    }
+
+    /**
+     * Gets object of node at given index, creating it if not yet created
+     *
+     * @param node
+     *            Index of node or -1
+     * @return Node or null if index is -1
+     */
+    LiteNode getNode(int node) {
+        if (node == -1)
+            return null;
+        if (node_objs == null || node >= node_objs.length) {
+            LiteNode[] new_node_objs = new LiteNode[node_names.length];
+            if (node_objs != null)
+                System.arraycopy(node_objs, 0, new_node_objs, 0,
+                        node_objs.length);
+            node_objs = new_node_objs;
+        }
+        LiteNode obj = node_objs[node];
+        if (obj == null) {
+            if (node_names[node] == -1)
+                obj = new LiteCDATASection(this, node);
+            else
+                obj = new LiteElement(this, node);
+            node_objs[node] = obj;
+        }
+        return obj;
+    }
+
+    /**
+     * Gets object of attribute at given position of given element, creating
+     * it if not yet created
+     *
+     * @param node
+     *            Index of element
+     * @param pos
+     *            Position of attribute
+     * @return Attribute
+     */
+    LiteAttr getAttr(int node, int pos) {
+        int attr = first_attrs[node] + pos;
+        if (attr_objs == null || attr >= attr_objs.length) {
+            LiteAttr[] new_attr_objs = new LiteAttr[attr_names.length];
+            if (attr_objs != null)
+                System.arraycopy(attr_objs, 0, new_attr_objs, 0,
+                        attr_objs.length);
+            attr_objs = new_attr_objs;
+        }
+        LiteAttr obj = attr_objs[attr];
+        if (obj == null) {
+            obj = new LiteAttr(this, attr, node);
+            attr_objs[attr] = obj;
+        }
+        return obj;
+    }
+
+    /**
+     * Finds position of attribute having given qualified name
+     *
+     * @param node
+     *            Index of element
+     * @param qname
+     *            Qualified name
+     * @return Position or -1 if not found
+     */
+    int findAttr(int node, String qname) {
+        int first = first_attrs[node];
+        for (int i = 0; i < attr_counts[node]; i++) {
+            if (qnames[attr_names[first + i]].equals(qname))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds position of attribute having given namespace and local name
+     *
+     * @param node
+     *            Index of element
+     * @param uri
+     *            Namespace URI or null
+     * @param local_name
+     *            Local name
+     * @return Position or -1 if not found
+     */
+    int findAttrNS(int node, String uri, String local_name) {
+        if ("".equals(uri))
+            uri = null;
+        int first = first_attrs[node];
+        for (int i = 0; i < attr_counts[node]; i++) {
+            int name = attr_names[first + i];
+            if (equals(uris[name], uri)
+                    && equals(getLocalName(name), local_name))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets local name of given name, being the qualified name if created
+     * without namespace
+     *
+     * @param name
+     *            Index of name
+     * @return Local name
+     */
+    private String getLocalName(int name) {
+        return (local_names[name] == null ? qnames[name] : local_names[name]);
+    }
+
+    /**
+     * Gets index of last node of the subtree of given node
+     *
+     * @param node
+     *            Index of node
+     * @return Index of last descendant or the node itself
+     */
+    int getLastDescendant(int node) {
+        while (last_children[node] != -1)
+            node = last_children[node];
+        return node;
+    }
+
+    /**
+     * Collects elements of given name in the subtree of given node, in
+     * document order
+     *
+     * @param node
+     *            Index of node
+     * @param is_self_included
+     *            Whether node itself is to be included
+     * @param is_ns
+     *            Whether to match by namespace and local name
+     * @param uri
+     *            Namespace URI, or * for any
+     * @param name
+     *            Name, or * for any
+     * @return List of elements
+     */
+    NodeList getElementsByName(int node, boolean is_self_included,
+            boolean is_ns, String uri, String name) {
+        if (node == -1)
+            return EMPTY_LIST;
+        if ("".equals(uri))
+            uri = null;
+        boolean is_any_uri = "*".equals(uri);
+        boolean is_any_name = "*".equals(name);
+        int last = getLastDescendant(node);
+        Node[] found = new Node[16];
+        int found_count = 0;
+        for (int i = (is_self_included ? node : node + 1); i <= last; i++) {
+            int node_name = node_names[i];
+            if (node_name == -1)
+                continue;
+            boolean is_match;
+            if (is_ns)
+                is_match = (is_any_uri || equals(uris[node_name], uri))
+                        && (is_any_name || name.equals(local_names[node_name]));
+            else
+                is_match = (is_any_name || name.equals(qnames[node_name]));
+            if (!is_match)
+                continue;
+            if (found_count == found.length) {
+                Node[] new_found = new Node[found_count * 2];
+                System.arraycopy(found, 0, new_found, 0, found_count);
+                found = new_found;
+            }
+            found[found_count++] = getNode(i);
+        }
+        return new LiteNodeList(found, found_count);
+    }
+
+    /**
+     * Gets approximate number of bytes held by the arrays of this document,
+     * excluding names and node objects created
+     *
+     * @return Number of bytes
+     */
+    public long getArrayBytes() {
+        return (long) node_names.length * 4 * 8 + (long) attr_names.length
+                * 4 * 2 + (long) value_ends.length * 4 + (long) chars.length
+                * 2;
+    }
+
+    /**
+     * Trims arrays to the number of entries used
+     */
+    void trim() {
+        growNodes(node_count);
+        attr_names = copyOf(attr_names, attr_count, attr_count);
+        attr_values = copyOf(attr_values, attr_count, attr_count);
+        value_ends = copyOf(value_ends, value_count, value_count);
+        char[] new_chars = new char[char_count];
+        System.arraycopy(chars, 0, new_chars, 0, char_count);
+        chars = new_chars;
+    }
+
+    /**
+     * Changes capacity of the arrays of nodes
+     *
+     * @param capacity
+     *            New capacity, not less than number of nodes
+     */
+    private void growNodes(int capacity) {
+        node_names = copyOf(node_names, node_count, capacity);
+        parents = copyOf(parents, node_count, capacity);
+        first_children = copyOf(first_children, node_count, capacity);
+        last_children = copyOf(last_children, node_count, capacity);
+        prev_siblings = copyOf(prev_siblings, node_count, capacity);
+        next_siblings = copyOf(next_siblings, node_count, capacity);
+        first_attrs = copyOf(first_attrs, node_count, capacity);
+        attr_counts = copyOf(attr_counts, node_count, capacity);
+    }
+
+    /**
+     * Copies given number of entries into array of given length
+     *
+     * @param arr
+     *            Array
+     * @param count
+     *            Number of entries to copy
+     * @param len
+     *            Length of new array
+     * @return New array
+     */
+    private static int[] copyOf(int[] arr, int count, int len) {
+        int[] new_arr = new int[len];
+        System.arraycopy(arr, 0, new_arr, 0, count);
+        return new_arr;
+    }
+
+    /**
+     * Copies entries into array of given length
+     *
+     * @param arr
+     *            Array
+     * @param len
+     *            Length of new array, not less than that of given array
+     * @return New array
+     */
+    private static String[] copyOf(String[] arr, int len) {
+        String[] new_arr = new String[len];
+        System.arraycopy(arr, 0, new_arr, 0, arr.length);
+        return new_arr;
+    }
+
+    /**
+     * Sets user data of given node
+     *
+     * @param node
+     *            Node
+     * @param key
+     *            Key
+     * @param data
+     *            Data or null to remove
+     * @return Data previously set for the key
+     */
+    Object putUserData(Node node, String key, Object data) {
+        if (user_data == null)
+            user_data = new IdentityHashMap<Node, HashMap<String, Object>>();
+        HashMap<String, Object> node_data = user_data.get(node);
+        if (node_data == null) {
+            node_data = new HashMap<String, Object>();
+            user_data.put(node, node_data);
+        }
+        return (data == null ? node_data.remove(key) : node_data.put(key,
+                data));
+    }
+
+    /**
+     * Gets user data of given node
+     *
+     * @param node
+     *            Node
+     * @param key
+     *            Key
+     * @return Data or null
+     */
+    Object findUserData(Node node, String key) {
+        if (user_data == null)
+            return null;
+        HashMap<String, Object> node_data = user_data.get(node);
+        return (node_data == null ? null : node_data.get(key));
+    }
+
+    long getOrder() {
+        return -1;
+    }
+
+    LiteElement getScopeElement() {
+        return (LiteElement) getDocumentElement();
+    }
+
+    public String getNodeName() {
+        return "#document";
+    }
+
+    public short getNodeType() {
+        return DOCUMENT_NODE;
+    }
+
+    public Document getOwnerDocument() {
+        return null;
+    }
+
+    public NodeList getChildNodes() {
+        if (node_count == 0)
+            return EMPTY_LIST;
+        return new LiteNodeList(new Node[] { getNode(0) }, 1);
+    }
+
+    public Node getFirstChild() {
+        return getDocumentElement();
+    }
+
+    public Node getLastChild() {
+        return getDocumentElement();
+    }
+
+    public boolean hasChildNodes() {
+        return (node_count > 0);
+    }
+
+    public String getTextContent() throws DOMException {
+        return null;
+    }
+
+    public DocumentType getDoctype() {
+        return null;
+    }
+
+    public DOMImplementation getImplementation() {
+        return Implementation.INSTANCE;
+    }
+
+    public Element getDocumentElement() {
+        return (node_count == 0 ? null : (Element) getNode(0));
+    }
+
+    public Element createElement(String tagName) throws DOMException {
+        throw readOnly();
+    }
+
+    public DocumentFragment createDocumentFragment() {
+        throw readOnly();
+    }
+
+    public Text createTextNode(String data) {
+        throw readOnly();
+    }
+
+    public Comment createComment(String data) {
+        throw readOnly();
+    }
+
+    public CDATASection createCDATASection(String data) throws DOMException {
+        throw readOnly();
+    }
+
+    public ProcessingInstruction createProcessingInstruction(String target,
+            String data) throws DOMException {
+        throw readOnly();
+    }
+
+    public Attr createAttribute(String name) throws DOMException {
+        throw readOnly();
+    }
+
+    public EntityReference createEntityReference(String name)
+            throws DOMException {
+        throw readOnly();
+    }
+
+    public NodeList getElementsByTagName(String tagname) {
+        return getElementsByName(node_count == 0 ? -1 : 0, true, false, null,
+                tagname);
+    }
+
+    public Node importNode(Node importedNode, boolean deep)
+            throws DOMException {
+        throw readOnly();
+    }
+
+    public Element createElementNS(String namespaceURI, String qualifiedName)
+            throws DOMException {
+        throw readOnly();
+    }
+
+    public Attr createAttributeNS(String namespaceURI, String qualifiedName)
+            throws DOMException {
+        throw readOnly();
+    }
+
+    public NodeList getElementsByTagNameNS(String namespaceURI,
+            String localName) {
+        return getElementsByName(node_count == 0 ? -1 : 0, true, true,
+                namespaceURI, localName);
+    }
+
+    public Element getElementById(String elementId) {
+        return null;
+    }
+
+    public String getInputEncoding() {
+        return null;
+    }
+
+    public String getXmlEncoding() {
+        return null;
+    }
+
+    public boolean getXmlStandalone() {
+        return false;
+    }
+
+    public void setXmlStandalone(boolean xmlStandalone) throws DOMException {
+        throw readOnly();
+    }
+
+    public String getXmlVersion() {
+        return "1.0";
+    }
+
+    public void setXmlVersion(String xmlVersion) throws DOMException {
+        throw readOnly();
+    }
+
+    public boolean getStrictErrorChecking() {
+        return is_strict;
+    }
+
+    public void setStrictErrorChecking(boolean strictErrorChecking) {
+        is_strict = strictErrorChecking;
+    }
+
+    public String getDocumentURI() {
+        return document_uri;
+    }
+
+    public void setDocumentURI(String documentURI) {
+        document_uri = documentURI;
+    }
+
+    public Node adoptNode(Node source) throws DOMException {
+        throw readOnly();
+    }
+
+    public DOMConfiguration getDomConfig() {
+        throw notSupported();
+    }
+
+    public void normalizeDocument() {
+        // Nothing to normalize, as the document is read only
+    }
+
+    public Node renameNode(Node n, String namespaceURI, String qualifiedName)
+            throws DOMException {
+        throw readOnly();
+    }
+
+    /**
+     * DOMImplementation of LiteDocument, which only reports features
+     */
+    private static final class Implementation implements DOMImplementation {
+
+        static final Implementation INSTANCE = new Implementation();
+
+        public boolean hasFeature(String feature, String version) {
+            if (feature.startsWith("+"))
+                feature = feature.substring(1);
+            if (!feature.equalsIgnoreCase("Core")
+                    && !feature.equalsIgnoreCase("XML"))
+                return false;
+            return (version == null || version.length() == 0
+                    || version.equals("1.0") || version.equals("2.0") || version
+                    .equals("3.0"));
+        }
+
+        public DocumentType createDocumentType(String qualifiedName,
+                String publicId, String systemId) throws DOMException {
+            throw notSupported();
+        }
+
+        public Document createDocument(String namespaceURI,
+                String qualifiedName, DocumentType doctype)
+                throws DOMException {
+            throw notSupported();
+        }
+
+        public Object getFeature(String feature, String version) {
+            return null;
+        }
+    }
+
+}
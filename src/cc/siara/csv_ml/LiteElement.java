@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * Element of LiteDocument. Attribute values are read directly from the
+ * arrays of the document, so Attr objects are created only when attributes
+ * are accessed as nodes.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+final class LiteElement extends LiteNode implements Element {
+
+    /**
+     * TypeInfo of elements and attributes, there being no schema
+     */
+    static final TypeInfo NO_TYPE_INFO = new TypeInfo() {
+        public String getTypeName() {
+            return null;
+        }
+
+        public String getTypeNamespace() {
+            return null;
+        }
+
+        public boolean isDerivedFrom(String typeNamespaceArg,
+                String typeNameArg, int derivationMethod) {
+            return false;
+        }
+    };
+
+    /**
+     * Initializes document and index
+     *
+     * @param doc
+     *            Document having the element
+     * @param idx
+     *            Index of element
+     */
+    LiteElement(LiteDocument doc, int idx) {
+        super(doc, idx);
+    }
+
+    long getOrder() {
+        return ((long) idx) << 20;
+    }
+
+    LiteElement getScopeElement() {
+        return this;
+    }
+
+    public String getNodeName() {
+        return doc.qnames[doc.node_names[idx]];
+    }
+
+    public short getNodeType() {
+        return ELEMENT_NODE;
+    }
+
+    public Node getParentNode() {
+        int parent = doc.parents[idx];
+        return (parent == -1 ? doc : doc.getNode(parent));
+    }
+
+    public NodeList getChildNodes() {
+        int child = doc.first_children[idx];
+        if (child == -1)
+            return EMPTY_LIST;
+        Node[] children = new Node[4];
+        int child_count = 0;
+        for (; child != -1; child = doc.next_siblings[child]) {
+            if (child_count == children.length) {
+                Node[] new_children = new Node[child_count * 2];
+                System.arraycopy(children, 0, new_children, 0, child_count);
+                children = new_children;
+            }
+            children[child_count++] = doc.getNode(child);
+        }
+        return new LiteNodeList(children, child_count);
+    }
+
+    public Node getFirstChild() {
+        return doc.getNode(doc.first_children[idx]);
+    }
+
+    public Node getLastChild() {
+        return doc.getNode(doc.last_children[idx]);
+    }
+
+    public Node getPreviousSibling() {
+        return doc.getNode(doc.prev_siblings[idx]);
+    }
+
+    public Node getNextSibling() {
+        return doc.getNode(doc.next_siblings[idx]);
+    }
+
+    public NamedNodeMap getAttributes() {
+        return new LiteAttrMap(doc, idx);
+    }
+
+    public boolean hasChildNodes() {
+        return (doc.first_children[idx] != -1);
+    }
+
+    public String getNamespaceURI() {
+        return doc.uris[doc.node_names[idx]];
+    }
+
+    public String getPrefix() {
+        return doc.prefixes[doc.node_names[idx]];
+    }
+
+    public String getLocalName() {
+        return doc.local_names[doc.node_names[idx]];
+    }
+
+    public boolean hasAttributes() {
+        return (doc.attr_counts[idx] > 0);
+    }
+
+    public String getTextContent() throws DOMException {
+        StringBuffer out_str = new StringBuffer();
+        int last = doc.getLastDescendant(idx);
+        for (int i = idx + 1; i <= last; i++) {
+            if (doc.node_names[i] == -1)
+                doc.appendValue(doc.first_attrs[i], out_str);
+        }
+        return out_str.toString();
+    }
+
+    public String lookupPrefix(String namespaceURI) {
+        if (namespaceURI == null || namespaceURI.length() == 0)
+            return null;
+        for (int node = idx; node != -1; node = doc.parents[node]) {
+            int name = doc.node_names[node];
+            if (namespaceURI.equals(doc.uris[name])
+                    && doc.prefixes[name] != null)
+                return doc.prefixes[name];
+            int first = doc.first_attrs[node];
+            for (int i = first; i < first + doc.attr_counts[node]; i++) {
+                int attr_name = doc.attr_names[i];
+                if ("xmlns".equals(doc.prefixes[attr_name])
+                        && namespaceURI.equals(doc.getValue(doc.attr_values[i])))
+                    return doc.local_names[attr_name];
+            }
+        }
+        return null;
+    }
+
+    public boolean isDefaultNamespace(String namespaceURI) {
+        if ("".equals(namespaceURI))
+            namespaceURI = null;
+        for (int node = idx; node != -1; node = doc.parents[node]) {
+            int name = doc.node_names[node];
+            if (doc.local_names[name] != null && doc.prefixes[name] == null)
+                return equals(doc.uris[name], namespaceURI);
+            int pos = doc.findAttr(node, "xmlns");
+            if (pos != -1) {
+                String value = doc.getValue(doc.attr_values[doc.first_attrs[node]
+                        + pos]);
+                return equals(value.length() == 0 ? null : value, namespaceURI);
+            }
+        }
+        return false;
+    }
+
+    public String lookupNamespaceURI(String prefix) {
+        if ("".equals(prefix))
+            prefix = null;
+        for (int node = idx; node != -1; node = doc.parents[node]) {
+            int name = doc.node_names[node];
+            if (doc.uris[name] != null && equals(doc.prefixes[name], prefix))
+                return doc.uris[name];
+            int pos = doc.findAttr(node, (prefix == null ? "xmlns" : "xmlns:"
+                    + prefix));
+            if (pos != -1) {
+                String value = doc.getValue(doc.attr_values[doc.first_attrs[node]
+                        + pos]);
+                return (value.length() == 0 ? null : value);
+            }
+        }
+        return null;
+    }
+
+    public String getTagName() {
+        return getNodeName();
+    }
+
+    public String getAttribute(String name) {
+        int pos = doc.findAttr(idx, name);
+        return (pos == -1 ? "" : doc.getValue(doc.attr_values[doc.first_attrs[idx]
+                + pos]));
+    }
+
+    public void setAttribute(String name, String value) throws DOMException {
+        throw readOnly();
+    }
+
+    public void removeAttribute(String name) throws DOMException {
+        throw readOnly();
+    }
+
+    public Attr getAttributeNode(String name) {
+        int pos = doc.findAttr(idx, name);
+        return (pos == -1 ? null : doc.getAttr(idx, pos));
+    }
+
+    public Attr setAttributeNode(Attr newAttr) throws DOMException {
+        throw readOnly();
+    }
+
+    public Attr removeAttributeNode(Attr oldAttr) throws DOMException {
+        throw readOnly();
+    }
+
+    public NodeList getElementsByTagName(String name) {
+        return doc.getElementsByName(idx, false, false, null, name);
+    }
+
+    public String getAttributeNS(String namespaceURI, String localName)
+            throws DOMException {
+        int pos = doc.findAttrNS(idx, namespaceURI, localName);
+        return (pos == -1 ? "" : doc.getValue(doc.attr_values[doc.first_attrs[idx]
+                + pos]));
+    }
+
+    public void setAttributeNS(String namespaceURI, String qualifiedName,
+            String value) throws DOMException {
+        throw readOnly();
+    }
+
+    public void removeAttributeNS(String namespaceURI, String localName)
+            throws DOMException {
+        throw readOnly();
+    }
+
+    public Attr getAttributeNodeNS(String namespaceURI, String localName)
+            throws DOMException {
+        int pos = doc.findAttrNS(idx, namespaceURI, localName);
+        return (pos == -1 ? null : doc.getAttr(idx, pos));
+    }
+
+    public Attr setAttributeNodeNS(Attr newAttr) throws DOMException {
+        throw readOnly();
+    }
+
+    public NodeList getElementsByTagNameNS(String namespaceURI,
+            String localName) throws DOMException {
+        return doc.getElementsByName(idx, false, true, namespaceURI, localName);
+    }
+
+    public boolean hasAttribute(String name) {
+        return (doc.findAttr(idx, name) != -1);
+    }
+
+    public boolean hasAttributeNS(String namespaceURI, String localName)
+            throws DOMException {
+        return (doc.findAttrNS(idx, namespaceURI, localName) != -1);
+    }
+
+    public TypeInfo getSchemaTypeInfo() {
+        return NO_TYPE_INFO;
+    }
+
+    public void setIdAttribute(String name, boolean isId) throws DOMException {
+        throw readOnly();
+    }
+
+    public void setIdAttributeNS(String namespaceURI, String localName,
+            boolean isId) throws DOMException {
+        throw readOnly();
+    }
+
+    public void setIdAttributeNode(Attr idAttr, boolean isId)
+            throws DOMException {
+        throw readOnly();
+    }
+
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * Base of the nodes of LiteDocument. A node object only refers to its entry
+ * in the arrays of the document, so it is created when first asked for and
+ * then kept by the document, so that the same object is returned each
+ * time.
+ *
+ * The document is read only. Methods that modify it throw DOMException with
+ * NO_MODIFICATION_ALLOWED_ERR, except for user data which can be set on any
+ * node.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+abstract class LiteNode implements Node {
+
+    static final NodeList EMPTY_LIST = new LiteNodeList(new Node[0], 0);
+
+    LiteDocument doc;
+    // Index of node or attribute in the arrays of the document
+    int idx;
+
+    /**
+     * Initializes document and index
+     *
+     * @param doc
+     *            Document having the node
+     * @param idx
+     *            Index of node or attribute
+     */
+    LiteNode(LiteDocument doc, int idx) {
+        this.doc = doc;
+        this.idx = idx;
+    }
+
+    /**
+     * Forms exception for methods that modify the document
+     *
+     * @return DOMException
+     */
+    static DOMException readOnly() {
+        return new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+                "Document is read only");
+    }
+
+    /**
+     * Forms exception for methods not supported
+     *
+     * @return DOMException
+     */
+    static DOMException notSupported() {
+        return new DOMException(DOMException.NOT_SUPPORTED_ERR,
+                "Not supported");
+    }
+
+    /**
+     * Gets position of node in document order, for comparing positions.
+     * Attributes are placed after their element.
+     *
+     * @return Position, -1 for document
+     */
+    abstract long getOrder();
+
+    public String getNodeValue() throws DOMException {
+        return null;
+    }
+
+    public void setNodeValue(String nodeValue) throws DOMException {
+        throw readOnly();
+    }
+
+    public Node getParentNode() {
+        return null;
+    }
+
+    public NodeList getChildNodes() {
+        return EMPTY_LIST;
+    }
+
+    public Node getFirstChild() {
+        return null;
+    }
+
+    public Node getLastChild() {
+        return null;
+    }
+
+    public Node getPreviousSibling() {
+        return null;
+    }
+
+    public Node getNextSibling() {
+        return null;
+    }
+
+    public NamedNodeMap getAttributes() {
+        return null;
+    }
+
+    public Document getOwnerDocument() {
+        return doc;
+    }
+
+    public Node insertBefore(Node newChild, Node refChild)
+            throws DOMException {
+        throw readOnly();
+    }
+
+    public Node replaceChild(Node newChild, Node oldChild)
+            throws DOMException {
+        throw readOnly();
+    }
+
+    public Node removeChild(Node oldChild) throws DOMException {
+        throw readOnly();
+    }
+
+    public Node appendChild(Node newChild) throws DOMException {
+        throw readOnly();
+    }
+
+    public boolean hasChildNodes() {
+        return false;
+    }
+
+    public Node cloneNode(boolean deep) {
+        throw notSupported();
+    }
+
+    public void normalize() {
+        // Adjacent CDATA sections are not merged, so nothing to do
+    }
+
+    public boolean isSupported(String feature, String version) {
+        return doc.getImplementation().hasFeature(feature, version);
+    }
+
+    public String getNamespaceURI() {
+        return null;
+    }
+
+    public String getPrefix() {
+        return null;
+    }
+
+    public void setPrefix(String prefix) throws DOMException {
+        throw readOnly();
+    }
+
+    public String getLocalName() {
+        return null;
+    }
+
+    public boolean hasAttributes() {
+        return false;
+    }
+
+    public String getBaseURI() {
+        return null;
+    }
+
+    public short compareDocumentPosition(Node other) throws DOMException {
+        if (other == this)
+            return 0;
+        int position;
+        if (!(other instanceof LiteNode) || ((LiteNode) other).doc != doc) {
+            position = DOCUMENT_POSITION_DISCONNECTED
+                    | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC;
+            if (System.identityHashCode(this) < System.identityHashCode(other))
+                position |= DOCUMENT_POSITION_FOLLOWING;
+            else
+                position |= DOCUMENT_POSITION_PRECEDING;
+        } else if (isAncestorOf(other))
+            position = DOCUMENT_POSITION_CONTAINED_BY
+                    | DOCUMENT_POSITION_FOLLOWING;
+        else if (((LiteNode) other).isAncestorOf(this))
+            position = DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING;
+        else if (((LiteNode) other).getOrder() > getOrder())
+            position = DOCUMENT_POSITION_FOLLOWING;
+        else
+            position = DOCUMENT_POSITION_PRECEDING;
+        return (short) position;
+    }
+
+    /**
+     * Checks whether this node is an ancestor of given node, taking owner
+     * element as the parent of an attribute
+     *
+     * @param other
+     *            Node of same document
+     * @return true if ancestor
+     */
+    private boolean isAncestorOf(Node other) {
+        Node node = (other.getNodeType() == ATTRIBUTE_NODE ? ((LiteAttr) other)
+                .getOwnerElement() : other.getParentNode());
+        for (; node != null; node = node.getParentNode()) {
+            if (node == this)
+                return true;
+        }
+        return false;
+    }
+
+    public String getTextContent() throws DOMException {
+        return getNodeValue();
+    }
+
+    public void setTextContent(String textContent) throws DOMException {
+        throw readOnly();
+    }
+
+    public boolean isSameNode(Node other) {
+        return other == this;
+    }
+
+    /**
+     * Gets element in whose scope namespaces of this node are looked up
+     *
+     * @return Element or null if none
+     */
+    LiteElement getScopeElement() {
+        return null;
+    }
+
+    public String lookupPrefix(String namespaceURI) {
+        LiteElement scope = getScopeElement();
+        return (scope == null ? null : scope.lookupPrefix(namespaceURI));
+    }
+
+    public boolean isDefaultNamespace(String namespaceURI) {
+        LiteElement scope = getScopeElement();
+        return (scope == null ? false : scope.isDefaultNamespace(namespaceURI));
+    }
+
+    public String lookupNamespaceURI(String prefix) {
+        LiteElement scope = getScopeElement();
+        return (scope == null ? null : scope.lookupNamespaceURI(prefix));
+    }
+
+    public boolean isEqualNode(Node arg) {
+        if (arg == this)
+            return true;
+        if (arg == null || arg.getNodeType() != getNodeType()
+                || !equals(getNodeName(), arg.getNodeName())
+                || !equals(getLocalName(), arg.getLocalName())
+                || !equals(getNamespaceURI(), arg.getNamespaceURI())
+                || !equals(getPrefix(), arg.getPrefix())
+                || !equals(getNodeValue(), arg.getNodeValue()))
+            return false;
+        NamedNodeMap attrs = getAttributes();
+        NamedNodeMap arg_attrs = arg.getAttributes();
+        if (attrs != null) {
+            if (arg_attrs == null || attrs.getLength() != arg_attrs.getLength())
+                return false;
+            for (int i = 0; i < attrs.getLength(); i++) {
+                Node attr = attrs.item(i);
+                Node arg_attr = (attr.getLocalName() == null ? arg_attrs
+                        .getNamedItem(attr.getNodeName()) : arg_attrs
+                        .getNamedItemNS(attr.getNamespaceURI(), attr
+                                .getLocalName()));
+                if (arg_attr == null || !attr.isEqualNode(arg_attr))
+                    return false;
+            }
+        }
+        Node child = getFirstChild();
+        Node arg_child = arg.getFirstChild();
+        for (; child != null && arg_child != null; child = child
+                .getNextSibling(), arg_child = arg_child.getNextSibling()) {
+            if (!child.isEqualNode(arg_child))
+                return false;
+        }
+        return (child == null && arg_child == null);
+    }
+
+    /**
+     * Compares Strings either of which may be null
+     *
+     * @param s1
+     *            First String
+     * @param s2
+     *            Second String
+     * @return true if both null or equal
+     */
+    static boolean equals(String s1, String s2) {
+        return (s1 == null ? s2 == null : s1.equals(s2));
+    }
+
+    public Object getFeature(String feature, String version) {
+        return (isSupported(feature, version) ? this : null);
+    }
+
+    public Object setUserData(String key, Object data, UserDataHandler handler) {
+        return doc.putUserData(this, key, data);
+    }
+
+    public Object getUserData(String key) {
+        return doc.findUserData(this, key);
+    }
+
+    public String toString() {
+        return "[" + getNodeName() + ": " + getNodeValue() + "]";
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * List of nodes of LiteDocument, formed when asked for. As the document is
+ * read only, the list does not change after it is formed.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+final class LiteNodeList implements NodeList {
+
+    Node[] nodes;
+    int node_count;
+
+    /**
+     * Initializes nodes
+     *
+     * @param nodes
+     *            Array of nodes
+     * @param node_count
+     *            Number of nodes in array
+     */
+    LiteNodeList(Node[] nodes, int node_count) {
+        this.nodes = nodes;
+        this.node_count = node_count;
+    }
+
+    public Node item(int index) {
+        return (index < 0 || index >= node_count ? null : nodes[index]);
+    }
+
+    public int getLength() {
+        return node_count;
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import cc.siara.csv_ml.schema.Column;
+
+/**
+ * Column of integers, or of dates and datetimes as milliseconds since
+ * 1970-01-01 00:00:00 UTC, held in an array of long. Values that are empty
+ * or not valid for the type are null, the latter being counted as invalid.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public final class LongColumnVector extends ColumnVector {
+
+    long[] values = new long[64];
+    int invalid_count = 0;
+
+    /**
+     * Initializes name and type
+     *
+     * @param name
+     *            Name of column
+     * @param type_code
+     *            TYPE_INTEGER, TYPE_DATE or TYPE_DATETIME
+     */
+    LongColumnVector(String name, short type_code) {
+        super(name, type_code);
+    }
+
+    /**
+     * Gets value of given row
+     *
+     * @param row
+     *            Index of row in table
+     * @return Value, or 0 if null
+     */
+    public long getLong(int row) {
+        return (row < size ? values[row] : 0);
+    }
+
+    /**
+     * Gets value of given row as text, dates being formatted as yyyy-mm-dd
+     * and datetimes as yyyy-mm-dd hh:mi:ss
+     *
+     * @param row
+     *            Index of row in table
+     * @return Value or null
+     */
+    public String getString(int row) {
+        if (isNull(row))
+            return null;
+        if (type_code == Column.TYPE_INTEGER)
+            return String.valueOf(values[row]);
+        ValueConverter converter = new ValueConverter();
+        converter.setDate(values[row], type_code);
+        StringBuffer out_str = new StringBuffer(19);
+        converter.appendDate(out_str);
+        return out_str.toString();
+    }
+
+    /**
+     * Getter for number of values that were not valid for the type
+     *
+     * @return Number of invalid values, which are included in null count
+     */
+    public int getInvalidCount() {
+        return invalid_count;
+    }
+
+    /**
+     * Adds up values that are not null
+     *
+     * @return Sum
+     */
+    public long sum() {
+        // Null values are held as 0, so need not be skipped
+        long sum = 0;
+        for (int i = 0; i < size; i++)
+            sum += values[i];
+        return sum;
+    }
+
+    /**
+     * Finds least of values that are not null
+     *
+     * @return Least value, or Long.MAX_VALUE if all are null
+     */
+    public long min() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            long value = values[i];
+            if (value < min && (null_count == 0 || !isNull(i)))
+                min = value;
+        }
+        return min;
+    }
+
+    /**
+     * Finds greatest of values that are not null
+     *
+     * @return Greatest value, or Long.MIN_VALUE if all are null
+     */
+    public long max() {
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            long value = values[i];
+            if (value > max && (null_count == 0 || !isNull(i)))
+                max = value;
+        }
+        return max;
+    }
+
+    void add(CharSequence value, ValueConverter converter) {
+        if (!converter.convert(value, type_code)) {
+            if (value.length() > 0)
+                invalid_count++;
+            addNull();
+            return;
+        }
+        ensureCapacity(size + 1);
+        values[size++] = converter.getLong();
+    }
+
+    void ensureCapacity(int rows) {
+        super.ensureCapacity(rows);
+        if (rows > values.length) {
+            long[] new_values = new long[Math.max(rows, values.length * 2)];
+            System.arraycopy(values, 0, new_values, 0, size);
+            values = new_values;
+        }
+    }
+
+    void trim() {
+        super.trim();
+        if (values.length != size) {
+            long[] new_values = new long[size];
+            System.arraycopy(values, 0, new_values, 0, size);
+            values = new_values;
+        }
+    }
+
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader over a file mapped into memory in segments.
+ *
+ * The encoding is taken from the csv_ml directive, which is looked up in the
+ * mapped bytes before decoding begins (UTF-8 if not mentioned). UTF-8 and
+ * ASCII are decoded directly from the mapped bytes into the caller's char[]
+ * without intermediate buffers. Other encodings go through a CharsetDecoder.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public class MappedFileReader extends Reader {
+
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 24;
+
+    // Associated file
+    FileInputStream fis = null;
+    FileChannel channel = null;
+    long end_pos = 0; // end of portion of file to be read
+
+    // Segment currently mapped. seg_idx is position of next byte within
+    // segment
+    MappedByteBuffer seg = null;
+    long seg_pos = 0;
+    int seg_len = 0;
+    int seg_idx = 0;
+    int segment_size = DEFAULT_SEGMENT_SIZE;
+
+    String encoding = "UTF-8";
+    boolean is_utf8 = true;
+    CharsetDecoder decoder = null;
+    boolean is_decoder_flushed = false;
+
+    // Second half of surrogate pair that did not fit in last read
+    int pending_char = -1;
+
+    /**
+     * Opens and maps the given file, determining encoding from the directive
+     * if present
+     *
+     * @param file
+     *            File to read
+     * @param delim
+     *            Delimiter used in the directive
+     * @throws IOException
+     */
+    public MappedFileReader(File file, char delim) throws IOException {
+        this(file, delim, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens and maps the given file in segments of given size, determining
+     * encoding from the directive if present
+     *
+     * @param file
+     *            File to read
+     * @param delim
+     *            Delimiter used in the directive
+     * @param segment_size
+     *            Number of bytes to map at a time (at least 1024)
+     * @throws IOException
+     */
+    public MappedFileReader(File file, char delim, int segment_size)
+            throws IOException {
+        // Segment should be large enough to hold the directive
+        this.segment_size = Math.max(segment_size,
+                MultiLevelCSVParser.DIRECTIVE_SNIFF_LEN);
+        fis = new FileInputStream(file);
+        try {
+            channel = fis.getChannel();
+            end_pos = channel.size();
+            map(0);
+            String sniffed = Util.sniffEncoding(seg, delim);
+            // Unsupported encoding is reported while parsing the directive
+            if (sniffed != null && Util.isEncodingSupported(sniffed))
+                setEncoding(sniffed);
+        } catch (IOException e) {
+            fis.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens and maps the given portion of a file, decoding with given
+     * encoding. No directive is looked for.
+     *
+     * @param file
+     *            File to read
+     * @param encoding
+     *            Encoding to decode with
+     * @param from
+     *            Byte position to start reading from
+     * @param to
+     *            Byte position to stop reading at (exclusive)
+     * @param segment_size
+     *            Number of bytes to map at a time (at least 1024)
+     * @throws IOException
+     */
+    public MappedFileReader(File file, String encoding, long from, long to,
+            int segment_size) throws IOException {
+        this.segment_size = Math.max(segment_size,
+                MultiLevelCSVParser.DIRECTIVE_SNIFF_LEN);
+        setEncoding(encoding);
+        fis = new FileInputStream(file);
+        try {
+            channel = fis.getChannel();
+            end_pos = Math.min(to, channel.size());
+            map(Math.min(from, end_pos));
+        } catch (IOException e) {
+            fis.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Chooses decoding for given encoding
+     *
+     * @param enc
+     *            Encoding name
+     * @throws UnsupportedEncodingException
+     */
+    private void setEncoding(String enc) throws UnsupportedEncodingException {
+        Charset charset;
+        try {
+            charset = Charset.forName(enc);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedEncodingException(enc);
+        }
+        encoding = charset.name();
+        is_utf8 = encoding.equals("UTF-8") || encoding.equals("US-ASCII");
+        if (!is_utf8) {
+            decoder = charset.newDecoder();
+            decoder.onMalformedInput(CodingErrorAction.REPLACE);
+            decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+    }
+
+    /**
+     * Getter for encoding used to decode the file
+     *
+     * @return Canonical name of the encoding
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Maps the segment starting at given position of the file
+     *
+     * @param pos
+     *            Position in the file
+     * @throws IOException
+     */
+    private void map(long pos) throws IOException {
+        long len = end_pos - pos;
+        if (len > segment_size)
+            len = segment_size;
+        seg = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+        seg_pos = pos;
+        seg_len = (int) len;
+        seg_idx = 0;
+    }
+
+    /**
+     * Makes sure at least given number of bytes are available in the mapped
+     * segment, moving the segment forward if necessary.
+     *
+     * @param needed
+     *            Number of bytes needed
+     * @return Number of bytes available, which is less than needed only near
+     *         end of file
+     * @throws IOException
+     */
+    private int ensure(int needed) throws IOException {
+        int avail = seg_len - seg_idx;
+        if (avail < needed && seg_pos + seg_len < end_pos) {
+            map(seg_pos + seg_idx);
+            avail = seg_len;
+        }
+        return avail;
+    }
+
+    /**
+     * Reads characters into a portion of an array
+     *
+     * @param cbuf
+     *            Destination buffer
+     * @param off
+     *            Offset at which to start storing characters
+     * @param len
+     *            Maximum number of characters to read
+     * @return The number of characters read, or -1 if end of file
+     * @throws IOException
+     */
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (channel == null)
+            throw new IOException("Stream closed");
+        if (len == 0)
+            return 0;
+        int n = (is_utf8 ? decodeUTF8(cbuf, off, len) : decode(cbuf, off,
+                len));
+        return (n == 0 ? -1 : n);
+    }
+
+    /**
+     * Decodes UTF-8 (and so ASCII) directly from mapped bytes
+     *
+     * @param cbuf
+     *            Destination buffer
+     * @param off
+     *            Offset at which to start storing characters
+     * @param len
+     *            Maximum number of characters to read
+     * @return The number of characters decoded
+     * @throws IOException
+     */
+    private int decodeUTF8(char[] cbuf, int off, int len) throws IOException {
+        int n = off;
+        int end = off + len;
+        if (pending_char != -1) {
+            cbuf[n++] = (char) pending_char;
+            pending_char = -1;
+        }
+        while (n < end) {
+            int avail = ensure(4);
+            if (avail == 0)
+                break;
+            // ASCII run
+            int run_end = seg_idx + Math.min(avail, end - n);
+            while (seg_idx < run_end) {
+                byte b = seg.get(seg_idx);
+                if (b < 0)
+                    break;
+                cbuf[n++] = (char) b;
+                seg_idx++;
+            }
+            if (seg_idx == run_end)
+                continue;
+            // Multi-byte sequence
+            avail = ensure(4);
+            int b0 = seg.get(seg_idx) & 0xFF;
+            int seq_len;
+            int cp;
+            if (b0 >= 0xC2 && b0 <= 0xDF) {
+                seq_len = 2;
+                cp = b0 & 0x1F;
+            } else if (b0 >= 0xE0 && b0 <= 0xEF) {
+                seq_len = 3;
+                cp = b0 & 0x0F;
+            } else if (b0 >= 0xF0 && b0 <= 0xF4) {
+                seq_len = 4;
+                cp = b0 & 0x07;
+            } else {
+                seq_len = 0;
+                cp = 0;
+            }
+            int i = 1;
+            for (; i < seq_len && i < avail; i++) {
+                int b = seg.get(seg_idx + i) & 0xFF;
+                if ((b & 0xC0) != 0x80)
+                    break;
+                cp = (cp << 6) | (b & 0x3F);
+            }
+            if (seq_len == 0 || i < seq_len || (seq_len == 3 && cp < 0x800)
+                    || (seq_len == 3 && cp >= 0xD800 && cp <= 0xDFFF)
+                    || (seq_len == 4 && (cp < 0x10000 || cp > 0x10FFFF))) {
+                // Malformed. Replace and skip the bytes looked at
+                cbuf[n++] = '\uFFFD';
+                seg_idx += i;
+                continue;
+            }
+            seg_idx += seq_len;
+            if (cp < 0x10000) {
+                cbuf[n++] = (char) cp;
+            } else {
+                cp -= 0x10000;
+                cbuf[n++] = (char) (0xD800 + (cp >> 10));
+                char low = (char) (0xDC00 + (cp & 0x3FF));
+                if (n < end)
+                    cbuf[n++] = low;
+                else
+                    pending_char = low;
+            }
+        }
+        return n - off;
+    }
+
+    /**
+     * Decodes using CharsetDecoder for encodings other than UTF-8
+     *
+     * @param cbuf
+     *            Destination buffer
+     * @param off
+     *            Offset at which to start storing characters
+     * @param len
+     *            Maximum number of characters to read
+     * @return The number of characters decoded
+     * @throws IOException
+     */
+    private int decode(char[] cbuf, int off, int len) throws IOException {
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (out.hasRemaining() && !is_decoder_flushed) {
+            ensure(16);
+            boolean is_last = (seg_pos + seg_len >= end_pos);
+            seg.limit(seg_len);
+            seg.position(seg_idx);
+            CoderResult result = decoder.decode(seg, out, is_last);
+            seg_idx = seg.position();
+            if (result.isOverflow())
+                break;
+            if (is_last) {
+                // All input consumed
+                decoder.flush(out);
+                is_decoder_flushed = true;
+            } else {
+                // Partial sequence at the end of segment. Continue from
+                // there.
+                map(seg_pos + seg_idx);
+            }
+        }
+        return out.position() - off;
+    }
+
+    /**
+     * Closes the file
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (channel == null)
+            return;
+        seg = null;
+        channel = null;
+        fis.close();
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.io.IOException;
+
+import cc.siara.csv_ml.schema.MultiLevelCSVSchema;
+import cc.siara.csv_ml.schema.Node;
+
+/**
+ * Receives parsing events from MultiLevelCSVParser.parse() with a handler,
+ * in the order they appear in the input, without any DOM or JSON object
+ * being built.
+ *
+ * For each row, startNode() is called followed by attribute() for each
+ * column and content() for any values beyond the columns of the schema.
+ * endNode() is called when the rows below the node (that is, having more
+ * indentation) are over.
+ *
+ * Values passed are views into the parser's buffer, valid only during the
+ * call. Call toString() to keep them.
+ *
+ * If parsing stops due to an error, endNode() is called for the nodes still
+ * open and then endDocument(). The error is available from
+ * MultiLevelCSVParser.getEx().
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public interface MultiLevelCSVHandler {
+
+    /**
+     * Called after directive and schema are parsed and before the first node
+     *
+     * @param directive
+     *            Directive of the input
+     * @param schema
+     *            Schema of the input. When there is no schema, nodes are
+     *            added to it as they are found.
+     * @throws IOException
+     */
+    public void startDocument(Directive directive, MultiLevelCSVSchema schema)
+            throws IOException;
+
+    /**
+     * Called at the beginning of each row
+     *
+     * @param name
+     *            Name of the node, which may have a namespace prefix
+     * @param node_schema
+     *            Schema of the node
+     * @param level
+     *            Level of the node, 0 being top level
+     * @throws IOException
+     */
+    public void startNode(String name, Node node_schema, int level)
+            throws IOException;
+
+    /**
+     * Called for each column of the row
+     *
+     * @param col_idx
+     *            Index of the column starting with 0
+     * @param col_name
+     *            Attribute name of the column
+     * @param value
+     *            Value, valid only during the call
+     * @throws IOException
+     */
+    public void attribute(int col_idx, String col_name, CharSequence value)
+            throws IOException;
+
+    /**
+     * Called for each value beyond the columns defined for the node
+     *
+     * @param content
+     *            Value, encoded as csv text
+     * @throws IOException
+     */
+    public void content(String content) throws IOException;
+
+    /**
+     * Called when a node and all nodes below it are over
+     *
+     * @param name
+     *            Name of the node
+     * @param level
+     *            Level of the node, 0 being top level
+     * @throws IOException
+     */
+    public void endNode(String name, int level) throws IOException;
+
+    /**
+     * Called at the end of input or when parsing stops due to an error
+     *
+     * @throws IOException
+     */
+    public void endDocument() throws IOException;
+
+}
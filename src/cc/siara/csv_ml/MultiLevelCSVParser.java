@@ -18,18 +18,27 @@
  */
 package cc.siara.csv_ml;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
-import cc.siara.csv.CSVParser;
 import cc.siara.csv.Counter;
 import cc.siara.csv.ExceptionHandler;
 import cc.siara.csv_ml.schema.Column;
@@ -45,22 +54,29 @@ import cc.siara.csv_ml.schema.Node;
  */
 public class MultiLevelCSVParser {
 
-    // Parts of csv_ml directive
-    String csv_ml_ver = "1.0";
-    String csv_ml_encoding = "UTF-8"; // as per java standard
-    String csv_ml_root = "root"; // root node name
-    String csv_ml_node_name = "no_node_name"; // other possible value -
-                                              // with_node_name
-    String csv_ml_schema = "inline"; // other possible values - inline,
-                                     // external. If external, next field
-                                     // should contain valid path to file
-    String csv_ml_schema_file = ""; // path to schema file
+    // Parsed csv_ml directive
+    Directive directive = Directive.DEFAULT;
 
     // Associated classes
     MultiLevelCSVSchema schema = null;
     Counter counter = new Counter();
-    ExceptionHandler ex = new ExceptionHandler(counter);
-    CSVParser csv_parser = new CSVParser(counter, ex);
+    ExceptionHandler ex = new ExceptionHandler(counter) {
+        // Errors reported by builders are positioned at the character last
+        // read, as line and column numbers are computed only on error
+        public void set_err(short err_code) {
+            tokenizer.updateCounter();
+            super.set_err(err_code);
+        }
+    };
+    CSVTokenizer tokenizer = new CSVTokenizer(counter, ex);
+    boolean is_typed = false;
+    boolean is_lite_dom = false;
+    boolean is_off_heap = false;
+    InternDictionary intern_dict = null;
+    int min_chunk_size = MIN_CHUNK_SIZE;
+    int max_chunks_ahead = 0; // 0 for twice the number of processors
+    // Set only while starting a builder other than ParsedObject
+    TreeBuilder given_builder = null;
 
     // Additional exceptions
     public static final short E_SCH_START_WITH_SPACE = 3;
@@ -69,19 +85,31 @@ public class MultiLevelCSVParser {
     public static final short E_TOO_MANY_CHARS = 6;
     public static final short E_NODE_NOT_FOUND = 7;
     public static final short E_ONLY_ONE_ROOT = 8;
+    public static final short W_ENCODING_UNSUPPORTED = 9;
+
+    // Number of bytes looked at to find encoding from directive
+    static final int DIRECTIVE_SNIFF_LEN = 1024;
+
+    // Default minimum size of chunks for parallel parsing. Files smaller
+    // than twice this are not split.
+    static final int MIN_CHUNK_SIZE = 1 << 20;
+    // Number of chunks per processor, so that the load gets evenly spread
+    static final int CHUNKS_PER_PROCESSOR = 4;
 
     // Transient variables used during parsing
     // These are not members
     private int cur_sibling = 1;
-    private ParsedObject obj_out = null;
+    private ParsedObject obj_out = null; // DOM or JSON being built
+    private TreeBuilder builder = null; // called for each node
     private Reader r = null;
+    private boolean is_reader_owned = false; // whether r is to be closed
     private int cur_level = 0;
     private int node_ctr = 1;
     private int token_ctr = 0;
-    private StringBuffer cur_path = null;
-    private StringBuffer cur_sequence_path = null;
-    private boolean is0def = false;
-    private Node cur_node_schema;
+    private Node[] level_nodes = new Node[16]; // schema node at each level
+    private int[] level_siblings = new int[16]; // sibling number at each level
+    private Column[] cur_columns = null;
+    private String[] generated_col_names = new String[0];
 
     /**
      * Constructor (no parameters needed to create instance)
@@ -93,61 +121,78 @@ public class MultiLevelCSVParser {
                 "Schema definition cannot begin with a space",
                 "Duplicate node definition", "Cannot go down two levels",
                 "Too many characters in a column", "Node not found",
-                "There can be only one root node" });
+                "There can be only one root node",
+                "Encoding not supported" });
     }
 
     /**
-     * Looks for the directive starting with csv_ml with the given Reader.
+     * Looks for the directive starting with csv_ml using the tokenizer.
      * 
-     * If the directive is not found, it puts back the first token and returns.
+     * If the directive is not found, it puts back the first token and returns
+     * the default directive.
      * 
-     * If directive is found, extracts and sets the directive attributes.
+     * If directive is found, extracts the directive attributes and returns
+     * them as a Directive object.
      * 
-     * @param r
-     *            Input reader
+     * @return Directive found or the default
      * @throws IOException
      */
-    private void parseDirective(Reader r) throws IOException {
+    private Directive parseDirective() throws IOException {
+        String ver = "1.0";
+        String encoding = "UTF-8"; // as per java standard
+        String root = "root"; // root node name
+        String node_name = "no_node_name"; // other possible value -
+                                           // with_node_name
+        String schema_type = "inline"; // other possible values - no_schema,
+                                       // external. If external, next field
+                                       // should contain valid path to file
+        String schema_file = ""; // path to schema file
         int token_ctr = 0;
         boolean to_continue = true;
         do {
-            String value = csv_parser.parseNextToken(r);
-            boolean is_eol = csv_parser.isEOL();
+            String value = tokenizer.parseNextToken();
+            boolean is_eol = tokenizer.isEOL();
             if (token_ctr == 0 && value.equals("") && is_eol) {
+                // Input having only empty lines has no directive
+                if (tokenizer.isEOS())
+                    return Directive.DEFAULT;
                 continue;
             }
             switch (token_ctr) {
             case 0:
                 if (value.trim().toLowerCase().equals("csv_ml")) {
-                    csv_ml_node_name = "with_node_name";
-                    csv_ml_schema = "inline";
+                    node_name = "with_node_name";
+                    schema_type = "inline";
                 } else {
-                    to_continue = false;
-                    csv_parser.reinsertLastToken();
+                    tokenizer.reinsertLastToken();
+                    return Directive.DEFAULT;
                 }
                 break;
             case 1:
-                csv_ml_ver = value;
+                ver = value;
                 break;
             case 2:
-                if (!value.equals(""))
-                    csv_ml_encoding = value;
+                value = value.trim();
+                if (Util.isEncodingSupported(value))
+                    encoding = value;
+                else if (!value.equals(""))
+                    tokenizer.add_warn(W_ENCODING_UNSUPPORTED);
                 break;
             case 3:
                 if (!value.equals(""))
-                    csv_ml_root = value;
+                    root = value;
                 break;
             case 4:
                 if (value.equals("no_node_name"))
-                    csv_ml_node_name = value;
+                    node_name = value;
                 break;
             case 5:
                 if (!value.equals(""))
-                    csv_ml_schema = value;
+                    schema_type = value;
                 break;
             case 6:
                 if (!value.equals(""))
-                    csv_ml_schema_file = value;
+                    schema_file = value;
                 break;
             }
             if (is_eol)
@@ -155,6 +200,8 @@ public class MultiLevelCSVParser {
             if (to_continue)
                 token_ctr++;
         } while (to_continue);
+        return new Directive(ver, encoding, root, node_name, schema_type,
+                schema_file);
     }
 
     /**
@@ -169,7 +216,7 @@ public class MultiLevelCSVParser {
      */
     public Document parseToDOM(InputStream is, boolean toValidate)
             throws IOException {
-        ParsedObject parsedObject = parse(ParsedObject.TARGET_W3C_DOC,
+        ParsedObject parsedObject = parse(getDOMTarget(),
                 new InputSource(is), toValidate);
         return (parsedObject == null ? null : parsedObject.getDocument());
     }
@@ -202,7 +249,7 @@ public class MultiLevelCSVParser {
      * @throws IOException
      */
     public Document parseToDOM(Reader r, boolean toValidate) throws IOException {
-        ParsedObject parsedObject = parse(ParsedObject.TARGET_W3C_DOC,
+        ParsedObject parsedObject = parse(getDOMTarget(),
                 new InputSource(r), toValidate);
         return (parsedObject == null ? null : parsedObject.getDocument());
     }
@@ -225,339 +272,1928 @@ public class MultiLevelCSVParser {
     }
 
     /**
-     * Main parsing logic
+     * Parses the given File into a W3C DOM Object. The file is memory mapped
+     * and decoded as per encoding given in the directive.
      * 
-     * @param targetObject
-     * @param is
+     * @param f
+     *            The File to parse
      * @param toValidate
-     * @return
+     *            Whether to validate against the schema or not
+     * @return Document object
      * @throws IOException
      */
-    private ParsedObject parse(short targetObject, InputSource is,
-            boolean toValidate) throws IOException {
-
-        initParse(targetObject, is, toValidate);
-        for (ParsedObject parsedObject = parseNext(); parsedObject != null; parsedObject = parseNext()) {
-            // Do nothing. initParse() and parseNext() are public.
-            // This code snippet could be used by caller and have some logic
-            // here to have control during parsing and managing memory.
-            //
-            // parseNext() returns for each Node successfully constructed.
-            // parsedObject.getCurrentElement() or parsedObject.getCurrentJSO()
-            // can be called to have access to the successfully constructed
-            // node, such as:
-            //
-            // if (parser.getEx().getErrorCode() == 0) {
-            // Element parsedElement = parsedObject.getCurrentElement();
-            // // Do something with parsedElement here
-            // // if necessary free memory by deleting attributes
-            // // // or even remove parseElement itself from the document object
-            // after use
-            // }
-        }
-        return obj_out;
+    public Document parseToDOM(File f, boolean toValidate) throws IOException {
+        ParsedObject parsedObject = parse(getDOMTarget(),
+                new InputSource(f), toValidate);
+        return (parsedObject == null ? null : parsedObject.getDocument());
+    }
 
+    /**
+     * Parses the given File into a Javascript Notation Object. The file is
+     * memory mapped and decoded as per encoding given in the directive.
+     * 
+     * @param f
+     *            The File to parse
+     * @param toValidate
+     *            Whether to validate against the schema or not
+     * @return JSONObject of root
+     * @throws IOException
+     */
+    public JSONObject parseToJSO(File f, boolean toValidate)
+            throws IOException {
+        ParsedObject parsedObject = parse(ParsedObject.TARGET_JSON_OBJ,
+                new InputSource(f), toValidate);
+        return (parsedObject == null ? null : parsedObject.getJSONObject());
     }
 
     /**
-     * Initializes transient variables used during parsing, parses directive and
-     * schema.
+     * Parses the given InputStream into a CompactTree
      * 
-     * @param targetObject
-     *            Whether DOM or JSO
      * @param is
-     *            InputSource to read from
+     *            The InputStream to parse
      * @param toValidate
-     *            Whether to Validate or not
+     *            Whether to validate against the schema or not
+     * @return CompactTree
      * @throws IOException
      */
-    public void initParse(short targetObject, InputSource is, boolean toValidate)
+    public CompactTree parseToCompact(InputStream is, boolean toValidate)
             throws IOException {
+        ParsedObject parsedObject = parse(ParsedObject.TARGET_COMPACT,
+                new InputSource(is), toValidate);
+        return (parsedObject == null ? null : parsedObject.getCompactTree());
+    }
 
-        // Initialize
-        ex.reset_exceptions();
-        csv_parser.reset();
-        obj_out = null;
-        r = null;
-        csv_ml_ver = "1.0";
-        csv_ml_encoding = "UTF-8";
-        csv_ml_root = "root";
-        csv_ml_node_name = "no_node_name";
-        csv_ml_schema = "inline";
-        csv_ml_schema_file = "";
-        schema = new MultiLevelCSVSchema();
+    /**
+     * Parses the given Reader into a CompactTree
+     * 
+     * @param r
+     *            The Reader to parse
+     * @param toValidate
+     *            Whether to validate against the schema or not
+     * @return CompactTree
+     * @throws IOException
+     */
+    public CompactTree parseToCompact(Reader r, boolean toValidate)
+            throws IOException {
+        ParsedObject parsedObject = parse(ParsedObject.TARGET_COMPACT,
+                new InputSource(r), toValidate);
+        return (parsedObject == null ? null : parsedObject.getCompactTree());
+    }
 
-        // Parse directive
-        String orig_encoding = csv_ml_encoding;
-        if (is.getType() == InputSource.IS_BYTE_STREAM)
-            r = new InputStreamReader(is.getInputStream(), csv_ml_encoding);
-        else
-            r = is.getReader();
-        parseDirective(r);
-        if (ex.getErrorCode() != 0)
-            return;
-        // If the encoding changed for a
-        // byte input stream, reinitialize with
-        // different encoding
-        // This is commented because it is not working
-        // apparently because InputStreamReader reads more bytes
-        // than it requires from the InputStream and assigning
-        // the stream to a new InputStreamReader does not read it correctly
-        // if (!orig_encoding.equals(csv_ml_encoding)) {
-        // if (is.getType() == InputSource.IS_BYTE_STREAM) {
-        // r = new InputStreamReader(is.getInputStream(), csv_ml_encoding);
-        // }
-        // }
-        // TODO: To read the directive as InputStream and to create
-        // new InputStreamReader depending on given encoding
+    /**
+     * Parses the given File into a CompactTree. The file is memory mapped
+     * and decoded as per encoding given in the directive.
+     * 
+     * @param f
+     *            The File to parse
+     * @param toValidate
+     *            Whether to validate against the schema or not
+     * @return CompactTree
+     * @throws IOException
+     */
+    public CompactTree parseToCompact(File f, boolean toValidate)
+            throws IOException {
+        ParsedObject parsedObject = parse(ParsedObject.TARGET_COMPACT,
+                new InputSource(f), toValidate);
+        return (parsedObject == null ? null : parsedObject.getCompactTree());
+    }
 
-        // Parse Schema if present
-        if (csv_ml_schema.equals("inline"))
-            schema.parseSchema(csv_parser, csv_ml_node_name, csv_ml_schema, ex,
-                    r);
-        if (ex.getErrorCode() != 0)
-            return;
+    /**
+     * Parses the given File into a W3C DOM Object, parsing chunks of the file
+     * in parallel using the given executor.
+     * 
+     * @param f
+     *            The File to parse
+     * @param toValidate
+     *            Whether to validate against the schema or not
+     * @param executor
+     *            Executor to run chunk parsing on, such as a ForkJoinPool or
+     *            a fixed thread pool
+     * @return Document object
+     * @throws IOException
+     * @see #parseInChunks(File, short, boolean, ExecutorService,
+     *      ChunkConsumer)
+     */
+    public Document parseToDOM(File f, boolean toValidate,
+            ExecutorService executor) throws IOException {
+        ParsedObject parsedObject = parseParallel(
+                ParsedObject.TARGET_W3C_DOC, f, toValidate, executor);
+        return (parsedObject == null ? null : parsedObject.getDocument());
+    }
 
-        // Initialize variables
-        cur_level = 0;
-        node_ctr = 1;
-        token_ctr = 0;
-        cur_path = new StringBuffer();
-        cur_sequence_path = new StringBuffer();
-        cur_sibling = 1;
-        is0def = false;
-        cur_node_schema = null;
+    /**
+     * Parses the given File into a Javascript Notation Object, parsing chunks
+     * of the file in parallel using the given executor.
+     * 
+     * @param f
+     *            The File to parse
+     * @param toValidate
+     *            Whether to validate against the schema or not
+     * @param executor
+     *            Executor to run chunk parsing on, such as a ForkJoinPool or
+     *            a fixed thread pool
+     * @return JSONObject of root
+     * @throws IOException
+     * @see #parseInChunks(File, short, boolean, ExecutorService,
+     *      ChunkConsumer)
+     */
+    public JSONObject parseToJSO(File f, boolean toValidate,
+            ExecutorService executor) throws IOException {
+        ParsedObject parsedObject = parseParallel(
+                ParsedObject.TARGET_JSON_OBJ, f, toValidate, executor);
+        return (parsedObject == null ? null : parsedObject.getJSONObject());
+    }
 
-        obj_out = new ParsedObject(csv_ml_root, csv_ml_encoding, ex,
-                targetObject);
-        int slashIdx = csv_ml_root.indexOf('/'); // Remove namespaces after
-                                                 // slash if present
-        if (slashIdx != -1)
-            csv_ml_root = csv_ml_root.substring(0, slashIdx);
+    /**
+     * Parses the given File into a CompactTree, parsing chunks of the file in
+     * parallel using the given executor.
+     * 
+     * @param f
+     *            The File to parse
+     * @param toValidate
+     *            Whether to validate against the schema or not
+     * @param executor
+     *            Executor to run chunk parsing on, such as a ForkJoinPool or
+     *            a fixed thread pool
+     * @return CompactTree
+     * @throws IOException
+     * @see #parseInChunks(File, short, boolean, ExecutorService,
+     *      ChunkConsumer)
+     */
+    public CompactTree parseToCompact(File f, boolean toValidate,
+            ExecutorService executor) throws IOException {
+        ParsedObject parsedObject = parseParallel(ParsedObject.TARGET_COMPACT,
+                f, toValidate, executor);
+        return (parsedObject == null ? null : parsedObject.getCompactTree());
+    }
 
+    /**
+     * Returns iterator over top level nodes of the given InputStream as W3C
+     * Elements, parsed as they are taken
+     * 
+     * @param is
+     *            The InputStream to parse
+     * @return Iterator
+     * @throws IOException
+     */
+    public TopLevelIterator<Element> iterateDOM(InputStream is)
+            throws IOException {
+        return iterate(ParsedObject.TARGET_W3C_DOC, new InputSource(is));
     }
 
     /**
-     * Main parsing logic. Returns each time an element formation is complete.
+     * Returns iterator over top level nodes of the given InputStream as
+     * JSONObjects, parsed as they are taken
      * 
-     * @return Parsed object for each element that gets built at
-     *         parsedObject.getCurrentElement()
+     * @param is
+     *            The InputStream to parse
+     * @return Iterator
      * @throws IOException
      */
-    public ParsedObject parseNext() throws IOException {
+    public TopLevelIterator<JSONObject> iterateJSO(InputStream is)
+            throws IOException {
+        return iterate(ParsedObject.TARGET_JSON_OBJ, new InputSource(is));
+    }
 
-        // Main loop that processes each token from the stream
-        // till there are no more tokens
-        do {
+    /**
+     * Returns iterator over top level nodes of the given Reader as W3C
+     * Elements, parsed as they are taken
+     * 
+     * @param r
+     *            The Reader to parse
+     * @return Iterator
+     * @throws IOException
+     */
+    public TopLevelIterator<Element> iterateDOM(Reader r) throws IOException {
+        return iterate(ParsedObject.TARGET_W3C_DOC, new InputSource(r));
+    }
 
-            String value = csv_parser.parseNextToken(r);
-            boolean is_eol = csv_parser.isEOL();
+    /**
+     * Returns iterator over top level nodes of the given Reader as
+     * JSONObjects, parsed as they are taken
+     * 
+     * @param r
+     *            The Reader to parse
+     * @return Iterator
+     * @throws IOException
+     */
+    public TopLevelIterator<JSONObject> iterateJSO(Reader r)
+            throws IOException {
+        return iterate(ParsedObject.TARGET_JSON_OBJ, new InputSource(r));
+    }
 
-            // First column - usually the node indicator
-            if (token_ctr == 0) {
+    /**
+     * Returns iterator over top level nodes of the given File as W3C
+     * Elements, parsed as they are taken. The iterator can be split for
+     * parallel parsing, as in parseInChunks().
+     * 
+     * @param f
+     *            The File to parse
+     * @return Iterator
+     * @throws IOException
+     */
+    public TopLevelIterator<Element> iterateDOM(File f) throws IOException {
+        return iterate(ParsedObject.TARGET_W3C_DOC, new InputSource(f));
+    }
 
-                // skip empty lines
-                if (value.trim().equals("") && is_eol) {
-                    continue;
-                }
+    /**
+     * Returns iterator over top level nodes of the given File as
+     * JSONObjects, parsed as they are taken. The iterator can be split for
+     * parallel parsing, as in parseInChunks().
+     * 
+     * @param f
+     *            The File to parse
+     * @return Iterator
+     * @throws IOException
+     */
+    public TopLevelIterator<JSONObject> iterateJSO(File f) throws IOException {
+        return iterate(ParsedObject.TARGET_JSON_OBJ, new InputSource(f));
+    }
 
-                // trim if having leading spaces
-                if (value.charAt(0) == ' ') {
-                    value = value.trim();
-                }
+    /**
+     * Parses directive and schema and creates iterator over the rest. Files
+     * that can be split are divided into chunks to be parsed separately.
+     * 
+     * @param targetObject
+     *            Whether DOM or JSO
+     * @param is
+     *            InputSource to parse
+     * @return Iterator
+     * @throws IOException
+     */
+    private <T> TopLevelIterator<T> iterate(short targetObject, InputSource is)
+            throws IOException {
+        initParse(targetObject, is, false);
+        if (obj_out != null && is.getType() == InputSource.IS_FILE) {
+            String encoding = ((MappedFileReader) r).getEncoding();
+            ChunkSplitter splitter = splitData(is.getFile(), encoding);
+            if (splitter != null) {
+                obj_out = null;
+                builder = null;
+                return new TopLevelIterator<T>(this, targetObject,
+                        is.getFile(), encoding, splitter);
+            }
+        }
+        if (obj_out != null)
+            obj_out.collectCompletedNodes();
+        return new TopLevelIterator<T>(this, obj_out);
+    }
 
-                if (csv_ml_schema.equals("no_schema")) {
+    /**
+     * Opens the given File as LazyDocument. Only the directive and schema are
+     * parsed and the data is scanned for the position of each top level
+     * node, which is parsed when asked for. So even very large files open
+     * quickly, using little memory.
+     * 
+     * Files that cannot be split (see parseInChunks()) are held as one
+     * record, which is the whole file parsed when first asked for.
+     * 
+     * @param f
+     *            The File to open
+     * @return LazyDocument or null if error in directive or schema
+     * @throws IOException
+     */
+    public LazyDocument openLazy(File f) throws IOException {
+        try {
+            initParse(ParsedObject.TARGET_COMPACT, new InputSource(f), false);
+            if (obj_out == null)
+                return null;
+            obj_out = null;
+            builder = null;
+            String encoding = ((MappedFileReader) r).getEncoding();
+            // Parsing of records is done by a parser of its own, so that
+            // this parser can be used for other input
+            MultiLevelCSVParser owner = newParser();
+            // Records are dropped from cache while they may still be in use,
+            // so their values are not held outside heap
+            owner.setOffHeap(false);
+            owner.directive = directive;
+            owner.schema = schema;
+            if (!isSplittable(encoding))
+                return new LazyDocument(owner, f, encoding, null);
+            long data_start = tokenizer.getPosition();
+            closeReader();
+            ChunkSplitter splitter = new ChunkSplitter(tokenizer.getDelimiter());
+            // Chunk size of 1 makes each top level node a chunk
+            splitter.split(f, encoding.equals("UTF-8")
+                    || encoding.equals("US-ASCII"), data_start, 1);
+            splitter.trim();
+            return new LazyDocument(owner, f, encoding, splitter);
+        } finally {
+            closeReader();
+        }
+    }
 
-                    // Generates node names if no schema specified
-                    Util.addToSeqPath(cur_sequence_path, cur_sibling);
-                    cur_node_schema = schema.getNodeBySeqPath(cur_sequence_path
-                            .toString());
-                    String cur_node_name = null;
-                    if (cur_node_schema == null) {
-                        if (csv_ml_node_name.equals("with_node_name"))
-                            cur_node_name = value;
-                        else
-                            cur_node_name = "n" + node_ctr;
-                        cur_node_schema = new Node();
-                        cur_node_schema.setName(cur_node_name);
-                        schema.addSeqPathNodeMap(cur_sequence_path.toString(),
-                                cur_node_schema);
-                        node_ctr++;
-                    } else {
-                        cur_node_name = (String) cur_node_schema.getName();
-                    }
-                    obj_out.addNewNode(cur_node_name);
-
-                } else { // Schema present - value has node indicator in this
-                         // section
-                    char c = value.charAt(0);
-                    // If not name will not be specified, then only one sibling
-                    // can be present and node indicator would be '1'
-                    if (csv_ml_node_name.equals("no_node_name")) {
-                        c = '1';
-                        value = "1";
-                    }
-                    if (c == '0') {
-                        // Value indicates a re-usable node in schema
-                        cur_sequence_path.replace(0,
-                                cur_sequence_path.length(), value);
-                        cur_node_schema = schema
-                                .getNodeBySeqPath(cur_sequence_path.toString());
-                        if (cur_node_schema == null) {
-                            ex.set_err(E_NODE_NOT_FOUND);
-                            break;
-                        }
-                        // TODO: Validate whether valid child or not
-                        cur_path.replace(0, cur_path.length(),
-                                cur_node_schema.getPath());
-                    } else if (c >= '1' && c <= '9') {
-                        // Value indicates sibling number
-                        // so find node by sequence path
-                        Util.addToSeqPath(cur_sequence_path,
-                                Integer.parseInt(value.trim()));
-                        cur_node_schema = schema
-                                .getNodeBySeqPath(cur_sequence_path.toString());
-                        if (cur_node_schema == null) {
-                            ex.set_err(E_NODE_NOT_FOUND);
-                            break;
-                        }
-                        cur_path.replace(0, cur_path.length(),
-                                cur_node_schema.getPath());
-                    } else {
-                        // Value indicates node name
-                        // so find node by node name path
-                        Util.addToPath(cur_path, value);
-                        cur_node_schema = schema.getNodeByNamePath(cur_path
-                                .toString());
-                        if (cur_node_schema == null) {
-                            ex.set_err(E_NODE_NOT_FOUND);
-                            break;
-                        }
-                        cur_sequence_path.replace(0,
-                                cur_sequence_path.length(),
-                                (String) cur_node_schema.getSeqPath());
-                    }
-                    String cur_node_name = (String) cur_node_schema.getName();
-                    obj_out.addNewNode(cur_node_name);
-                }
-                // If first column will not specify node,
-                // assume it is data and put it back
-                // (node name would be a generated one)
-                if (csv_ml_node_name.equals("no_node_name")) {
-                    token_ctr++;
-                    csv_parser.reinsertLastToken();
-                    continue;
-                }
-            } else if (token_ctr > 0) {
-                // Add attributes to node
-                List<Column> column_arr = cur_node_schema.getColumns();
-                int arr_len = column_arr.size();
-                if (!csv_ml_schema.equals("no_schema") && token_ctr > arr_len) {
-                    // If no more attributes in schema, add as Node Content
-                    value = Util.encodeToCSVText(value);
-                    obj_out.addContent(value);
-                } else {
-                    String col_name = "";
-                    if (csv_ml_schema.equals("no_schema")) {
-                        col_name = "c" + token_ctr;
-                    } else
-                        col_name = column_arr.get(token_ctr - 1).getName();
-                    if (col_name.indexOf(' ') != -1)
-                        col_name = col_name.replace(' ', '_');
-                    obj_out.setAttribute(col_name, value);
-                }
-            }
-            token_ctr++;
+    /**
+     * Scans the given InputStream, resolving nodes through the schema and
+     * tracking levels as in parsing, without forming attribute values or
+     * building any object.
+     * 
+     * @param is
+     *            The InputStream to scan
+     * @return Statistics of the input including the first error if any
+     * @throws IOException
+     */
+    public ScanStatistics scan(InputStream is) throws IOException {
+        CountingInputStream cis = new CountingInputStream(is);
+        ScanStatistics result = scan(new InputSource(cis));
+        result.byte_count = cis.count;
+        return result;
+    }
 
-            // End of line, need to check for spaces at the beginning
-            // of next line for changing levels
-            if (is_eol) {
+    /**
+     * Scans the given Reader, resolving nodes through the schema and tracking
+     * levels as in parsing, without forming attribute values or building any
+     * object.
+     * 
+     * @param r
+     *            The Reader to scan
+     * @return Statistics of the input including the first error if any
+     * @throws IOException
+     */
+    public ScanStatistics scan(Reader r) throws IOException {
+        return scan(new InputSource(r));
+    }
 
-                // If all columns did not get filled as per schema
-                // add the remaining with empty data
-                List<Column> column_arr = cur_node_schema.getColumns();
-                int arr_len = column_arr.size();
-                while (token_ctr <= arr_len) {
-                    String col_name = column_arr.get(token_ctr - 1).getName();
-                    obj_out.setAttribute(col_name, "");
-                    token_ctr++;
-                }
-                obj_out.finalizeElement();
-
-                // Count number of spaces at the beginning of next line
-                int space_count = 0;
-                int nxt_char = csv_parser.readChar(r);
-                while (nxt_char == ' ' || nxt_char == '\t') {
-                    space_count++;
-                    nxt_char = csv_parser.readChar(r);
-                }
-                if (nxt_char == -1) // end of stream
-                    break;
-                else {
-                    // If space not found put back the character
-                    csv_parser.reInsertLastChar();
-                }
-                counter.setColNo(counter.getColNo() + space_count);
-                if (space_count > (cur_level + 1)) {
-                    // More spaces found than expected, so stop parsing
-                    ex.set_err(E_DOWN_2_LEVELS);
-                    break;
-                } else {
-                    // adjust cur_level according to space_count
-                    while (cur_level >= space_count) {
-                        // update sequence and name paths
-                        // according to change in level
-                        if (!is0def) {
-                            Util.removeFromPath(cur_path);
-                            cur_sibling = Util.removeFromSeqPath(
-                                    cur_sequence_path, csv_ml_schema,
-                                    csv_ml_node_name, cur_sibling);
-                        }
-                        obj_out.traverseToParent();
-                        cur_level--;
-                    }
-                    cur_level++;
-                }
-                if (is0def) {
-                    cur_path.setLength(0);
-                    cur_sequence_path.setLength(0);
-                    // TODO: restore paths?
-                }
-                is0def = false;
-                token_ctr = 0;
-                return obj_out;
+    /**
+     * Scans the given File, resolving nodes through the schema and tracking
+     * levels as in parsing, without forming attribute values or building any
+     * object. The file is memory mapped.
+     * 
+     * @param f
+     *            The File to scan
+     * @return Statistics of the input including the first error if any
+     * @throws IOException
+     */
+    public ScanStatistics scan(File f) throws IOException {
+        ScanStatistics result = scan(new InputSource(f));
+        result.byte_count = f.length();
+        return result;
+    }
+
+    /**
+     * Runs the parsing loop with an output object that ignores everything,
+     * counting the nodes found
+     * 
+     * @param is
+     *            InputSource to scan
+     * @return Statistics
+     * @throws IOException
+     */
+    private ScanStatistics scan(InputSource is) throws IOException {
+        ScanStatistics result = new ScanStatistics();
+        try {
+            initParse(new ScanOutput(result), is, false);
+            if (builder != null)
+                parseAll();
+            result.schema = schema;
+            result.error_code = ex.getErrorCode();
+            if (result.error_code != 0) {
+                result.error_line = counter.getLineNo();
+                result.error_col = counter.getColNo();
+            }
+            result.char_count = tokenizer.getPosition();
+            // Count lines up to current position
+            tokenizer.updateCounter();
+            result.line_count = counter.getLineNo()
+                    - (counter.getColNo() == 0 ? 1 : 0);
+            if (result.error_code != 0) {
+                counter.setLineNo(result.error_line);
+                counter.setColNo(result.error_col);
             }
-        } while (!csv_parser.isEOS());
-        obj_out.deleteParentRefs();
-        return null;
+        } finally {
+            closeReader();
+        }
+        builder = null;
+        return result;
     }
 
     /**
-     * Getter for schema
+     * Parses the given InputStream calling the handler for each node, without
+     * building any object
      * 
-     * @return schema associated with the parser
+     * @param is
+     *            The InputStream to parse
+     * @param handler
+     *            Handler to receive the nodes
+     * @throws IOException
+     *             if thrown while reading or by the handler
      */
-    public MultiLevelCSVSchema getSchema() {
-        return schema;
+    public void parse(InputStream is, MultiLevelCSVHandler handler)
+            throws IOException {
+        parse(new InputSource(is), handler);
     }
 
     /**
-     * Getter for Exception Handler
+     * Parses the given Reader calling the handler for each node, without
+     * building any object
      * 
-     * @return Exception handler associated with the parser
+     * @param r
+     *            The Reader to parse
+     * @param handler
+     *            Handler to receive the nodes
+     * @throws IOException
+     *             if thrown while reading or by the handler
      */
-    public ExceptionHandler getEx() {
-        return ex;
+    public void parse(Reader r, MultiLevelCSVHandler handler)
+            throws IOException {
+        parse(new InputSource(r), handler);
     }
 
     /**
-     * Sets delimiter character used for parsing
+     * Parses the given File calling the handler for each node, without
+     * building any object. The file is memory mapped.
      * 
-     * @param d
-     *            Delimiter
+     * @param f
+     *            The File to parse
+     * @param handler
+     *            Handler to receive the nodes
+     * @throws IOException
+     *             if thrown while reading or by the handler
      */
-    public void setDelimiter(char d) {
-        csv_parser.setDelimiter(d);
+    public void parse(File f, MultiLevelCSVHandler handler) throws IOException {
+        parse(new InputSource(f), handler);
+    }
+
+    /**
+     * Runs the parsing loop with an output object that passes everything to
+     * the handler
+     * 
+     * @param is
+     *            InputSource to parse
+     * @param handler
+     *            Handler to receive the nodes
+     * @throws IOException
+     */
+    private void parse(InputSource is, MultiLevelCSVHandler handler)
+            throws IOException {
+        try {
+            initParse(new HandlerOutput(handler), is, false);
+            parseAll();
+        } catch (HandlerException e) {
+            throw e.io_ex;
+        } finally {
+            builder = null;
+            closeReader();
+        }
+    }
+
+    /**
+     * Parses the given InputStream calling the given builder for each node
+     * 
+     * @param is
+     *            The InputStream to parse
+     * @param builder
+     *            Builder of the output
+     * @throws IOException
+     */
+    public void parse(InputStream is, TreeBuilder builder) throws IOException {
+        parse(new InputSource(is), builder);
+    }
+
+    /**
+     * Parses the given Reader calling the given builder for each node
+     * 
+     * @param r
+     *            The Reader to parse
+     * @param builder
+     *            Builder of the output
+     * @throws IOException
+     */
+    public void parse(Reader r, TreeBuilder builder) throws IOException {
+        parse(new InputSource(r), builder);
+    }
+
+    /**
+     * Parses the given File calling the given builder for each node. The file
+     * is memory mapped.
+     * 
+     * @param f
+     *            The File to parse
+     * @param builder
+     *            Builder of the output
+     * @throws IOException
+     */
+    public void parse(File f, TreeBuilder builder) throws IOException {
+        parse(new InputSource(f), builder);
+    }
+
+    /**
+     * Runs the parsing loop with given builder
+     * 
+     * @param is
+     *            InputSource to parse
+     * @param builder
+     *            Builder of the output
+     * @throws IOException
+     */
+    private void parse(InputSource is, TreeBuilder builder) throws IOException {
+        try {
+            initParse(builder, is, false);
+            parseAll();
+        } catch (HandlerException e) {
+            throw e.io_ex;
+        } finally {
+            this.builder = null;
+            closeReader();
+        }
+    }
+
+    /**
+     * Creates builder that passes each node to given handler, for driving the
+     * handler along with other builders through TeeBuilder. Schema node of
+     * each row is taken from this parser, so the builder is to be used only
+     * for parsing with this parser. IOException thrown by the handler is
+     * thrown by parse().
+     * 
+     * @param handler
+     *            Handler to receive the nodes
+     * @return Builder
+     */
+    public TreeBuilder newHandlerBuilder(MultiLevelCSVHandler handler) {
+        return new HandlerOutput(handler);
+    }
+
+    /**
+     * Initializes for parsing input fed through given Reader by FeedParser.
+     * Directive, schema and rows are then parsed one step at a time as
+     * FeedParser finds them available, so that the Reader is never read
+     * beyond what is available.
+     * 
+     * @param feed_reader
+     *            Reader of FeedParser
+     * @param handler
+     *            Handler to receive the nodes
+     * @throws IOException
+     */
+    void initFeed(Reader feed_reader, MultiLevelCSVHandler handler)
+            throws IOException {
+        ex.reset_exceptions();
+        builder = null;
+        closeReader();
+        r = feed_reader;
+        directive = Directive.DEFAULT;
+        schema = new MultiLevelCSVSchema();
+        given_builder = new HandlerOutput(handler);
+        tokenizer.reset(r);
+    }
+
+    /**
+     * Parses directive of fed input
+     * 
+     * @return false if error
+     * @throws IOException
+     */
+    boolean parseFeedDirective() throws IOException {
+        directive = parseDirective();
+        return ex.getErrorCode() == 0;
+    }
+
+    /**
+     * Parses schema of fed input if present inline and starts the document
+     * 
+     * @return false if error
+     * @throws IOException
+     *             if thrown while reading or by the handler
+     */
+    boolean parseFeedSchema() throws IOException {
+        if (directive.isSchemaInline())
+            schema.parseSchema(tokenizer, directive);
+        if (ex.getErrorCode() != 0)
+            return false;
+        try {
+            initData(ParsedObject.TARGET_JSON_OBJ);
+        } catch (HandlerException e) {
+            throw e.io_ex;
+        }
+        return true;
+    }
+
+    /**
+     * Parses next row of fed input
+     * 
+     * @return false if no more rows
+     * @throws IOException
+     *             if thrown while reading or by the handler
+     */
+    boolean parseFeedNext() throws IOException {
+        try {
+            return parseNextNode();
+        } catch (HandlerException e) {
+            throw e.io_ex;
+        }
+    }
+
+    /**
+     * Clears handler at end of fed input or error. The document is ended by
+     * the last parseFeedNext().
+     */
+    void endFeed() {
+        given_builder = null;
+        builder = null;
+    }
+
+    /**
+     * Output object used while scanning, which does not build anything.
+     * Nodes are counted into the statistics and depth is tracked to report
+     * more than one root as the DOM builders do.
+     */
+    private static class ScanOutput implements TreeBuilder {
+
+        ScanStatistics stats;
+        ExceptionHandler ex = null;
+        String csv_ml_root = null;
+        int depth = 0; // 0 at root element, -1 after leaving it
+
+        ScanOutput(ScanStatistics stats) {
+            this.stats = stats;
+        }
+
+        public void startDocument(Directive directive, ExceptionHandler ex) {
+            this.ex = ex;
+            csv_ml_root = directive.getRoot();
+            // Leave out namespaces enumerated after the root
+            int e_idx = csv_ml_root.indexOf('/');
+            if (e_idx > 0)
+                csv_ml_root = csv_ml_root.substring(0, e_idx);
+            depth = 0;
+        }
+
+        public void endDocument() {
+        }
+
+        public void addNewNode(Node node_schema, int level) {
+            stats.countNode(node_schema, level);
+            if (depth == -1) {
+                // If given input tries to add more than one root, throw error
+                ex.set_err(E_ONLY_ONE_ROOT);
+                return;
+            }
+            // If directive specifies the first element as root,
+            // it is not added
+            if (depth != 0 || !node_schema.getName().equals(csv_ml_root))
+                depth++;
+        }
+
+        public void setAttribute(String col_name, CharSequence value) {
+        }
+
+        public void setAttribute(int col_idx, CharSequence value) {
+        }
+
+        public void addContent(String content) {
+        }
+
+        public void finalizeElement() {
+        }
+
+        public void traverseToParent() {
+            if (depth != -1)
+                depth--;
+        }
+    }
+
+    /**
+     * Output object used while parsing to handler, which passes each call to
+     * the handler
+     */
+    private class HandlerOutput implements TreeBuilder {
+
+        MultiLevelCSVHandler handler;
+        Column[] cur_columns = null;
+        String[] open_names = new String[16]; // names of nodes not yet ended
+        int depth = 0;
+        int attr_ctr = 0; // for generated columns
+
+        HandlerOutput(MultiLevelCSVHandler handler) {
+            this.handler = handler;
+        }
+
+        public void startDocument(Directive directive, ExceptionHandler ex) {
+            try {
+                handler.startDocument(directive, schema);
+            } catch (IOException e) {
+                throw new HandlerException(e);
+            }
+        }
+
+        public void addNewNode(Node node_schema, int level) {
+            String node_name = node_schema.getName();
+            cur_columns = node_schema.getColumnArray();
+            if (depth == open_names.length) {
+                String[] new_open_names = new String[depth * 2];
+                System.arraycopy(open_names, 0, new_open_names, 0, depth);
+                open_names = new_open_names;
+            }
+            open_names[depth] = node_name;
+            attr_ctr = 0;
+            try {
+                handler.startNode(node_name, node_schema, depth);
+            } catch (IOException e) {
+                throw new HandlerException(e);
+            }
+            depth++;
+        }
+
+        public void setAttribute(String col_name, CharSequence value) {
+            try {
+                handler.attribute(attr_ctr++, col_name, value);
+            } catch (IOException e) {
+                throw new HandlerException(e);
+            }
+        }
+
+        public void setAttribute(int col_idx, CharSequence value) {
+            try {
+                handler.attribute(col_idx, cur_columns[col_idx].getAttrName(),
+                        value);
+            } catch (IOException e) {
+                throw new HandlerException(e);
+            }
+        }
+
+        public void addContent(String content) {
+            try {
+                handler.content(content);
+            } catch (IOException e) {
+                throw new HandlerException(e);
+            }
+        }
+
+        public void finalizeElement() {
+        }
+
+        public void traverseToParent() {
+            if (depth == 0)
+                return;
+            depth--;
+            String node_name = open_names[depth];
+            open_names[depth] = null;
+            try {
+                handler.endNode(node_name, depth);
+            } catch (IOException e) {
+                throw new HandlerException(e);
+            }
+        }
+
+        /**
+         * Ends nodes still open and the document, at end of input or error
+         */
+        public void endDocument() {
+            while (depth > 0)
+                traverseToParent();
+            try {
+                handler.endDocument();
+            } catch (IOException e) {
+                throw new HandlerException(e);
+            }
+        }
+    }
+
+    /**
+     * Carries IOException thrown by the handler through TreeBuilder methods,
+     * which do not declare it
+     */
+    private static class HandlerException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        IOException io_ex;
+
+        HandlerException(IOException cause) {
+            super(cause);
+            this.io_ex = cause;
+        }
+    }
+
+    /**
+     * Counts bytes read from the underlying stream. Mark is not supported, so
+     * that bytes read ahead for finding the encoding are counted once.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1)
+                count++;
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Parses chunks in parallel and merges them in order into the first one
+     * 
+     * @param targetObject
+     * @param f
+     * @param toValidate
+     * @param executor
+     * @return Merged object
+     * @throws IOException
+     */
+    private ParsedObject parseParallel(short targetObject, File f,
+            boolean toValidate, ExecutorService executor) throws IOException {
+        final ParsedObject[] merged = new ParsedObject[1];
+        parseInChunks(f, targetObject, toValidate, executor,
+                new ChunkConsumer() {
+                    public void consume(int chunk_idx,
+                            ParsedObject parsedObject) {
+                        if (merged[0] == null)
+                            merged[0] = parsedObject;
+                        else
+                            merged[0].appendChunk(parsedObject);
+                    }
+                });
+        return merged[0];
+    }
+
+    /**
+     * Parses the given File in chunks in parallel.
+     * 
+     * The directive and schema are parsed first. The rest of the file is then
+     * split at lines beginning with a top level node (outside quotes and
+     * comments) and the chunks are parsed on the executor using the same
+     * schema. The parsed chunks are handed to the consumer in file order.
+     * 
+     * If the file is small, or cannot be split because the schema is not
+     * given (it is then formed while parsing), the encoding is not byte
+     * oriented, the root is itself a data node or namespaces are declared
+     * within data, the file is parsed sequentially and handed over as a
+     * single chunk.
+     * 
+     * If a chunk has an error, it is reported to the exception handler of
+     * this parser and chunks after it are not consumed.
+     * 
+     * Only a limited number of chunks are submitted ahead of the one being
+     * consumed, so that parsed chunks do not pile up when the consumer is
+     * slower than the executor (see setMaxChunksAhead()).
+     * 
+     * @param f
+     *            The File to parse
+     * @param targetObject
+     *            Whether DOM or JSO
+     * @param toValidate
+     *            Whether to validate against the schema or not
+     * @param executor
+     *            Executor to run chunk parsing on
+     * @param consumer
+     *            Receives parsed chunks in order
+     * @throws IOException
+     */
+    public void parseInChunks(File f, short targetObject, boolean toValidate,
+            ExecutorService executor, ChunkConsumer consumer)
+            throws IOException {
+        try {
+            initParse(targetObject, new InputSource(f), toValidate);
+            if (obj_out == null)
+                return;
+            String encoding = ((MappedFileReader) r).getEncoding();
+            ChunkSplitter splitter = splitData(f, encoding);
+            if (splitter == null) {
+                parseAll();
+                consumer.consume(0, obj_out);
+                return;
+            }
+
+            // Parse and consume in order, submitting next chunk as each
+            // is consumed
+            int chunk_count = splitter.getChunkCount();
+            int chunks_ahead = max_chunks_ahead;
+            if (chunks_ahead <= 0)
+                chunks_ahead = Runtime.getRuntime().availableProcessors() * 2;
+            List<Future<MultiLevelCSVParser>> futures = new ArrayList<Future<MultiLevelCSVParser>>();
+            try {
+                for (int i = 0; i < chunk_count; i++) {
+                    while (futures.size() < chunk_count
+                            && futures.size() < i + chunks_ahead) {
+                        int j = futures.size();
+                        futures.add(executor.submit(new ChunkTask(f, encoding,
+                                splitter.getChunkStart(j), splitter
+                                        .getChunkEnd(j), splitter
+                                        .getChunkLineOffset(j), targetObject)));
+                    }
+                    MultiLevelCSVParser chunk_parser = getChunkResult(futures
+                            .get(i));
+                    // Not held beyond consumption
+                    futures.set(i, null);
+                    obj_out = chunk_parser.obj_out;
+                    if (intern_dict != null)
+                        intern_dict.addCounters(chunk_parser.intern_dict);
+                    consumer.consume(i, obj_out);
+                    if (chunk_parser.ex.getErrorCode() != 0) {
+                        reportChunkError(chunk_parser);
+                        break;
+                    }
+                }
+            } finally {
+                for (int i = 0; i < futures.size(); i++) {
+                    if (futures.get(i) != null)
+                        futures.get(i).cancel(true);
+                }
+            }
+        } finally {
+            closeReader();
+        }
+    }
+
+    /**
+     * Splits data of the file opened by initParse() into chunks beginning
+     * with top level nodes, closing the file. The file is not split if it is
+     * small or cannot be split.
+     * 
+     * @param f
+     *            The File opened
+     * @param encoding
+     *            Encoding of the file
+     * @return Chunks or null if not split, in which case the file is left
+     *         open to be parsed sequentially
+     * @throws IOException
+     */
+    private ChunkSplitter splitData(File f, String encoding)
+            throws IOException {
+        long data_size = f.length() - tokenizer.getPosition();
+        if (data_size < 2L * min_chunk_size || !isSplittable(encoding))
+            return null;
+        long data_start = tokenizer.getPosition();
+        closeReader();
+        long chunk_size = data_size
+                / (Runtime.getRuntime().availableProcessors() * CHUNKS_PER_PROCESSOR);
+        if (chunk_size < min_chunk_size)
+            chunk_size = min_chunk_size;
+        ChunkSplitter splitter = new ChunkSplitter(tokenizer.getDelimiter());
+        splitter.split(f, encoding.equals("UTF-8")
+                || encoding.equals("US-ASCII"), data_start, chunk_size);
+        return splitter;
+    }
+
+    /**
+     * Reports error found in a chunk to the exception handler of this parser
+     * with its line and column, unless an error is already reported
+     * 
+     * @param chunk_parser
+     *            Parser used for the chunk
+     */
+    void reportChunkError(MultiLevelCSVParser chunk_parser) {
+        if (ex.getErrorCode() != 0)
+            return;
+        ex.set_err(chunk_parser.ex.getErrorCode());
+        // Position within the chunk, not that of the tokenizer of this parser
+        ex.err_line_no = chunk_parser.ex.err_line_no;
+        ex.err_col_no = chunk_parser.ex.err_col_no;
+        counter.setLineNo(ex.err_line_no);
+        counter.setColNo(ex.err_col_no);
+    }
+
+    /**
+     * Checks whether the data can be split into chunks to be parsed
+     * independently
+     * 
+     * @param encoding
+     *            Encoding of the file
+     * @return true if splittable
+     */
+    private boolean isSplittable(String encoding) {
+        // Schema nodes are generated while parsing if not given
+        if (!directive.isSchemaPresent())
+            return false;
+        if (!ChunkSplitter.isSplittable(encoding, tokenizer.getDelimiter()))
+            return false;
+        // If the root itself is a data node, there can be only one top level
+        // node
+        String root = directive.getRoot();
+        int slash_idx = root.indexOf('/');
+        if (slash_idx != -1)
+            root = root.substring(0, slash_idx);
+        if (schema.getRootNode().getChildByName(root) != null)
+            return false;
+        // Namespaces declared in data apply to rest of the file
+        for (int i = 0; i < schema.getNodeCount(); i++) {
+            Column[] columns = schema.getNodeById(i).getColumnArray();
+            for (int j = 0; j < columns.length; j++) {
+                if (columns[j].getAttrPrefix().equals("xmlns"))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits for parsing of a chunk to complete
+     * 
+     * @param future
+     *            Future of chunk task
+     * @return Parser used for the chunk
+     * @throws IOException
+     */
+    private static MultiLevelCSVParser getChunkResult(
+            Future<MultiLevelCSVParser> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            IOException ioe = new IOException(cause.toString());
+            ioe.initCause(cause);
+            throw ioe;
+        }
+    }
+
+    /**
+     * Parses one chunk of a file using directive and schema of this parser
+     */
+    private class ChunkTask implements Callable<MultiLevelCSVParser> {
+
+        File f;
+        String encoding;
+        long from;
+        long to;
+        int line_offset;
+        short targetObject;
+
+        ChunkTask(File f, String encoding, long from, long to,
+                int line_offset, short targetObject) {
+            this.f = f;
+            this.encoding = encoding;
+            this.from = from;
+            this.to = to;
+            this.line_offset = line_offset;
+            this.targetObject = targetObject;
+        }
+
+        public MultiLevelCSVParser call() throws IOException {
+            MultiLevelCSVParser chunk_parser = newChunkParser(targetObject,
+                    f, encoding, from, to, line_offset);
+            try {
+                chunk_parser.parseAll();
+            } finally {
+                chunk_parser.closeReader();
+            }
+            return chunk_parser;
+        }
+    }
+
+    /**
+     * Creates parser with the settings of this parser and initializes it for
+     * parsing a chunk of a file using directive and schema of this parser
+     * 
+     * @param targetObject
+     *            Whether DOM or JSO
+     * @param f
+     *            The File
+     * @param encoding
+     *            Encoding of the file
+     * @param from
+     *            Byte position where chunk starts
+     * @param to
+     *            Byte position where chunk ends (exclusive)
+     * @param line_offset
+     *            Number of lines before the chunk
+     * @return Parser ready for parseNext()
+     * @throws IOException
+     */
+    MultiLevelCSVParser newChunkParser(short targetObject, File f,
+            String encoding, long from, long to, int line_offset)
+            throws IOException {
+        MultiLevelCSVParser chunk_parser = newParser();
+        try {
+            chunk_parser.initChunkParse(targetObject, new MappedFileReader(f,
+                    encoding, from, to, MappedFileReader.DEFAULT_SEGMENT_SIZE),
+                    directive, schema, line_offset);
+        } catch (IOException e) {
+            chunk_parser.closeReader();
+            throw e;
+        }
+        return chunk_parser;
+    }
+
+    /**
+     * Creates parser with the settings of this parser
+     * 
+     * @return New parser
+     */
+    MultiLevelCSVParser newParser() {
+        MultiLevelCSVParser new_parser = new MultiLevelCSVParser();
+        new_parser.setDelimiter(tokenizer.getDelimiter());
+        new_parser.setStructuralScan(tokenizer.is_structural_scan);
+        new_parser.setTypeConversion(is_typed);
+        new_parser.setLiteDOM(is_lite_dom);
+        new_parser.setOffHeap(is_off_heap);
+        // Dictionary is not thread safe, so each parser has its own
+        if (intern_dict != null)
+            new_parser.setInternDictionary(new InternDictionary(intern_dict
+                    .getCapacity()));
+        return new_parser;
+    }
+
+    /**
+     * Main parsing logic
+     * 
+     * @param targetObject
+     * @param is
+     * @param toValidate
+     * @return
+     * @throws IOException
+     */
+    private ParsedObject parse(short targetObject, InputSource is,
+            boolean toValidate) throws IOException {
+
+        try {
+            initParse(targetObject, is, toValidate);
+            parseAll();
+        } finally {
+            closeReader();
+        }
+        return obj_out;
+
+    }
+
+    /**
+     * Calls parseNext() till all elements are parsed
+     * 
+     * @throws IOException
+     */
+    void parseAll() throws IOException {
+        while (parseNextNode()) {
+            // Do nothing. initParse() and parseNext() are public
+            // (parseNextNode() when a builder is given to initParse()).
+            // This code snippet could be used by caller and have some logic
+            // here to have control during parsing and managing memory.
+            //
+            // parseNext() returns for each Node successfully constructed.
+            // parsedObject.getCurrentElement() or parsedObject.getCurrentJSO()
+            // can be called to have access to the successfully constructed
+            // node, such as:
+            //
+            // if (parser.getEx().getErrorCode() == 0) {
+            // Element parsedElement = parsedObject.getCurrentElement();
+            // // Do something with parsedElement here
+            // // if necessary free memory by deleting attributes
+            // // // or even remove parseElement itself from the document object
+            // after use
+            // }
+        }
+    }
+
+    /**
+     * Initializes transient variables used during parsing, parses directive and
+     * schema.
+     * 
+     * For byte streams and files, the encoding is found from the directive
+     * before decoding. Files opened here are closed when parseNext() returns
+     * null.
+     * 
+     * @param targetObject
+     *            Whether DOM or JSO
+     * @param is
+     *            InputSource to read from
+     * @param toValidate
+     *            Whether to Validate or not
+     * @throws IOException
+     */
+    public void initParse(short targetObject, InputSource is, boolean toValidate)
+            throws IOException {
+
+        // Initialize
+        ex.reset_exceptions();
+        obj_out = null;
+        builder = null;
+        closeReader();
+        r = null;
+        directive = Directive.DEFAULT;
+        schema = new MultiLevelCSVSchema();
+
+        // Open reader with the encoding given in directive
+        switch (is.getType()) {
+        case InputSource.IS_BYTE_STREAM:
+            r = openStreamReader(is.getInputStream());
+            break;
+        case InputSource.IS_FILE:
+            r = new MappedFileReader(is.getFile(), tokenizer.getDelimiter());
+            is_reader_owned = true;
+            break;
+        default:
+            r = is.getReader();
+        }
+
+        // Parse directive
+        tokenizer.reset(r);
+        directive = parseDirective();
+        if (ex.getErrorCode() != 0) {
+            closeReader();
+            return;
+        }
+
+        // Parse Schema if present
+        if (directive.isSchemaInline())
+            schema.parseSchema(tokenizer, directive);
+        if (ex.getErrorCode() != 0) {
+            closeReader();
+            return;
+        }
+
+        initData(targetObject);
+
+    }
+
+    /**
+     * Initializes for parsing with given builder, parses directive and
+     * schema. parseNextNode() can then be called for each row.
+     * 
+     * @param builder
+     *            Builder of the output
+     * @param is
+     *            InputSource to read from
+     * @param toValidate
+     *            Whether to Validate or not
+     * @throws IOException
+     */
+    public void initParse(TreeBuilder builder, InputSource is,
+            boolean toValidate) throws IOException {
+        given_builder = builder;
+        try {
+            initParse(ParsedObject.TARGET_JSON_OBJ, is, toValidate);
+        } finally {
+            given_builder = null;
+        }
+    }
+
+    /**
+     * Initializes for parsing a chunk of data using directive and schema
+     * already parsed
+     * 
+     * @param targetObject
+     *            Whether DOM or JSO
+     * @param chunk_reader
+     *            Reader for the chunk, to be closed at end of parse
+     * @param directive
+     *            Directive already parsed
+     * @param schema
+     *            Schema already parsed. This is not modified.
+     * @param line_offset
+     *            Number of lines before the chunk
+     * @throws IOException
+     */
+    private void initChunkParse(short targetObject, Reader chunk_reader,
+            Directive directive, MultiLevelCSVSchema schema, int line_offset)
+            throws IOException {
+        ex.reset_exceptions();
+        closeReader();
+        r = chunk_reader;
+        is_reader_owned = true;
+        this.directive = directive;
+        this.schema = schema;
+        tokenizer.reset(r, line_offset);
+        initData(targetObject);
+    }
+
+    /**
+     * Initializes transient variables used for parsing data and creates
+     * output object
+     * 
+     * @param targetObject
+     *            Whether DOM or JSO
+     */
+    private void initData(short targetObject) {
+        cur_level = 0;
+        node_ctr = 1;
+        token_ctr = 0;
+        cur_sibling = 1;
+        cur_columns = null;
+
+        obj_out = null;
+        if (given_builder != null)
+            builder = given_builder;
+        else {
+            obj_out = ParsedObject.create(targetObject);
+            obj_out.setTypeConversion(is_typed);
+            obj_out.setOffHeap(is_off_heap);
+            obj_out.setInternDictionary(intern_dict);
+            builder = obj_out;
+        }
+        builder.startDocument(directive, ex);
+    }
+
+    /**
+     * Creates Reader for given byte stream. The beginning of the stream is
+     * looked at for encoding mentioned in the directive, and then put back so
+     * that the Reader starts from the beginning.
+     * 
+     * @param in
+     *            Byte stream
+     * @return Reader decoding with the encoding found if supported or UTF-8
+     * @throws IOException
+     */
+    private Reader openStreamReader(InputStream in) throws IOException {
+        if (!in.markSupported())
+            in = new BufferedInputStream(in);
+        in.mark(DIRECTIVE_SNIFF_LEN);
+        byte[] head = new byte[DIRECTIVE_SNIFF_LEN];
+        int len = 0;
+        boolean is_line_found = false;
+        boolean is_content_found = false;
+        // Read till first non-empty line is available so as not to block
+        // on streams that are yet to be completed
+        while (len < head.length && !is_line_found) {
+            int read_count = in.read(head, len, head.length - len);
+            if (read_count == -1)
+                break;
+            for (int end = len + read_count; len < end; len++) {
+                byte b = head[len];
+                if (b == '\n' && is_content_found)
+                    is_line_found = true;
+                else if (b != '\n' && b != '\r' && b != ' ' && b != '\t')
+                    is_content_found = true;
+            }
+        }
+        in.reset();
+        String encoding = Util.sniffEncoding(ByteBuffer.wrap(head, 0, len),
+                tokenizer.getDelimiter());
+        // Unsupported encoding is reported while parsing the directive
+        if (encoding == null || !Util.isEncodingSupported(encoding))
+            encoding = "UTF-8";
+        return new InputStreamReader(in, encoding);
+    }
+
+    /**
+     * Closes the Reader if it was opened by the parser
+     * 
+     * @throws IOException
+     */
+    void closeReader() throws IOException {
+        if (is_reader_owned) {
+            is_reader_owned = false;
+            r.close();
+        }
+    }
+
+    /**
+     * Main parsing logic. Returns each time an element formation is complete.
+     * 
+     * The mode is decided once from the directive and the rows are processed
+     * by the loop meant for that mode, so that the directive need not be
+     * consulted for each token.
+     * 
+     * @return Parsed object for each element that gets built at
+     *         parsedObject.getCurrentElement(), or null at end. Always null
+     *         when parsing with a builder given to initParse(), for which
+     *         parseNextNode() is to be used.
+     * @throws IOException
+     */
+    public ParsedObject parseNext() throws IOException {
+        return (parseNextNode() ? obj_out : null);
+    }
+
+    /**
+     * Parses next row, calling the builder for the node and its values.
+     * Returns each time a row is complete.
+     * 
+     * @return true if a row was parsed, false at end of input or error
+     * @throws IOException
+     */
+    public boolean parseNextNode() throws IOException {
+
+        // Nothing to parse if initParse() failed
+        if (builder == null)
+            return false;
+
+        switch (directive.getMode()) {
+        case Directive.MODE_NODE_NAME:
+            return parseNextWithNodeName();
+        case Directive.MODE_NO_NODE_NAME:
+            return parseNextSingleNode();
+        case Directive.MODE_NO_SCHEMA:
+            return parseNextNoSchema();
+        default:
+            return parseNextTabular();
+        }
+    }
+
+    /**
+     * Parses next row when schema is present and first column indicates the
+     * node, either by name, by sequence number among siblings or by
+     * reference to a re-usable node.
+     * 
+     * @return false if no more rows
+     * @throws IOException
+     */
+    private boolean parseNextWithNodeName() throws IOException {
+        do {
+            FieldValue value = tokenizer.parseNextField();
+            boolean is_eol = tokenizer.isEOL();
+            if (token_ctr == 0) {
+                // First column - node indicator
+                if (value.isBlank()) {
+                    // skip empty lines
+                    if (is_eol)
+                        continue;
+                    tokenizer.set_err(E_NODE_NOT_FOUND);
+                    break;
+                }
+                // trim if having leading spaces, otherwise use the view as is
+                CharSequence node_ref = value;
+                if (value.charAt(0) == ' ')
+                    node_ref = value.toString().trim();
+                Node node_schema;
+                char c = node_ref.charAt(0);
+                if (c == '0') {
+                    // Value indicates a re-usable node in schema
+                    // TODO: Validate whether valid child or not
+                    node_schema = schema.getZeroNode(node_ref.toString());
+                } else if (c >= '1' && c <= '9') {
+                    // Value indicates sibling number
+                    // so find child by sibling number
+                    node_schema = getParentNodeSchema().getChild(
+                            Util.parseSiblingNumber(node_ref));
+                } else {
+                    // Value indicates node name
+                    // so find child by node name
+                    node_schema = getParentNodeSchema().getChildByName(
+                            node_ref);
+                }
+                if (node_schema == null) {
+                    tokenizer.set_err(E_NODE_NOT_FOUND);
+                    break;
+                }
+                addNode(node_schema);
+            } else if (token_ctr > cur_columns.length) {
+                // If no more attributes in schema, add as Node Content
+                builder.addContent(Util.encodeToCSVText(value.toString()));
+            } else
+                builder.setAttribute(token_ctr - 1, value);
+            token_ctr++;
+            if (is_eol) {
+                if (endRow(false))
+                    return true;
+                break;
+            }
+        } while (!tokenizer.isEOS());
+        return endParse();
+    }
+
+    /**
+     * Parses next row when schema is present but node name is not given. Only
+     * one node can be present in each level and first column is data.
+     * 
+     * @return false if no more rows
+     * @throws IOException
+     */
+    private boolean parseNextSingleNode() throws IOException {
+        do {
+            FieldValue value = tokenizer.parseNextField();
+            boolean is_eol = tokenizer.isEOL();
+            if (token_ctr == 0) {
+                // skip empty lines
+                if (is_eol && value.isBlank())
+                    continue;
+                Node node_schema = getParentNodeSchema().getChild(1);
+                if (node_schema == null) {
+                    tokenizer.set_err(E_NODE_NOT_FOUND);
+                    break;
+                }
+                addNode(node_schema);
+                token_ctr++;
+            }
+            if (token_ctr > cur_columns.length) {
+                // If no more attributes in schema, add as Node Content
+                builder.addContent(Util.encodeToCSVText(value.toString()));
+            } else
+                builder.setAttribute(token_ctr - 1, value);
+            token_ctr++;
+            if (is_eol) {
+                if (endRow(false))
+                    return true;
+                break;
+            }
+        } while (!tokenizer.isEOS());
+        return endParse();
+    }
+
+    /**
+     * Parses next row when there is no schema and first column gives node
+     * name. Column names are generated.
+     * 
+     * @return false if no more rows
+     * @throws IOException
+     */
+    private boolean parseNextNoSchema() throws IOException {
+        do {
+            FieldValue value = tokenizer.parseNextField();
+            boolean is_eol = tokenizer.isEOL();
+            if (token_ctr == 0) {
+                if (value.isBlank()) {
+                    // skip empty lines
+                    if (is_eol)
+                        continue;
+                    tokenizer.set_err(E_NODE_NOT_FOUND);
+                    break;
+                }
+                addGeneratedNode(value);
+            } else
+                builder.setAttribute(getGeneratedColName(token_ctr), value);
+            token_ctr++;
+            if (is_eol) {
+                if (endRow(true))
+                    return true;
+                break;
+            }
+        } while (!tokenizer.isEOS());
+        return endParse();
+    }
+
+    /**
+     * Parses next row when there is neither schema nor node name. Node and
+     * column names are generated. Rows that stay at the top level, as in a
+     * plain table, do not go through level adjustment.
+     * 
+     * @return false if no more rows
+     * @throws IOException
+     */
+    private boolean parseNextTabular() throws IOException {
+        do {
+            FieldValue value = tokenizer.parseNextField();
+            boolean is_eol = tokenizer.isEOL();
+            if (token_ctr == 0) {
+                // skip empty lines
+                if (is_eol && value.isBlank())
+                    continue;
+                addGeneratedNode(null);
+                token_ctr++;
+            }
+            builder.setAttribute(getGeneratedColName(token_ctr), value);
+            token_ctr++;
+            if (is_eol) {
+                builder.finalizeElement();
+                token_ctr = 0;
+                int space_count = tokenizer.skipIndent();
+                if (space_count == 0 && cur_level == 0) {
+                    builder.traverseToParent();
+                    return true;
+                }
+                if (changeLevel(space_count, false))
+                    return true;
+                break;
+            }
+        } while (!tokenizer.isEOS());
+        return endParse();
+    }
+
+    /**
+     * Gets schema node of the parent of current level
+     * 
+     * @return Parent schema node
+     */
+    private Node getParentNodeSchema() {
+        return (cur_level == 0 ? schema.getRootNode()
+                : level_nodes[cur_level - 1]);
+    }
+
+    /**
+     * Finds node by current sibling number under the parent. If not found,
+     * creates it with given name, or generated name if not given.
+     * 
+     * @param node_name
+     *            Name for the node if it has to be created or null. Formed
+     *            as String only if the node is created.
+     */
+    private void addGeneratedNode(CharSequence node_name) {
+        Node parent_node_schema = getParentNodeSchema();
+        level_siblings[cur_level] = cur_sibling;
+        Node node_schema = parent_node_schema.getChild(cur_sibling);
+        if (node_schema == null) {
+            String name;
+            if (node_name == null)
+                name = "n" + node_ctr;
+            else {
+                name = node_name.toString();
+                // trim if having leading spaces
+                if (name.charAt(0) == ' ')
+                    name = name.trim();
+            }
+            node_schema = new Node();
+            node_schema.setName(name);
+            schema.addChildNode(parent_node_schema, cur_sibling, node_schema);
+            node_ctr++;
+        }
+        addNode(node_schema);
+    }
+
+    /**
+     * Adds new element to the output for the given schema node at current
+     * level
+     * 
+     * @param node_schema
+     *            Schema node of the element
+     */
+    private void addNode(Node node_schema) {
+        level_nodes[cur_level] = node_schema;
+        cur_columns = node_schema.getColumnArray();
+        builder.addNewNode(node_schema, cur_level);
+    }
+
+    /**
+     * Completes the element at end of line and adjusts level according to the
+     * spaces at the beginning of next line.
+     * 
+     * @param is_sibling_counted
+     *            Whether sibling number is to be updated with change in level
+     * @return true if parsing can continue, false if end of stream or error
+     * @throws IOException
+     */
+    private boolean endRow(boolean is_sibling_counted) throws IOException {
+
+        // If all columns did not get filled as per schema
+        // add the remaining with empty data
+        int arr_len = cur_columns.length;
+        while (token_ctr <= arr_len) {
+            builder.setAttribute(token_ctr - 1, "");
+            token_ctr++;
+        }
+        builder.finalizeElement();
+        token_ctr = 0;
+
+        // Count number of spaces at the beginning of next line
+        return changeLevel(tokenizer.skipIndent(), is_sibling_counted);
+    }
+
+    /**
+     * Adjusts current level according to the number of spaces found at the
+     * beginning of line.
+     * 
+     * @param space_count
+     *            Number of spaces or -1 if end of stream
+     * @param is_sibling_counted
+     *            Whether sibling number is to be updated with change in level
+     * @return true if parsing can continue, false if end of stream or error
+     */
+    private boolean changeLevel(int space_count, boolean is_sibling_counted) {
+        if (space_count == -1) // end of stream
+            return false;
+        if (space_count > (cur_level + 1)) {
+            // More spaces found than expected, so stop parsing
+            tokenizer.set_err(E_DOWN_2_LEVELS);
+            return false;
+        }
+        // adjust cur_level according to space_count
+        while (cur_level >= space_count) {
+            // update sibling number according to change in level.
+            if (is_sibling_counted) {
+                if (cur_level == 0)
+                    cur_sibling++;
+                else
+                    cur_sibling = 1 + level_siblings[cur_level];
+            }
+            builder.traverseToParent();
+            cur_level--;
+        }
+        cur_level++;
+        if (cur_level == level_nodes.length) {
+            Node[] new_level_nodes = new Node[cur_level * 2];
+            System.arraycopy(level_nodes, 0, new_level_nodes, 0, cur_level);
+            level_nodes = new_level_nodes;
+            int[] new_level_siblings = new int[cur_level * 2];
+            System.arraycopy(level_siblings, 0, new_level_siblings, 0,
+                    cur_level);
+            level_siblings = new_level_siblings;
+        }
+        return true;
+    }
+
+    /**
+     * Completes parsing, ending the document
+     * 
+     * @return false to indicate no more elements
+     */
+    private boolean endParse() throws IOException {
+        closeReader();
+        TreeBuilder ended = builder;
+        builder = null;
+        ended.endDocument();
+        return false;
+    }
+
+    /**
+     * Getter for object being built by parseNext()
+     * 
+     * @return Parsed object or null if initParse() failed
+     */
+    ParsedObject getParsedObject() {
+        return obj_out;
+    }
+
+    /**
+     * Stops parsing before end of input, closing the reader if opened here
+     * 
+     * @throws IOException
+     */
+    void closeParse() throws IOException {
+        obj_out = null;
+        builder = null;
+        closeReader();
+    }
+
+    /**
+     * Gets column name generated when there is no schema (c1, c2 and so on).
+     * Names are generated once and reused for subsequent rows.
+     * 
+     * @param col_no
+     *            Column number starting with 1
+     * @return Generated name
+     */
+    private String getGeneratedColName(int col_no) {
+        if (col_no > generated_col_names.length) {
+            String[] new_names = new String[col_no * 2];
+            System.arraycopy(generated_col_names, 0, new_names, 0,
+                    generated_col_names.length);
+            for (int i = generated_col_names.length; i < new_names.length; i++)
+                new_names[i] = "c" + (i + 1);
+            generated_col_names = new_names;
+        }
+        return generated_col_names[col_no - 1];
+    }
+
+    /**
+     * Getter for directive
+     * 
+     * @return directive found in the input or the default directive
+     */
+    public Directive getDirective() {
+        return directive;
+    }
+
+    /**
+     * Getter for schema
+     * 
+     * @return schema associated with the parser
+     */
+    public MultiLevelCSVSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Getter for Exception Handler
+     * 
+     * @return Exception handler associated with the parser
+     */
+    public ExceptionHandler getEx() {
+        return ex;
+    }
+
+    /**
+     * Sets delimiter character used for parsing
+     * 
+     * @param d
+     *            Delimiter
+     */
+    public void setDelimiter(char d) {
+        tokenizer.setDelimiter(d);
+    }
+
+    /**
+     * Sets whether the tokenizer scans for structural characters several at
+     * a time (default) or one by one
+     * 
+     * @param is_structural_scan
+     *            true to scan several characters at a time
+     */
+    public void setStructuralScan(boolean is_structural_scan) {
+        tokenizer.setStructuralScan(is_structural_scan);
+    }
+
+    /**
+     * Sets whether values are converted to the type given in the schema
+     * (integer, real, date, datetime) while parsing to JSON. Off by default,
+     * in which case all values are kept as text.
+     * 
+     * @param is_typed
+     *            true to convert values
+     * @see ParsedObject#setTypeConversion(boolean)
+     */
+    public void setTypeConversion(boolean is_typed) {
+        this.is_typed = is_typed;
+    }
+
+    /**
+     * Sets whether parseToDOM() builds a LiteDocument, a read only DOM held
+     * in arrays, instead of the DOM of the JDK. Off by default. Applies to
+     * parsing in one pass, while parsing in parallel and iterating build
+     * the DOM of the JDK.
+     * 
+     * @param is_lite_dom
+     *            true to build LiteDocument
+     * @see LiteDocument
+     */
+    public void setLiteDOM(boolean is_lite_dom) {
+        this.is_lite_dom = is_lite_dom;
+    }
+
+    /**
+     * Sets whether parseToCompact() holds values of the CompactTree outside
+     * the Java heap, in an OffHeapArena. Off by default.
+     * Suits trees kept for long, as the garbage collector then need not go
+     * through the values, but each tree is to be closed when no longer
+     * needed.
+     * 
+     * @param is_off_heap
+     *            true to hold values outside heap
+     * @see CompactTree#close()
+     */
+    public void setOffHeap(boolean is_off_heap) {
+        this.is_off_heap = is_off_heap;
+    }
+
+    /**
+     * Gets target for parsing to DOM in one pass
+     * 
+     * @return TARGET_LITE_DOC if lightweight DOM is set, otherwise
+     *         TARGET_W3C_DOC
+     */
+    private short getDOMTarget() {
+        return (is_lite_dom ? ParsedObject.TARGET_LITE_DOC
+                : ParsedObject.TARGET_W3C_DOC);
+    }
+
+    /**
+     * Sets dictionary for interning values of columns declared with a set of
+     * values, or found to repeat, so that they share one String in the
+     * parsed object. Not set by default. The dictionary is kept across
+     * parses, so it can be reused for a feed having similar values and its
+     * counters looked at after parsing.
+     * 
+     * @param intern_dict
+     *            Dictionary or null to not intern
+     */
+    public void setInternDictionary(InternDictionary intern_dict) {
+        this.intern_dict = intern_dict;
+    }
+
+    /**
+     * Getter for dictionary used for interning values
+     * 
+     * @return Dictionary or null if not set
+     */
+    public InternDictionary getInternDictionary() {
+        return intern_dict;
+    }
+
+    /**
+     * Sets minimum size in bytes of chunks for parsing in parallel. Files
+     * having less than twice this size after the schema are parsed
+     * sequentially. Chunks are made larger if needed so that there are 4
+     * chunks per processor. 1 MB by default.
+     * 
+     * @param min_chunk_size
+     *            Minimum chunk size in bytes
+     * @see #parseInChunks(File, short, boolean, ExecutorService,
+     *      ChunkConsumer)
+     */
+    public void setMinChunkSize(int min_chunk_size) {
+        if (min_chunk_size < 1)
+            throw new IllegalArgumentException("Chunk size: " + min_chunk_size);
+        this.min_chunk_size = min_chunk_size;
+    }
+
+    /**
+     * Sets number of chunks that can be submitted for parsing in parallel
+     * ahead of the one being consumed. Twice the number of processors by
+     * default.
+     * 
+     * @param max_chunks_ahead
+     *            Number of chunks or 0 for default
+     * @see #parseInChunks(File, short, boolean, ExecutorService,
+     *      ChunkConsumer)
+     */
+    public void setMaxChunksAhead(int max_chunks_ahead) {
+        this.max_chunks_ahead = max_chunks_ahead;
     }
 
 }
@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes top level nodes of a TopLevelIterator to a subscriber only as
+ * the subscriber requests them. Input is parsed only for nodes requested,
+ * so parsing pauses when there is no demand and no queue builds up in front
+ * of a slow subscriber.
+ *
+ * Nodes are delivered on the given Executor, one task at a time, so that
+ * the subscriber is never called concurrently. The task returns to the
+ * Executor when demand is met, so no thread is held while waiting for
+ * request(). Parsing is done in the task and may block on reading the
+ * input, which suits an Executor of virtual threads.
+ *
+ * The interfaces follow java.util.concurrent.Flow (and Reactive Streams).
+ * As the library is built for J2SE 1.5, they are declared here. In Java 9
+ * and above, a Flow.Publisher can be formed over the publisher as below.
+ * Only one subscriber is allowed, as the input can be read only once.
+ *
+ * <pre>
+ * Flow.Publisher&lt;JSONObject&gt; flow_publisher = s -&gt; publisher
+ *         .subscribe(new NodePublisher.Subscriber&lt;JSONObject&gt;() {
+ *             public void onSubscribe(NodePublisher.Subscription sn) {
+ *                 s.onSubscribe(new Flow.Subscription() {
+ *                     public void request(long n) { sn.request(n); }
+ *                     public void cancel() { sn.cancel(); }
+ *                 });
+ *             }
+ *             public void onNext(JSONObject node) { s.onNext(node); }
+ *             public void onError(Throwable t) { s.onError(t); }
+ *             public void onComplete() { s.onComplete(); }
+ *         });
+ * </pre>
+ *
+ * The subscriber receives onComplete() at end of input, or onError() with
+ * an IOException having the errors of the parser if parsing stopped due to
+ * an error.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public class NodePublisher<T> {
+
+    /**
+     * Receiver of nodes, as in java.util.concurrent.Flow.Subscriber
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Called once before any other method
+         *
+         * @param subscription
+         *            For requesting nodes or cancelling
+         */
+        public void onSubscribe(Subscription subscription);
+
+        /**
+         * Called for each node requested
+         *
+         * @param node
+         *            Top level node
+         */
+        public void onNext(T node);
+
+        /**
+         * Called when parsing stops due to error
+         *
+         * @param t
+         *            The error
+         */
+        public void onError(Throwable t);
+
+        /**
+         * Called at end of input
+         */
+        public void onComplete();
+    }
+
+    /**
+     * Link between publisher and subscriber, as in
+     * java.util.concurrent.Flow.Subscription
+     */
+    public interface Subscription {
+
+        /**
+         * Adds given number of nodes to demand
+         *
+         * @param n
+         *            Number of nodes, more than 0
+         */
+        public void request(long n);
+
+        /**
+         * Stops delivery and closes the input
+         */
+        public void cancel();
+    }
+
+    TopLevelIterator<T> it;
+    Executor executor;
+    NodeSubscription subscription = null;
+
+    /**
+     * Creates publisher over given iterator, such as one returned by
+     * MultiLevelCSVParser.iterateJSO()
+     *
+     * @param it
+     *            Iterator of top level nodes
+     * @param executor
+     *            Executor on which nodes are parsed and delivered
+     */
+    public NodePublisher(TopLevelIterator<T> it, Executor executor) {
+        this.it = it;
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribes given subscriber. A second subscriber receives onError()
+     * with IllegalStateException.
+     *
+     * @param subscriber
+     *            Subscriber to receive nodes
+     */
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null)
+            throw new NullPointerException();
+        synchronized (this) {
+            if (subscription == null) {
+                subscription = new NodeSubscription(subscriber);
+                subscriber.onSubscribe(subscription);
+                return;
+            }
+        }
+        subscriber.onSubscribe(new Subscription() {
+            public void request(long n) {
+            }
+
+            public void cancel() {
+            }
+        });
+        subscriber.onError(new IllegalStateException(
+                "Already subscribed. Input can be read only once."));
+    }
+
+    /**
+     * Subscription that delivers nodes as requested. Delivery is done by
+     * a task on the Executor, of which at most one is active at a time.
+     * Each call to request() or cancel() counts as work for the task, which
+     * goes on till there is no work pending.
+     */
+    private class NodeSubscription implements Subscription, Runnable {
+
+        Subscriber<? super T> subscriber;
+        AtomicLong demand = new AtomicLong();
+        AtomicInteger pending_work = new AtomicInteger();
+        volatile boolean is_cancelled = false;
+        volatile Throwable request_error = null;
+        boolean is_done = false;
+
+        NodeSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        public void request(long n) {
+            if (n <= 0)
+                request_error = new IllegalArgumentException(
+                        "Number of nodes requested must be more than 0");
+            else {
+                // Add to demand, staying at Long.MAX_VALUE on overflow
+                while (true) {
+                    long cur = demand.get();
+                    long next = cur + n;
+                    if (next < 0)
+                        next = Long.MAX_VALUE;
+                    if (demand.compareAndSet(cur, next))
+                        break;
+                }
+            }
+            schedule();
+        }
+
+        public void cancel() {
+            is_cancelled = true;
+            schedule();
+        }
+
+        /**
+         * Runs the task on the Executor unless it is already active
+         */
+        private void schedule() {
+            if (pending_work.getAndIncrement() == 0)
+                executor.execute(this);
+        }
+
+        public void run() {
+            int work = 1;
+            do {
+                deliver();
+                work = pending_work.addAndGet(-work);
+            } while (work != 0);
+        }
+
+        /**
+         * Parses and delivers nodes till demand is met
+         */
+        private void deliver() {
+            if (is_done)
+                return;
+            long delivered = 0;
+            long requested = demand.get();
+            try {
+                while (true) {
+                    if (is_cancelled) {
+                        end();
+                        return;
+                    }
+                    if (request_error != null) {
+                        end();
+                        subscriber.onError(request_error);
+                        return;
+                    }
+                    if (delivered == requested) {
+                        // Take demand added meanwhile before returning
+                        requested = (requested == Long.MAX_VALUE ? requested
+                                : demand.addAndGet(-delivered));
+                        delivered = 0;
+                        if (requested == 0)
+                            return;
+                    }
+                    boolean has_next;
+                    try {
+                        has_next = it.hasNext();
+                    } catch (IllegalStateException e) {
+                        end();
+                        subscriber.onError(e.getCause() == null ? e : e
+                                .getCause());
+                        return;
+                    }
+                    if (!has_next) {
+                        end();
+                        if (it.parser.ex.getErrorCode() == 0)
+                            subscriber.onComplete();
+                        else
+                            subscriber.onError(new IOException(it.parser.ex
+                                    .get_all_exceptions()));
+                        return;
+                    }
+                    subscriber.onNext(it.next());
+                    delivered++;
+                }
+            } catch (RuntimeException e) {
+                // Subscriber failed, so nothing more is delivered
+                end();
+                throw e;
+            }
+        }
+
+        /**
+         * Stops delivery, closing the input
+         */
+        private void end() {
+            if (is_done)
+                return;
+            is_done = true;
+            is_cancelled = true;
+            it.close();
+        }
+    }
+
+}
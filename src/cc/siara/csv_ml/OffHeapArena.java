@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+
+/**
+ * Chars held outside the Java heap in slabs of direct ByteBuffer, for
+ * values of CompactTree that are to be kept for long. The garbage collector
+ * sees only the few slab objects instead of the values, and the memory of
+ * all slabs is given back at once when the arena is closed.
+ *
+ * Chars are appended one after another and addressed by their position, as
+ * in the char array of CompactTree. Slabs begin small and double in size up
+ * to 1 MB, so that small trees do not hold much memory.
+ *
+ * The bytes held by each arena and by all open arenas together are
+ * counted, so that memory outside the heap can be watched. Chars can be
+ * read by many threads once appended, but appending and closing are to be
+ * done by one thread. The arena is not to be closed while being read, as
+ * the memory of the slabs may be freed right away.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public final class OffHeapArena {
+
+    // Sizes of slabs in chars, doubling from first to last
+    private static final int FIRST_SLAB_SHIFT = 12;
+    private static final int LAST_SLAB_SHIFT = 19;
+    private static final int GROWING_SLABS = LAST_SLAB_SHIFT
+            - FIRST_SLAB_SHIFT;
+    // Chars held by the slabs that grow
+    private static final int GROWING_CHARS = (1 << LAST_SLAB_SHIFT)
+            - (1 << FIRST_SLAB_SHIFT);
+
+    // Bytes held by all open arenas
+    private static long total_bytes = 0;
+
+    // Frees memory of direct buffer without waiting for garbage
+    // collection, or null if not available in this JVM
+    private static Object unsafe = null;
+    private static Method invoke_cleaner = null;
+    private static Method get_cleaner = null;
+    private static Method clean = null;
+    static {
+        try {
+            // Java 9 and above
+            Class<?> unsafe_class = Class.forName("sun.misc.Unsafe");
+            Field f = unsafe_class.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            unsafe = f.get(null);
+            invoke_cleaner = unsafe_class.getMethod("invokeCleaner",
+                    new Class<?>[] { ByteBuffer.class });
+        } catch (Exception e) {
+            try {
+                // Java 8 and below
+                get_cleaner = Class.forName("sun.nio.ch.DirectBuffer")
+                        .getMethod("cleaner", new Class<?>[0]);
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean",
+                        new Class<?>[0]);
+            } catch (Exception e1) {
+                // Slabs are freed by garbage collection
+                get_cleaner = null;
+            }
+        }
+    }
+
+    private ByteBuffer[] buffers = new ByteBuffer[16];
+    private CharBuffer[] slabs = new CharBuffer[16];
+    private int slab_count = 0;
+    private int char_count = 0;
+    private long bytes = 0;
+    private boolean is_closed = false;
+
+    OffHeapArena() {
+    }
+
+    /**
+     * Gets index of slab having char at given position
+     *
+     * @param pos
+     *            Position of char
+     * @return Index of slab
+     */
+    private static int slabOf(int pos) {
+        if (pos < GROWING_CHARS)
+            return 31 - Integer
+                    .numberOfLeadingZeros((pos >>> FIRST_SLAB_SHIFT) + 1);
+        return GROWING_SLABS + ((pos - GROWING_CHARS) >>> LAST_SLAB_SHIFT);
+    }
+
+    /**
+     * Gets position of first char of given slab
+     *
+     * @param slab
+     *            Index of slab
+     * @return Position of char
+     */
+    private static int slabStart(int slab) {
+        if (slab < GROWING_SLABS)
+            return ((1 << slab) - 1) << FIRST_SLAB_SHIFT;
+        return GROWING_CHARS + ((slab - GROWING_SLABS) << LAST_SLAB_SHIFT);
+    }
+
+    /**
+     * Adds slab after the last one
+     */
+    private void addSlab() {
+        if (slab_count == slabs.length) {
+            ByteBuffer[] new_buffers = new ByteBuffer[slab_count * 2];
+            System.arraycopy(buffers, 0, new_buffers, 0, slab_count);
+            buffers = new_buffers;
+            CharBuffer[] new_slabs = new CharBuffer[slab_count * 2];
+            System.arraycopy(slabs, 0, new_slabs, 0, slab_count);
+            slabs = new_slabs;
+        }
+        int size = 2 << (slab_count < GROWING_SLABS ? FIRST_SLAB_SHIFT
+                + slab_count : LAST_SLAB_SHIFT);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size).order(
+                ByteOrder.nativeOrder());
+        buffers[slab_count] = buffer;
+        slabs[slab_count++] = buffer.asCharBuffer();
+        bytes += size;
+        synchronized (OffHeapArena.class) {
+            total_bytes += size;
+        }
+    }
+
+    /**
+     * Appends chars of given value after the chars appended so far
+     *
+     * @param value
+     *            Value
+     */
+    void append(CharSequence value) {
+        if (is_closed)
+            throw closed();
+        int len = value.length();
+        if (len == 0)
+            return;
+        int slab = slabOf(char_count);
+        int pos = char_count - slabStart(slab);
+        for (int i = 0; i < len; i++) {
+            while (slab >= slab_count)
+                addSlab();
+            CharBuffer chars = slabs[slab];
+            chars.put(pos++, value.charAt(i));
+            if (pos == chars.capacity()) {
+                slab++;
+                pos = 0;
+            }
+        }
+        char_count += len;
+    }
+
+    /**
+     * Appends chars at given position to the given StringBuffer
+     *
+     * @param start
+     *            Position of first char
+     * @param len
+     *            Number of chars
+     * @param out_str
+     *            StringBuffer to append to
+     */
+    void appendTo(int start, int len, StringBuffer out_str) {
+        if (is_closed)
+            throw closed();
+        if (len == 0)
+            return;
+        int slab = slabOf(start);
+        int pos = start - slabStart(slab);
+        CharBuffer chars = slabs[slab];
+        for (int i = 0; i < len; i++) {
+            if (pos == chars.capacity()) {
+                chars = slabs[++slab];
+                pos = 0;
+            }
+            out_str.append(chars.get(pos++));
+        }
+    }
+
+    /**
+     * Forms String of chars at given position
+     *
+     * @param start
+     *            Position of first char
+     * @param len
+     *            Number of chars
+     * @return String
+     */
+    String getString(int start, int len) {
+        if (is_closed)
+            throw closed();
+        if (len == 0)
+            return "";
+        char[] value = new char[len];
+        int slab = slabOf(start);
+        int pos = start - slabStart(slab);
+        CharBuffer chars = slabs[slab];
+        for (int i = 0; i < len; i++) {
+            if (pos == chars.capacity()) {
+                chars = slabs[++slab];
+                pos = 0;
+            }
+            value[i] = chars.get(pos++);
+        }
+        return new String(value);
+    }
+
+    /**
+     * Forms exception for access after close
+     *
+     * @return IllegalStateException
+     */
+    private static IllegalStateException closed() {
+        return new IllegalStateException("Arena is closed");
+    }
+
+    /**
+     * Getter for number of chars appended
+     *
+     * @return Number of chars
+     */
+    public int getCharCount() {
+        return char_count;
+    }
+
+    /**
+     * Getter for number of bytes held outside heap by this arena
+     *
+     * @return Number of bytes, 0 once closed
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Getter for number of bytes held outside heap by all arenas not yet
+     * closed
+     *
+     * @return Number of bytes
+     */
+    public static synchronized long getTotalBytes() {
+        return total_bytes;
+    }
+
+    /**
+     * Whether the arena is closed
+     *
+     * @return true if closed
+     */
+    public boolean isClosed() {
+        return is_closed;
+    }
+
+    /**
+     * Gives back memory of all slabs. Chars cannot be read after this.
+     * Memory is freed right away where the JVM allows, otherwise when the
+     * slabs are garbage collected.
+     */
+    public void close() {
+        if (is_closed)
+            return;
+        is_closed = true;
+        for (int i = 0; i < slab_count; i++) {
+            free(buffers[i]);
+            buffers[i] = null;
+            slabs[i] = null;
+        }
+        slab_count = 0;
+        synchronized (OffHeapArena.class) {
+            total_bytes -= bytes;
+        }
+        bytes = 0;
+    }
+
+    /**
+     * Frees memory of direct buffer if the JVM allows
+     *
+     * @param buffer
+     *            Direct buffer not to be used after this
+     */
+    private static void free(ByteBuffer buffer) {
+        try {
+            if (invoke_cleaner != null)
+                invoke_cleaner.invoke(unsafe, new Object[] { buffer });
+            else if (get_cleaner != null) {
+                Object cleaner = get_cleaner.invoke(buffer, new Object[0]);
+                if (cleaner != null)
+                    clean.invoke(cleaner, new Object[0]);
+            }
+        } catch (Exception e) {
+            // Freed by garbage collection
+        }
+    }
+
+}
@@ -18,40 +18,38 @@
  */
 package cc.siara.csv_ml;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.List;
 
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import cc.siara.csv.ExceptionHandler;
+import cc.siara.csv_ml.schema.Column;
 
 /**
- * Encapsulates the DOM or JSON object being built and updates either of them
- * accordingly.
+ * Encapsulates the DOM, JSON or compact object being built. The object is
+ * built by one of the subclasses, DOMTreeBuilder, JSONTreeBuilder,
+ * CompactTreeBuilder and LiteDOMTreeBuilder, obtained through create(), so
+ * that the parser calls the builder for the target directly without
+ * checking the target on each call. The object is created in
+ * startDocument(), when the root given in the directive is known.
  * 
  * @author Arundale R.
  * @since 1.0
  */
-public class ParsedObject {
+public abstract class ParsedObject implements TreeBuilder {
 
     public static final short TARGET_W3C_DOC = 1;
     public static final short TARGET_JSON_OBJ = 2;
+    public static final short TARGET_COMPACT = 3;
+    public static final short TARGET_LITE_DOC = 4;
     static final String generalNSURI = "http://siara.cc/ns";
 
-    Document doc = null;
-    Node cur_element = null;
-    Element last_element = null;
-    String currentElementNS = "";
-
-    JSONObject jo = null;
-    JSONObject cur_jo = null;
-    JSONObject last_jo = null;
+    Column[] cur_columns = new Column[0];
 
     short target = TARGET_JSON_OBJ;
     String csv_ml_root = null;
@@ -59,78 +57,72 @@ public class ParsedObject {
     ExceptionHandler ex = null;
 
     Hashtable<String, String> nsMap = new Hashtable<String, String>();
-    Hashtable<String, String> pendingAttributes = new Hashtable<String, String>();
+
+    // Converter for typed values or null if values are kept as text
+    ValueConverter converter = null;
+
+    // Dictionary for interning values or null if not interned, along with
+    // interning state of the columns of each schema node
+    InternDictionary dict = null;
+    IdentityHashMap<Column[], InternDictionary.ColumnState[]> column_states = null;
+    Column[] cur_states_columns = null;
+    InternDictionary.ColumnState[] cur_column_states = null;
+
+    // Whether values are held outside heap
+    boolean is_off_heap = false;
+
+    // Top level nodes moved out of the root as they are completed, when
+    // iterating over them. null otherwise.
+    List<Object> completed_nodes = null;
 
     /**
-     * Initialize to build Document object
+     * Initialize target type
      * 
-     * @param csv_ml_root
-     *            Root node name to build initial Document
-     * @param ns_uri
-     *            Any global namespaces to build initial Document
-     * @param ex
+     * @param targetObject
+     *            Whether DOM or JSO
      */
-    public ParsedObject(String csv_ml_root, String csv_ml_encoding,
-            ExceptionHandler ex, short targetObject) {
-
+    ParsedObject(short targetObject) {
         this.target = targetObject;
-        this.ex = ex;
-        this.csv_ml_root = csv_ml_root;
-        this.csv_ml_encoding = csv_ml_encoding;
-        if (target == TARGET_JSON_OBJ) {
-            jo = new JSONObject();
-            cur_jo = jo;
-            last_jo = cur_jo;
-        } else {
-
-            // Look for namespace in the csv_ml_root directive
-            // (If namespaces need to be defined at the root they
-            // can be enumerated after the root delimited with
-            // space).
-            String namespace = "";
-            String[] ns_uri = new String[0];
-            int e_idx = csv_ml_root.indexOf("/");
-            if (e_idx > 0) {
-                ns_uri = csv_ml_root.substring(e_idx + 1).split(" ");
-                csv_ml_root = csv_ml_root.substring(0, e_idx);
-            }
-
-            // Check whether root element has a prefix
-            String rootNSPrefix = "";
-            int cIdx = csv_ml_root.indexOf(":");
-            if (cIdx > 0)
-                rootNSPrefix = csv_ml_root.substring(0, cIdx);
-            boolean rootNSURIFound = false;
-
-            // Build XML String for obtaining initial Document object
-            StringBuffer xml_str = new StringBuffer();
-            xml_str.append("<").append(csv_ml_root);
-            for (int j = 0; j < ns_uri.length; j++) {
-                int equalIdx = ns_uri[j].indexOf('=');
-                if (equalIdx == -1)
-                    break; // error condition. report?
-                String ns_prefix = ns_uri[j].substring(0, equalIdx);
-                nsMap.put(ns_prefix, ns_uri[j].substring(equalIdx + 1));
-                if (ns_prefix.equals(ns_prefix))
-                    rootNSURIFound = true;
-                xml_str.append(" xmlns:").append(ns_uri[j]);
-            }
-            // Use General Namespace prefix if one not defined.
-            if (rootNSPrefix.length() > 0 && !rootNSURIFound) {
-                xml_str.append(" xmlns:").append(rootNSPrefix).append("='")
-                        .append(generalNSURI).append("'");
-            }
-            xml_str.append("></").append(csv_ml_root).append(">");
-
-            // Parse and return document
-            doc = Util.parseXMLToDOM(xml_str.toString());
-            last_element = doc.getDocumentElement();
-            cur_element = last_element;
-            this.csv_ml_root = csv_ml_root;
-            // TODO: How to set document encoding? Is it automatic?
+    }
 
-        }
+    /**
+     * Creates object to build Document, JSONObject or CompactTree. Each
+     * object is to be used for one parse.
+     * 
+     * @param targetObject
+     *            Whether DOM, JSO, compact or lightweight DOM
+     * @return DOMTreeBuilder, JSONTreeBuilder, CompactTreeBuilder or
+     *         LiteDOMTreeBuilder
+     */
+    public static ParsedObject create(short targetObject) {
+        if (targetObject == TARGET_W3C_DOC)
+            return new DOMTreeBuilder();
+        if (targetObject == TARGET_COMPACT)
+            return new CompactTreeBuilder();
+        if (targetObject == TARGET_LITE_DOC)
+            return new LiteDOMTreeBuilder();
+        return new JSONTreeBuilder();
+    }
+
+    /**
+     * Keeps root and encoding given in directive, along with exception
+     * handler for reporting errors
+     * 
+     * @param directive
+     *            Directive of the input
+     * @param ex
+     *            Exception handler of the parser
+     */
+    public void startDocument(Directive directive, ExceptionHandler ex) {
+        this.ex = ex;
+        csv_ml_root = directive.getRoot();
+        csv_ml_encoding = directive.getEncoding();
+    }
 
+    /**
+     * Does nothing, as nodes still open need not be closed
+     */
+    public void endDocument() {
     }
 
     /**
@@ -147,110 +139,43 @@ public class ParsedObject {
     }
 
     /**
-     * Adds new W3C Element object and makes it current
+     * Sets whether values set by column index are converted to the type of
+     * the column. Applies only to JSON, in which integers and reals are put
+     * as Long and Double and dates as Long milliseconds since epoch. Values
+     * that are not valid for the type are kept as text.
      * 
-     * @param node_name
-     *            Name of new element to be created
+     * @param is_typed
+     *            true to convert values
      */
-    private void addNewElement(String node_name) {
-        Element new_node = null;
-        if (cur_element.getNodeType() == Node.DOCUMENT_NODE) {
-            // If given input tries to add more than one root, throw error
-            ex.set_err(MultiLevelCSVParser.E_ONLY_ONE_ROOT);
-            return;
-        } else {
-            // If directive specifies the first element as root,
-            // do not add new. Otherwise add new Element
-            if (!cur_element.equals(doc.getDocumentElement())
-                    || !node_name.equals(csv_ml_root)) {
-                int cIdx = node_name.indexOf(':');
-                if (cIdx != -1) {
-                    currentElementNS = node_name.substring(0, cIdx);
-                    node_name = node_name.substring(cIdx + 1);
-                } else
-                    currentElementNS = "";
-                new_node = doc.createElement(node_name);
-                cur_element.appendChild(new_node);
-            }
-        }
-        if (new_node != null) {
-            last_element = new_node;
-            cur_element = last_element;
-        }
+    public void setTypeConversion(boolean is_typed) {
+        converter = (is_typed ? new ValueConverter() : null);
     }
 
     /**
-     * Performas any pending activity against an element to finalize it. In this
-     * case, it adds any pending attributes needing namespace mapping.
+     * Sets whether values are held outside the Java heap. Applies only to
+     * CompactTree, whose values are then held in an OffHeapArena.
      * 
-     * Also if the node has a namespace attached, it recreates the node with
-     * specific URI.
+     * @param is_off_heap
+     *            true to hold values outside heap
      */
-    public void finalizeElement() {
-        // Add all remaining attributes
-        for (String col_name : pendingAttributes.keySet()) {
-            String value = pendingAttributes.get(col_name);
-            int cIdx = col_name.indexOf(':');
-            String ns = col_name.substring(0, cIdx);
-            String nsURI = nsMap.get(ns);
-            if (nsURI == null)
-                nsURI = generalNSURI;
-            Attr attr = doc.createAttributeNS(nsURI,
-                    col_name.substring(cIdx + 1));
-            attr.setPrefix(ns);
-            attr.setValue(value);
-            ((Element) cur_element).setAttributeNodeNS(attr);
-        }
-        // If the element had a namespace prefix, it has to be recreated.
-        if (!currentElementNS.equals("")
-                && !doc.getDocumentElement().equals(cur_element)) {
-            Node parent = cur_element.getParentNode();
-            Element cur_ele = (Element) parent.removeChild(cur_element);
-            String node_name = cur_ele.getNodeName();
-            String nsURI = nsMap.get(currentElementNS);
-            if (nsURI == null)
-                nsURI = generalNSURI;
-            Element new_node = doc.createElementNS(nsURI, currentElementNS+":"+node_name);
-            parent.appendChild(new_node);
-            // Add all attributes
-            NamedNodeMap attrs = cur_ele.getAttributes();
-            while (attrs.getLength() > 0) {
-                Attr attr = (Attr) attrs.item(0);
-                cur_ele.removeAttributeNode(attr);
-                nsURI = attr.getNamespaceURI();
-                new_node.setAttributeNodeNS(attr);
-            }
-            // Add all CData sections
-            NodeList childNodes = cur_ele.getChildNodes();
-            for (int i = 0; i < childNodes.getLength(); i++) {
-                Node node = childNodes.item(i);
-                if (node.getNodeType() == Node.CDATA_SECTION_NODE)
-                    new_node.appendChild(node);
-            }
-            cur_element = new_node;
-        }
-        pendingAttributes = new Hashtable<String, String>();
+    public void setOffHeap(boolean is_off_heap) {
+        this.is_off_heap = is_off_heap;
     }
 
     /**
-     * Adds new JSONObject and makes it current
+     * Sets dictionary for interning values set by column index, so that
+     * repeating values share one String.
      * 
-     * @param node_name
-     *            Name of new JSONObject to be created
+     * @param dict
+     *            Dictionary or null to not intern
+     * @see InternDictionary
      */
-    private void addNewJO(String node_name) {
-        JSONObject new_node = null;
-        if (cur_jo.get(node_name) == null) {
-            cur_jo.put(node_name, new JSONArray());
-        }
-        // Each node is assumed to be an array having multiple data elements
-        JSONArray ja = (JSONArray) cur_jo.get(node_name);
-        new_node = new JSONObject();
-        // Keep a reference to the parent, so that we can go up the level
-        new_node.put("parent_ref", cur_jo);
-        ja.add(new_node);
-        cur_jo = new_node;
-        last_jo = cur_jo;
+    public void setInternDictionary(InternDictionary dict) {
+        this.dict = dict;
+        column_states = (dict == null ? null
+                : new IdentityHashMap<Column[], InternDictionary.ColumnState[]>());
+        cur_states_columns = null;
+        cur_column_states = null;
     }
 
     /**
@@ -259,120 +184,75 @@ public class ParsedObject {
      * @param node_name
      *            Name of new node to be created.
      */
-    public void addNewNode(String node_name) {
-        if (target == TARGET_W3C_DOC)
-            addNewElement(node_name);
-        else
-            addNewJO(node_name);
-    }
+    public abstract void addNewNode(String node_name);
 
     /**
-     * Sets data attribute. In case of W3C Document, sets value of W3C
-     * Attribute. In case of JSON, sets new JSONString
+     * Makes given columns current for setting attributes by column index
      * 
-     * @param col_name
-     *            Name of attribute
-     * @param value
-     *            Value of attribute
+     * @param columns
+     *            Columns of the node as defined in schema
      */
-    public void setAttribute(String col_name, String value) {
-        if (target == TARGET_W3C_DOC) {
-            if (cur_element.getNodeType() == Node.ELEMENT_NODE) {
-                int cIdx = col_name.indexOf(':');
-                if (cIdx == -1)
-                    ((Element) cur_element).setAttribute(col_name, value);
-                else {
-                    String ns = col_name.substring(0, cIdx);
-                    if (ns.equals("xmlns")) {
-                        nsMap.put(col_name.substring(cIdx + 1), value);
-                    } else {
-                        String nsURI = nsMap.get(ns);
-                        if (nsURI == null) {
-                            pendingAttributes.put(col_name, value);
-                        } else {
-                            Attr attr = doc.createAttributeNS(nsURI,
-                                    col_name.substring(cIdx + 1));
-                            attr.setPrefix(ns);
-                            attr.setValue(value);
-                            ((Element) cur_element).setAttributeNodeNS(attr);
-                        }
-                    }
-                }
-            }
-        } else
-            cur_jo.put(col_name, value);
+    final void setColumns(Column[] columns) {
+        cur_columns = columns;
+        if (dict != null && columns != cur_states_columns)
+            findColumnStates();
     }
 
     /**
-     * Sets node content. In case of W3C Document, creates W3C CData section. In
-     * case of JSON, sets new JSONString "_content".
-     * 
-     * @param content
-     *            Value to be added
+     * Makes interning state of current columns available, creating it when
+     * the columns are seen first
      */
-    public void addContent(String content) {
-        if (target == TARGET_W3C_DOC) {
-            cur_element.appendChild(doc.createCDATASection(content));
-        } else {
-            String cur_val = (String) cur_jo.get("_content");
-            if (cur_val == null)
-                cur_jo.put("_content", content);
-            else
-                cur_jo.put("_content", cur_val + "," + content);
+    private void findColumnStates() {
+        InternDictionary.ColumnState[] states = column_states.get(cur_columns);
+        if (states == null) {
+            states = new InternDictionary.ColumnState[cur_columns.length];
+            for (int i = 0; i < states.length; i++)
+                states[i] = dict.newColumnState(cur_columns[i]);
+            column_states.put(cur_columns, states);
         }
-
+        cur_states_columns = cur_columns;
+        cur_column_states = states;
     }
 
     /**
-     * Traverse to parent element to go up one level
+     * Forms String for value of column at given index, interning it if a
+     * dictionary is set
+     * 
+     * @param col_idx
+     *            Index of column
+     * @param value
+     *            Value
+     * @return Value as String
      */
-    public void traverseToParent() {
-        if (target == TARGET_W3C_DOC) {
-            if (cur_element.getNodeType() != Node.DOCUMENT_NODE) {
-                cur_element = cur_element.getParentNode();
-            }
-        } else {
-            JSONObject parent_ref = (JSONObject) cur_jo.get("parent_ref");
-            cur_jo = parent_ref;
-        }
+    final String toString(int col_idx, CharSequence value) {
+        if (dict == null)
+            return value.toString();
+        return dict.internColumnValue(cur_column_states[col_idx], value);
     }
 
     /**
-     * Deletes all attributes with name "parent_ref" in all levels in a
-     * JSONObject hierarchy recursively.
+     * Starts moving top level nodes out of the root as they are completed,
+     * so that they can be taken one by one
      */
-    public void deleteParentRefs() {
-        if (target != TARGET_JSON_OBJ)
-            return;
-        deleteParentRefsRecursively(jo);
+    void collectCompletedNodes() {
+        completed_nodes = new ArrayList<Object>();
     }
 
     /**
-     * Deletes all attributes with name "parent_ref" in all levels in a
-     * JSONObject hierarchy recursively.
+     * Traverses up to the root, completing the nodes still open at end of
+     * input
+     */
+    abstract void completeAll();
+
+    /**
+     * Appends top level nodes parsed into another object, such as a chunk of
+     * the same file parsed separately, to the root of this object. The nodes
+     * are moved out of the given object.
      * 
-     * @param obj
-     *            Initially pass the root object
+     * @param chunk
+     *            Parsed object of same target type
      */
-    private void deleteParentRefsRecursively(JSONObject obj) {
-        if (obj.containsKey("parent_ref"))
-            obj.remove("parent_ref");
-        // Go through each child object or array
-        // recursively
-        for (Object set : obj.keySet()) {
-            String key = (String) set;
-            Object child_obj = obj.get(key);
-            if (child_obj instanceof JSONArray) {
-                JSONArray ja = (JSONArray) child_obj;
-                for (Object ele : ja) {
-                    if (ele instanceof JSONObject)
-                        deleteParentRefsRecursively((JSONObject) ele);
-                }
-            } else if (child_obj instanceof JSONObject) {
-                deleteParentRefsRecursively((JSONObject) child_obj);
-            }
-        }
-    }
+    public abstract void appendChunk(ParsedObject chunk);
 
     /**
      * Getter for Target type
@@ -386,37 +266,46 @@ public class ParsedObject {
     /**
      * Getter for W3C Document
      * 
-     * @return W3C Document
+     * @return W3C Document or null if target is JSON
      */
     public Document getDocument() {
-        return doc;
+        return null;
     }
 
     /**
      * Getter for JSONObject
      * 
-     * @return JSONObject
+     * @return JSONObject or null if target is DOM
      */
     public JSONObject getJSONObject() {
-        return jo;
+        return null;
+    }
+
+    /**
+     * Getter for CompactTree
+     * 
+     * @return CompactTree or null if target is not compact
+     */
+    public CompactTree getCompactTree() {
+        return null;
     }
 
     /**
      * Getter for currently constructed object
      * 
-     * @return JSONObject
+     * @return JSONObject or null if target is DOM
      */
     public JSONObject getCurrentJSO() {
-        return last_jo;
+        return null;
     }
 
     /**
      * Getter for currently constructed object
      * 
-     * @return Element
+     * @return Element or null if target is JSON
      */
     public Element getCurrentElement() {
-        return last_element;
+        return null;
     }
 
 }
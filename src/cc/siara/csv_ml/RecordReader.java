@@ -0,0 +1,507 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import cc.siara.csv.ExceptionHandler;
+import cc.siara.csv_ml.schema.Column;
+import cc.siara.csv_ml.schema.Node;
+
+/**
+ * Reads records one at a time through MultiLevelCSVParser without building
+ * DOM or JSON.
+ *
+ * After next() returns true, the reader itself is a view of the current
+ * record: its schema node, level, ordinal, the ordinal of its parent and the
+ * values of its columns. Values are copied into buffers of the reader that
+ * are reused for every record, so once the buffers have grown to the size of
+ * the largest record, reading allocates nothing per record. The exceptions
+ * are values beyond the columns defined for the node, which are added as
+ * content, and rows referring to re-usable nodes.
+ *
+ * Values returned by getValue() are valid only till next() is called. Call
+ * toString() or getString() to keep them.
+ *
+ * Usage:
+ *
+ * <pre>
+ * RecordReader rr = new RecordReader();
+ * rr.open(new FileReader(&quot;input.csv&quot;));
+ * while (rr.next()) {
+ *     if (rr.getNodeName().equals(&quot;student&quot;))
+ *         total += rr.getLong(1);
+ * }
+ * if (rr.getParser().getEx().getErrorCode() != 0)
+ *     // handle error
+ * </pre>
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public class RecordReader {
+
+    MultiLevelCSVParser parser;
+    ValueConverter converter = new ValueConverter();
+    boolean is_open = false;
+    boolean is_complete = false; // whether all columns of record are read
+    long record_count = 0;
+    long[] level_ordinals = new long[16]; // last record at each level
+
+    // Current record
+    Node node_schema = null;
+    int level = 0;
+    long ordinal = -1;
+    long parent_ordinal = -1;
+    int col_count = 0;
+    String[] col_names = new String[16];
+    int[] offsets = new int[16];
+    int[] lengths = new int[16];
+    ValueView[] views = new ValueView[16];
+    char[] chars = new char[256];
+    int chars_len = 0;
+
+    /**
+     * Creates reader with a new parser
+     */
+    public RecordReader() {
+        this(new MultiLevelCSVParser());
+    }
+
+    /**
+     * Creates reader with given parser, such as one with delimiter set. The
+     * parser is not to be used otherwise while the reader is open.
+     *
+     * @param parser
+     *            Parser to use
+     */
+    public RecordReader(MultiLevelCSVParser parser) {
+        this.parser = parser;
+        for (int i = 0; i < views.length; i++)
+            views[i] = new ValueView(i);
+    }
+
+    /**
+     * Starts reading from given InputStream
+     *
+     * @param is
+     *            InputStream to read
+     * @throws IOException
+     */
+    public void open(InputStream is) throws IOException {
+        open(new InputSource(is));
+    }
+
+    /**
+     * Starts reading from given Reader
+     *
+     * @param r
+     *            Reader to read
+     * @throws IOException
+     */
+    public void open(Reader r) throws IOException {
+        open(new InputSource(r));
+    }
+
+    /**
+     * Starts reading from given File, which is memory mapped and closed at
+     * the end
+     *
+     * @param f
+     *            File to read
+     * @throws IOException
+     */
+    public void open(File f) throws IOException {
+        open(new InputSource(f));
+    }
+
+    /**
+     * Parses directive and schema and prepares to read records
+     *
+     * @param is
+     *            InputSource to read
+     * @throws IOException
+     */
+    private void open(InputSource is) throws IOException {
+        close();
+        record_count = 0;
+        node_schema = null;
+        ordinal = -1;
+        col_count = 0;
+        is_complete = false;
+        is_open = true;
+        try {
+            parser.initParse(new RecordOutput(), is, false);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Advances to the next record
+     *
+     * @return true if a record was read, false at end of input or error
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        if (!is_open)
+            return false;
+        is_complete = false;
+        if (!parser.parseNextNode()) {
+            // The last record may have been read before end of input
+            is_open = false;
+        }
+        return is_complete;
+    }
+
+    /**
+     * Stops reading, closing the input if it was opened by the reader
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (!is_open)
+            return;
+        is_open = false;
+        parser.closeParse();
+    }
+
+    /**
+     * Getter for the parser, for its directive, schema and errors
+     *
+     * @return Parser
+     */
+    public MultiLevelCSVParser getParser() {
+        return parser;
+    }
+
+    /**
+     * Getter for schema node of current record
+     *
+     * @return Schema node
+     */
+    public Node getNodeSchema() {
+        return node_schema;
+    }
+
+    /**
+     * Getter for id of the schema node of current record
+     *
+     * @return Node id
+     */
+    public int getNodeId() {
+        return node_schema.getId();
+    }
+
+    /**
+     * Getter for name of the schema node of current record
+     *
+     * @return Node name
+     */
+    public String getNodeName() {
+        return node_schema.getName();
+    }
+
+    /**
+     * Getter for level of current record, 0 being top level
+     *
+     * @return Level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Getter for ordinal of current record, counting from 0 in the order
+     * records appear
+     *
+     * @return Ordinal
+     */
+    public long getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Getter for ordinal of the parent record of current record
+     *
+     * @return Ordinal of parent or -1 for top level records
+     */
+    public long getParentOrdinal() {
+        return parent_ordinal;
+    }
+
+    /**
+     * Getter for number of values in current record, including content
+     *
+     * @return Number of values
+     */
+    public int getColumnCount() {
+        return col_count;
+    }
+
+    /**
+     * Gets name of column at given index
+     *
+     * @param col_idx
+     *            Index of column starting with 0
+     * @return Attribute name of column, or null if the value is content
+     */
+    public String getColumnName(int col_idx) {
+        checkIndex(col_idx);
+        return col_names[col_idx];
+    }
+
+    /**
+     * Gets value of column at given index as view into the reader's buffer,
+     * valid till next() is called
+     *
+     * @param col_idx
+     *            Index of column starting with 0
+     * @return Value
+     */
+    public CharSequence getValue(int col_idx) {
+        checkIndex(col_idx);
+        return views[col_idx];
+    }
+
+    /**
+     * Gets value of column at given index as new String
+     *
+     * @param col_idx
+     *            Index of column starting with 0
+     * @return Value
+     */
+    public String getString(int col_idx) {
+        checkIndex(col_idx);
+        return new String(chars, offsets[col_idx], lengths[col_idx]);
+    }
+
+    /**
+     * Gets value of column at given index as integer
+     *
+     * @param col_idx
+     *            Index of column starting with 0
+     * @return Value
+     * @throws NumberFormatException
+     *             if the value is not an integer
+     */
+    public long getLong(int col_idx) {
+        CharSequence value = getValue(col_idx);
+        if (!converter.convert(value, Column.TYPE_INTEGER))
+            throw new NumberFormatException("For input string: \"" + value
+                    + "\"");
+        return converter.getLong();
+    }
+
+    /**
+     * Gets value of column at given index as real
+     *
+     * @param col_idx
+     *            Index of column starting with 0
+     * @return Value
+     * @throws NumberFormatException
+     *             if the value is not a number
+     */
+    public double getDouble(int col_idx) {
+        CharSequence value = getValue(col_idx);
+        if (!converter.convert(value, Column.TYPE_REAL))
+            throw new NumberFormatException("For input string: \"" + value
+                    + "\"");
+        return converter.getDouble();
+    }
+
+    /**
+     * Checks column index against number of values in current record
+     *
+     * @param col_idx
+     *            Index of column
+     */
+    private void checkIndex(int col_idx) {
+        if (col_idx < 0 || col_idx >= col_count)
+            throw new IndexOutOfBoundsException("Column: " + col_idx
+                    + ", Count: " + col_count);
+    }
+
+    /**
+     * Begins new record. Called through RecordOutput for each row.
+     *
+     * @param node_schema
+     *            Schema node of the record
+     * @param level
+     *            Level of the record
+     */
+    void startRecord(Node node_schema, int level) {
+        this.node_schema = node_schema;
+        this.level = level;
+        ordinal = record_count++;
+        if (level == level_ordinals.length) {
+            long[] new_level_ordinals = new long[level * 2];
+            System.arraycopy(level_ordinals, 0, new_level_ordinals, 0, level);
+            level_ordinals = new_level_ordinals;
+        }
+        level_ordinals[level] = ordinal;
+        parent_ordinal = (level == 0 ? -1 : level_ordinals[level - 1]);
+        col_count = 0;
+        chars_len = 0;
+    }
+
+    /**
+     * Copies value of a column into the buffer
+     *
+     * @param col_idx
+     *            Index of column
+     * @param col_name
+     *            Name of column or null for content
+     * @param value
+     *            Value
+     */
+    void setValue(int col_idx, String col_name, CharSequence value) {
+        if (col_idx >= offsets.length)
+            growColumns(Math.max(col_idx + 1, offsets.length * 2));
+        if (col_idx >= col_count)
+            col_count = col_idx + 1;
+        col_names[col_idx] = col_name;
+        int len = value.length();
+        if (chars_len + len > chars.length) {
+            char[] new_chars = new char[Math.max(chars_len + len,
+                    chars.length * 2)];
+            System.arraycopy(chars, 0, new_chars, 0, chars_len);
+            chars = new_chars;
+        }
+        offsets[col_idx] = chars_len;
+        if (value instanceof FieldValue) {
+            FieldValue fv = (FieldValue) value;
+            if (fv.has_escaped_quotes) {
+                // Quotes within quoted values are present only as pairs
+                for (int i = fv.offset, end = fv.offset + fv.len; i < end; i++) {
+                    char c = fv.buf[i];
+                    chars[chars_len++] = c;
+                    if (c == '"')
+                        i++;
+                }
+            } else {
+                System.arraycopy(fv.buf, fv.offset, chars, chars_len, len);
+                chars_len += len;
+            }
+        } else {
+            for (int i = 0; i < len; i++)
+                chars[chars_len++] = value.charAt(i);
+        }
+        lengths[col_idx] = chars_len - offsets[col_idx];
+    }
+
+    /**
+     * Grows arrays holding columns to given size
+     *
+     * @param size
+     *            New size
+     */
+    private void growColumns(int size) {
+        String[] new_col_names = new String[size];
+        System.arraycopy(col_names, 0, new_col_names, 0, col_names.length);
+        col_names = new_col_names;
+        int[] new_offsets = new int[size];
+        System.arraycopy(offsets, 0, new_offsets, 0, offsets.length);
+        offsets = new_offsets;
+        int[] new_lengths = new int[size];
+        System.arraycopy(lengths, 0, new_lengths, 0, lengths.length);
+        lengths = new_lengths;
+        ValueView[] new_views = new ValueView[size];
+        System.arraycopy(views, 0, new_views, 0, views.length);
+        for (int i = views.length; i < size; i++)
+            new_views[i] = new ValueView(i);
+        views = new_views;
+    }
+
+    /**
+     * View of the value of a column in the reader's buffer
+     */
+    private final class ValueView implements CharSequence {
+
+        int col_idx;
+
+        ValueView(int col_idx) {
+            this.col_idx = col_idx;
+        }
+
+        public int length() {
+            return lengths[col_idx];
+        }
+
+        public char charAt(int index) {
+            if (index < 0 || index >= lengths[col_idx])
+                throw new StringIndexOutOfBoundsException(index);
+            return chars[offsets[col_idx] + index];
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        public String toString() {
+            return new String(chars, offsets[col_idx], lengths[col_idx]);
+        }
+    }
+
+    /**
+     * Output object used while reading records, which copies values of each
+     * row into the reader
+     */
+    private final class RecordOutput implements TreeBuilder {
+
+        Column[] columns = new Column[0];
+        int attr_ctr = 0; // for generated columns
+
+        public void startDocument(Directive directive, ExceptionHandler ex) {
+        }
+
+        public void addNewNode(Node node_schema, int level) {
+            columns = node_schema.getColumnArray();
+            attr_ctr = 0;
+            startRecord(node_schema, level);
+        }
+
+        public void setAttribute(String col_name, CharSequence value) {
+            setValue(attr_ctr++, col_name, value);
+        }
+
+        public void setAttribute(int col_idx, CharSequence value) {
+            setValue(col_idx, columns[col_idx].getAttrName(), value);
+        }
+
+        public void addContent(String content) {
+            setValue(col_count, null, content);
+        }
+
+        public void finalizeElement() {
+            is_complete = true;
+        }
+
+        public void traverseToParent() {
+        }
+
+        public void endDocument() {
+        }
+    }
+
+}
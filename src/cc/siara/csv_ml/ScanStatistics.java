@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cc.siara.csv_ml.schema.MultiLevelCSVSchema;
+import cc.siara.csv_ml.schema.Node;
+
+/**
+ * Statistics gathered by MultiLevelCSVParser.scan() without building DOM or
+ * JSON: number of records of each node, maximum depth, size of input and the
+ * first error if any.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public class ScanStatistics {
+
+    // Record counts by schema node id
+    long[] node_counts = new long[16];
+    MultiLevelCSVSchema schema = null;
+    long record_count = 0;
+    int max_depth = 0;
+    long char_count = 0;
+    long byte_count = -1;
+    int line_count = 0;
+    short error_code = 0;
+    int error_line = 0;
+    int error_col = 0;
+
+    /**
+     * Counts a record of given schema node
+     *
+     * @param node
+     *            Schema node of the record
+     * @param level
+     *            Level of the record starting with 0
+     */
+    void countNode(Node node, int level) {
+        int id = node.getId();
+        if (id >= node_counts.length) {
+            long[] new_node_counts = new long[Math.max(id + 1,
+                    node_counts.length * 2)];
+            System.arraycopy(node_counts, 0, new_node_counts, 0,
+                    node_counts.length);
+            node_counts = new_node_counts;
+        }
+        node_counts[id]++;
+        record_count++;
+        if (level >= max_depth)
+            max_depth = level + 1;
+    }
+
+    /**
+     * Gets record counts by node path, such as student.subject, in the order
+     * the nodes appear in the schema. Re-usable nodes are counted under
+     * their own name wherever they appear.
+     *
+     * @return Map of node path to number of records
+     */
+    public Map<String, Long> getRecordCounts() {
+        Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        if (schema == null)
+            return counts;
+        for (int i = 0; i < schema.getNodeCount(); i++) {
+            long count = (i < node_counts.length ? node_counts[i] : 0);
+            if (count > 0)
+                counts.put(getPath(schema.getNodeById(i)),
+                        Long.valueOf(count));
+        }
+        return counts;
+    }
+
+    /**
+     * Forms path of names from top level node to given node
+     *
+     * @param node
+     *            Schema node
+     * @return Path of names separated by dot
+     */
+    private String getPath(Node node) {
+        StringBuffer path = new StringBuffer(node.getName());
+        Node root = schema.getRootNode();
+        for (Node parent = node.getParent(); parent != null && parent != root; parent = parent
+                .getParent())
+            path.insert(0, '.').insert(0, parent.getName());
+        return path.toString();
+    }
+
+    /**
+     * Gets number of records of given node path
+     *
+     * @param path
+     *            Node path such as student.subject
+     * @return Number of records
+     */
+    public long getRecordCount(String path) {
+        Long count = getRecordCounts().get(path);
+        return (count == null ? 0 : count.longValue());
+    }
+
+    /**
+     * Getter for total number of records of all nodes
+     *
+     * @return Number of records
+     */
+    public long getRecordCount() {
+        return record_count;
+    }
+
+    /**
+     * Getter for maximum depth of records. Top level records are at depth
+     * 1.
+     *
+     * @return Maximum depth or 0 if there are no records
+     */
+    public int getMaxDepth() {
+        return max_depth;
+    }
+
+    /**
+     * Getter for number of characters read
+     *
+     * @return Number of characters
+     */
+    public long getCharCount() {
+        return char_count;
+    }
+
+    /**
+     * Getter for number of bytes read from InputStream, or size of File
+     *
+     * @return Number of bytes or -1 if input was given as Reader
+     */
+    public long getByteCount() {
+        return byte_count;
+    }
+
+    /**
+     * Getter for number of lines read, including directive and schema
+     *
+     * @return Number of lines
+     */
+    public int getLineCount() {
+        return line_count;
+    }
+
+    /**
+     * Getter for the schema used, which includes nodes generated when there
+     * was no schema
+     *
+     * @return Schema
+     */
+    public MultiLevelCSVSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Whether the input was scanned without error
+     *
+     * @return true if no error
+     */
+    public boolean isWellFormed() {
+        return error_code == 0;
+    }
+
+    /**
+     * Getter for code of the first error. Scanning stops at the error.
+     *
+     * @return Error code or 0 if no error
+     */
+    public short getErrorCode() {
+        return error_code;
+    }
+
+    /**
+     * Getter for line number of the first error
+     *
+     * @return Line number or 0 if no error
+     */
+    public int getErrorLine() {
+        return error_line;
+    }
+
+    /**
+     * Getter for column number of the first error
+     *
+     * @return Column number or 0 if no error
+     */
+    public int getErrorCol() {
+        return error_col;
+    }
+
+}
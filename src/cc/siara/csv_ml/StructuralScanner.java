@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+/**
+ * Locates structural characters (delimiter, quote, line ends and comment
+ * start) in a char[] window, four characters at a time.
+ *
+ * Four chars are packed into the 16 bit lanes of a long and compared with a
+ * pattern having the character to find in each lane. A lane that matches
+ * becomes zero after xor and is detected by the borrow it causes on
+ * subtracting 1 from each lane. Lanes above a matching lane may show false
+ * matches due to the borrow, but the lowest lane found is always exact, which
+ * is all that is needed to find the next position.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+final class StructuralScanner {
+
+    private static final long ONES = 0x0001000100010001L;
+    private static final long HIGHS = 0x8000800080008000L;
+
+    // Patterns for fixed structural characters
+    static final long QUOTE = pattern('"');
+    static final long LF = pattern('\n');
+    static final long CR = pattern('\r');
+    static final long SLASH = pattern('/');
+
+    private StructuralScanner() {
+    }
+
+    /**
+     * Forms the pattern to search for given character
+     *
+     * @param c
+     *            Character to search for
+     * @return Character repeated in each lane of a long
+     */
+    static long pattern(char c) {
+        return ONES * c;
+    }
+
+    /**
+     * Packs four characters starting at given position into a long
+     *
+     * @param buf
+     *            Window
+     * @param i
+     *            Position of first character, which goes to the lowest lane
+     * @return Packed characters
+     */
+    private static long word(char[] buf, int i) {
+        return buf[i] | ((long) buf[i + 1] << 16) | ((long) buf[i + 2] << 32)
+                | ((long) buf[i + 3] << 48);
+    }
+
+    /**
+     * Marks the high bit of lanes that are zero
+     *
+     * @param x
+     *            Packed lanes
+     * @return Mask having high bit of zero lanes set
+     */
+    private static long zeroLanes(long x) {
+        return (x - ONES) & ~x & HIGHS;
+    }
+
+    /**
+     * Finds position of given character
+     *
+     * @param buf
+     *            Window to search
+     * @param from
+     *            Start position
+     * @param to
+     *            End position (exclusive)
+     * @param p
+     *            Pattern of character to find, formed using pattern()
+     * @return Position found or <code>to</code> if not found
+     */
+    static int indexOf(char[] buf, int from, int to, long p) {
+        int i = from;
+        for (int last = to - 4; i <= last; i += 4) {
+            long m = zeroLanes(word(buf, i) ^ p);
+            if (m != 0)
+                return i + (Long.numberOfTrailingZeros(m) >> 4);
+        }
+        char c = (char) p;
+        for (; i < to; i++) {
+            if (buf[i] == c)
+                return i;
+        }
+        return to;
+    }
+
+    /**
+     * Finds position of the first character that stops an unquoted value,
+     * that is, the delimiter, line ends or a possible comment start
+     *
+     * @param buf
+     *            Window to search
+     * @param from
+     *            Start position
+     * @param to
+     *            End position (exclusive)
+     * @param delim
+     *            Pattern of delimiter, formed using pattern()
+     * @return Position found or <code>to</code> if not found
+     */
+    static int indexOfUnquotedStop(char[] buf, int from, int to, long delim) {
+        int i = from;
+        for (int last = to - 4; i <= last; i += 4) {
+            long w = word(buf, i);
+            long m = zeroLanes(w ^ delim) | zeroLanes(w ^ LF)
+                    | zeroLanes(w ^ CR) | zeroLanes(w ^ SLASH);
+            if (m != 0)
+                return i + (Long.numberOfTrailingZeros(m) >> 4);
+        }
+        char d = (char) delim;
+        for (; i < to; i++) {
+            char c = buf[i];
+            if (c == d || c == '\n' || c == '\r' || c == '/')
+                return i;
+        }
+        return to;
+    }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import cc.siara.csv.ExceptionHandler;
+import cc.siara.csv_ml.schema.Node;
+
+/**
+ * Passes each call of the parser to several builders (sinks), so that the
+ * input is tokenized and resolved through the schema once for all of them.
+ * For example, both W3C Document and JSONObject can be built in one pass:
+ *
+ * <pre>
+ * ParsedObject dom = ParsedObject.create(ParsedObject.TARGET_W3C_DOC);
+ * ParsedObject json = ParsedObject.create(ParsedObject.TARGET_JSON_OBJ);
+ * TeeBuilder tee = new TeeBuilder();
+ * tee.addSink(dom);
+ * tee.addSink(json);
+ * parser.parse(reader, tee);
+ * Document doc = dom.getDocument();
+ * JSONObject jo = json.getJSONObject();
+ * </pre>
+ *
+ * Handlers can be added through MultiLevelCSVParser.newHandlerBuilder().
+ *
+ * Each sink can skip the rest of the current node and the nodes below it
+ * using skipSubtree(), without affecting other sinks. The skipped node still
+ * receives finalizeElement() for its own row and traverseToParent() when it
+ * is over, so that the sink stays balanced.
+ *
+ * Time spent in each sink is measured if timing is turned on.
+ *
+ * The sinks share the exception handler of the parser, so an error reported
+ * by any sink (such as a second root in W3C DOM) stops parsing for all.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public class TeeBuilder implements TreeBuilder {
+
+    TreeBuilder[] sinks = new TreeBuilder[4];
+    int sink_count = 0;
+    // Depth of the node being skipped by each sink, or 0 if not skipping
+    int[] skip_depths = new int[4];
+    long[] sink_nanos = new long[4];
+    boolean is_timed = false;
+    int depth = 0; // number of nodes open
+
+    /**
+     * Adds a sink
+     *
+     * @param sink
+     *            Builder to receive calls
+     * @return Index of the sink, for skipSubtree() and getSinkNanos()
+     */
+    public int addSink(TreeBuilder sink) {
+        if (sink_count == sinks.length) {
+            TreeBuilder[] new_sinks = new TreeBuilder[sink_count * 2];
+            System.arraycopy(sinks, 0, new_sinks, 0, sink_count);
+            sinks = new_sinks;
+            int[] new_skip_depths = new int[sink_count * 2];
+            System.arraycopy(skip_depths, 0, new_skip_depths, 0, sink_count);
+            skip_depths = new_skip_depths;
+            long[] new_sink_nanos = new long[sink_count * 2];
+            System.arraycopy(sink_nanos, 0, new_sink_nanos, 0, sink_count);
+            sink_nanos = new_sink_nanos;
+        }
+        sinks[sink_count] = sink;
+        return sink_count++;
+    }
+
+    /**
+     * Getter for number of sinks
+     *
+     * @return Number of sinks
+     */
+    public int getSinkCount() {
+        return sink_count;
+    }
+
+    /**
+     * Gets sink at given index
+     *
+     * @param sink_idx
+     *            Index of sink
+     * @return Sink
+     */
+    public TreeBuilder getSink(int sink_idx) {
+        return sinks[sink_idx];
+    }
+
+    /**
+     * Stops passing values and nodes below current node to given sink, till
+     * current node is over. Can be called from the sink's addNewNode() or
+     * any time during the node.
+     *
+     * @param sink_idx
+     *            Index of sink
+     */
+    public void skipSubtree(int sink_idx) {
+        if (depth > 0 && skip_depths[sink_idx] == 0)
+            skip_depths[sink_idx] = depth;
+    }
+
+    /**
+     * Checks whether given sink is skipping current node
+     *
+     * @param sink_idx
+     *            Index of sink
+     * @return true if skipping
+     */
+    public boolean isSkipping(int sink_idx) {
+        return skip_depths[sink_idx] != 0;
+    }
+
+    /**
+     * Sets whether time spent in each sink is measured. Off by default, as
+     * it adds two calls to System.nanoTime() for each call to each sink.
+     *
+     * @param is_timed
+     *            true to measure
+     */
+    public void setTiming(boolean is_timed) {
+        this.is_timed = is_timed;
+    }
+
+    /**
+     * Gets time spent in given sink since startDocument(), if timing is on
+     *
+     * @param sink_idx
+     *            Index of sink
+     * @return Time in nanoseconds
+     */
+    public long getSinkNanos(int sink_idx) {
+        return sink_nanos[sink_idx];
+    }
+
+    public void startDocument(Directive directive, ExceptionHandler ex) {
+        depth = 0;
+        for (int i = 0; i < sink_count; i++) {
+            skip_depths[i] = 0;
+            sink_nanos[i] = 0;
+            if (is_timed) {
+                long start = System.nanoTime();
+                sinks[i].startDocument(directive, ex);
+                sink_nanos[i] += System.nanoTime() - start;
+            } else
+                sinks[i].startDocument(directive, ex);
+        }
+    }
+
+    public void addNewNode(Node node_schema, int level) {
+        depth++;
+        for (int i = 0; i < sink_count; i++) {
+            if (skip_depths[i] != 0)
+                continue;
+            if (is_timed) {
+                long start = System.nanoTime();
+                sinks[i].addNewNode(node_schema, level);
+                sink_nanos[i] += System.nanoTime() - start;
+            } else
+                sinks[i].addNewNode(node_schema, level);
+        }
+    }
+
+    public void setAttribute(int col_idx, CharSequence value) {
+        for (int i = 0; i < sink_count; i++) {
+            if (skip_depths[i] != 0)
+                continue;
+            if (is_timed) {
+                long start = System.nanoTime();
+                sinks[i].setAttribute(col_idx, value);
+                sink_nanos[i] += System.nanoTime() - start;
+            } else
+                sinks[i].setAttribute(col_idx, value);
+        }
+    }
+
+    public void setAttribute(String col_name, CharSequence value) {
+        for (int i = 0; i < sink_count; i++) {
+            if (skip_depths[i] != 0)
+                continue;
+            if (is_timed) {
+                long start = System.nanoTime();
+                sinks[i].setAttribute(col_name, value);
+                sink_nanos[i] += System.nanoTime() - start;
+            } else
+                sinks[i].setAttribute(col_name, value);
+        }
+    }
+
+    public void addContent(String content) {
+        for (int i = 0; i < sink_count; i++) {
+            if (skip_depths[i] != 0)
+                continue;
+            if (is_timed) {
+                long start = System.nanoTime();
+                sinks[i].addContent(content);
+                sink_nanos[i] += System.nanoTime() - start;
+            } else
+                sinks[i].addContent(content);
+        }
+    }
+
+    public void finalizeElement() {
+        for (int i = 0; i < sink_count; i++) {
+            // The row of the skipped node itself is finalized
+            if (skip_depths[i] != 0 && skip_depths[i] != depth)
+                continue;
+            if (is_timed) {
+                long start = System.nanoTime();
+                sinks[i].finalizeElement();
+                sink_nanos[i] += System.nanoTime() - start;
+            } else
+                sinks[i].finalizeElement();
+        }
+    }
+
+    public void traverseToParent() {
+        for (int i = 0; i < sink_count; i++) {
+            if (skip_depths[i] != 0) {
+                if (skip_depths[i] != depth)
+                    continue;
+                // Skipped node is over
+                skip_depths[i] = 0;
+            }
+            if (is_timed) {
+                long start = System.nanoTime();
+                sinks[i].traverseToParent();
+                sink_nanos[i] += System.nanoTime() - start;
+            } else
+                sinks[i].traverseToParent();
+        }
+        if (depth > 0)
+            depth--;
+    }
+
+    public void endDocument() {
+        for (int i = 0; i < sink_count; i++) {
+            if (is_timed) {
+                long start = System.nanoTime();
+                sinks[i].endDocument();
+                sink_nanos[i] += System.nanoTime() - start;
+            } else
+                sinks[i].endDocument();
+        }
+    }
+
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import cc.siara.csv_ml.schema.Column;
+
+/**
+ * Column of text values. Values are dictionary encoded to begin with: each
+ * distinct value is held once and each row holds the code of its value.
+ * When the number of distinct values exceeds MAX_DICTIONARY_SIZE, the
+ * column changes to offset encoding, in which the values of all rows are
+ * held one after another in a single char array along with their end
+ * offsets.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public final class TextColumnVector extends ColumnVector {
+
+    public static final int MAX_DICTIONARY_SIZE = 4096;
+
+    boolean is_dictionary = true;
+
+    // Distinct values if dictionary encoded, otherwise values of all rows,
+    // ending at ends in chars
+    char[] chars = new char[256];
+    int char_count = 0;
+    int[] ends = new int[64];
+    int end_count = 0;
+
+    // Code of value of each row, if dictionary encoded
+    int[] codes = new int[64];
+    // Hash table over distinct values holding code + 1, 0 being empty slot,
+    // along with hash of each distinct value
+    int[] slots = new int[64];
+    int[] hashes = new int[64];
+
+    /**
+     * Initializes name
+     *
+     * @param name
+     *            Name of column
+     */
+    TextColumnVector(String name) {
+        super(name, Column.TYPE_TEXT);
+    }
+
+    /**
+     * Gets value of given row
+     *
+     * @param row
+     *            Index of row in table
+     * @return Value or null
+     */
+    public String getString(int row) {
+        if (isNull(row))
+            return null;
+        int entry = (is_dictionary ? codes[row] : row);
+        int start = (entry == 0 ? 0 : ends[entry - 1]);
+        return new String(chars, start, ends[entry] - start);
+    }
+
+    /**
+     * Checks whether value of given row equals given value, without forming
+     * String
+     *
+     * @param row
+     *            Index of row in table
+     * @param value
+     *            Value to compare
+     * @return true if equal, false if not or null
+     */
+    public boolean valueEquals(int row, CharSequence value) {
+        if (isNull(row))
+            return false;
+        return entryEquals(is_dictionary ? codes[row] : row, value);
+    }
+
+    /**
+     * Counts rows having given value. If dictionary encoded, the value is
+     * looked up once and only codes are compared.
+     *
+     * @param value
+     *            Value to count
+     * @return Number of rows
+     */
+    public int count(CharSequence value) {
+        int count = 0;
+        if (is_dictionary) {
+            int code = findCode(value, hash(value));
+            if (code == -1)
+                return 0;
+            for (int i = 0; i < size; i++) {
+                if (codes[i] == code && (null_count == 0 || !isNull(i)))
+                    count++;
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                if (valueEquals(i, value))
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether the column is dictionary encoded
+     *
+     * @return true if dictionary encoded, false if offset encoded
+     */
+    public boolean isDictionaryEncoded() {
+        return is_dictionary;
+    }
+
+    /**
+     * Getter for number of distinct values, if dictionary encoded
+     *
+     * @return Number of distinct values or -1 if offset encoded
+     */
+    public int getDictionarySize() {
+        return (is_dictionary ? end_count : -1);
+    }
+
+    /**
+     * Gets distinct value having given code, if dictionary encoded
+     *
+     * @param code
+     *            Code of value
+     * @return Value
+     */
+    public String getDictionaryValue(int code) {
+        int start = (code == 0 ? 0 : ends[code - 1]);
+        return new String(chars, start, ends[code] - start);
+    }
+
+    /**
+     * Gets code of value of given row, if dictionary encoded
+     *
+     * @param row
+     *            Index of row in table
+     * @return Code or -1 if null or offset encoded
+     */
+    public int getCode(int row) {
+        return (is_dictionary && !isNull(row) ? codes[row] : -1);
+    }
+
+    void add(CharSequence value, ValueConverter converter) {
+        ensureCapacity(size + 1);
+        if (!is_dictionary) {
+            addEntry(value);
+            size++;
+            return;
+        }
+        int hash = hash(value);
+        int code = findCode(value, hash);
+        if (code == -1) {
+            if (end_count == MAX_DICTIONARY_SIZE) {
+                changeToOffsets();
+                addEntry(value);
+                size++;
+                return;
+            }
+            code = addEntry(value);
+            addSlot(code, hash);
+        }
+        codes[size++] = code;
+    }
+
+    void addNull() {
+        if (!is_dictionary) {
+            // Keep offsets in line with rows
+            addEnd();
+        }
+        super.addNull();
+    }
+
+    /**
+     * Computes hash of given value, same as String.hashCode()
+     *
+     * @param value
+     *            Value
+     * @return Hash
+     */
+    private static int hash(CharSequence value) {
+        if (value instanceof String)
+            return value.hashCode();
+        int h = 0;
+        int len = value.length();
+        for (int i = 0; i < len; i++)
+            h = 31 * h + value.charAt(i);
+        return h;
+    }
+
+    /**
+     * Finds code of given value in dictionary
+     *
+     * @param value
+     *            Value
+     * @param hash
+     *            Hash of value
+     * @return Code or -1 if not found
+     */
+    private int findCode(CharSequence value, int hash) {
+        int mask = slots.length - 1;
+        for (int i = hash & mask;; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == 0)
+                return -1;
+            int code = slot - 1;
+            if (hashes[code] == hash && entryEquals(code, value))
+                return code;
+        }
+    }
+
+    /**
+     * Puts given code in hash table, growing it if more than half full
+     *
+     * @param code
+     *            Code of value
+     * @param hash
+     *            Hash of value
+     */
+    private void addSlot(int code, int hash) {
+        if (code == hashes.length) {
+            int[] new_hashes = new int[code * 2];
+            System.arraycopy(hashes, 0, new_hashes, 0, code);
+            hashes = new_hashes;
+        }
+        hashes[code] = hash;
+        if ((code + 1) * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (int i = 0; i < code; i++)
+                putSlot(i, hashes[i]);
+        }
+        putSlot(code, hash);
+    }
+
+    /**
+     * Puts given code in first empty slot from its hash
+     *
+     * @param code
+     *            Code of value
+     * @param hash
+     *            Hash of value
+     */
+    private void putSlot(int code, int hash) {
+        int mask = slots.length - 1;
+        int i = hash & mask;
+        while (slots[i] != 0)
+            i = (i + 1) & mask;
+        slots[i] = code + 1;
+    }
+
+    /**
+     * Checks whether entry at given index equals given value
+     *
+     * @param entry
+     *            Index of distinct value or row
+     * @param value
+     *            Value to compare
+     * @return true if equal
+     */
+    private boolean entryEquals(int entry, CharSequence value) {
+        int start = (entry == 0 ? 0 : ends[entry - 1]);
+        int len = value.length();
+        if (ends[entry] - start != len)
+            return false;
+        for (int i = 0; i < len; i++) {
+            if (chars[start + i] != value.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Appends given value to chars and ends
+     *
+     * @param value
+     *            Value
+     * @return Index of entry
+     */
+    private int addEntry(CharSequence value) {
+        int len = value.length();
+        growChars(len);
+        if (value instanceof String)
+            ((String) value).getChars(0, len, chars, char_count);
+        else {
+            for (int i = 0; i < len; i++)
+                chars[char_count + i] = value.charAt(i);
+        }
+        char_count += len;
+        return addEnd();
+    }
+
+    /**
+     * Appends given chars to chars and ends
+     *
+     * @param src
+     *            Array having the chars
+     * @param start
+     *            Start of chars in array
+     * @param len
+     *            Number of chars
+     * @return Index of entry
+     */
+    private int addEntry(char[] src, int start, int len) {
+        growChars(len);
+        System.arraycopy(src, start, chars, char_count, len);
+        char_count += len;
+        return addEnd();
+    }
+
+    /**
+     * Makes room for given number of chars
+     *
+     * @param len
+     *            Number of chars to be appended
+     */
+    private void growChars(int len) {
+        if (char_count + len > chars.length) {
+            int capacity = chars.length * 2;
+            if (capacity < char_count + len || capacity < 0)
+                capacity = char_count + len;
+            char[] new_chars = new char[capacity];
+            System.arraycopy(chars, 0, new_chars, 0, char_count);
+            chars = new_chars;
+        }
+    }
+
+    /**
+     * Adds end offset of the entry whose chars were appended last
+     *
+     * @return Index of entry
+     */
+    private int addEnd() {
+        if (end_count == ends.length) {
+            int[] new_ends = new int[end_count * 2];
+            System.arraycopy(ends, 0, new_ends, 0, end_count);
+            ends = new_ends;
+        }
+        ends[end_count] = char_count;
+        return end_count++;
+    }
+
+    /**
+     * Changes from dictionary to offset encoding, writing out the value of
+     * each row added so far
+     */
+    private void changeToOffsets() {
+        char[] dict_chars = chars;
+        int[] dict_ends = ends;
+        is_dictionary = false;
+        chars = new char[Math.max(256, char_count * 2)];
+        char_count = 0;
+        ends = new int[Math.max(64, codes.length)];
+        end_count = 0;
+        for (int row = 0; row < size; row++) {
+            if ((nulls[row >>> 6] & (1L << row)) != 0) {
+                addEnd();
+                continue;
+            }
+            int code = codes[row];
+            int start = (code == 0 ? 0 : dict_ends[code - 1]);
+            addEntry(dict_chars, start, dict_ends[code] - start);
+        }
+        codes = null;
+        slots = null;
+        hashes = null;
+    }
+
+    void ensureCapacity(int rows) {
+        super.ensureCapacity(rows);
+        if (is_dictionary && rows > codes.length) {
+            int[] new_codes = new int[Math.max(rows, codes.length * 2)];
+            System.arraycopy(codes, 0, new_codes, 0, size);
+            codes = new_codes;
+        }
+    }
+
+    void trim() {
+        super.trim();
+        if (chars.length != char_count) {
+            char[] new_chars = new char[char_count];
+            System.arraycopy(chars, 0, new_chars, 0, char_count);
+            chars = new_chars;
+        }
+        if (ends.length != end_count) {
+            int[] new_ends = new int[end_count];
+            System.arraycopy(ends, 0, new_ends, 0, end_count);
+            ends = new_ends;
+        }
+        if (is_dictionary && codes.length != size) {
+            int[] new_codes = new int[size];
+            System.arraycopy(codes, 0, new_codes, 0, size);
+            codes = new_codes;
+        }
+    }
+
+}
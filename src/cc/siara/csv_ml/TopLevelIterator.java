@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over top level nodes along with the nodes under them, parsing
+ * the input as the nodes are taken. Each node is moved out of the root once
+ * it is complete, so memory used does not grow with the number of nodes.
+ *
+ * For DOM, each node is a W3C Element detached from the Document. For JSON,
+ * each node is a JSONObject having the node name mapped to an array of the
+ * one node, as it would be if the input had only that node. If the root
+ * given in the directive is itself a data node, the nodes below it are
+ * iterated.
+ *
+ * Iterators over files that can be split (as in parseInChunks()) hold the
+ * chunks of the file not yet started. trySplit() hands over the first half
+ * of them to a new iterator, so that the halves can be parsed in parallel,
+ * such as by wrapping them as java.util.Spliterator in Java 8. Each iterator
+ * is to be used by one thread.
+ *
+ * Errors are reported to the parser that created the iterator, after which
+ * iteration stops. The node during which the error was found is not
+ * returned. IOException found while parsing is thrown as
+ * IllegalStateException having it as cause.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public class TopLevelIterator<T> implements Iterator<T> {
+
+    MultiLevelCSVParser parser;
+    short targetObject;
+
+    // Chunks of the file when split. Chunks from next_chunk till end_chunk
+    // are yet to be started.
+    File f = null;
+    String encoding = null;
+    ChunkSplitter splitter = null;
+    int next_chunk = 0;
+    int end_chunk = 0;
+
+    // Parser and output of the input being parsed
+    MultiLevelCSVParser cur_parser = null;
+    ParsedObject cur_out = null;
+    int node_idx = 0;
+    boolean is_started = false;
+    boolean is_done = false;
+
+    /**
+     * Creates iterator over input already opened by the parser
+     *
+     * @param parser
+     *            Parser having parsed directive and schema
+     * @param obj_out
+     *            Output of the parser, or null if there is nothing to parse
+     */
+    TopLevelIterator(MultiLevelCSVParser parser, ParsedObject obj_out) {
+        this.parser = parser;
+        if (obj_out == null)
+            is_done = true;
+        else {
+            cur_parser = parser;
+            cur_out = obj_out;
+            targetObject = obj_out.getTarget();
+        }
+    }
+
+    /**
+     * Creates iterator over all chunks of a file
+     *
+     * @param parser
+     *            Parser having parsed directive and schema
+     * @param targetObject
+     *            Whether DOM or JSO
+     * @param f
+     *            The File
+     * @param encoding
+     *            Encoding of the file
+     * @param splitter
+     *            Chunks of the file
+     */
+    TopLevelIterator(MultiLevelCSVParser parser, short targetObject, File f,
+            String encoding, ChunkSplitter splitter) {
+        this(parser, targetObject, f, encoding, splitter, 0, splitter
+                .getChunkCount());
+    }
+
+    /**
+     * Creates iterator over given range of chunks of a file
+     *
+     * @param parser
+     *            Parser having parsed directive and schema
+     * @param targetObject
+     *            Whether DOM or JSO
+     * @param f
+     *            The File
+     * @param encoding
+     *            Encoding of the file
+     * @param splitter
+     *            Chunks of the file
+     * @param from
+     *            Index of first chunk
+     * @param to
+     *            Index of chunk after the last one
+     */
+    private TopLevelIterator(MultiLevelCSVParser parser, short targetObject,
+            File f, String encoding, ChunkSplitter splitter, int from, int to) {
+        this.parser = parser;
+        this.targetObject = targetObject;
+        this.f = f;
+        this.encoding = encoding;
+        this.splitter = splitter;
+        next_chunk = from;
+        end_chunk = to;
+    }
+
+    /**
+     * Checks whether more nodes are there, parsing till the next node is
+     * complete
+     *
+     * @return true if more nodes
+     */
+    public boolean hasNext() {
+        try {
+            return fetch();
+        } catch (IOException e) {
+            close();
+            IllegalStateException ise = new IllegalStateException(e
+                    .toString());
+            ise.initCause(e);
+            throw ise;
+        }
+    }
+
+    /**
+     * Returns next top level node
+     *
+     * @return Node
+     */
+    // Nodes are Elements or JSONObjects as per targetObject, which the
+    // parse method creating the iterator chooses along with T
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return (T) cur_out.completed_nodes.get(node_idx++);
+    }
+
+    /**
+     * Not supported
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Parses till a completed node is available or input is over
+     *
+     * @return true if a node is available
+     * @throws IOException
+     */
+    private boolean fetch() throws IOException {
+        while (true) {
+            if (cur_out != null) {
+                List<Object> nodes = cur_out.completed_nodes;
+                if (node_idx < nodes.size())
+                    return true;
+                nodes.clear();
+                node_idx = 0;
+            }
+            if (is_done)
+                return false;
+            if (cur_parser == null && !startNextChunk()) {
+                is_done = true;
+                return false;
+            }
+            is_started = true;
+            if (!cur_parser.parseNextNode())
+                endInput();
+        }
+    }
+
+    /**
+     * Starts parsing next chunk of file
+     *
+     * @return false if no more chunks
+     * @throws IOException
+     */
+    private boolean startNextChunk() throws IOException {
+        if (splitter == null || next_chunk == end_chunk)
+            return false;
+        cur_parser = parser.newChunkParser(targetObject, f, encoding,
+                splitter.getChunkStart(next_chunk),
+                splitter.getChunkEnd(next_chunk),
+                splitter.getChunkLineOffset(next_chunk));
+        next_chunk++;
+        cur_out = cur_parser.getParsedObject();
+        cur_out.collectCompletedNodes();
+        node_idx = 0;
+        return true;
+    }
+
+    /**
+     * Completes the nodes still open at end of input or chunk, or stops
+     * iteration if there was an error
+     */
+    private void endInput() {
+        if (cur_parser.ex.getErrorCode() == 0)
+            cur_out.completeAll();
+        else
+            is_done = true;
+        if (cur_parser != parser) {
+            synchronized (parser) {
+                if (cur_parser.ex.getErrorCode() != 0)
+                    parser.reportChunkError(cur_parser);
+                if (parser.intern_dict != null)
+                    parser.intern_dict.addCounters(cur_parser.intern_dict);
+            }
+        } else
+            is_done = true;
+        cur_parser = null;
+    }
+
+    /**
+     * Hands over the first half of the chunks not yet started to a new
+     * iterator. Only iterators over files that could be split, and from
+     * which no node has been taken, can be split.
+     *
+     * @return Iterator over the first half or null if cannot be split
+     */
+    public TopLevelIterator<T> trySplit() {
+        if (splitter == null || is_started || end_chunk - next_chunk < 2)
+            return null;
+        int mid = next_chunk + (end_chunk - next_chunk) / 2;
+        TopLevelIterator<T> prefix = new TopLevelIterator<T>(parser,
+                targetObject, f, encoding, splitter, next_chunk, mid);
+        next_chunk = mid;
+        return prefix;
+    }
+
+    /**
+     * Estimates size of input not yet started, for deciding whether to split
+     *
+     * @return Number of bytes in chunks not yet started, or Long.MAX_VALUE if
+     *         not known
+     */
+    public long estimateSize() {
+        if (splitter == null)
+            return (is_done ? 0 : Long.MAX_VALUE);
+        long size = 0;
+        for (int i = next_chunk; i < end_chunk; i++)
+            size += splitter.getChunkEnd(i) - splitter.getChunkStart(i);
+        return size;
+    }
+
+    /**
+     * Stops iteration, closing the file if it is open
+     */
+    public void close() {
+        is_done = true;
+        next_chunk = end_chunk;
+        if (cur_parser != null) {
+            try {
+                cur_parser.closeParse();
+            } catch (IOException e) {
+                // nothing more to read
+            }
+            cur_parser = null;
+        }
+        cur_out = null;
+    }
+
+}
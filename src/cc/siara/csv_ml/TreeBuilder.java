@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import cc.siara.csv.ExceptionHandler;
+import cc.siara.csv_ml.schema.Node;
+
+/**
+ * Builds the output of MultiLevelCSVParser as it parses. The parser calls
+ * the builder directly for each node, attribute and change in level, so
+ * that any representation can be built without the parser knowing about
+ * it. W3C DOM and JSON are built by the builders obtained through
+ * ParsedObject.create(). Other builders can be given to
+ * MultiLevelCSVParser.initParse() or parse(), and several builders can be
+ * driven in one pass through TeeBuilder.
+ *
+ * For each row, addNewNode() is called followed by setAttribute() for each
+ * column and addContent() for any values beyond the columns of the schema,
+ * and then finalizeElement(). traverseToParent() is called once for each
+ * level the next row goes up, including for the node of the row itself if
+ * the next row is its sibling. Nodes still open at end of input are not
+ * traversed. endDocument() is called at end of input or when parsing stops
+ * due to an error.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public interface TreeBuilder {
+
+    /**
+     * Called after directive and schema are parsed and before the first node
+     *
+     * @param directive
+     *            Directive of the input
+     * @param ex
+     *            Exception handler of the parser, for reporting errors
+     */
+    public void startDocument(Directive directive, ExceptionHandler ex);
+
+    /**
+     * Adds new node under the current node and makes it current
+     *
+     * @param node_schema
+     *            Schema node of the row, giving name of the node, which may
+     *            have a namespace prefix, and its columns for setAttribute()
+     *            by column index
+     * @param level
+     *            Level of the row, 0 for rows without indentation
+     */
+    public void addNewNode(Node node_schema, int level);
+
+    /**
+     * Sets attribute of current node for the column at given index of the
+     * columns of the schema node given with addNewNode()
+     *
+     * @param col_idx
+     *            Index of column
+     * @param value
+     *            Value, which may be a view into the parser's buffer valid
+     *            only during the call
+     */
+    public void setAttribute(int col_idx, CharSequence value);
+
+    /**
+     * Sets attribute of current node by name, for columns not in schema
+     *
+     * @param col_name
+     *            Name of attribute
+     * @param value
+     *            Value, which may be a view into the parser's buffer valid
+     *            only during the call
+     */
+    public void setAttribute(String col_name, CharSequence value);
+
+    /**
+     * Adds content to current node, for values beyond the columns of schema
+     *
+     * @param content
+     *            Value, encoded as csv text
+     */
+    public void addContent(String content);
+
+    /**
+     * Called at end of each row, after all its values are given
+     */
+    public void finalizeElement();
+
+    /**
+     * Goes up one level, making parent of current node current
+     */
+    public void traverseToParent();
+
+    /**
+     * Called at end of input or when parsing stops due to an error
+     */
+    public void endDocument();
+
+}
@@ -18,8 +18,12 @@
  */
 package cc.siara.csv_ml;
 
+import java.io.CharArrayReader;
+import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.OutputKeys;
@@ -31,6 +35,9 @@ import javax.xml.transform.stream.StreamResult;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 
+import cc.siara.csv.Counter;
+import cc.siara.csv.ExceptionHandler;
+
 /**
  * All miscellaneous static utility functions
  * 
@@ -98,11 +105,15 @@ public class Util {
      * 
      * @param cur_sequence_path
      *            Path from which to remove
-     * @param csv_ml_schema
-     *            From directive - whether schema is present or not
+     * @param is_sibling_counted
+     *            From directive - whether schema or node name indicator is
+     *            present
+     * @param cur_sibling
+     *            Current sibling number
+     * @return Sibling number to use for forming the next path
      */
     public static int removeFromSeqPath(StringBuffer cur_sequence_path,
-            String csv_ml_schema, String csv_ml_node_name, int cur_sibling) {
+            boolean is_sibling_counted, int cur_sibling) {
         int idx = cur_sequence_path.lastIndexOf(".");
         if (idx == -1) {
             cur_sequence_path.setLength(0);
@@ -111,14 +122,12 @@ public class Util {
             // In other words, increment cur_sibling
             // only if schema is present or node_name indicator
             // is present.
-            if (!csv_ml_schema.equals("no_schema")
-                    || csv_ml_node_name.equals("with_node_name"))
+            if (is_sibling_counted)
                 cur_sibling++;
         } else {
             // Same logic as above, except in this case,
             // sibling is extracted from the given path.
-            if (!csv_ml_schema.equals("no_schema")
-                    || csv_ml_node_name.equals("with_node_name"))
+            if (is_sibling_counted)
                 cur_sibling = 1 + Integer.parseInt(cur_sequence_path.substring(
                         idx + 1).trim());
             cur_sequence_path.setLength(idx);
@@ -173,6 +182,103 @@ public class Util {
         cur_path.append(node_name);
     }
 
+    /**
+     * Parses sibling number given as node indicator, ignoring spaces around
+     * it. Returns -1 if any other character is present, including spaces
+     * within the number, or if the number is too large.
+     * 
+     * @param value
+     *            Node indicator such as 1, 2
+     * @return Sibling number or -1 if not a number
+     */
+    public static int parseSiblingNumber(CharSequence value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end
+                && (value.charAt(start) == ' ' || value.charAt(start) == '\t'))
+            start++;
+        while (end > start
+                && (value.charAt(end - 1) == ' ' || value
+                        .charAt(end - 1) == '\t'))
+            end--;
+        if (start == end)
+            return -1;
+        int sibling = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            // Guard against overflow
+            int digit = c - '0';
+            if (sibling > (Integer.MAX_VALUE - digit) / 10)
+                return -1;
+            sibling = sibling * 10 + digit;
+        }
+        return sibling;
+    }
+
+    /**
+     * Looks for the csv_ml directive at the beginning of given bytes and
+     * returns the encoding mentioned in it. Since the directive itself is
+     * ASCII, this can be done before choosing a decoder for the stream. The
+     * directive is read using CSVTokenizer, so that spaces, quotes and
+     * comments are treated the same way as when it is parsed.
+     * 
+     * @param bytes
+     *            Bytes from the beginning of the stream (from position to
+     *            limit). Position is not changed.
+     * @param delim
+     *            Delimiter character
+     * @return Encoding found or null if directive or encoding is not present
+     */
+    public static String sniffEncoding(ByteBuffer bytes, char delim) {
+        char[] head = new char[bytes.remaining()];
+        for (int i = 0; i < head.length; i++)
+            head[i] = (char) (bytes.get(bytes.position() + i) & 0xFF);
+        Counter counter = new Counter();
+        CSVTokenizer tokenizer = new CSVTokenizer(counter,
+                new ExceptionHandler(counter), head.length);
+        tokenizer.setDelimiter(delim);
+        tokenizer.reset(new CharArrayReader(head));
+        String value;
+        try {
+            // Skip empty lines before directive
+            value = tokenizer.parseNextToken();
+            while (value.equals("") && tokenizer.isEOL()
+                    && !tokenizer.isEOS())
+                value = tokenizer.parseNextToken();
+            if (!value.trim().toLowerCase().equals("csv_ml"))
+                return null;
+            // Encoding is the third field
+            for (int field_ctr = 1; field_ctr < 3; field_ctr++) {
+                if (tokenizer.isEOL())
+                    return null;
+                value = tokenizer.parseNextToken();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        value = value.trim();
+        return (value.length() == 0 ? null : value);
+    }
+
+    /**
+     * Checks whether the given encoding can be used to decode input
+     * 
+     * @param encoding
+     *            Name of encoding
+     * @return false if the name is empty, invalid or not supported
+     */
+    public static boolean isEncodingSupported(String encoding) {
+        if (encoding.length() == 0)
+            return false;
+        try {
+            return Charset.isSupported(encoding);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     /**
      * Checks whether encoding is necessary and encodes by enclosing in double
      * quotes, in which case, any double quotes appearing in data need to be
@@ -0,0 +1,522 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml;
+
+import cc.siara.csv_ml.schema.Column;
+
+/**
+ * Converts column values to the type given in the schema, working directly on
+ * the characters of the value so that no String or other object is formed.
+ * The result of the last conversion is held in the converter, so one instance
+ * is to be used per thread.
+ *
+ * Integers are converted to long and reals to double. Dates are expected as
+ * yyyymmdd and datetimes as yyyymmddhhmiss (separators such as - : and space
+ * are ignored) and are converted to milliseconds since 1970-01-01 00:00:00
+ * UTC.
+ *
+ * @author Arundale R.
+ * @since 1.0
+ */
+public class ValueConverter {
+
+    // Powers of 10 that are exactly representable as double
+    private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5,
+            1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+            1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private static final int[] DAYS_IN_MONTH = { 31, 29, 31, 30, 31, 30, 31,
+            31, 30, 31, 30, 31 };
+
+    static final long MILLIS_PER_DAY = 86400000L;
+
+    // Result of last conversion
+    short type_code = Column.TYPE_TEXT;
+    long long_value = 0;
+    double double_value = 0;
+
+    // Date fields of last date or datetime conversion
+    int year = 0;
+    int month = 0;
+    int day = 0;
+    int hour = 0;
+    int minute = 0;
+    int second = 0;
+
+    /**
+     * Converts given value as per given type code
+     *
+     * @param value
+     *            Value to convert
+     * @param type_code
+     *            One of the type codes of Column
+     * @return true if converted. false if the type is text or the value is
+     *         not valid for the type.
+     */
+    public boolean convert(CharSequence value, short type_code) {
+        boolean is_converted;
+        switch (type_code) {
+        case Column.TYPE_INTEGER:
+            is_converted = parseLong(value);
+            break;
+        case Column.TYPE_REAL:
+            is_converted = parseDouble(value);
+            break;
+        case Column.TYPE_DATE:
+            is_converted = parseDate(value, false);
+            break;
+        case Column.TYPE_DATETIME:
+            is_converted = parseDate(value, true);
+            break;
+        default:
+            is_converted = false;
+        }
+        this.type_code = (is_converted ? type_code : Column.TYPE_TEXT);
+        return is_converted;
+    }
+
+    /**
+     * Getter for type code of the last successful conversion
+     *
+     * @return Type code or TYPE_TEXT if not converted
+     */
+    public short getTypeCode() {
+        return type_code;
+    }
+
+    /**
+     * Getter for converted integer, or date as milliseconds since epoch
+     *
+     * @return Converted value
+     */
+    public long getLong() {
+        return long_value;
+    }
+
+    /**
+     * Getter for converted real
+     *
+     * @return Converted value
+     */
+    public double getDouble() {
+        return double_value;
+    }
+
+    /**
+     * Returns converted value as object, for use with JSON or JDBC
+     *
+     * @return Long for integer, date and datetime, Double for real
+     */
+    public Object getObject() {
+        if (type_code == Column.TYPE_REAL)
+            return Double.valueOf(double_value);
+        return Long.valueOf(long_value);
+    }
+
+    /**
+     * Getter for year of the converted date
+     *
+     * @return Year
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Getter for month of the converted date
+     *
+     * @return Month (1 to 12)
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * Getter for day of the converted date
+     *
+     * @return Day of month
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * Getter for hour of the converted datetime
+     *
+     * @return Hour (0 to 23)
+     */
+    public int getHour() {
+        return hour;
+    }
+
+    /**
+     * Getter for minute of the converted datetime
+     *
+     * @return Minute
+     */
+    public int getMinute() {
+        return minute;
+    }
+
+    /**
+     * Getter for second of the converted datetime
+     *
+     * @return Second
+     */
+    public int getSecond() {
+        return second;
+    }
+
+    /**
+     * Finds first character that is not white space
+     *
+     * @param value
+     *            Value
+     * @return Index or length of value if blank
+     */
+    private static int skipSpaceFromStart(CharSequence value) {
+        int i = 0;
+        int len = value.length();
+        while (i < len && value.charAt(i) <= ' ')
+            i++;
+        return i;
+    }
+
+    /**
+     * Finds end of value excluding trailing white space
+     *
+     * @param value
+     *            Value
+     * @param start
+     *            Index to stop at
+     * @return End index (exclusive)
+     */
+    private static int skipSpaceFromEnd(CharSequence value, int start) {
+        int end = value.length();
+        while (end > start && value.charAt(end - 1) <= ' ')
+            end--;
+        return end;
+    }
+
+    /**
+     * Parses integer, ignoring white space around it. Fails on overflow.
+     *
+     * @param value
+     *            Value to parse
+     * @return true if valid
+     */
+    private boolean parseLong(CharSequence value) {
+        int i = skipSpaceFromStart(value);
+        int end = skipSpaceFromEnd(value, i);
+        if (i == end)
+            return false;
+        boolean is_negative = false;
+        char c = value.charAt(i);
+        if (c == '-' || c == '+') {
+            is_negative = (c == '-');
+            i++;
+            if (i == end)
+                return false;
+        }
+        // Accumulate as negative so that Long.MIN_VALUE can be represented
+        long result = 0;
+        for (; i < end; i++) {
+            c = value.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+            int digit = c - '0';
+            if (result < (Long.MIN_VALUE + digit) / 10)
+                return false;
+            result = result * 10 - digit;
+        }
+        if (!is_negative) {
+            if (result == Long.MIN_VALUE)
+                return false;
+            result = -result;
+        }
+        long_value = result;
+        return true;
+    }
+
+    /**
+     * Parses real number in plain or exponent notation, ignoring white space
+     * around it. Numbers having up to 15 significant digits and a small
+     * exponent are computed exactly without forming a String. Others are
+     * handed over to Double.parseDouble() after validating the syntax.
+     *
+     * @param value
+     *            Value to parse
+     * @return true if valid
+     */
+    private boolean parseDouble(CharSequence value) {
+        int start = skipSpaceFromStart(value);
+        int end = skipSpaceFromEnd(value, start);
+        int i = start;
+        if (i == end)
+            return false;
+        boolean is_negative = false;
+        char c = value.charAt(i);
+        if (c == '-' || c == '+') {
+            is_negative = (c == '-');
+            i++;
+        }
+        long mantissa = 0;
+        int sig_digits = 0;
+        int digit_count = 0;
+        int exp10 = 0;
+        boolean is_dot_found = false;
+        for (; i < end; i++) {
+            c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digit_count++;
+                if (mantissa == 0 && c == '0') {
+                    // leading zeros are not significant
+                    if (is_dot_found)
+                        exp10--;
+                    continue;
+                }
+                if (sig_digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    sig_digits++;
+                    if (is_dot_found)
+                        exp10--;
+                } else {
+                    // digits beyond precision of long
+                    sig_digits++;
+                    if (!is_dot_found)
+                        exp10++;
+                }
+            } else if (c == '.' && !is_dot_found) {
+                is_dot_found = true;
+            } else
+                break;
+        }
+        if (digit_count == 0)
+            return false;
+        if (i < end) {
+            // Exponent
+            c = value.charAt(i);
+            if (c != 'e' && c != 'E')
+                return false;
+            i++;
+            boolean is_exp_negative = false;
+            if (i < end) {
+                c = value.charAt(i);
+                if (c == '-' || c == '+') {
+                    is_exp_negative = (c == '-');
+                    i++;
+                }
+            }
+            if (i == end)
+                return false;
+            int exp = 0;
+            for (; i < end; i++) {
+                c = value.charAt(i);
+                if (c < '0' || c > '9')
+                    return false;
+                if (exp < 100000)
+                    exp = exp * 10 + (c - '0');
+            }
+            exp10 += (is_exp_negative ? -exp : exp);
+        }
+        double result;
+        if (sig_digits <= 15 && exp10 >= -22 && exp10 <= 22) {
+            // Both mantissa and power of 10 are exact, so result is
+            // correctly rounded
+            result = mantissa;
+            if (exp10 < 0)
+                result /= POW10[-exp10];
+            else
+                result *= POW10[exp10];
+            if (is_negative)
+                result = -result;
+        } else if (mantissa == 0) {
+            result = (is_negative ? -0.0 : 0.0);
+        } else {
+            result = Double.parseDouble(value.subSequence(start, end)
+                    .toString());
+        }
+        double_value = result;
+        return true;
+    }
+
+    /**
+     * Parses date as yyyymmdd or datetime as yyyymmddhhmiss, ignoring
+     * separators - / : T and white space in between
+     *
+     * @param value
+     *            Value to parse
+     * @param is_datetime
+     *            Whether time is expected
+     * @return true if valid
+     */
+    private boolean parseDate(CharSequence value, boolean is_datetime) {
+        int expected = (is_datetime ? 14 : 8);
+        int y = 0, mo = 0, d = 0, h = 0, mi = 0, s = 0;
+        int digit_count = 0;
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digit_count == expected)
+                    return false;
+                int digit = c - '0';
+                if (digit_count < 4)
+                    y = y * 10 + digit;
+                else if (digit_count < 6)
+                    mo = mo * 10 + digit;
+                else if (digit_count < 8)
+                    d = d * 10 + digit;
+                else if (digit_count < 10)
+                    h = h * 10 + digit;
+                else if (digit_count < 12)
+                    mi = mi * 10 + digit;
+                else
+                    s = s * 10 + digit;
+                digit_count++;
+            } else if (c != '-' && c != '/' && c != ':' && c != 'T'
+                    && c > ' ')
+                return false;
+        }
+        if (digit_count != expected)
+            return false;
+        if (mo < 1 || mo > 12 || d < 1 || d > DAYS_IN_MONTH[mo - 1])
+            return false;
+        if (mo == 2 && d == 29 && !isLeapYear(y))
+            return false;
+        if (h > 23 || mi > 59 || s > 59)
+            return false;
+        year = y;
+        month = mo;
+        day = d;
+        hour = h;
+        minute = mi;
+        second = s;
+        long_value = daysFromCivil(y, mo, d) * MILLIS_PER_DAY
+                + ((h * 60L + mi) * 60L + s) * 1000L;
+        return true;
+    }
+
+    /**
+     * Checks whether given year is a leap year in Gregorian calendar
+     *
+     * @param y
+     *            Year
+     * @return true if leap year
+     */
+    static boolean isLeapYear(int y) {
+        return (y % 4 == 0 && (y % 100 != 0 || y % 400 == 0));
+    }
+
+    /**
+     * Computes number of days since 1970-01-01 for given date in proleptic
+     * Gregorian calendar
+     *
+     * @param y
+     *            Year
+     * @param m
+     *            Month (1 to 12)
+     * @param d
+     *            Day of month
+     * @return Number of days
+     */
+    static long daysFromCivil(int y, int m, int d) {
+        // Count years from March so that leap day is at the end of year
+        if (m <= 2)
+            y--;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5 + d - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * Sets the result to given date or datetime, so that it can be formatted
+     * with appendDate()
+     *
+     * @param millis
+     *            Milliseconds since 1970-01-01 00:00:00 UTC
+     * @param type_code
+     *            TYPE_DATE or TYPE_DATETIME
+     */
+    public void setDate(long millis, short type_code) {
+        long days = millis / MILLIS_PER_DAY;
+        long rem = millis % MILLIS_PER_DAY;
+        if (rem < 0) {
+            days--;
+            rem += MILLIS_PER_DAY;
+        }
+        // Inverse of daysFromCivil()
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+        int secs = (int) (rem / 1000);
+        hour = secs / 3600;
+        minute = (secs / 60) % 60;
+        second = secs % 60;
+        long_value = millis;
+        this.type_code = type_code;
+    }
+
+    /**
+     * Appends the last converted date as yyyy-mm-dd, followed by time as
+     * hh:mi:ss for datetime
+     *
+     * @param out_str
+     *            StringBuffer to append to
+     */
+    public void appendDate(StringBuffer out_str) {
+        appendDigits(out_str, year, 4);
+        out_str.append('-');
+        appendDigits(out_str, month, 2);
+        out_str.append('-');
+        appendDigits(out_str, day, 2);
+        if (type_code == Column.TYPE_DATETIME) {
+            out_str.append(' ');
+            appendDigits(out_str, hour, 2);
+            out_str.append(':');
+            appendDigits(out_str, minute, 2);
+            out_str.append(':');
+            appendDigits(out_str, second, 2);
+        }
+    }
+
+    /**
+     * Appends number padded with zeros to given width
+     *
+     * @param out_str
+     *            StringBuffer to append to
+     * @param n
+     *            Number
+     * @param width
+     *            Number of digits
+     */
+    private static void appendDigits(StringBuffer out_str, int n, int width) {
+        for (int div = (width == 4 ? 1000 : 10); div > 0; div /= 10)
+            out_str.append((char) ('0' + (n / div) % 10));
+    }
+
+}
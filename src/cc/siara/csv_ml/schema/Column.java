@@ -43,6 +43,19 @@ public class Column {
     String col_default;
     List<String> values;
 
+    // Precomputed from name and type for use during parsing
+    String attr_name = "";
+    String attr_prefix = "";
+    String attr_local_name = "";
+    short type_code = TYPE_TEXT;
+
+    // Type codes
+    public static final short TYPE_TEXT = 0;
+    public static final short TYPE_INTEGER = 1;
+    public static final short TYPE_REAL = 2;
+    public static final short TYPE_DATE = 3;
+    public static final short TYPE_DATETIME = 4;
+
     /**
      * Getter for Namespace prefix
      * 
@@ -77,6 +90,46 @@ public class Column {
      */
     public void setName(String name) {
         this.name = name;
+        // Attribute names cannot have spaces
+        attr_name = name;
+        if (attr_name.indexOf(' ') != -1)
+            attr_name = attr_name.replace(' ', '_');
+        int c_idx = attr_name.indexOf(':');
+        if (c_idx == -1) {
+            attr_prefix = "";
+            attr_local_name = attr_name;
+        } else {
+            attr_prefix = attr_name.substring(0, c_idx);
+            attr_local_name = attr_name.substring(c_idx + 1);
+        }
+    }
+
+    /**
+     * Getter for attribute name, which is the column name with spaces
+     * replaced by underscore
+     * 
+     * @return Attribute name
+     */
+    public String getAttrName() {
+        return attr_name;
+    }
+
+    /**
+     * Getter for namespace prefix of attribute name
+     * 
+     * @return Prefix or empty string if there is no prefix
+     */
+    public String getAttrPrefix() {
+        return attr_prefix;
+    }
+
+    /**
+     * Getter for attribute name without namespace prefix
+     * 
+     * @return Local name
+     */
+    public String getAttrLocalName() {
+        return attr_local_name;
     }
 
     /**
@@ -131,6 +184,29 @@ public class Column {
      */
     public void setType(String type) {
         this.type = type;
+        String type_lc = type.toLowerCase();
+        if (type_lc.equals("integer") || type_lc.equals("int"))
+            type_code = TYPE_INTEGER;
+        else if (type_lc.equals("numeric") || type_lc.equals("real")
+                || type_lc.equals("float") || type_lc.equals("double")
+                || type_lc.equals("decimal"))
+            type_code = TYPE_REAL;
+        else if (type_lc.equals("date"))
+            type_code = TYPE_DATE;
+        else if (type_lc.equals("datetime"))
+            type_code = TYPE_DATETIME;
+        else
+            type_code = TYPE_TEXT;
+    }
+
+    /**
+     * Gets type code corresponding to column type
+     * 
+     * @return One of TYPE_TEXT, TYPE_INTEGER, TYPE_REAL, TYPE_DATE or
+     *         TYPE_DATETIME
+     */
+    public short getTypeCode() {
+        return type_code;
     }
 
     /**
@@ -19,11 +19,13 @@
 package cc.siara.csv_ml.schema;
 
 import java.io.IOException;
-import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 
-import cc.siara.csv.CSVParser;
-import cc.siara.csv.ExceptionHandler;
+import cc.siara.csv_ml.CSVTokenizer;
+import cc.siara.csv_ml.Directive;
 import cc.siara.csv_ml.MultiLevelCSVParser;
 import cc.siara.csv_ml.Util;
 
@@ -38,6 +40,24 @@ public class MultiLevelCSVSchema {
     private Hashtable<String, Node> name_path_node_map = new Hashtable<String, Node>();
     private Hashtable<String, Node> seq_path_node_map = new Hashtable<String, Node>();
 
+    // Navigation structure. Nodes are linked to their parents as they are
+    // added, so that they can be looked up without forming paths.
+    private Node root_node = new Node();
+    private List<Node> node_list = new ArrayList<Node>();
+    private HashMap<String, Node> zero_node_map = new HashMap<String, Node>();
+
+    /**
+     * Constructor. Initializes root node, which is the parent of top level
+     * nodes and has id 0.
+     */
+    public MultiLevelCSVSchema() {
+        root_node.setName("");
+        root_node.setPath("");
+        root_node.setSeqPath("");
+        root_node.id = 0;
+        node_list.add(root_node);
+    }
+
     /**
      * Getter for map between name path and node
      * 
@@ -78,6 +98,93 @@ public class MultiLevelCSVSchema {
      */
     public void addSeqPathNodeMap(String seq_path, Node node) {
         this.seq_path_node_map.put(seq_path, node);
+        linkNode(seq_path, node);
+    }
+
+    /**
+     * Assigns id to the given node and links it to its parent as indicated by
+     * the sequence path. Re-usable nodes (sequence path starting with 0) are
+     * not linked but kept separately.
+     * 
+     * @param seq_path
+     *            Sequence path of node
+     * @param node
+     *            Node to link
+     */
+    private void linkNode(String seq_path, Node node) {
+        node.id = node_list.size();
+        node_list.add(node);
+        if (seq_path.length() > 0 && seq_path.charAt(0) == '0') {
+            zero_node_map.put(seq_path, node);
+            return;
+        }
+        int idx = seq_path.lastIndexOf('.');
+        Node parent = root_node;
+        if (idx != -1)
+            parent = seq_path_node_map.get(seq_path.substring(0, idx));
+        if (parent != null)
+            parent.addChild(Integer.parseInt(seq_path.substring(idx + 1)),
+                    node);
+    }
+
+    /**
+     * Adds a node generated during parsing (when there is no schema) as child
+     * of given parent node
+     * 
+     * @param parent
+     *            Parent node (root node for top level)
+     * @param sibling
+     *            Sibling number of new node
+     * @param node
+     *            Node to add
+     */
+    public void addChildNode(Node parent, int sibling, Node node) {
+        String seq_path = String.valueOf(sibling);
+        if (parent != root_node)
+            seq_path = parent.getSeqPath() + "." + seq_path;
+        node.setSeqPath(seq_path);
+        addSeqPathNodeMap(seq_path, node);
+    }
+
+    /**
+     * Getter for root node, which is the parent of all top level nodes
+     * 
+     * @return root node
+     */
+    public Node getRootNode() {
+        return root_node;
+    }
+
+    /**
+     * Gets node by id
+     * 
+     * @param id
+     *            Node id as assigned when added
+     * @return corresponding node
+     */
+    public Node getNodeById(int id) {
+        return node_list.get(id);
+    }
+
+    /**
+     * Gets number of nodes including root node. Ids of nodes range from 0 to
+     * one less than this count.
+     * 
+     * @return Number of nodes
+     */
+    public int getNodeCount() {
+        return node_list.size();
+    }
+
+    /**
+     * Gets re-usable node by its indicator (such as 01, 02)
+     * 
+     * @param zero_def_name
+     *            Indicator of re-usable node
+     * @return corresponding node
+     */
+    public Node getZeroNode(String zero_def_name) {
+        return zero_node_map.get(zero_def_name);
     }
 
     /**
@@ -189,25 +296,22 @@ public class MultiLevelCSVSchema {
     }
 
     /**
-     * Parse the schema from the given java.io.Reader (r) and build the members
-     * of this object.
+     * Parse the schema from the given tokenizer and build the members of this
+     * object. Errors are reported to the Exception Handler of the tokenizer.
      * 
-     * @param csv_parser
-     *            CSV Parser to use
-     * @param csv_ml_node_name
-     *            Whether to look for node name or not
-     * @param csv_ml_schema
-     *            Whether schema present or not. If not, schema is generated
-     * @param ex
-     *            The Exception Handler to use
-     * @param r
-     *            Reader to be used
+     * @param tokenizer
+     *            Tokenizer to use
+     * @param directive
+     *            Directive parsed from the input, indicating whether to look
+     *            for node name or not
      * @throws IOException
      */
-    public void parseSchema(CSVParser csv_parser, String csv_ml_node_name,
-            String csv_ml_schema, ExceptionHandler ex, Reader r)
+    public void parseSchema(CSVTokenizer tokenizer, Directive directive)
             throws IOException {
 
+        boolean is_node_name_given = directive.isNodeNameGiven();
+        boolean is_sibling_counted = directive.isSiblingCounted();
+
         StringBuffer cur_path = new StringBuffer();
         StringBuffer cur_sequence_path = new StringBuffer();
         int cur_level = 0;
@@ -220,17 +324,21 @@ public class MultiLevelCSVSchema {
         int node_ctr = 1;
         String zero_def_name = "";
 
-        int nxt_char = csv_parser.readChar(r);
-        if (nxt_char == ' ' || nxt_char == '\t') {
-            ex.set_err(MultiLevelCSVParser.E_SCH_START_WITH_SPACE);
-            return;
-        } else
-            csv_parser.reInsertLastChar();
+        // Without directive, spaces are part of the first column name
+        if (directive != Directive.DEFAULT) {
+            int nxt_char = tokenizer.readChar();
+            if (nxt_char == ' '
+                    || (nxt_char == '\t' && tokenizer.getDelimiter() != '\t')) {
+                tokenizer.set_err(MultiLevelCSVParser.E_SCH_START_WITH_SPACE);
+                return;
+            } else
+                tokenizer.reInsertLastChar();
+        }
 
         do {
 
-            String value = csv_parser.parseNextToken(r);
-            boolean is_eol = csv_parser.isEOL();
+            String value = tokenizer.parseNextToken();
+            boolean is_eol = tokenizer.isEOL();
 
             // Locate re-usable node defainitions
             if (value.length() > 0 && value.charAt(0) == '0' && token_ctr == 0) {
@@ -251,9 +359,11 @@ public class MultiLevelCSVSchema {
                 if (node_name.indexOf(' ') != -1)
                     node_name = node_name.replace(' ', '_');
                 if (node_name.equals("") && is_eol) {
+                    if (tokenizer.isEOS())
+                        return;
                     continue;
                 }
-                if (csv_ml_node_name.equals("no_node_name")) {
+                if (!is_node_name_given) {
                     node_name = "n" + node_ctr; // Generate node name
                     node_ctr++;
                 }
@@ -264,7 +374,7 @@ public class MultiLevelCSVSchema {
                     // Data has started. return after putting it back
                     char c = node_name.charAt(0);
                     if (c >= '1' && c <= '9') {
-                        csv_parser.reinsertLastToken();
+                        tokenizer.reinsertLastToken();
                         return;
                     }
                 }
@@ -284,12 +394,12 @@ public class MultiLevelCSVSchema {
                 node_obj.setPath(cur_path.toString());
                 node_obj.setSeqPath(cur_sequence_path.toString());
                 if (getNodeByNamePath(cur_path.toString()) != null) {
-                    ex.set_err(MultiLevelCSVParser.E_DUPLICATE_NODE);
+                    tokenizer.set_err(MultiLevelCSVParser.E_DUPLICATE_NODE);
                     return;
                 }
                 addNamePathNodeMap(cur_path.toString(), node_obj);
                 addSeqPathNodeMap(cur_sequence_path.toString(), node_obj);
-                if (csv_ml_node_name.equals("no_node_name")) {
+                if (!is_node_name_given) {
                     Column column_obj = new Column();
                     node_obj.addColumn(column_obj);
                     column_obj.parseColumnSchema(value);
@@ -313,21 +423,11 @@ public class MultiLevelCSVSchema {
             if (is_eol) { // End of line
 
                 // Adjust level by counting space at the begining of next line
-                int space_count = 0;
-                nxt_char = csv_parser.readChar(r);
-                while (nxt_char == ' ' || nxt_char == '\t') {
-                    space_count++;
-                    nxt_char = csv_parser.readChar(r);
-                }
-                if (nxt_char == -1) // end of file
+                int space_count = tokenizer.skipIndent();
+                if (space_count == -1) // end of file
                     return;
-                else
-                    // Not a space or tab. Put it back.
-                    csv_parser.reInsertLastChar();
-                csv_parser.getCounter().setColNo(
-                        csv_parser.getCounter().getColNo() + space_count);
                 if (space_count > (cur_level + 1)) {
-                    ex.set_err(MultiLevelCSVParser.E_DOWN_2_LEVELS);
+                    tokenizer.set_err(MultiLevelCSVParser.E_DOWN_2_LEVELS);
                     return;
                 } else {
                     // Adjust current level and paths
@@ -335,15 +435,15 @@ public class MultiLevelCSVSchema {
                         if (!is0def && !is0ref) {
                             Util.removeFromPath(cur_path);
                             cur_sibling = Util.removeFromSeqPath(
-                                    cur_sequence_path, csv_ml_schema,
-                                    csv_ml_node_name, cur_sibling);
+                                    cur_sequence_path, is_sibling_counted,
+                                    cur_sibling);
                         }
                         cur_level--;
                     }
                     cur_level++;
                 }
 
-                if (csv_ml_node_name.equals("no_node_name") && space_count == 0)
+                if (!is_node_name_given && space_count == 0)
                     return;
                 if (is0def || is0ref) {
                     cur_path.setLength(0);
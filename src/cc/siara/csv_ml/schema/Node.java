@@ -18,6 +18,7 @@
  */
 package cc.siara.csv_ml.schema;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -32,9 +33,20 @@ public class Node {
     String name;
     String path;
     List<Column> columns = new LinkedList<Column>();
+    Column[] column_arr = new Column[0];
     String seq_path;
     List<String> zero_children = new LinkedList<String>();
 
+    // Navigation members, set when the node is added to the schema.
+    // Children are indexed by sibling number (starting with 1)
+    int id = -1;
+    Node parent = null;
+    Node[] children = new Node[0];
+    HashMap<String, Node> child_name_map = new HashMap<String, Node>();
+
+    // Beyond this number of children, lookup by name uses child_name_map
+    static final int MAX_CHILDREN_TO_COMPARE = 8;
+
     /**
      * Getter for node name
      * 
@@ -88,6 +100,17 @@ public class Node {
      */
     public void addColumn(Column column) {
         this.columns.add(column);
+        column_arr = columns.toArray(new Column[columns.size()]);
+    }
+
+    /**
+     * Getter for columns as array, to be accessed by column index during
+     * parsing
+     * 
+     * @return Array of columns
+     */
+    public Column[] getColumnArray() {
+        return column_arr;
     }
 
     /**
@@ -126,4 +149,103 @@ public class Node {
         this.zero_children.add(zero_child);
     }
 
+    /**
+     * Getter for node id. Ids are assigned in the order in which nodes are
+     * added to the schema.
+     * 
+     * @return Node id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Getter for parent node
+     * 
+     * @return Parent node, which is the root node of the schema for top
+     *         level nodes and null for re-usable nodes
+     */
+    public Node getParent() {
+        return parent;
+    }
+
+    /**
+     * Gets child node by sibling number
+     * 
+     * @param sibling
+     *            Sibling number starting with 1
+     * @return Child node or null if not present
+     */
+    public Node getChild(int sibling) {
+        if (sibling < 1 || sibling > children.length)
+            return null;
+        return children[sibling - 1];
+    }
+
+    /**
+     * Gets child node by name
+     * 
+     * @param child_name
+     *            Name of child node
+     * @return Child node or null if not present
+     */
+    public Node getChildByName(String child_name) {
+        return child_name_map.get(child_name);
+    }
+
+    /**
+     * Gets child node by name given as characters, such as a view into the
+     * parser's buffer. When there are only a few children they are compared
+     * one by one, so that no String is formed.
+     *
+     * @param child_name
+     *            Name of child node
+     * @return Child node or null if not present
+     */
+    public Node getChildByName(CharSequence child_name) {
+        if (children.length > MAX_CHILDREN_TO_COMPARE)
+            return child_name_map.get(child_name.toString());
+        int len = child_name.length();
+        for (int i = 0; i < children.length; i++) {
+            Node child = children[i];
+            if (child == null || child.name.length() != len)
+                continue;
+            int j = 0;
+            while (j < len && child.name.charAt(j) == child_name.charAt(j))
+                j++;
+            if (j == len)
+                return child;
+        }
+        return null;
+    }
+
+    /**
+     * Gets number of child slots, which is the highest sibling number of
+     * children
+     * 
+     * @return Number of child slots
+     */
+    public int getChildCount() {
+        return children.length;
+    }
+
+    /**
+     * Links given node as child of this node
+     * 
+     * @param sibling
+     *            Sibling number of child
+     * @param child
+     *            Child node
+     */
+    void addChild(int sibling, Node child) {
+        if (sibling > children.length) {
+            Node[] new_children = new Node[sibling];
+            System.arraycopy(children, 0, new_children, 0, children.length);
+            children = new_children;
+        }
+        children[sibling - 1] = child;
+        child_name_map.put(child.getName(), child);
+        child.parent = this;
+    }
+
 }
@@ -0,0 +1,1032 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml_demo;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.w3c.dom.Document;
+
+import cc.siara.csv.Counter;
+import cc.siara.csv.ExceptionHandler;
+import cc.siara.csv_ml.CSVTokenizer;
+import cc.siara.csv_ml.ColumnarStore;
+import cc.siara.csv_ml.CompactTree;
+import cc.siara.csv_ml.Directive;
+import cc.siara.csv_ml.FeedParser;
+import cc.siara.csv_ml.LazyDocument;
+import cc.siara.csv_ml.LiteDocument;
+import cc.siara.csv_ml.LongColumnVector;
+import cc.siara.csv_ml.MultiLevelCSVHandler;
+import cc.siara.csv_ml.MultiLevelCSVParser;
+import cc.siara.csv_ml.OffHeapArena;
+import cc.siara.csv_ml.ParsedObject;
+import cc.siara.csv_ml.RecordReader;
+import cc.siara.csv_ml.ScanStatistics;
+import cc.siara.csv_ml.TeeBuilder;
+import cc.siara.csv_ml.TopLevelIterator;
+import cc.siara.csv_ml.schema.MultiLevelCSVSchema;
+import cc.siara.csv_ml.schema.Node;
+
+/**
+ * Command line benchmark comparing alternative parsing paths over generated
+ * data. Run without arguments. Each measurement is repeated a few times and
+ * the best time is reported, so that JIT warm up does not distort results.
+ * That the alternatives give the same result is checked separately by
+ * MultiLevelCSVExampleCheck.
+ *
+ * @author Arundale R.
+ */
+public class MultiLevelCSVBenchmark {
+
+    static final int ROUNDS = 5;
+    // Size of each part given to FeedParser
+    static final int FEED_SIZE = 16384;
+
+    /**
+     * Generates a plain table with given number of rows and columns
+     *
+     * @param rows
+     *            Number of rows
+     * @param cols
+     *            Number of columns
+     * @return Table as csv text
+     */
+    static String generateTable(int rows, int cols) {
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (j > 0)
+                    sb.append(',');
+                if (j % 7 == 3)
+                    sb.append("\"quoted, value ").append(i).append('"');
+                else if (j % 2 == 0)
+                    sb.append("value_").append(j).append('_').append(i);
+                else
+                    sb.append(i * 31 + j);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Generates multi-level data with schema, having given number of top
+     * level records each with 3 child records
+     *
+     * @param rows
+     *            Number of top level records
+     * @return Data as csv_ml text
+     */
+    static String generateMultiLevel(int rows) {
+        StringBuffer sb = new StringBuffer();
+        sb.append("csv_ml,1.0\n");
+        sb.append("student,name,age\n");
+        sb.append(" subject,name,marks\n");
+        sb.append("end_schema\n");
+        for (int i = 0; i < rows; i++) {
+            sb.append("student,name_").append(i).append(',')
+                    .append(15 + i % 5).append('\n');
+            for (int j = 0; j < 3; j++)
+                sb.append(" subject,subject_").append(j).append(',')
+                        .append((i + j) % 100).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Tokenizes given text and returns number of tokens found
+     *
+     * @param tokenizer
+     *            Tokenizer to use
+     * @param text
+     *            Text to tokenize
+     * @return Number of tokens
+     * @throws IOException
+     */
+    static int tokenize(CSVTokenizer tokenizer, String text)
+            throws IOException {
+        int token_count = 0;
+        tokenizer.reset(new StringReader(text));
+        while (!tokenizer.isEOS()) {
+            tokenizer.parseNextToken();
+            token_count++;
+        }
+        return token_count;
+    }
+
+    /**
+     * Measures tokenizing with and without structural scan
+     *
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to tokenize
+     * @throws IOException
+     */
+    static void benchmarkTokenizer(String label, final String text)
+            throws IOException {
+        Counter counter = new Counter();
+        ExceptionHandler ex = new ExceptionHandler(counter);
+        final CSVTokenizer tokenizer = new CSVTokenizer(counter, ex);
+        final int[] token_counts = new int[2];
+        long[] best = measure(2, new Alternatives() {
+            void run(int i) throws IOException {
+                tokenizer.setStructuralScan(i == 1);
+                token_counts[i] = tokenize(tokenizer, text);
+            }
+        });
+        if (token_counts[0] != token_counts[1])
+            System.out.println("Token count mismatch: " + token_counts[0]
+                    + " vs " + token_counts[1]);
+        report("tokenize " + label + " scalar", text.length(), best[0]);
+        report("tokenize " + label + " structural", text.length(), best[1]);
+    }
+
+    /**
+     * Measures parsing to JSON with and without structural scan
+     *
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to parse
+     * @throws IOException
+     */
+    static void benchmarkParser(String label, final String text)
+            throws IOException {
+        final MultiLevelCSVParser parser = new MultiLevelCSVParser();
+        long[] best = measure(2, new Alternatives() {
+            void run(int i) throws IOException {
+                parser.setStructuralScan(i == 1);
+                parser.parseToJSO(new StringReader(text), false);
+            }
+        });
+        report("parse " + label + " scalar", text.length(), best[0]);
+        report("parse " + label + " structural", text.length(), best[1]);
+    }
+
+    /**
+     * Measures parsing a local file to JSON through InputStream and through
+     * memory mapping
+     *
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to write to the file
+     * @throws IOException
+     */
+    static void benchmarkFile(String label, String text) throws IOException {
+        final File file = writeTempFile(text);
+        final MultiLevelCSVParser parser = new MultiLevelCSVParser();
+        long[] best = measure(2, new Alternatives() {
+            void run(int i) throws IOException {
+                if (i == 0) {
+                    InputStream is = new FileInputStream(file);
+                    try {
+                        parser.parseToJSO(is, false);
+                    } finally {
+                        is.close();
+                    }
+                } else
+                    parser.parseToJSO(file, false);
+            }
+        });
+        file.delete();
+        report("file " + label + " stream", text.length(), best[0]);
+        report("file " + label + " mapped", text.length(), best[1]);
+    }
+
+    /**
+     * Measures parsing a local file to JSON sequentially and in parallel
+     * chunks
+     *
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to write to the file
+     * @throws IOException
+     */
+    static void benchmarkParallel(String label, String text)
+            throws IOException {
+        final File file = writeTempFile(text);
+        final ExecutorService executor = Executors.newFixedThreadPool(Runtime
+                .getRuntime().availableProcessors());
+        final MultiLevelCSVParser parser = new MultiLevelCSVParser();
+        long[] best;
+        try {
+            best = measure(2, new Alternatives() {
+                void run(int i) throws IOException {
+                    if (i == 0)
+                        parser.parseToJSO(file, false);
+                    else
+                        parser.parseToJSO(file, false, executor);
+                }
+            });
+        } finally {
+            executor.shutdown();
+        }
+        file.delete();
+        report("file " + label + " sequential", text.length(), best[0]);
+        report("file " + label + " parallel", text.length(), best[1]);
+    }
+
+    /**
+     * Measures parsing a local file to JSON against scanning it for
+     * statistics only
+     * 
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to write to the file
+     * @throws IOException
+     */
+    static void benchmarkScan(String label, String text) throws IOException {
+        final File file = writeTempFile(text);
+        final MultiLevelCSVParser parser = new MultiLevelCSVParser();
+        final ScanStatistics[] stats = new ScanStatistics[1];
+        long[] best = measure(2, new Alternatives() {
+            void run(int i) throws IOException {
+                if (i == 0)
+                    parser.parseToJSO(file, false);
+                else
+                    stats[0] = parser.scan(file);
+            }
+        });
+        file.delete();
+        report("file " + label + " parse", text.length(), best[0]);
+        report("file " + label + " scan (" + stats[0].getRecordCount()
+                + " records)", text.length(), best[1]);
+    }
+
+    /**
+     * Measures parsing a local file to JSON against parsing it to a handler
+     * that only counts nodes and characters of values
+     * 
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to write to the file
+     * @throws IOException
+     */
+    static void benchmarkHandler(String label, String text)
+            throws IOException {
+        final File file = writeTempFile(text);
+        final MultiLevelCSVParser parser = new MultiLevelCSVParser();
+        final long[] counts = new long[2];
+        final MultiLevelCSVHandler handler = new MultiLevelCSVHandler() {
+            public void startDocument(Directive directive,
+                    MultiLevelCSVSchema schema) {
+                counts[0] = 0;
+                counts[1] = 0;
+            }
+
+            public void startNode(String name, Node node_schema, int level) {
+                counts[0]++;
+            }
+
+            public void attribute(int col_idx, String col_name,
+                    CharSequence value) {
+                counts[1] += value.length();
+            }
+
+            public void content(String content) {
+                counts[1] += content.length();
+            }
+
+            public void endNode(String name, int level) {
+            }
+
+            public void endDocument() {
+            }
+        };
+        long[] best = measure(2, new Alternatives() {
+            void run(int i) throws IOException {
+                if (i == 0)
+                    parser.parseToJSO(file, false);
+                else
+                    parser.parse(file, handler);
+            }
+        });
+        file.delete();
+        report("file " + label + " parse", text.length(), best[0]);
+        report("file " + label + " handler (" + counts[0] + " nodes)",
+                text.length(), best[1]);
+    }
+
+    /**
+     * Compares parsing from a stream with a handler against feeding the same
+     * bytes in parts to FeedParser, as would be done when reading from a
+     * non-blocking channel
+     *
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to parse
+     * @throws IOException
+     */
+    static void benchmarkFeed(String label, String text) throws IOException {
+        final byte[] bytes = text.getBytes("UTF-8");
+        final long[] counts = new long[1];
+        final MultiLevelCSVHandler handler = new MultiLevelCSVHandler() {
+            public void startDocument(Directive directive,
+                    MultiLevelCSVSchema schema) {
+                counts[0] = 0;
+            }
+
+            public void startNode(String name, Node node_schema, int level) {
+                counts[0]++;
+            }
+
+            public void attribute(int col_idx, String col_name,
+                    CharSequence value) {
+            }
+
+            public void content(String content) {
+            }
+
+            public void endNode(String name, int level) {
+            }
+
+            public void endDocument() {
+            }
+        };
+        long[] best = measure(2, new Alternatives() {
+            void run(int i) throws IOException {
+                if (i == 0)
+                    new MultiLevelCSVParser().parse(new ByteArrayInputStream(
+                            bytes), handler);
+                else {
+                    FeedParser feed_parser = new FeedParser(handler);
+                    for (int pos = 0; pos < bytes.length; pos += FEED_SIZE)
+                        feed_parser.feed(ByteBuffer.wrap(bytes, pos, Math.min(
+                                FEED_SIZE, bytes.length - pos)));
+                    feed_parser.endOfInput();
+                }
+            }
+        });
+        report(label + " stream handler", text.length(), best[0]);
+        report(label + " feed " + FEED_SIZE + " bytes (" + counts[0]
+                + " nodes)", text.length(), best[1]);
+    }
+
+    /**
+     * Reads all records with RecordReader, adding up lengths of values
+     *
+     * @param rr
+     *            Reader to use
+     * @param text
+     *            Text to read
+     * @return Total length of values
+     * @throws IOException
+     */
+    static long readRecords(RecordReader rr, String text) throws IOException {
+        long total_len = 0;
+        rr.open(new StringReader(text));
+        while (rr.next()) {
+            for (int i = 0; i < rr.getColumnCount(); i++)
+                total_len += rr.getValue(i).length();
+        }
+        return total_len;
+    }
+
+    /**
+     * Gets number of bytes allocated so far by current thread, if the JVM
+     * provides it through com.sun.management.ThreadMXBean
+     *
+     * @return Number of bytes or -1 if not available
+     */
+    static long getAllocatedBytes() {
+        try {
+            Class<?> bean_class = Class
+                    .forName("com.sun.management.ThreadMXBean");
+            Method m = bean_class.getMethod("getThreadAllocatedBytes",
+                    new Class<?>[] { long.class });
+            Object bytes = m.invoke(ManagementFactory.getThreadMXBean(),
+                    new Object[] { Long.valueOf(Thread.currentThread()
+                            .getId()) });
+            return ((Long) bytes).longValue();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Measures reading records with RecordReader against parsing to JSON,
+     * and reports bytes allocated per record by each
+     *
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to read
+     * @throws IOException
+     */
+    static void benchmarkRecordReader(String label, final String text)
+            throws IOException {
+        final MultiLevelCSVParser parser = new MultiLevelCSVParser();
+        final RecordReader rr = new RecordReader();
+        final long[] allocated = new long[2];
+        long[] best = measure(2, new Alternatives() {
+            void run(int i) throws IOException {
+                long start_bytes = getAllocatedBytes();
+                if (i == 0)
+                    parser.parseToJSO(new StringReader(text), false);
+                else
+                    readRecords(rr, text);
+                allocated[i] = getAllocatedBytes() - start_bytes;
+            }
+        });
+        report(label + " parse", text.length(), best[0]);
+        report(label + " records", text.length(), best[1]);
+        long record_count = rr.getOrdinal() + 1;
+        if (allocated[0] >= 0) {
+            System.out.println(label + " bytes allocated per record: parse "
+                    + allocated[0] / record_count + ", records "
+                    + allocated[1] / record_count + " (" + allocated[1]
+                    + " bytes for " + record_count + " records)");
+        }
+    }
+
+    /**
+     * Counts nodes returned by given iterator
+     * 
+     * @param it
+     *            Iterator
+     * @return Number of nodes
+     */
+    static int countNodes(Iterator<JSONObject> it) {
+        int count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Splits given iterator as long as it can be split
+     * 
+     * @param it
+     *            Iterator to split
+     * @param parts
+     *            List to which the parts are added in order
+     */
+    static void splitAll(TopLevelIterator<JSONObject> it,
+            List<TopLevelIterator<JSONObject>> parts) {
+        TopLevelIterator<JSONObject> prefix = it.trySplit();
+        if (prefix == null) {
+            parts.add(it);
+            return;
+        }
+        splitAll(prefix, parts);
+        splitAll(it, parts);
+    }
+
+    /**
+     * Measures iterating over top level nodes of a local file sequentially
+     * against splitting the iterator and iterating the parts in parallel
+     * 
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to write to the file
+     * @throws IOException
+     */
+    static void benchmarkIterator(String label, String text)
+            throws IOException {
+        final File file = writeTempFile(text);
+        final ExecutorService executor = Executors.newFixedThreadPool(Runtime
+                .getRuntime().availableProcessors());
+        final MultiLevelCSVParser parser = new MultiLevelCSVParser();
+        final int[] node_count = new int[1];
+        long[] best;
+        try {
+            best = measure(2, new Alternatives() {
+                void run(int i) throws IOException {
+                    if (i == 0) {
+                        node_count[0] = countNodes(parser.iterateJSO(file));
+                        return;
+                    }
+                    List<TopLevelIterator<JSONObject>> parts;
+                    parts = new ArrayList<TopLevelIterator<JSONObject>>();
+                    splitAll(parser.iterateJSO(file), parts);
+                    List<Future<Integer>> futures;
+                    futures = new ArrayList<Future<Integer>>();
+                    for (final TopLevelIterator<JSONObject> part : parts) {
+                        futures.add(executor.submit(new Callable<Integer>() {
+                            public Integer call() {
+                                return Integer.valueOf(countNodes(part));
+                            }
+                        }));
+                    }
+                    node_count[0] = 0;
+                    for (Future<Integer> future : futures)
+                        node_count[0] += getResult(future).intValue();
+                }
+            });
+        } finally {
+            executor.shutdown();
+        }
+        file.delete();
+        report("file " + label + " iterate (" + node_count[0] + " nodes)",
+                text.length(), best[0]);
+        report("file " + label + " iterate split", text.length(), best[1]);
+    }
+
+    /**
+     * Measures building W3C Document and JSONObject in separate passes
+     * against building both in one pass through TeeBuilder
+     *
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to be parsed
+     * @throws IOException
+     */
+    static void benchmarkTee(String label, final String text)
+            throws IOException {
+        final MultiLevelCSVParser parser = new MultiLevelCSVParser();
+        // Time spent in each sink, least in any round
+        final long[] sink_nanos = new long[] { Long.MAX_VALUE, Long.MAX_VALUE };
+        long[] best = measure(2, new Alternatives() {
+            void run(int i) throws IOException {
+                if (i == 0) {
+                    parser.parseToDOM(new StringReader(text), false);
+                    parser.parseToJSO(new StringReader(text), false);
+                    return;
+                }
+                TeeBuilder tee = new TeeBuilder();
+                tee.addSink(ParsedObject.create(ParsedObject.TARGET_W3C_DOC));
+                tee.addSink(ParsedObject.create(ParsedObject.TARGET_JSON_OBJ));
+                tee.setTiming(true);
+                parser.parse(new StringReader(text), tee);
+                for (int j = 0; j < 2; j++)
+                    sink_nanos[j] = Math.min(sink_nanos[j], tee
+                            .getSinkNanos(j));
+            }
+        });
+        report(label + " DOM and JSON separately", text.length(), best[0]);
+        report(label + " DOM and JSON tee (DOM " + sink_nanos[0] / 1000000
+                + " ms, JSON " + sink_nanos[1] / 1000000 + " ms)", text
+                .length(), best[1]);
+    }
+
+    /**
+     * Measures parsing to JSONObject against parsing to CompactTree, and
+     * reports size of the arrays held by the tree
+     *
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to be parsed
+     * @throws IOException
+     */
+    static void benchmarkCompact(String label, final String text)
+            throws IOException {
+        final MultiLevelCSVParser parser = new MultiLevelCSVParser();
+        final long[] array_bytes = new long[1];
+        long[] best = measure(2, new Alternatives() {
+            void run(int i) throws IOException {
+                if (i == 0)
+                    parser.parseToJSO(new StringReader(text), false);
+                else
+                    array_bytes[0] = parser.parseToCompact(
+                            new StringReader(text), false).getArrayBytes();
+            }
+        });
+        report(label + " JSON", text.length(), best[0]);
+        report(label + " compact (" + array_bytes[0] / 1024 + " KB)",
+                text.length(), best[1]);
+    }
+
+    /**
+     * Measures building W3C Document of the JDK against building
+     * LiteDocument, along with evaluating an XPath expression over each, and
+     * reports heap retained by each document
+     *
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to be parsed, in the format of generateMultiLevel()
+     * @throws IOException
+     * @throws XPathExpressionException
+     */
+    static void benchmarkLiteDOM(String label, final String text)
+            throws IOException, XPathExpressionException {
+        final XPathExpression expr = XPathFactory.newInstance().newXPath()
+                .compile("sum(//subject/@marks)");
+        final Document[] docs = new Document[2];
+        final String[] sums = new String[2];
+        // Parse and XPath over JDK DOM, then the same over lite DOM
+        long[] best = measure(4, new Alternatives() {
+            void run(int i) throws IOException {
+                if (i % 2 == 0) {
+                    docs[i / 2] = null;
+                    docs[i / 2] = newDOMParser(i == 2).parseToDOM(
+                            new StringReader(text), false);
+                    return;
+                }
+                try {
+                    sums[i / 2] = expr.evaluate(docs[i / 2]);
+                } catch (XPathExpressionException e) {
+                    throw new IOException(e.toString());
+                }
+            }
+        });
+        long array_bytes = ((LiteDocument) docs[1]).getArrayBytes();
+        docs[0] = null;
+        docs[1] = null;
+        // Measured on new documents, as node objects of LiteDocument are
+        // created only when walked
+        long[] heap = new long[2];
+        for (int i = 0; i < 2; i++) {
+            long before = getUsedHeap();
+            docs[i] = newDOMParser(i == 1).parseToDOM(new StringReader(text),
+                    false);
+            heap[i] = getUsedHeap() - before;
+            docs[i] = null;
+        }
+        report(label + " JDK DOM (" + heap[0] / 1048576 + " MB)",
+                text.length(), best[0]);
+        System.out.println(label + " XPath over JDK DOM: " + best[1] / 1000000
+                + " ms (" + sums[0] + ")");
+        report(label + " lite DOM (" + heap[1] / 1048576 + " MB, arrays "
+                + array_bytes / 1048576 + " MB)", text.length(), best[2]);
+        System.out.println(label + " XPath over lite DOM: " + best[3]
+                / 1000000 + " ms (" + sums[1] + ")");
+    }
+
+    /**
+     * Creates parser for building DOM. A new parser is used each time, as
+     * the parser refers to the document it last built.
+     *
+     * @param is_lite
+     *            Whether to build LiteDocument
+     * @return Parser
+     */
+    static MultiLevelCSVParser newDOMParser(boolean is_lite) {
+        MultiLevelCSVParser parser = new MultiLevelCSVParser();
+        parser.setLiteDOM(is_lite);
+        return parser;
+    }
+
+    /**
+     * Measures opening a file as LazyDocument against parsing it to W3C
+     * Document, reporting heap retained by each, and then measures getting
+     * records at random from the LazyDocument
+     *
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to be parsed, in the format of generateMultiLevel()
+     * @throws IOException
+     */
+    static void benchmarkLazy(String label, String text) throws IOException {
+        final File file = writeTempFile(text);
+        final Document[] doc = new Document[1];
+        final LazyDocument[] lazy = new LazyDocument[1];
+        final long[] marks = new long[1];
+        // Parse to DOM, open lazy and then get records from it
+        long[] best = measure(3, new Alternatives() {
+            void run(int i) throws IOException {
+                doc[0] = null;
+                if (i == 0) {
+                    doc[0] = new MultiLevelCSVParser().parseToDOM(file, false);
+                    return;
+                }
+                if (i == 1) {
+                    lazy[0] = null;
+                    lazy[0] = new MultiLevelCSVParser().openLazy(file);
+                    return;
+                }
+                // Records spread over the file, as when looked up by id
+                int record_count = lazy[0].getRecordCount();
+                marks[0] = 0;
+                for (int j = 0; j < 1000; j++) {
+                    CompactTree record = lazy[0].getRecord((int) ((j * 7919L)
+                            % record_count));
+                    int student = record.getFirstChild(record.getRoot());
+                    int subject = record.findChild(student, "subject");
+                    if (subject != CompactTree.NONE)
+                        marks[0] += Long.parseLong(record.getValue(subject,
+                                "marks"));
+                }
+            }
+        });
+        long index_bytes = lazy[0].getIndexBytes();
+        lazy[0] = null;
+        long before = getUsedHeap();
+        doc[0] = new MultiLevelCSVParser().parseToDOM(file, false);
+        long dom_heap = getUsedHeap() - before;
+        doc[0] = null;
+        before = getUsedHeap();
+        lazy[0] = new MultiLevelCSVParser().openLazy(file);
+        long lazy_heap = getUsedHeap() - before;
+        lazy[0] = null;
+        file.delete();
+        report(label + " parse to DOM (" + dom_heap / 1048576 + " MB)", text
+                .length(), best[0]);
+        report(label + " open lazy (" + lazy_heap / 1024 + " KB, index "
+                + index_bytes / 1024 + " KB)", text.length(), best[1]);
+        System.out.println(label + " 1000 lazy records: " + best[2] / 1000000
+                + " ms (" + marks[0] + ")");
+    }
+
+    /**
+     * Measures keeping several CompactTrees in heap against keeping their
+     * values outside heap, reporting heap retained and time taken by full
+     * garbage collection while the trees are kept
+     *
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to be parsed
+     * @param tree_count
+     *            Number of trees kept
+     * @throws IOException
+     */
+    static void benchmarkOffHeap(String label, String text, int tree_count)
+            throws IOException {
+        for (int i = 0; i < 2; i++) {
+            MultiLevelCSVParser parser = new MultiLevelCSVParser();
+            parser.setOffHeap(i == 1);
+            CompactTree[] trees = new CompactTree[tree_count];
+            long before = getUsedHeap();
+            long start = System.nanoTime();
+            for (int j = 0; j < tree_count; j++)
+                trees[j] = parser.parseToCompact(new StringReader(text), false);
+            long nanos = System.nanoTime() - start;
+            long heap = getUsedHeap() - before;
+            long gc_millis = getGCMillis();
+            for (int j = 0; j < 5; j++)
+                System.gc();
+            gc_millis = getGCMillis() - gc_millis;
+            report(label + (i == 0 ? " heap" : " off-heap") + " x"
+                    + tree_count + " (" + heap / 1048576 + " MB heap, "
+                    + OffHeapArena.getTotalBytes() / 1048576
+                    + " MB off-heap)", text.length() * tree_count, nanos);
+            System.out.println(label + (i == 0 ? " heap" : " off-heap")
+                    + " 5 full GCs: " + gc_millis + " ms");
+            for (int j = 0; j < tree_count; j++)
+                trees[j].close();
+        }
+    }
+
+    /**
+     * Gets total time taken by garbage collection so far
+     *
+     * @return Milliseconds
+     */
+    static long getGCMillis() {
+        long millis = 0;
+        List<GarbageCollectorMXBean> beans = ManagementFactory
+                .getGarbageCollectorMXBeans();
+        for (int i = 0; i < beans.size(); i++)
+            millis += beans.get(i).getCollectionTime();
+        return millis;
+    }
+
+    /**
+     * Gets heap in use after garbage collection
+     *
+     * @return Number of bytes
+     */
+    static long getUsedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Measures parsing with typed values to JSONObject and adding up an
+     * integer column by walking the objects, against parsing to
+     * ColumnarStore and adding up the column vector
+     *
+     * @param label
+     *            Label for the data set
+     * @param text
+     *            Data to be parsed, in the format of generateMultiLevel()
+     * @throws IOException
+     */
+    static void benchmarkColumnar(String label, String text)
+            throws IOException {
+        final String typed_text = text.replace(" subject,name,marks\n",
+                " subject,name,marks()int\n");
+        final MultiLevelCSVParser parser = new MultiLevelCSVParser();
+        parser.setTypeConversion(true);
+        final JSONObject[] jo = new JSONObject[1];
+        final ColumnarStore[] store = new ColumnarStore[1];
+        final long[] sums = new long[2];
+        // Parse and sum over JSON, then the same over columns
+        long[] best = measure(4, new Alternatives() {
+            void run(int i) throws IOException {
+                switch (i) {
+                case 0:
+                    jo[0] = parser.parseToJSO(new StringReader(typed_text),
+                            false);
+                    break;
+                case 1:
+                    sums[0] = 0;
+                    JSONArray students = (JSONArray) jo[0].get("student");
+                    for (int j = 0; j < students.size(); j++) {
+                        JSONArray subjects = (JSONArray) ((JSONObject) students
+                                .get(j)).get("subject");
+                        for (int k = 0; k < subjects.size(); k++)
+                            sums[0] += ((Long) ((JSONObject) subjects.get(k))
+                                    .get("marks")).longValue();
+                    }
+                    break;
+                case 2:
+                    store[0] = new ColumnarStore();
+                    parser.parse(new StringReader(typed_text), store[0]);
+                    break;
+                case 3:
+                    sums[1] = ((LongColumnVector) store[0].getTable(
+                            "student/subject").getColumn("marks")).sum();
+                    break;
+                }
+            }
+        });
+        report(label + " parse typed JSON", typed_text.length(), best[0]);
+        System.out.println(label + " sum over JSON: " + best[1] / 1000
+                + " us (" + sums[0] + ")");
+        report(label + " parse columnar", typed_text.length(), best[2]);
+        System.out.println(label + " sum over column: " + best[3] / 1000
+                + " us (" + sums[1] + ")");
+    }
+
+    /**
+     * Alternative ways of doing the same work, compared by a benchmark
+     */
+    static abstract class Alternatives {
+
+        /**
+         * Does the work once in the way given by index
+         *
+         * @param i
+         *            Index of the alternative
+         * @throws IOException
+         */
+        abstract void run(int i) throws IOException;
+    }
+
+    /**
+     * Runs each of the alternatives in turn for ROUNDS rounds and returns
+     * the best time taken by each
+     *
+     * @param count
+     *            Number of alternatives
+     * @param alternatives
+     *            The alternatives
+     * @return Best time of each in nanoseconds
+     * @throws IOException
+     */
+    static long[] measure(int count, Alternatives alternatives)
+            throws IOException {
+        long[] best = new long[count];
+        for (int i = 0; i < count; i++)
+            best[i] = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < count; i++) {
+                long start = System.nanoTime();
+                alternatives.run(i);
+                long elapsed = System.nanoTime() - start;
+                if (elapsed < best[i])
+                    best[i] = elapsed;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Waits for result of a task
+     * 
+     * @param future
+     *            Future of the task
+     * @return Result
+     * @throws IOException
+     */
+    static <V> V getResult(Future<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new IOException(e.toString());
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().toString());
+        }
+    }
+
+    /**
+     * Writes given text to a temporary file
+     *
+     * @param text
+     *            Content
+     * @return File written
+     * @throws IOException
+     */
+    static File writeTempFile(String text) throws IOException {
+        File file = File.createTempFile("csv_ml_bench", ".csv");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(text.getBytes("UTF-8"));
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+    /**
+     * Prints throughput
+     *
+     * @param label
+     *            What was measured
+     * @param chars
+     *            Number of characters processed
+     * @param nanos
+     *            Time taken
+     */
+    static void report(String label, int chars, long nanos) {
+        double mb_per_sec = (chars / 1048576.0) / (nanos / 1e9);
+        System.out.println(label + ": " + (nanos / 1000000) + " ms, "
+                + ((long) (mb_per_sec * 10)) / 10.0 + " M chars/s");
+    }
+
+    /**
+     * Main entry point
+     *
+     * @param args
+     *            Not used
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException,
+            XPathExpressionException {
+        String narrow = generateTable(400000, 3);
+        String wide = generateTable(20000, 60);
+        benchmarkTokenizer("narrow", narrow);
+        benchmarkTokenizer("wide", wide);
+        benchmarkParser("narrow", narrow);
+        benchmarkParser("wide", wide);
+        benchmarkFile("narrow", narrow);
+        benchmarkFile("wide", wide);
+        benchmarkParallel("narrow", narrow);
+        benchmarkParallel("wide", wide);
+        benchmarkScan("narrow", narrow);
+        benchmarkScan("wide", wide);
+        benchmarkHandler("narrow", narrow);
+        benchmarkHandler("wide", wide);
+        benchmarkRecordReader("narrow", narrow);
+        benchmarkRecordReader("wide", wide);
+        benchmarkRecordReader("multi-level", generateMultiLevel(100000));
+        benchmarkIterator("multi-level", generateMultiLevel(400000));
+        benchmarkFeed("narrow", narrow);
+        benchmarkFeed("multi-level", generateMultiLevel(100000));
+        benchmarkTee("multi-level", generateMultiLevel(100000));
+        benchmarkCompact("narrow", narrow);
+        benchmarkCompact("multi-level", generateMultiLevel(100000));
+        benchmarkColumnar("multi-level", generateMultiLevel(100000));
+        benchmarkLiteDOM("multi-level", generateMultiLevel(100000));
+        benchmarkLazy("multi-level", generateMultiLevel(400000));
+        benchmarkOffHeap("multi-level", generateMultiLevel(100000), 8);
+    }
+
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright (C) 2015 Siara Logics (cc)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Arundale R.
+ *
+ */
+package cc.siara.csv_ml_demo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+import org.json.simple.JSONObject;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+
+import cc.siara.csv_ml.Directive;
+import cc.siara.csv_ml.FeedParser;
+import cc.siara.csv_ml.MultiLevelCSVHandler;
+import cc.siara.csv_ml.MultiLevelCSVParser;
+import cc.siara.csv_ml.ParsedObject;
+import cc.siara.csv_ml.ScanStatistics;
+import cc.siara.csv_ml.TeeBuilder;
+import cc.siara.csv_ml.Util;
+import cc.siara.csv_ml.schema.MultiLevelCSVSchema;
+import cc.siara.csv_ml.schema.Node;
+
+/**
+ * Command line check that the alternative ways of parsing give the same
+ * result for each example of the demo, in both comma and tab delimited
+ * form, and for a few other inputs whose DOM and errors are also checked
+ * against what is expected. Inputs having names that the DOM of the JDK
+ * rejects are checked to be rejected by LiteDocument too. Run without
+ * arguments. Exits with status 1 if any check fails.
+ *
+ * @author Arundale R.
+ */
+public class MultiLevelCSVExampleCheck {
+
+    // Size of each part given to FeedParser, small so that rows, quotes and
+    // comments get split across parts
+    static final int FEED_SIZE = 5;
+
+    // XML declaration at the beginning of Document text
+    static final String XML_DECL = "<?xml version=\"1.0\" "
+            + "encoding=\"UTF-8\" standalone=\"no\"?>";
+
+    // Inputs other than the examples along with the DOM and errors expected,
+    // as given by release 1.0 unless noted
+    static final String[][] aKnownResults = new String[][] {
+            { "name,age\n\"x\" y,2\nc,3\n",
+                    XML_DECL + "<root><n1 age=\"2\" name=\"x\"/>"
+                            + "<n1 age=\"3\" name=\"c\"/></root> "
+                            + "Warning(s):\nLine:2, Col:4: "
+                            + "Unexpected character" },
+            // Release 1.0 drops rest of the input as part of value
+            { "name,age\n\"x\"y,2\nc,3\n",
+                    XML_DECL + "<root><n1 age=\"2\" name=\"x\"/>"
+                            + "<n1 age=\"3\" name=\"c\"/></root> "
+                            + "Warning(s):\nLine:2, Col:3: "
+                            + "Unexpected character" },
+            { "csv_ml,1.0\nstudent,name,age\n1,a,24\n 2,b,45",
+                    XML_DECL + "<root><student age=\"24\" name=\"a\"/></root> "
+                            + "Error:\nLine:4, Col:3: Node not found" },
+            // Release 1.0 gives position of next line
+            { "csv_ml,1.0\nstudent,name,age\n1,a,24\n 2\n3,c,1",
+                    XML_DECL + "<root><student age=\"24\" name=\"a\"/></root> "
+                            + "Error:\nLine:4, Col:3: Node not found" },
+            { "csv_ml,1.0\nstudent,name,age\n education,course\n1,a,24\n"
+                    + "  1,x",
+                    XML_DECL + "<root><student age=\"24\" name=\"a\"/></root> "
+                            + "Error:\nLine:5, Col:2: "
+                            + "Cannot go down two levels" },
+            { "csv_ml,1.0,UTF-8,student\nstudent,name,age\n1,a,24\n1,b,35",
+                    XML_DECL + "<student age=\"24\" name=\"a\"/> Error:\n"
+                            + "Line:4, Col:2: "
+                            + "There can be only one root node" },
+            // Release 1.0 fails with NullPointerException
+            { "csv_ml,1.0\nstudent,name\nstudent,age\n1,a",
+                    "null Error:\nLine:3, Col:8: Duplicate node definition" },
+            { "csv_ml,1.0\n student,name\n1,a",
+                    "null Error:\nLine:2, Col:1: "
+                            + "Schema definition cannot begin with a space" },
+            { "  name,age\na,1",
+                    XML_DECL + "<root><n1 __name=\"a\" age=\"1\"/></root> " },
+            // Release 1.0 does not warn
+            { "csv_ml,1.0,UTF8X\nstudent,name\n1,a",
+                    XML_DECL + "<root><student name=\"a\"/></root> "
+                            + "Warning(s):\nLine:1, Col:17: "
+                            + "Encoding not supported" },
+            { "csv_ml,1.0\nstudent,n\u0300a\n1,a",
+                    XML_DECL + "<root><student n\u0300a=\"a\"/></root> " },
+            // Local name is taken after the second colon
+            { "csv_ml,1.0\nstudent,a:b:c\n1,x",
+                    XML_DECL + "<root><student xmlns:a="
+                            + "\"http://siara.cc/ns\" a:c=\"x\"/></root> " } };
+
+    // Inputs having a name that the DOM of the JDK rejects
+    static final String[] aInvalidNames = new String[] {
+            "csv_ml,1.0\nstudent,1name\n1,a",
+            "csv_ml,1.0\nstudent,a\u02B0\n1,a",
+            "csv_ml,1.0\nstudent,\u3005a\n1,a",
+            "csv_ml,1.0\nstudent,a::b,xmlns:a\n1,x,http://a",
+            "csv_ml,1.0\nstudent,a:1b\n1,x",
+            "csv_ml,1.0\nstudent,xml:a\n1,x",
+            "csv_ml,1.0\na::b,name\n1,a",
+            "csv_ml,1.0\nxmlns:b,name\n1,a" };
+
+    static int check_count = 0;
+    static int failure_count = 0;
+
+    /**
+     * Handler that notes each event as a line of text
+     */
+    static class EventRecorder implements MultiLevelCSVHandler {
+
+        StringBuffer events = new StringBuffer();
+
+        public void startDocument(Directive directive,
+                MultiLevelCSVSchema schema) {
+            events.append("startDocument ").append(directive.getRoot())
+                    .append('\n');
+        }
+
+        public void startNode(String name, Node node_schema, int level) {
+            events.append("startNode ").append(level).append(' ').append(
+                    name).append('\n');
+        }
+
+        public void attribute(int col_idx, String col_name,
+                CharSequence value) {
+            events.append("attribute ").append(col_idx).append(' ').append(
+                    col_name).append('=').append(value).append('\n');
+        }
+
+        public void content(String content) {
+            events.append("content ").append(content).append('\n');
+        }
+
+        public void endNode(String name, int level) {
+            events.append("endNode ").append(level).append(' ').append(name)
+                    .append('\n');
+        }
+
+        public void endDocument() {
+            events.append("endDocument\n");
+        }
+    }
+
+    /**
+     * Creates parser for given delimiter
+     *
+     * @param delim
+     *            Delimiter
+     * @return Parser
+     */
+    static MultiLevelCSVParser newParser(char delim) {
+        MultiLevelCSVParser parser = new MultiLevelCSVParser();
+        parser.setDelimiter(delim);
+        return parser;
+    }
+
+    /**
+     * Forms text of given Document along with errors of the parser
+     *
+     * @param doc
+     *            Document parsed or null
+     * @param parser
+     *            Parser used
+     * @return Text to compare
+     */
+    static String toText(Document doc, MultiLevelCSVParser parser) {
+        return (doc == null ? "null" : Util.docToString(doc, false)) + " "
+                + parser.getEx().get_all_exceptions();
+    }
+
+    /**
+     * Counts a check, printing it if the results differ
+     *
+     * @param example
+     *            Title of the example
+     * @param check_name
+     *            What was compared
+     * @param expected
+     *            Result of the usual way
+     * @param actual
+     *            Result of the alternative
+     */
+    static void check(String example, String check_name, String expected,
+            String actual) {
+        check_count++;
+        if (expected.equals(actual))
+            return;
+        failure_count++;
+        System.out.println("FAIL " + example + ": " + check_name
+                + "\n  expected: " + expected + "\n  actual:   " + actual);
+    }
+
+    /**
+     * Checks that parsing to DOM, from a Reader as well as from a byte
+     * stream, gives the DOM and errors expected
+     *
+     * @param text
+     *            Input
+     * @param expected
+     *            DOM and errors expected
+     * @throws IOException
+     */
+    static void checkKnownResult(String text, String expected)
+            throws IOException {
+        MultiLevelCSVParser parser = newParser(',');
+        String actual = toText(parser.parseToDOM(new StringReader(text),
+                false), parser);
+        check(text, "DOM and errors as expected", expected, actual);
+        parser = newParser(',');
+        actual = toText(parser.parseToDOM(new ByteArrayInputStream(text
+                .getBytes("UTF-8")), false), parser);
+        check(text, "DOM and errors from byte stream as expected", expected,
+                actual);
+    }
+
+    /**
+     * Checks that LiteDocument has the same content as W3C Document of the
+     * JDK
+     *
+     * @param example
+     *            Title of the example
+     * @param text
+     *            Example input
+     * @param delim
+     *            Delimiter
+     * @throws IOException
+     */
+    static void checkLiteDOM(String example, String text, char delim)
+            throws IOException {
+        MultiLevelCSVParser parser = newParser(delim);
+        String expected = toText(parser.parseToDOM(new StringReader(text),
+                false), parser);
+        parser = newParser(delim);
+        parser.setLiteDOM(true);
+        String actual = toText(parser.parseToDOM(new StringReader(text),
+                false), parser);
+        check(example, "lite DOM equals JDK DOM", expected, actual);
+    }
+
+    /**
+     * Checks that LiteDocument rejects the input with the same DOMException
+     * as W3C Document of the JDK
+     *
+     * @param text
+     *            Input having invalid name
+     * @throws IOException
+     */
+    static void checkLiteDOMError(String text) throws IOException {
+        check(text, "lite DOM error equals JDK DOM error", getDOMError(text,
+                false), getDOMError(text, true));
+    }
+
+    /**
+     * Parses input to DOM and gives the code of DOMException raised
+     *
+     * @param text
+     *            Input
+     * @param is_lite
+     *            Whether to build LiteDocument
+     * @return Code of DOMException or message saying none was raised
+     * @throws IOException
+     */
+    static String getDOMError(String text, boolean is_lite)
+            throws IOException {
+        MultiLevelCSVParser parser = newParser(',');
+        parser.setLiteDOM(is_lite);
+        try {
+            parser.parseToDOM(new StringReader(text), false);
+        } catch (DOMException e) {
+            return "DOMException " + e.code;
+        }
+        return "No DOMException";
+    }
+
+    /**
+     * Checks that FeedParser passes the same events to the handler as
+     * parsing from a Reader, when the input is fed in small parts
+     *
+     * @param example
+     *            Title of the example
+     * @param text
+     *            Example input
+     * @param delim
+     *            Delimiter
+     * @throws IOException
+     */
+    static void checkFeed(String example, String text, char delim)
+            throws IOException {
+        EventRecorder recorder = new EventRecorder();
+        MultiLevelCSVParser parser = newParser(delim);
+        parser.parse(new StringReader(text), recorder);
+        String expected = recorder.events + " "
+                + parser.getEx().get_all_exceptions();
+        recorder = new EventRecorder();
+        FeedParser feed_parser = new FeedParser(newParser(delim), recorder);
+        byte[] bytes = text.getBytes("UTF-8");
+        for (int pos = 0; pos < bytes.length; pos += FEED_SIZE)
+            feed_parser.feed(ByteBuffer.wrap(bytes, pos, Math.min(FEED_SIZE,
+                    bytes.length - pos)));
+        feed_parser.endOfInput();
+        String actual = recorder.events + " "
+                + feed_parser.getParser().getEx().get_all_exceptions();
+        check(example, "feed events equal handler events", expected, actual);
+    }
+
+    /**
+     * Checks that scanning finds the same error as parsing to DOM
+     *
+     * @param example
+     *            Title of the example
+     * @param text
+     *            Example input
+     * @param delim
+     *            Delimiter
+     * @throws IOException
+     */
+    static void checkScan(String example, String text, char delim)
+            throws IOException {
+        MultiLevelCSVParser parser = newParser(delim);
+        parser.parseToDOM(new StringReader(text), false);
+        String expected = parser.getEx().getErrorCode() + " "
+                + parser.getEx().get_all_exceptions();
+        parser = newParser(delim);
+        ScanStatistics stats = parser.scan(new StringReader(text));
+        String actual = stats.getErrorCode() + " "
+                + parser.getEx().get_all_exceptions();
+        check(example, "scan error equals parse error", expected, actual);
+    }
+
+    /**
+     * Checks that building DOM and JSON in one pass through TeeBuilder gives
+     * the same objects as parsing to each separately. JSON is compared only
+     * when there is no error, as it is not built beyond errors that only the
+     * DOM reports.
+     *
+     * @param example
+     *            Title of the example
+     * @param text
+     *            Example input
+     * @param delim
+     *            Delimiter
+     * @throws IOException
+     */
+    static void checkTee(String example, String text, char delim)
+            throws IOException {
+        TeeBuilder tee = new TeeBuilder();
+        tee.addSink(ParsedObject.create(ParsedObject.TARGET_W3C_DOC));
+        tee.addSink(ParsedObject.create(ParsedObject.TARGET_JSON_OBJ));
+        MultiLevelCSVParser tee_parser = newParser(delim);
+        tee_parser.parse(new StringReader(text), tee);
+        MultiLevelCSVParser parser = newParser(delim);
+        String expected = toText(parser.parseToDOM(new StringReader(text),
+                false), parser);
+        String actual = toText(((ParsedObject) tee.getSink(0)).getDocument(),
+                tee_parser);
+        check(example, "tee DOM equals DOM", expected, actual);
+        if (parser.getEx().getErrorCode() != 0)
+            return;
+        JSONObject jo = newParser(delim).parseToJSO(new StringReader(text),
+                false);
+        check(example, "tee JSON equals JSON", jo.toJSONString(),
+                ((ParsedObject) tee.getSink(1)).getJSONObject()
+                        .toJSONString());
+    }
+
+    /**
+     * Main entry point
+     *
+     * @param args
+     *            Not used
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        String[] titles = MultiLevelCSVSwingDemo.aExamples;
+        for (int i = 0; i < titles.length; i++) {
+            for (int j = 0; j < 2; j++) {
+                String example = titles[i] + (j == 0 ? " (CSV)" : " (TDV)");
+                String text = (j == 0 ? MultiLevelCSVSwingDemo.aExampleCSV[i]
+                        : MultiLevelCSVSwingDemo.aExampleTDV[i]);
+                char delim = (j == 0 ? ',' : '\t');
+                checkLiteDOM(example, text, delim);
+                checkFeed(example, text, delim);
+                checkScan(example, text, delim);
+                checkTee(example, text, delim);
+            }
+        }
+        for (int i = 0; i < aKnownResults.length; i++) {
+            String text = aKnownResults[i][0];
+            checkKnownResult(text, aKnownResults[i][1]);
+            checkLiteDOM(text, text, ',');
+            checkFeed(text, text, ',');
+            checkScan(text, text, ',');
+            checkTee(text, text, ',');
+        }
+        for (int i = 0; i < aInvalidNames.length; i++)
+            checkLiteDOMError(aInvalidNames[i]);
+        System.out.println(check_count + " checks, " + failure_count
+                + " failed");
+        if (failure_count > 0)
+            System.exit(1);
+    }
+
+}
@@ -549,7 +549,8 @@ public class MultiLevelCSVSwingDemo extends JFrame implements ActionListener,
     String[] aDelimiter = new String[] { "Comma", "Tab", "Other:" };
 
     // List of example titles (of csv_ml) corresponding to documentation
-    String[] aExamples = new String[] { "1.1: Conventional Table data",
+    static final String[] aExamples = new String[] {
+            "1.1: Conventional Table data",
             "1.2: Table data without Header",
             "1.3: Table data with Header and Node name",
             "1.4: Table data with Header and Node index",
@@ -571,7 +572,7 @@ public class MultiLevelCSVSwingDemo extends JFrame implements ActionListener,
             "4.7: Schema - Special column 'parent_id'" };
 
     // List of example csv_ml corresponding to documentation in CSV format
-    String[] aExampleCSV = new String[] {
+    static final String[] aExampleCSV = new String[] {
             "name,subject,marks\nabc,physics,53\nabc,chemistry,65\nxyz,physics,73\nxyz,chemistry,76",
             "csv_ml,1.0,UTF-8,root,no_node_name,no_schema\nabc,physics,53\nabc,chemistry,65\nxyz,physics,73\nxyz,chemistry,76",
             "csv_ml,1.0,UTF-8,root,with_node_name,inline\nstudent,name,subject,marks\nend_schema\nstudent,abc,physics,53\nstudent,abc,chemistry,65\nstudent,xyz,physics,73\nstudent,xyz,chemistry,76",
@@ -602,7 +603,7 @@ public class MultiLevelCSVSwingDemo extends JFrame implements ActionListener,
 
     // List of example csv_ml corresponding to documentation in Tab delimited
     // format
-    String[] aExampleTDV = new String[] {
+    static final String[] aExampleTDV = new String[] {
             "name\tsubject\tmarks\nabc\tphysics\t53\nabc\tchemistry\t65\nxyz\tphysics\t73\nxyz\tchemistry\t76",
             "csv_ml\t1.0\tUTF-8\troot\tno_node_name\tno_schema\nabc\tphysics\t53\nabc\tchemistry\t65\nxyz\tphysics\t73\nxyz\tchemistry\t76",
             "csv_ml\t1.0\tUTF-8\troot\twith_node_name\tinline\nstudent\tname\tsubject\tmarks\nend_schema\nstudent\tabc\tphysics\t53\nstudent\tabc\tchemistry\t65\nstudent\txyz\tphysics\t73\nstudent\txyz\tchemistry\t76",